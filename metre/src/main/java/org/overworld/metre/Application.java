@@ -2,21 +2,24 @@ package org.overworld.metre;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.management.openmbean.CompositeDataSupport;
-import javax.management.remote.JMXServiceURL;
 
 import org.apache.log4j.Logger;
 import org.overworld.metre.config.ConfigRoot;
 import org.overworld.metre.config.MetreConfig;
+import org.overworld.metre.config.MetreOptions;
 import org.overworld.metre.metric.MetricDescriptor;
-import org.overworld.metre.metric.MetricsFountain;
-import org.overworld.metre.metric.SampleCollector;
-import org.overworld.metre.process.JMeterExecutor;
-import org.overworld.metre.process.TargetExecutor;
+import org.overworld.metre.process.RunSlot;
+import org.overworld.metre.score.PruningPolicy;
+import org.overworld.metre.score.Ranking;
 import org.overworld.metre.score.ScoreCard;
 import org.overworld.metre.score.ScoreTable;
+import org.overworld.metre.search.Candidate;
+import org.overworld.metre.search.SearchSpace;
+import org.overworld.metre.search.SearchStrategy;
 
 /**
  * The main class for the Metre application. Provides main() entry point and
@@ -28,6 +31,12 @@ import org.overworld.metre.score.ScoreTable;
  */
 public class Application {
 
+    /**
+     * The p value below which combinations run more than once are ranked
+     * apart, unless the options say otherwise
+     */
+    private static final double DEFAULT_SIGNIFICANCE = 0.05;
+
     private static Logger LOG = Logger.getLogger(Application.class);
 
     /**
@@ -47,7 +56,6 @@ public class Application {
         app.testCycle();
     }
 
-    private List<String> alternateJvmArgs;
     private final ConfigRoot configRoot;
     final Collection<MetricDescriptor> desiredMetrics = new ArrayList<>();
     private final ScoreTable scoreTable;
@@ -105,87 +113,109 @@ public class Application {
     public void testCycle() throws CommunicationException,
         ApplicationException {
 
-        this.alternateJvmArgs = this.configRoot.expand();
+        /*
+         * choose the JVM parameter combinations to run from the space that the
+         * application configuration describes
+         */
 
-        /* point the metrics fountain at the target */
+        final MetreOptions options = this.configRoot.getMetreOptions();
 
-        final JMXServiceURL target = JMXURLFactory.fromPort(this.configRoot
-            .getTargetOptions().getJmxPort());
+        SearchSpace space = new SearchSpace(this.configRoot);
 
-        /* initialise the metrics fountain */
+        if (options.getShards() > 1)
+            space = space.shard(options.getShard(), options.getShards());
 
-        final MetricsFountain mf = new MetricsFountain(target,
-            this.desiredMetrics);
+        final SearchStrategy search = SearchStrategy.fromOptions(options,
+            space);
 
-        int countRuns = 1;
+        /*
+         * stop runs early once they cannot reach the top results, if so
+         * configured
+         */
+
+        final PruningPolicy pruning = options.isPrune() ? new PruningPolicy(
+            options.getTopResults(), options.getPruneMargin()) : null;
 
         /*
-         * iterate through all JVM parameter combinations from the application
-         * configuration
+         * divide the host between as many concurrent runs as it can hold, each
+         * with its own CPUs and ports
          */
 
-        for (final String alternateJvmArgString : this.alternateJvmArgs) {
+        final SweepScheduler scheduler = new SweepScheduler(this.configRoot,
+            this.desiredMetrics, RunSlot.partition(options, this.configRoot
+                .getTargetOptions(), this.configRoot.getJmeterOptions()),
+            pruning);
 
-            /*
-             * ready the TargetExecutor to run the experiment target
-             * application
-             */
+        final Map<Integer, Candidate> running = new HashMap<>();
 
-            final TargetExecutor tex = new TargetExecutor(this.configRoot
-                .getTargetOptions(), alternateJvmArgString);
+        int countRuns = 1;
 
-            final SampleCollector collect = new SampleCollector(
-                this.configRoot.getMetreOptions().getSampleInterval(), mf);
+        try {
 
-            /*
-             * ready the JMeter process to measure this iteration of the
-             * experiment
-             */
+            while (true) {
 
-            final JMeterExecutor jmex = new JMeterExecutor(this.configRoot
-                .getJmeterOptions());
+                /* fill each free slot with the next choice of the search */
 
-            try {
+                final Candidate candidate = running.size() < scheduler
+                    .getCapacity() ? search.next() : null;
 
-                /*
-                 * run the target application, this call blocks until the
-                 * application prints its ready string
-                 */
-                tex.start();
+                if (candidate != null) {
+
+                    LOG.info(String.format("Run %d of at most %d: %s",
+                        countRuns, search.getPlanned(), candidate));
 
-                /* start the JMX collector */
+                    running.put(countRuns, candidate);
+                    scheduler.submit(candidate.getArguments(), countRuns++);
+                    continue;
+                }
 
-                collect.start();
+                if (running.isEmpty()) break;
 
                 /*
-                 * start the JMeter process to apply load to the target and wait
-                 * until the test script is finished
+                 * add the results of each test run to the score table and
+                 * inform the search
                  */
 
-                jmex.start();
-                jmex.reap();
+                final ScoreCard score = scheduler.take();
+
+                search.report(running.remove(score.getRunNumber()), score);
+                this.scoreTable.add(score);
 
-                /* stop the JMX collector */
+                if (pruning != null) pruning.update(this.scoreTable);
+            }
+        } catch (final InterruptedException e) {
 
-                collect.stop();
+            throw new ApplicationException("Interrupted during test runs", e);
+        } finally {
 
-                /* stop the target */
+            scheduler.shutdown();
+        }
 
-                tex.stop();
-            } catch (final ApplicationException e) {
+        LOG.info(String.format("Completed %d runs by %s", countRuns - 1,
+            search));
 
-                LOG.error("Failed test iteration", e);
-            }
+        /*
+         * dump the top n results to the output directory, ranking the
+         * combinations by their trials if each was run more than once
+         */
+
+        if (options.getTrials() > 1) {
+
+            final Ranking ranking = new Ranking(this.scoreTable, options
+                .getSignificance() > 0 ? options.getSignificance()
+                : DEFAULT_SIGNIFICANCE);
+
+            LOG.info(ranking);
 
-            /* add the results of this test run to the score table */
+            ranking.dump();
+            ranking.dumpTop(options.getTopResults());
+        } else {
 
-            this.scoreTable.add(new ScoreCard(collect.getSlices(), jmex
-                .results(), alternateJvmArgString, countRuns++));
+            this.scoreTable.dumpTop(options.getTopResults());
         }
 
-        /* dump the top n results to the output directory */
+        /* and the runs that were stopped early, with the reason for each */
 
-        this.scoreTable.dumpTop(this.configRoot.getMetreOptions()
-            .getTopResults());
+        if (pruning != null) this.scoreTable.dumpPruned();
     }
 }
@@ -0,0 +1,136 @@
+package org.overworld.metre;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.overworld.metre.config.ConfigRoot;
+import org.overworld.metre.metric.MetricDescriptor;
+import org.overworld.metre.process.RunSlot;
+import org.overworld.metre.score.PruningPolicy;
+import org.overworld.metre.score.ScoreCard;
+
+/**
+ * Performs test runs concurrently, each in a slot of the host that no other
+ * run holds at the same time. Submitting a run waits for a slot to come free,
+ * and completed runs can be taken in the order in which they complete.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-02
+ */
+public class SweepScheduler {
+
+    private static Logger LOG = Logger.getLogger(SweepScheduler.class);
+
+    private final int capacity;
+    private final CompletionService<ScoreCard> completed;
+    private final ConfigRoot configRoot;
+    private final Collection<MetricDescriptor> desiredMetrics;
+    private final BlockingQueue<RunSlot> free;
+    private final ExecutorService pool;
+    private final PruningPolicy pruning;
+
+    /**
+     * @param configRoot
+     *            the application configuration
+     * @param desiredMetrics
+     *            the metrics to collect from each target over JMX
+     * @param slots
+     *            the slots into which the host is divided
+     * @param pruning
+     *            the policy by which to stop runs early, or null to run each
+     *            to completion
+     */
+    public SweepScheduler(final ConfigRoot configRoot,
+        final Collection<MetricDescriptor> desiredMetrics,
+        final List<RunSlot> slots, final PruningPolicy pruning) {
+
+        this.configRoot = configRoot;
+        this.desiredMetrics = desiredMetrics;
+        this.pruning = pruning;
+        this.free = new ArrayBlockingQueue<>(slots.size(), false, slots);
+        this.pool = Executors.newFixedThreadPool(slots.size());
+        this.completed = new ExecutorCompletionService<>(this.pool);
+        this.capacity = slots.size();
+
+        LOG.info(String.format("Performing up to %d runs at once in %s",
+            slots.size(), slots));
+    }
+
+    /**
+     * @return the number of runs that may be in progress at once
+     */
+    public int getCapacity() {
+
+        return this.capacity;
+    }
+
+    /**
+     * Stops accepting runs, once those submitted are complete
+     */
+    public void shutdown() {
+
+        this.pool.shutdown();
+    }
+
+    /**
+     * Performs a run in the next slot to come free
+     *
+     * @param alternateJvmArgs
+     *            the combination of JVM parameters under test
+     * @param runNumber
+     *            the number of the run
+     * @return the score card of the run, when it is complete
+     * @throws InterruptedException
+     *             if interrupted waiting for a slot
+     */
+    public Future<ScoreCard> submit(final String alternateJvmArgs,
+        final int runNumber) throws InterruptedException {
+
+        final RunSlot slot = this.free.take();
+
+        return this.completed.submit(() -> {
+
+            try {
+
+                return new TestRun(this.configRoot, this.desiredMetrics, slot,
+                    alternateJvmArgs, runNumber, this.pruning).execute();
+            } finally {
+
+                this.free.add(slot);
+            }
+        });
+    }
+
+    /**
+     * Waits for the next run to complete
+     *
+     * @return the score card of the run
+     * @throws ApplicationException
+     *             if the run failed with one
+     * @throws InterruptedException
+     *             if interrupted waiting for a run
+     */
+    public ScoreCard take() throws ApplicationException, InterruptedException {
+
+        try {
+
+            return this.completed.take().get();
+        } catch (final ExecutionException e) {
+
+            if (e.getCause() instanceof ApplicationException)
+                throw (ApplicationException) e.getCause();
+
+            throw new ApplicationException("Error in test run", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.overworld.metre;
+
+import java.util.Collection;
+
+import org.apache.log4j.Logger;
+import org.overworld.metre.config.ConfigRoot;
+import org.overworld.metre.metric.MetricDescriptor;
+import org.overworld.metre.metric.MetricsFountain;
+import org.overworld.metre.metric.SampleCollector;
+import org.overworld.metre.process.JMeterExecutor;
+import org.overworld.metre.process.JMeterResult;
+import org.overworld.metre.process.RunSlot;
+import org.overworld.metre.process.TargetExecutor;
+import org.overworld.metre.score.PruningPolicy;
+import org.overworld.metre.score.PruningPolicy.Verdict;
+import org.overworld.metre.score.ScoreCard;
+
+/**
+ * A single run of the target under load from JMeter with one combination of
+ * JVM parameters, in one slot of the host so that it may run alongside others.
+ * Under a pruning policy the run is stopped as soon as it cannot reach the top
+ * results.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-02
+ */
+public class TestRun {
+
+    private static Logger LOG = Logger.getLogger(TestRun.class);
+
+    /**
+     * The interval in ms at which the progress of a run is checked against
+     * the pruning policy
+     */
+    private static final long PRUNE_CHECK_INTERVAL = 1000;
+
+    /**
+     * The interval in s at which JMeter is asked to report its progress when
+     * runs may be pruned, rather than its default of 30
+     */
+    private static final int PRUNE_SUMMARY_INTERVAL = 5;
+
+    private final String alternateJvmArgs;
+    private final ConfigRoot configRoot;
+    private final Collection<MetricDescriptor> desiredMetrics;
+    private final PruningPolicy pruning;
+    private final int runNumber;
+    private final RunSlot slot;
+
+    /**
+     * @param configRoot
+     *            the application configuration
+     * @param desiredMetrics
+     *            the metrics to collect from the target over JMX
+     * @param slot
+     *            the slot of the host in which to run
+     * @param alternateJvmArgs
+     *            the combination of JVM parameters under test
+     * @param runNumber
+     *            the number of the run, from 1 in the order of submission
+     * @param pruning
+     *            the policy by which to stop the run early, or null to run it
+     *            to completion
+     */
+    public TestRun(final ConfigRoot configRoot,
+        final Collection<MetricDescriptor> desiredMetrics, final RunSlot slot,
+        final String alternateJvmArgs, final int runNumber,
+        final PruningPolicy pruning) {
+
+        this.configRoot = configRoot;
+        this.desiredMetrics = desiredMetrics;
+        this.slot = slot;
+        this.alternateJvmArgs = alternateJvmArgs;
+        this.runNumber = runNumber;
+        this.pruning = pruning;
+    }
+
+    /**
+     * Runs the target and JMeter to completion, or until pruned, and scores
+     * the run. A failure part way through is logged and the run scored on what
+     * was collected, as a failed run always has been. A pruned run is scored
+     * on the runtime it was estimated to need.
+     *
+     * @return the score card of the run
+     * @throws ApplicationException
+     *             if the target or JMeter cannot be set up or their results
+     *             cannot be read
+     */
+    public ScoreCard execute() throws ApplicationException {
+
+        /* point the metrics fountain at the target in this slot */
+
+        final MetricsFountain mf = new MetricsFountain(JMXURLFactory
+            .fromPort(this.slot.getJmxPort()), this.desiredMetrics);
+
+        /*
+         * ready the TargetExecutor to run the experiment target application,
+         * with nothing left in this slot by the run before that it is
+         * configured to clear
+         */
+
+        this.slot.clearDirectory(this.configRoot.getTargetOptions());
+
+        final TargetExecutor tex = new TargetExecutor(this.slot.target(
+            this.configRoot.getTargetOptions()), this.alternateJvmArgs)
+            .pinTo(this.slot.getCpus());
+
+        final SampleCollector collect = new SampleCollector(this.configRoot
+            .getMetreOptions().getSampleInterval(), mf);
+
+        /*
+         * ready the JMeter process to measure this iteration of the experiment
+         */
+
+        final JMeterExecutor jmex = new JMeterExecutor(this.slot.jmeter(
+            this.configRoot.getJmeterOptions())).pinTo(this.slot.getCpus());
+
+        if (this.slot.getHttpPort() > 0)
+            jmex.property("port", this.slot.getHttpPort());
+
+        if (this.pruning != null)
+            jmex.property("summariser.interval", PRUNE_SUMMARY_INTERVAL);
+
+        Verdict verdict = null;
+
+        try {
+
+            /*
+             * run the target application, this call blocks until the
+             * application prints its ready string
+             */
+            tex.start();
+
+            /* start the JMX collector */
+
+            collect.start();
+
+            /*
+             * start the JMeter process to apply load to the target and wait
+             * until the test script is finished
+             */
+
+            jmex.start();
+
+            if (this.pruning == null) {
+
+                jmex.reap();
+            } else {
+
+                verdict = this.watch(jmex);
+            }
+
+            /* stop the JMX collector */
+
+            collect.stop();
+
+            /* stop the target */
+
+            tex.stop();
+        } catch (final ApplicationException e) {
+
+            LOG.error("Failed test iteration", e);
+        }
+
+        final JMeterResult results = jmex.results();
+
+        if (verdict == null)
+            return new ScoreCard(collect.getSlices(), results,
+                this.alternateJvmArgs, this.runNumber);
+
+        /* score a pruned run on its progress and the runtime it would need */
+
+        final JMeterResult estimate = new JMeterResult(Integer
+            .toString(results == null ? 0 : results.getTests()), Double
+            .toString(verdict.getRuntime()), "0", "0", "0", "0", Integer
+            .toString(results == null ? 0 : results.getErr()), "0");
+
+        return new ScoreCard(collect.getSlices(), estimate,
+            this.alternateJvmArgs, this.runNumber, verdict.getReason());
+    }
+
+    /**
+     * Waits for JMeter to finish, checking its progress against the pruning
+     * policy and stopping it if the run cannot reach the top results
+     *
+     * @param jmex
+     *            the started JMeter process
+     * @return the verdict on which JMeter was stopped, or null if it finished
+     * @throws ApplicationException
+     *             if JMeter will not stop
+     */
+    private Verdict watch(final JMeterExecutor jmex)
+        throws ApplicationException {
+
+        JMeterResult last = null;
+        long seen = 0;
+
+        while (!jmex.awaitExit(PRUNE_CHECK_INTERVAL)) {
+
+            final JMeterResult progress = jmex.progress();
+            final long now = System.currentTimeMillis();
+
+            if (progress != last) {
+
+                last = progress;
+                seen = now;
+            }
+
+            /*
+             * the run is timed by JMeter from its first summary, so that the
+             * start up of its JVM is not held against the target, and between
+             * summaries by the time since the last was read
+             */
+
+            final long elapsed = progress == null ? 0 : (long) (progress
+                .getTotalTime() * 1000) + now - seen;
+
+            final Verdict verdict = this.pruning.verdict(progress, elapsed);
+
+            if (verdict != null) {
+
+                LOG.info(String.format("Pruning run %d: %s", this.runNumber,
+                    verdict));
+
+                jmex.stop();
+                return verdict;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+
+        return "TestRun [alternateJvmArgs=" + this.alternateJvmArgs
+            + ", runNumber=" + this.runNumber + ", slot=" + this.slot + "]";
+    }
+}
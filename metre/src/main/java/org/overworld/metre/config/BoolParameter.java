@@ -1,5 +1,9 @@
 package org.overworld.metre.config;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Represents a dynamic parameter that can take on a value of true or false
  *
@@ -81,4 +85,15 @@ public class BoolParameter extends Parameter {
 
         return this.print();
     }
+
+    @Override
+    public List<String> values() {
+
+        final String current = this.print();
+
+        if (!this.hasMore()) return Collections.singletonList(current);
+
+        return Arrays.asList(current, "-XX:" + (this.value ? "-" : "+")
+            + this.getName());
+    }
 }
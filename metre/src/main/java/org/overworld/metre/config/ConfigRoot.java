@@ -18,28 +18,6 @@ public class ConfigRoot {
     private List<StaticParameters> statics = new ArrayList<>();
     private Target targetOptions;
 
-    /**
-     * @return
-     */
-    public List<String> expand() {
-
-        final List<String> staticResults = new ArrayList<>();
-
-        List<String> dynamicResults = new ArrayList<>();
-        dynamicResults.add("");
-
-        for (final Parameter dp : this.dynamics) {
-
-            dynamicResults = dp.expand(dynamicResults);
-        }
-
-        for (final StaticParameters sp : this.statics) {
-            staticResults.addAll(sp.expand(dynamicResults));
-        }
-
-        return staticResults;
-    }
-
     /**
      * @return a list of all Parameters
      */
@@ -1,5 +1,8 @@
 package org.overworld.metre.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents a dynamic parameter that can take on a value from a sequence of
  * integers defined by start and end value, and incremental step.
@@ -156,4 +159,20 @@ public class IntegralStepParameter extends Parameter {
 
         return this.print();
     }
+
+    @Override
+    public List<String> values() {
+
+        final List<String> values = new ArrayList<>();
+
+        long next = this.value;
+
+        do {
+
+            values.add("-XX:" + this.getName() + "=" + next);
+            next += this.increment;
+        } while (this.increment > 0 && next <= this.maxValue);
+
+        return values;
+    }
 }
@@ -10,8 +10,46 @@ package org.overworld.metre.config;
  */
 public class MetreOptions {
 
+    private int cpusPerRun;
+    private int parallelRuns;
+    private boolean prune;
+    private double pruneMargin;
     private int sampleInterval;
+    private String search;
+    private int searchBudget;
+    private long searchSeed;
+    private int shard;
+    private int shards;
+    private double significance;
     private int topResults;
+    private int trials;
+
+    /**
+     * @return the number of CPUs to pin each concurrent run to, or 0 to share
+     *         them evenly between the runs
+     */
+    public int getCpusPerRun() {
+
+        return this.cpusPerRun;
+    }
+
+    /**
+     * @return the number of runs to perform concurrently, or 0 to choose as
+     *         many as the host can hold without them interfering
+     */
+    public int getParallelRuns() {
+
+        return this.parallelRuns;
+    }
+
+    /**
+     * @return the fraction by which a run must be projected to be slower than
+     *         the last of the top results before it is stopped early
+     */
+    public double getPruneMargin() {
+
+        return this.pruneMargin;
+    }
 
     /**
      * @return the interval between samples
@@ -21,6 +59,61 @@ public class MetreOptions {
         return this.sampleInterval;
     }
 
+    /**
+     * @return the name of the strategy by which to search the parameter
+     *         space, one of exhaustive, random, hyperband or bayesian, or null
+     *         for exhaustive
+     */
+    public String getSearch() {
+
+        return this.search;
+    }
+
+    /**
+     * @return the most runs the search may perform, or 0 for as many as it
+     *         needs to cover the space once
+     */
+    public int getSearchBudget() {
+
+        return this.searchBudget;
+    }
+
+    /**
+     * @return the seed of the random choices of the search, or 0 to seed from
+     *         the clock
+     */
+    public long getSearchSeed() {
+
+        return this.searchSeed;
+    }
+
+    /**
+     * @return the index from 0 of the shard of the parameter space that this
+     *         instance searches
+     */
+    public int getShard() {
+
+        return this.shard;
+    }
+
+    /**
+     * @return the number of shards into which the parameter space is split
+     *         between instances, or 0 to search it whole
+     */
+    public int getShards() {
+
+        return this.shards;
+    }
+
+    /**
+     * @return the p value below which two combinations are ranked apart when
+     *         each is run more than once, or 0 for 0.05
+     */
+    public double getSignificance() {
+
+        return this.significance;
+    }
+
     /**
      * @return the number of top results for which to generate GPlot outputs
      */
@@ -29,6 +122,72 @@ public class MetreOptions {
         return this.topResults;
     }
 
+    /**
+     * @return the number of times to run each combination, or 0 to run each
+     *         once
+     */
+    public int getTrials() {
+
+        return this.trials;
+    }
+
+    /**
+     * @return true if runs that can no longer reach the top results are
+     *         stopped early, false otherwise
+     */
+    public boolean isPrune() {
+
+        return this.prune;
+    }
+
+    /**
+     * @param cpusPerRun
+     *            the number of CPUs to pin each concurrent run to, or 0 to
+     *            share them evenly between the runs
+     * @return this reference for chaining
+     */
+    public MetreOptions setCpusPerRun(final int cpusPerRun) {
+
+        this.cpusPerRun = cpusPerRun;
+        return this;
+    }
+
+    /**
+     * @param parallelRuns
+     *            the number of runs to perform concurrently, or 0 to choose
+     *            as many as the host can hold without them interfering
+     * @return this reference for chaining
+     */
+    public MetreOptions setParallelRuns(final int parallelRuns) {
+
+        this.parallelRuns = parallelRuns;
+        return this;
+    }
+
+    /**
+     * @param prune
+     *            true if runs that can no longer reach the top results are
+     *            stopped early, false otherwise
+     * @return this reference for chaining
+     */
+    public MetreOptions setPrune(final boolean prune) {
+
+        this.prune = prune;
+        return this;
+    }
+
+    /**
+     * @param pruneMargin
+     *            the fraction by which a run must be projected to be slower
+     *            than the last of the top results before it is stopped early
+     * @return this reference for chaining
+     */
+    public MetreOptions setPruneMargin(final double pruneMargin) {
+
+        this.pruneMargin = pruneMargin;
+        return this;
+    }
+
     /**
      * @param sampleInterval
      *            the interval between samples
@@ -40,6 +199,79 @@ public class MetreOptions {
         return this;
     }
 
+    /**
+     * @param search
+     *            the name of the strategy by which to search the parameter
+     *            space, one of exhaustive, random, hyperband or bayesian, or
+     *            null for exhaustive
+     * @return this reference for chaining
+     */
+    public MetreOptions setSearch(final String search) {
+
+        this.search = search;
+        return this;
+    }
+
+    /**
+     * @param searchBudget
+     *            the most runs the search may perform, or 0 for as many as it
+     *            needs to cover the space once
+     * @return this reference for chaining
+     */
+    public MetreOptions setSearchBudget(final int searchBudget) {
+
+        this.searchBudget = searchBudget;
+        return this;
+    }
+
+    /**
+     * @param searchSeed
+     *            the seed of the random choices of the search, or 0 to seed
+     *            from the clock
+     * @return this reference for chaining
+     */
+    public MetreOptions setSearchSeed(final long searchSeed) {
+
+        this.searchSeed = searchSeed;
+        return this;
+    }
+
+    /**
+     * @param shard
+     *            the index from 0 of the shard of the parameter space that
+     *            this instance searches
+     * @return this reference for chaining
+     */
+    public MetreOptions setShard(final int shard) {
+
+        this.shard = shard;
+        return this;
+    }
+
+    /**
+     * @param shards
+     *            the number of shards into which the parameter space is split
+     *            between instances, or 0 to search it whole
+     * @return this reference for chaining
+     */
+    public MetreOptions setShards(final int shards) {
+
+        this.shards = shards;
+        return this;
+    }
+
+    /**
+     * @param significance
+     *            the p value below which two combinations are ranked apart
+     *            when each is run more than once, or 0 for 0.05
+     * @return this reference for chaining
+     */
+    public MetreOptions setSignificance(final double significance) {
+
+        this.significance = significance;
+        return this;
+    }
+
     /**
      * @param topResults
      *            the number of top results for which to generate GPlot outputs
@@ -50,4 +282,16 @@ public class MetreOptions {
         this.topResults = topResults;
         return this;
     }
+
+    /**
+     * @param trials
+     *            the number of times to run each combination, or 0 to run
+     *            each once
+     * @return this reference for chaining
+     */
+    public MetreOptions setTrials(final int trials) {
+
+        this.trials = trials;
+        return this;
+    }
 }
@@ -1,6 +1,5 @@
 package org.overworld.metre.config;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -29,25 +28,6 @@ public abstract class Parameter {
      */
     public abstract boolean advance();
 
-    /**
-     * @return every value of this parameter appended to every value in base
-     */
-    public List<String> expand(final List<String> base) {
-
-        final List<String> results = new ArrayList<>();
-
-        do {
-
-            final String append = this.print();
-
-            for (final String s : base) {
-                results.add(s + " " + append);
-            }
-        } while (this.advance());
-
-        return results;
-    }
-
     /**
      * @return the description of this parameter
      */
@@ -72,4 +52,11 @@ public abstract class Parameter {
      * restart the search pattern at the starting value
      */
     public abstract void reset();
+
+    /**
+     * @return every value in the search pattern from the current value on,
+     *         formatted as by {@link #print()}, without advancing this
+     *         parameter
+     */
+    public abstract List<String> values();
 }
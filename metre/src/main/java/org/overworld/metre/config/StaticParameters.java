@@ -1,6 +1,7 @@
 package org.overworld.metre.config;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -45,31 +46,6 @@ public class StaticParameters extends Parameter {
         return false;
     }
 
-    /**
-     * @return all combinations formed from all dynamic parameters under this
-     *         static parameter
-     */
-    @Override
-    public List<String> expand(final List<String> base) {
-
-        final List<String> results = new ArrayList<>();
-        List<String> dynamicResults = new ArrayList<>();
-        dynamicResults.add("");
-
-        for (final Parameter p : this.dynamics) {
-
-            dynamicResults = p.expand(dynamicResults);
-        }
-
-        for (final String dynamicResult : dynamicResults) {
-            for (final String b : base) {
-                results.add(this.parameters + " " + dynamicResult + " " + b);
-            }
-        }
-
-        return results;
-    }
-
     /**
      * @return the description of this section in the configuration file
      */
@@ -150,4 +126,14 @@ public class StaticParameters extends Parameter {
 
         return this.print();
     }
+
+    /**
+     * @return the static parameters string alone, as the dynamic parameters
+     *         of this section are searched as parameters in their own right
+     */
+    @Override
+    public List<String> values() {
+
+        return Collections.singletonList(this.parameters);
+    }
 }
@@ -1,5 +1,8 @@
 package org.overworld.metre.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents a dynamic parameter that can take on a value from a list of
  * strings.
@@ -88,4 +91,16 @@ public class StringListParameter extends Parameter {
 
         return this.print();
     }
+
+    @Override
+    public List<String> values() {
+
+        final List<String> values = new ArrayList<>();
+
+        for (int i = this.index; i < this.values.length; i++) {
+            values.add("-XX:" + this.getName() + "=" + this.values[i]);
+        }
+
+        return values;
+    }
 }
@@ -11,10 +11,13 @@ package org.overworld.metre.config;
 public class Target {
 
     private String arguments;
+    private int httpPort;
     private String invocation;
     private String java;
     private int jmxPort;
     private String jvmParams;
+    private String slotArguments;
+    private String slotDirectory;
 
     /**
      * @return command line arguments to the target application
@@ -24,6 +27,15 @@ public class Target {
         return this.arguments;
     }
 
+    /**
+     * @return the port on which the target serves HTTP, or 0 if it is not
+     *         set on the command line
+     */
+    public int getHttpPort() {
+
+        return this.httpPort;
+    }
+
     /**
      * @return the Jar file to invoke, absolute or relative
      */
@@ -57,6 +69,26 @@ public class Target {
         return this.jvmParams;
     }
 
+    /**
+     * @return command line arguments given to the target in each slot in
+     *         addition to its arguments, with {slot} standing for the index
+     *         of the slot, or null for none
+     */
+    public String getSlotArguments() {
+
+        return this.slotArguments;
+    }
+
+    /**
+     * @return a directory of the target in each slot that is deleted before
+     *         every run, with {slot} standing for the index of the slot, or
+     *         null for none
+     */
+    public String getSlotDirectory() {
+
+        return this.slotDirectory;
+    }
+
     /**
      * @param arguments
      *            command line arguments to the target application
@@ -68,6 +100,18 @@ public class Target {
         return this;
     }
 
+    /**
+     * @param httpPort
+     *            the port on which the target serves HTTP, or 0 if it is not
+     *            set on the command line
+     * @return this reference for chaining
+     */
+    public Target setHttpPort(final int httpPort) {
+
+        this.httpPort = httpPort;
+        return this;
+    }
+
     /**
      *
      * @param invocation
@@ -114,11 +158,39 @@ public class Target {
         return this;
     }
 
+    /**
+     * @param slotArguments
+     *            command line arguments given to the target in each slot in
+     *            addition to its arguments, with {slot} standing for the
+     *            index of the slot, or null for none
+     * @return this reference for chaining
+     */
+    public Target setSlotArguments(final String slotArguments) {
+
+        this.slotArguments = slotArguments;
+        return this;
+    }
+
+    /**
+     * @param slotDirectory
+     *            a directory of the target in each slot that is deleted
+     *            before every run, with {slot} standing for the index of the
+     *            slot, or null for none
+     * @return this reference for chaining
+     */
+    public Target setSlotDirectory(final String slotDirectory) {
+
+        this.slotDirectory = slotDirectory;
+        return this;
+    }
+
     @Override
     public String toString() {
 
-        return "Target [arguments=" + this.arguments + ", invocation="
-            + this.invocation + ", java=" + this.java + ", jmxPort="
-            + this.jmxPort + ", jvmParams=" + this.jvmParams + "]";
+        return "Target [arguments=" + this.arguments + ", httpPort="
+            + this.httpPort + ", invocation=" + this.invocation + ", java=" + this.java + ", jmxPort="
+            + this.jmxPort + ", jvmParams=" + this.jvmParams
+            + ", slotArguments=" + this.slotArguments + ", slotDirectory="
+            + this.slotDirectory + "]";
     }
 }
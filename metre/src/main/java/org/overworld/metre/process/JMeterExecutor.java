@@ -5,12 +5,14 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 import org.overworld.metre.ApplicationException;
 import org.overworld.metre.CommunicationException;
+import org.overworld.metre.ProcessException;
 import org.overworld.metre.config.JMeter;
 
 /**
@@ -30,7 +32,8 @@ import org.overworld.metre.config.JMeter;
  * <p/>
  * The JMeter log file is not used by this implementation, preferring instead
  * the standard summary output format written by default to standard output of
- * JMeter
+ * JMeter, which is read as it is written so that the progress of the test is
+ * known while it runs
  *
  * @author Stephen Lennon stephen@overworld.org
  *
@@ -38,6 +41,7 @@ import org.overworld.metre.config.JMeter;
  */
 public class JMeterExecutor {
 
+    private static final int KILL_DELAY = 5000;
     private static Logger LOG = Logger.getLogger(JMeterExecutor.class);
 
     /**
@@ -47,7 +51,10 @@ public class JMeterExecutor {
         .compile("^\\s*summary\\s+=\\s+(\\d+)\\s+in\\s+([\\d.]+)s\\s+=\\s+([\\d.]+)/s\\s+Avg:\\s+(\\d+)\\s+Min:\\s+(\\d+)\\s+Max:\\s+(\\d+)\\s+Err:\\s+(\\d+)\\s+\\(([\\d.]+)%\\)");
 
     private final List<String> command = new ArrayList<>();
+    private volatile ApplicationException failure;
     private Process process;
+    private volatile JMeterResult progress;
+    private Thread reader;
 
     /**
      * Constructs a JMeter process but does not start it. The process may be
@@ -83,6 +90,63 @@ public class JMeterExecutor {
             + this.command.toString());
     }
 
+    /**
+     * Waits a while for the process to terminate
+     *
+     * @param millis
+     *            the longest to wait in ms
+     * @return true if the process has terminated, false otherwise
+     */
+    public boolean awaitExit(final long millis) {
+
+        try {
+
+            return this.process.waitFor(millis, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+
+            LOG.debug("Interrupted waiting for JMeter process");
+            return !this.process.isAlive();
+        }
+    }
+
+    /**
+     * Confines the process to a set of CPUs, if the host can
+     *
+     * @param cpus
+     *            the CPUs as a list for taskset, such as 0-3,8, or null to
+     *            leave the process unconfined
+     * @return this reference for chaining
+     */
+    public JMeterExecutor pinTo(final String cpus) {
+
+        RunSlot.pin(this.command, cpus);
+        return this;
+    }
+
+    /**
+     * @return the cumulative results of the test so far, from the last summary
+     *         that JMeter printed, or null if it has printed none
+     */
+    public JMeterResult progress() {
+
+        return this.progress;
+    }
+
+    /**
+     * Sets a JMeter property that the test plan can read with __P
+     *
+     * @param name
+     *            the name of the property
+     * @param value
+     *            the value of the property
+     * @return this reference for chaining
+     */
+    public JMeterExecutor property(final String name, final Object value) {
+
+        this.command.add("-J" + name + "=" + value);
+        return this;
+    }
+
     /**
      * Wait for termination of the process and get the OS return code
      *
@@ -101,17 +165,10 @@ public class JMeterExecutor {
     }
 
     /**
-     * Parses the output of the JMeter test run and returns a JMeterResult
-     * object populated with the values of the last cumulative summary line
-     * which represents the results of the entire test run
-     *
-     * @return the results of the test run as a JMeterResult instance or null if
-     *         no parsable cumulative summary was found
-     * @throws IOException
-     *             on error reading the output of the command
-     * @throws ApplicationException
+     * Reads the output of JMeter as it is written, keeping the last cumulative
+     * summary line as the progress of the test
      */
-    public JMeterResult results() throws ApplicationException {
+    private void read() {
 
         final BufferedReader output = new BufferedReader(new InputStreamReader(
             this.process.getInputStream()));
@@ -122,28 +179,29 @@ public class JMeterExecutor {
          * (50.00%)
          */
 
-        JMeterResult result = null;
-
         String line = "";
 
         try {
 
             while ((line = output.readLine()) != null) {
 
+                LOG.trace(line);
+
                 final Matcher match = SUMMARY_LINE_PATTERN.matcher(line);
 
                 if (match.matches()) {
 
                     try {
 
-                        result = new JMeterResult(match.group(1), match.group(2),
-                            match.group(3), match.group(4), match.group(5), match
-                            .group(6), match.group(7), match.group(8));
+                        this.progress = new JMeterResult(match.group(1), match
+                            .group(2), match.group(3), match.group(4), match
+                            .group(5), match.group(6), match.group(7), match
+                            .group(8));
                     } catch (final NumberFormatException e) {
 
                         /* @formatter:off */
 
-                        throw new ApplicationException(String.format(
+                        this.failure = new ApplicationException(String.format(
                             "Cannot parse results from JMeter summary:"
                                 + " tests: %s total time: %s test rate: %s"
                                 + " average: %s minimum: %s maimum:  %s"
@@ -163,13 +221,37 @@ public class JMeterExecutor {
             }
         } catch (final IOException e) {
 
-            throw new CommunicationException(
+            this.failure = new CommunicationException(
                 "Error reading from JMeter log file", e);
         }
+    }
+
+    /**
+     * Waits for the output of the JMeter test run to be read and returns a
+     * JMeterResult object populated with the values of the last cumulative
+     * summary line which represents the results of the entire test run
+     *
+     * @return the results of the test run as a JMeterResult instance or null if
+     *         no parsable cumulative summary was found
+     * @throws ApplicationException
+     *             on error reading or parsing the output of the command
+     */
+    public JMeterResult results() throws ApplicationException {
+
+        while (this.reader != null && this.reader.isAlive()) {
+            try {
+                this.reader.join();
+            } catch (final InterruptedException e) {
+                LOG.debug("Interrupted waiting for JMeter output");
+            }
+        }
 
         this.process = null;
+        this.reader = null;
 
-        return result;
+        if (this.failure != null) throw this.failure;
+
+        return this.progress;
     }
 
     /**
@@ -191,6 +273,39 @@ public class JMeterExecutor {
             throw new CommunicationException(
                 "Error starting OS process for JMeter", e);
         }
+
+        this.failure = null;
+        this.progress = null;
+
+        this.reader = new Thread(this::read, "JMeter output");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Stops the JMeter process before its test plan is complete
+     *
+     * @throws ProcessException
+     *             if the process will not die
+     */
+    public void stop() throws ProcessException {
+
+        this.process.destroy();
+
+        if (this.awaitExit(KILL_DELAY)) return;
+
+        /*
+         * if we get to here, the process is alive KILL_DELAY ms after
+         * destroy(), so kill more forcibly.
+         */
+
+        this.process.destroyForcibly();
+
+        if (this.awaitExit(KILL_DELAY)) return;
+
+        throw new ProcessException(String.format("Process will not die after "
+            + "destroyForcibly is called, waited a total of %d seconds",
+            KILL_DELAY * 2 / 1000));
     }
 
     @Override
@@ -0,0 +1,452 @@
+package org.overworld.metre.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.log4j.Logger;
+import org.overworld.metre.ProcessException;
+import org.overworld.metre.config.JMeter;
+import org.overworld.metre.config.MetreOptions;
+import org.overworld.metre.config.Target;
+
+/**
+ * One of the places in which a target and its JMeter can run alongside
+ * others. Each slot has its own CPUs, to which both processes are pinned with
+ * taskset where the host has it, its own JMX and HTTP ports, offset from
+ * those configured by the index of the slot, and its own JMeter log.
+ * <p/>
+ * The HTTP port is passed to the target as --server.port and to JMeter as the
+ * property port, which the test plan reads with ${__P(port,8080)}.
+ * <p/>
+ * The targets of all slots share a working directory, so any files a target
+ * writes there are told apart by arguments of the target configured for each
+ * slot, in which {slot} stands for the index of the slot. A directory of the
+ * target may likewise be configured to be deleted before every run, such as
+ * a journal from which it would otherwise resume the work of the run before.
+ * Without either, the target is given the arguments it is configured with.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-02
+ */
+public class RunSlot {
+
+    /**
+     * The HTTP port assumed of a target that does not configure one
+     */
+    public static final int DEFAULT_HTTP_PORT = 8080;
+
+    /**
+     * The memory in MB assumed of a target that does not set -Xmx
+     */
+    private static final long DEFAULT_TARGET_HEAP = 1024;
+
+    private static final Pattern JMX_PORT = Pattern
+        .compile("(-Dcom\\.sun\\.management\\.jmxremote\\.port=)\\d+");
+
+    private static Logger LOG = Logger.getLogger(RunSlot.class);
+
+    /**
+     * The fewest CPUs that a run is given when the number of concurrent runs
+     * is chosen automatically, one for the target and one for JMeter
+     */
+    private static final int MIN_CPUS_PER_RUN = 2;
+
+    /**
+     * The memory in MB held back for the OS and Metre itself
+     */
+    private static final long RESERVED_MEMORY = 1024;
+
+    /**
+     * Stands for the index of the slot in the configured arguments and
+     * directory of the target in each slot
+     */
+    private static final String SLOT = "{slot}";
+
+    private static final String TASKSET = findTaskset();
+
+    private static final Pattern XMX = Pattern
+        .compile("-Xmx(\\d+)([kKmMgG]?)");
+
+    /**
+     * @return the CPUs this process may run on, from the kernel where it says
+     *         so, otherwise as many from 0 as there are processors
+     */
+    private static List<Integer> allowedCpus() {
+
+        final List<Integer> cpus = new ArrayList<>();
+
+        try {
+
+            for (final String line : Files.readAllLines(
+                Paths.get("/proc/self/status"), StandardCharsets.US_ASCII)) {
+
+                if (!line.startsWith("Cpus_allowed_list:")) continue;
+
+                for (final String range : line.substring(line.indexOf(':') + 1)
+                    .trim().split(",")) {
+
+                    final String[] ends = range.split("-");
+                    final int first = Integer.parseInt(ends[0].trim());
+                    final int last = Integer.parseInt(ends[ends.length - 1]
+                        .trim());
+
+                    for (int cpu = first; cpu <= last; cpu++) {
+                        cpus.add(cpu);
+                    }
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+
+            cpus.clear();
+        }
+
+        if (cpus.isEmpty()) {
+
+            for (int cpu = 0; cpu < Runtime.getRuntime().availableProcessors(); cpu++) {
+                cpus.add(cpu);
+            }
+        }
+
+        return cpus;
+    }
+
+    /**
+     * @return the path of the taskset binary, or null if there is none on the
+     *         PATH
+     */
+    private static String findTaskset() {
+
+        final String path = System.getenv("PATH");
+
+        if (path == null) return null;
+
+        for (final String dir : path.split(File.pathSeparator)) {
+
+            final File taskset = new File(dir, "taskset");
+
+            if (taskset.canExecute()) return taskset.getPath();
+        }
+
+        return null;
+    }
+
+    /**
+     * @param cpus
+     *            the CPUs to list
+     * @return the CPUs as a list for taskset, runs of consecutive CPUs given
+     *         as ranges
+     */
+    private static String format(final List<Integer> cpus) {
+
+        final StringBuilder result = new StringBuilder();
+
+        for (int i = 0; i < cpus.size(); i++) {
+
+            int j = i;
+            while (j + 1 < cpus.size() && cpus.get(j + 1) == cpus.get(j) + 1) {
+                j++;
+            }
+
+            if (result.length() > 0) result.append(',');
+
+            result.append(cpus.get(i));
+            if (j > i) result.append('-').append(cpus.get(j));
+
+            i = j;
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Divides the host between concurrent runs. Unless the number of runs is
+     * configured, it is the most that give each run MIN_CPUS_PER_RUN CPUs, or
+     * the configured number per run, and that fit the heaps of a target and a
+     * JMeter each into physical memory. With a single run the processes are
+     * left unpinned and on the configured ports, as before.
+     *
+     * @param options
+     *            the options of Metre
+     * @param target
+     *            the options of the target
+     * @param jmeter
+     *            the options of JMeter
+     * @return the slots, at least one
+     */
+    public static List<RunSlot> partition(final MetreOptions options,
+        final Target target, final JMeter jmeter) {
+
+        final List<Integer> cpus = allowedCpus();
+        final List<RunSlot> slots = new ArrayList<>();
+
+        int runs = options.getParallelRuns();
+
+        if (runs <= 0) {
+
+            final int perRun = Math.max(MIN_CPUS_PER_RUN, options
+                .getCpusPerRun());
+            final long perRunMemory = heapMegabytes(target.getJvmParams(),
+                DEFAULT_TARGET_HEAP) + heapMegabytes("-Xmx"
+                + jmeter.getMaxHeap() + "m", 0);
+
+            runs = cpus.size() / perRun;
+
+            final long memory = physicalMegabytes();
+
+            if (memory > 0 && perRunMemory > 0)
+                runs = (int) Math.min(runs, (memory - RESERVED_MEMORY)
+                    / perRunMemory);
+
+            runs = Math.max(1, runs);
+        }
+
+        if (runs == 1) {
+
+            slots.add(new RunSlot(0, null, target.getJmxPort(), target
+                .getHttpPort()));
+            return slots;
+        }
+
+        final int perRun = options.getCpusPerRun() > 0 ? options
+            .getCpusPerRun() : cpus.size() / runs;
+
+        if (TASKSET == null || perRun < 1 || perRun * runs > cpus.size())
+            LOG.warn(String.format("Running %d concurrent runs without"
+                + " pinning them to CPUs, so they may interfere", runs));
+
+        final int httpPort = target.getHttpPort() > 0 ? target.getHttpPort()
+            : DEFAULT_HTTP_PORT;
+
+        for (int i = 0; i < runs; i++) {
+
+            final String cpuList = TASKSET == null || perRun < 1
+                || perRun * runs > cpus.size() ? null : format(cpus.subList(i
+                    * perRun, (i + 1) * perRun));
+
+            slots.add(new RunSlot(i, cpuList, target.getJmxPort() + i,
+                httpPort + i));
+        }
+
+        return slots;
+    }
+
+    /**
+     * @param jvmParams
+     *            JVM parameters that may set -Xmx
+     * @param otherwise
+     *            the heap in MB to assume if they do not
+     * @return the maximum heap in MB
+     */
+    private static long heapMegabytes(final String jvmParams,
+        final long otherwise) {
+
+        final Matcher match = XMX.matcher(jvmParams == null ? "" : jvmParams);
+
+        if (!match.find()) return otherwise;
+
+        final long value = Long.parseLong(match.group(1));
+
+        switch (match.group(2).toLowerCase()) {
+            case "k":
+                return value / 1024;
+            case "g":
+                return value * 1024;
+            case "m":
+                return value;
+            default:
+                return value / (1024 * 1024);
+        }
+    }
+
+    /**
+     * @return the physical memory of the host in MB, or 0 if the JVM does not
+     *         say
+     */
+    private static long physicalMegabytes() {
+
+        final OperatingSystemMXBean os = ManagementFactory
+            .getOperatingSystemMXBean();
+
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) os)
+                .getTotalPhysicalMemorySize() / (1024 * 1024);
+
+        return 0;
+    }
+
+    /**
+     * Prefixes a command so that it runs on the given CPUs only
+     *
+     * @param command
+     *            the command, starting with the binary to run
+     * @param cpus
+     *            the CPUs as a list for taskset, or null to leave the command
+     *            as it is
+     */
+    static void pin(final List<String> command, final String cpus) {
+
+        if (cpus == null || TASKSET == null) return;
+
+        command.add(0, TASKSET);
+        command.add(1, "-c");
+        command.add(2, cpus);
+    }
+
+    private final String cpus;
+    private final int httpPort;
+    private final int index;
+    private final int jmxPort;
+
+    /**
+     * @param index
+     *            the index of the slot from 0
+     * @param cpus
+     *            the CPUs of the slot as a list for taskset, or null for none
+     * @param jmxPort
+     *            the JMX port of the target in the slot
+     * @param httpPort
+     *            the HTTP port of the target in the slot, or 0 to leave it as
+     *            the target configures it
+     */
+    public RunSlot(final int index, final String cpus, final int jmxPort,
+        final int httpPort) {
+
+        this.index = index;
+        this.cpus = cpus;
+        this.jmxPort = jmxPort;
+        this.httpPort = httpPort;
+    }
+
+    /**
+     * Deletes the directory configured to be cleared before every run of the
+     * target in this slot, if there is one
+     *
+     * @param base
+     *            the configured options of the target
+     * @throws ProcessException
+     *             if the directory cannot be deleted
+     */
+    public void clearDirectory(final Target base) throws ProcessException {
+
+        if (base.getSlotDirectory() == null
+            || base.getSlotDirectory().trim().isEmpty()) return;
+
+        final Path directory = Paths.get(base.getSlotDirectory().trim()
+            .replace(SLOT, String.valueOf(this.index)));
+
+        if (!Files.exists(directory)) return;
+
+        try (final Stream<Path> walk = Files.walk(directory)) {
+
+            /* the files of a directory before the directory itself */
+            final List<Path> paths = walk.sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+
+            for (final Path path : paths) {
+                Files.delete(path);
+            }
+        } catch (final IOException e) {
+
+            throw new ProcessException("Error clearing the directory "
+                + directory, e);
+        }
+    }
+
+    /**
+     * @return the CPUs of the slot as a list for taskset, or null for none
+     */
+    public String getCpus() {
+
+        return this.cpus;
+    }
+
+    /**
+     * @return the HTTP port of the target in the slot, or 0 to leave it as
+     *         the target configures it
+     */
+    public int getHttpPort() {
+
+        return this.httpPort;
+    }
+
+    /**
+     * @return the index of the slot from 0
+     */
+    public int getIndex() {
+
+        return this.index;
+    }
+
+    /**
+     * @return the JMX port of the target in the slot
+     */
+    public int getJmxPort() {
+
+        return this.jmxPort;
+    }
+
+    /**
+     * @param base
+     *            the configured options of JMeter
+     * @return the options of JMeter in this slot, which differ only in the
+     *         log file of all but the first slot
+     */
+    public JMeter jmeter(final JMeter base) {
+
+        final String logFile = this.index == 0 ? base.getLogFile() : base
+            .getLogFile().replaceFirst("(\\.[^./\\\\]*)?$", "-" + this.index
+                + "$1");
+
+        return new JMeter().setInitialHeap(base.getInitialHeap())
+            .setJava(base.getJava()).setLogFile(logFile)
+            .setMainJar(base.getMainJar()).setMaxHeap(base.getMaxHeap())
+            .setTestFile(base.getTestFile());
+    }
+
+    /**
+     * @param base
+     *            the configured options of the target
+     * @return the options of the target in this slot, with its JMX port in
+     *         place of that configured and its HTTP port and configured slot
+     *         arguments added to its arguments
+     */
+    public Target target(final Target base) {
+
+        String arguments = base.getArguments() == null ? "" : base
+            .getArguments();
+
+        if (base.getSlotArguments() != null)
+            arguments = (arguments + " " + base.getSlotArguments().replace(
+                SLOT, String.valueOf(this.index))).trim();
+
+        if (this.httpPort > 0)
+            arguments = (arguments + " --server.port=" + this.httpPort).trim();
+
+        return new Target().setArguments(arguments)
+            .setHttpPort(this.httpPort).setInvocation(base.getInvocation())
+            .setJava(base.getJava()).setJmxPort(this.jmxPort)
+            .setJvmParams(JMX_PORT.matcher(base.getJvmParams()).replaceAll(
+                "$1" + this.jmxPort));
+    }
+
+    @Override
+    public String toString() {
+
+        return "RunSlot [cpus=" + this.cpus + ", httpPort=" + this.httpPort
+            + ", index=" + this.index + ", jmxPort=" + this.jmxPort + "]";
+    }
+}
@@ -3,8 +3,13 @@ package org.overworld.metre.process;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -28,6 +33,38 @@ public class TargetExecutor {
     private static Logger LOG = Logger.getLogger(TargetExecutor.class);
     public static Pattern WAIT_TEXT_MATCHER = Pattern
         .compile(".*Started Application.*");
+
+    /**
+     * Reads the options that a build has left beside the jar to be launched,
+     * in a file named as the jar but ending .jvmopts, such as those that use
+     * a class data sharing archive made for the jar
+     *
+     * @param invocation
+     *            the jar to be launched
+     * @return the options, or none if there is no such file
+     * @throws CommunicationException
+     *             if the file exists but cannot be read
+     */
+    private static List<String> sidecarOptions(final String invocation)
+        throws CommunicationException {
+
+        final Path sidecar = Paths.get(invocation.replaceFirst("\\.jar$", "")
+            + ".jvmopts");
+
+        if (!Files.isReadable(sidecar)) return Collections.emptyList();
+
+        try {
+
+            final String options = new String(Files.readAllBytes(sidecar),
+                StandardCharsets.UTF_8).trim();
+            return options.isEmpty() ? Collections.emptyList()
+                : splitToList(options);
+        } catch (final IOException e) {
+
+            throw new CommunicationException("Error reading " + sidecar, e);
+        }
+    }
+
     private static List<String> splitToList(final String toSplit) {
 
         return Arrays.asList(toSplit.split("\\s+"));
@@ -60,6 +97,7 @@ public class TargetExecutor {
         this.command.addAll(splitToList(props.getJvmParams()));
 
         this.command.addAll(splitToList(jvmOpts));
+        this.command.addAll(sidecarOptions(props.getInvocation()));
 
         this.command.add("-jar");
         this.command.add(props.getInvocation());
@@ -69,6 +107,20 @@ public class TargetExecutor {
             + this.command.toString());
     }
 
+    /**
+     * Confines the process to a set of CPUs, if the host can
+     *
+     * @param cpus
+     *            the CPUs as a list for taskset, such as 0-3,8, or null to
+     *            leave the process unconfined
+     * @return this reference for chaining
+     */
+    public TargetExecutor pinTo(final String cpus) {
+
+        RunSlot.pin(this.command, cpus);
+        return this;
+    }
+
     /**
      * Wait for termination of the process and get the OS return code
      *
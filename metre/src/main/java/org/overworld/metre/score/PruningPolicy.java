@@ -0,0 +1,171 @@
+package org.overworld.metre.score;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+
+import org.overworld.metre.process.JMeterResult;
+
+/**
+ * Decides while a run is in progress whether it can still reach the top
+ * results, so that a run that cannot may be stopped early.
+ * <p/>
+ * A score depends only on the runtime of the test plan and whether any test
+ * failed, so a run cannot reach the top results once JMeter reports a failure,
+ * once it has run for longer than the slowest of the top results took, or once
+ * its rate of progress through the tests projects that it will. Until as many
+ * runs have been scored as there are top results, nothing is pruned.
+ * <p/>
+ * The leaderboard is updated by the thread that owns the ScoreTable and read
+ * by the threads of the runs in progress.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-16
+ */
+public class PruningPolicy {
+
+    /**
+     * The decision to stop a run, with the reason and the runtime it is
+     * estimated that the run would have taken, from which to score it
+     */
+    public static class Verdict {
+
+        private final String reason;
+        private final double runtime;
+
+        Verdict(final String reason, final double runtime) {
+
+            this.reason = reason;
+            this.runtime = runtime;
+        }
+
+        /**
+         * @return why the run was stopped
+         */
+        public String getReason() {
+
+            return this.reason;
+        }
+
+        /**
+         * @return the least runtime in seconds the run would have taken
+         */
+        public double getRuntime() {
+
+            return this.runtime;
+        }
+
+        @Override
+        public String toString() {
+
+            return this.reason;
+        }
+    }
+
+    /**
+     * The fraction of the tests that must be complete before the runtime is
+     * projected from the progress, as the rate early on includes warm up
+     */
+    private static final double MIN_PROGRESS = 0.2;
+
+    private final double margin;
+
+    /**
+     * The slowest of the top results, or null while there are too few results
+     */
+    private volatile ScoreCard threshold;
+    private final int top;
+
+    /**
+     * @param top
+     *            the number of top results that a run must be able to reach
+     * @param margin
+     *            the fraction by which a run must be worse than the slowest of
+     *            the top results before it is stopped, allowing for noise
+     */
+    public PruningPolicy(final int top, final double margin) {
+
+        this.top = top;
+        this.margin = margin;
+    }
+
+    /**
+     * Takes the slowest of the top results from the table, which should be
+     * called each time a result is added to it
+     *
+     * @param table
+     *            the table of results, best last
+     */
+    public void update(final NavigableSet<ScoreCard> table) {
+
+        if (this.top < 1 || table.size() < this.top) return;
+
+        final Iterator<ScoreCard> iter = table.descendingIterator();
+        ScoreCard card = iter.next();
+
+        for (int i = 1; i < this.top; i++) {
+            card = iter.next();
+        }
+
+        this.threshold = card;
+    }
+
+    /**
+     * @param progress
+     *            the cumulative results reported by JMeter so far, or null if
+     *            it has reported none
+     * @param elapsed
+     *            the time in ms for which the test plan has run, as JMeter
+     *            reports it
+     * @return the verdict to stop the run, or null if it may yet reach the
+     *         top results
+     */
+    public Verdict verdict(final JMeterResult progress, final long elapsed) {
+
+        final ScoreCard threshold = this.threshold;
+
+        if (threshold == null) return null;
+
+        final double seconds = elapsed / 1000.0;
+        final double limit = threshold.getRuntime() * (1 + this.margin);
+
+        if (progress != null && progress.getErr() > 0
+            && threshold.getScore() > 0)
+            return new Verdict(String.format(
+                "JMeter reported %d errors after %.1fs, which scores 0",
+                progress.getErr(), seconds), Math.max(seconds, progress
+                .getTotalTime()));
+
+        if (seconds > limit)
+            return new Verdict(String.format("Ran %.1fs, longer than the"
+                + " %.1fs of run %d at position %d", seconds, threshold
+                .getRuntime(), threshold.getRunNumber(), this.top), seconds);
+
+        if (progress == null || progress.getTests() == 0
+            || threshold.getTests() == 0) return null;
+
+        final double done = (double) progress.getTests()
+            / threshold.getTests();
+
+        if (done < MIN_PROGRESS || done >= 1) return null;
+
+        final double projected = seconds / done;
+
+        if (projected > limit)
+            return new Verdict(String.format("Projected %.1fs from %d of %d"
+                + " tests in %.1fs, longer than the %.1fs of run %d at"
+                + " position %d", projected, progress.getTests(), threshold
+                .getTests(), seconds, threshold.getRuntime(), threshold
+                .getRunNumber(), this.top), projected);
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+
+        return "PruningPolicy [margin=" + this.margin + ", threshold="
+            + (this.threshold == null ? null : this.threshold.getRunNumber())
+            + ", top=" + this.top + "]";
+    }
+}
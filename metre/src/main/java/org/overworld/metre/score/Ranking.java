@@ -0,0 +1,308 @@
+package org.overworld.metre.score;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.overworld.metre.CommunicationException;
+
+/**
+ * Ranks the combinations of JVM parameters by the trials of each, separating
+ * two only where the difference between them is significant.
+ * <p/>
+ * Each combination is summarised by the mean and median score of its trials
+ * and a bootstrap interval for the mean. Combinations are ordered by mean and
+ * cut into tiers: a tier is led by its best combination and holds each that
+ * follows until one is significantly worse than the leader by Welch's t test,
+ * which then leads the next tier. Combinations in the same tier are not told
+ * apart.
+ * <p/>
+ * A pruned trial is scored on an estimate of the runtime it would have
+ * needed, which is only a bound. A combination with any pruned trial is
+ * therefore ranked below every combination whose trials all ran to the end,
+ * in tiers of its own.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-23
+ */
+public class Ranking {
+
+    /**
+     * One combination and the statistics of its trials
+     */
+    public static class Entry {
+
+        private final List<ScoreCard> cards = new ArrayList<>();
+        private double high;
+        private final String jvmArgs;
+        private double low;
+        private double mean;
+        private double median;
+        private double pBest = 1;
+        private double pPrevious = 1;
+        private int pruned;
+        private double[] scores;
+        private int tier;
+
+        Entry(final String jvmArgs) {
+
+            this.jvmArgs = jvmArgs;
+        }
+
+        /**
+         * @return the score cards of the trials, from worst to best
+         */
+        public List<ScoreCard> getCards() {
+
+            return this.cards;
+        }
+
+        /**
+         * @return the high end of the interval for the mean score
+         */
+        public double getHigh() {
+
+            return this.high;
+        }
+
+        /**
+         * @return the JVM arguments of the combination
+         */
+        public String getJvmArgs() {
+
+            return this.jvmArgs;
+        }
+
+        /**
+         * @return the low end of the interval for the mean score
+         */
+        public double getLow() {
+
+            return this.low;
+        }
+
+        /**
+         * @return the mean score of the trials
+         */
+        public double getMean() {
+
+            return this.mean;
+        }
+
+        /**
+         * @return the median score of the trials
+         */
+        public double getMedian() {
+
+            return this.median;
+        }
+
+        /**
+         * @return the trial whose score is the median, or the lower of the two
+         *         middle trials
+         */
+        public ScoreCard getMedianCard() {
+
+            return this.cards.get((this.cards.size() - 1) / 2);
+        }
+
+        /**
+         * @return the p value of the difference from the best combination
+         */
+        public double getPBest() {
+
+            return this.pBest;
+        }
+
+        /**
+         * @return the p value of the difference from the combination ranked
+         *         just above
+         */
+        public double getPPrevious() {
+
+            return this.pPrevious;
+        }
+
+        /**
+         * @return the number of trials that were stopped early
+         */
+        public int getPruned() {
+
+            return this.pruned;
+        }
+
+        /**
+         * @return the tier of the combination, from 1 for the best
+         */
+        public int getTier() {
+
+            return this.tier;
+        }
+    }
+
+    /**
+     * The seed of the bootstrap, fixed so that the same trials always give the
+     * same intervals
+     */
+    private static final long BOOTSTRAP_SEED = 1;
+
+    private final double alpha;
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * @param cards
+     *            the score cards of every trial of every combination
+     * @param alpha
+     *            the p value below which combinations are ranked apart, which
+     *            also sets the width of the intervals
+     */
+    public Ranking(final Collection<ScoreCard> cards, final double alpha) {
+
+        this.alpha = alpha;
+
+        final Map<String, Entry> byArgs = new LinkedHashMap<>();
+
+        for (final ScoreCard card : cards) {
+            byArgs.computeIfAbsent(card.getJvmArgs(), Entry::new).cards.add(card);
+        }
+
+        final Random random = new Random(BOOTSTRAP_SEED);
+
+        for (final Entry e : byArgs.values()) {
+
+            Collections.sort(e.cards);
+
+            e.pruned = (int) e.cards.stream().filter(
+                c -> c.getPruned() != null).count();
+            e.scores = e.cards.stream().mapToDouble(ScoreCard::getScore)
+                .toArray();
+            e.mean = Statistics.mean(e.scores);
+            e.median = Statistics.median(e.scores);
+
+            final double[] interval = Statistics.bootstrapInterval(e.scores,
+                alpha, random);
+
+            e.low = interval[0];
+            e.high = interval[1];
+
+            this.entries.add(e);
+        }
+
+        /* those fully measured first, each part best first */
+
+        this.entries.sort(Comparator.comparing((final Entry e) -> e.pruned > 0)
+            .thenComparing(Comparator.comparingDouble(Entry::getMean)
+                .reversed()));
+
+        Entry leader = null;
+        Entry previous = null;
+        int tier = 0;
+
+        for (final Entry e : this.entries) {
+
+            if (previous != null) {
+
+                e.pBest = Statistics.welchTest(this.entries.get(0).scores,
+                    e.scores);
+                e.pPrevious = Statistics.welchTest(previous.scores, e.scores);
+            }
+
+            if (leader == null || leader.pruned == 0 && e.pruned > 0
+                || Statistics.welchTest(leader.scores, e.scores) < alpha) {
+
+                leader = e;
+                tier++;
+            }
+
+            e.tier = tier;
+            previous = e;
+        }
+    }
+
+    /**
+     * Write the ranking, a combination to a line with the statistics of its
+     * trials, to ranking.txt in the output directory, under a note of how
+     * pruned trials are ranked
+     *
+     * @throws CommunicationException
+     *             on error writing the output file
+     */
+    public void dump() throws CommunicationException {
+
+        final String filename = "ranking.txt";
+
+        try (BufferedWriter writer = Files.newBufferedWriter(ScoreTable.outdir
+            .resolve(filename), Charset.forName("US-ASCII"))) {
+
+            writer.write(String.format("Combinations with a pruned trial are"
+                + " ranked below all those fully measured, as their scores"
+                + " are estimates%n%n"));
+
+            writer.write(String.format("%4s %9s %9s %21s %6s %6s %8s %8s%n",
+                "tier", "mean", "median", String.format("%.0f%% interval",
+                    (1 - this.alpha) * 100), "trials", "pruned", "p best",
+                "p prev"));
+
+            for (final Entry e : this.entries) {
+
+                writer.write(String.format(
+                    "%4d %9.4f %9.4f [%9.4f,%9.4f] %6d %6d %8.4f %8.4f%n"
+                        + "     %s%n", e.tier, e.mean, e.median, e.low,
+                    e.high, e.cards.size(), e.pruned, e.pBest, e.pPrevious,
+                    e.jvmArgs));
+            }
+        } catch (final IOException e) {
+
+            throw new CommunicationException("Error writing " + filename, e);
+        }
+    }
+
+    /**
+     * Write GPlot scorecards of the median trial of each of the topmost n
+     * combinations
+     *
+     * @param number
+     *            the number of topmost combinations
+     * @throws CommunicationException
+     *             on error writing the output files
+     */
+    public void dumpTop(int number) throws CommunicationException {
+
+        if (number < 1)
+            throw new IllegalArgumentException(
+                "Number of top entries to dump must be at least 1: " + number);
+
+        if (number > this.entries.size()) number = this.entries.size();
+
+        for (int i = 1; i <= number; ++i) {
+
+            ScoreTable.writeScore(this.entries.get(i - 1).getMedianCard(), i);
+        }
+    }
+
+    /**
+     * @return the combinations from best to worst by mean score
+     */
+    public List<Entry> getEntries() {
+
+        return this.entries;
+    }
+
+    @Override
+    public String toString() {
+
+        return "Ranking [alpha=" + this.alpha + ", entries="
+            + this.entries.size() + ", tiers=" + (this.entries.isEmpty() ? 0
+                : this.entries.get(this.entries.size() - 1).tier) + "]";
+    }
+}
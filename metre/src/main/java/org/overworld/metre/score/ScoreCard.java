@@ -57,10 +57,12 @@ public class ScoreCard implements Comparable<ScoreCard> {
     private String minorCollectionName = "";
     private long minorCollectionTime = -1;
     private final List<Long> nonHeapUsage = new ArrayList<>();
+    private final String pruned;
     private final int runNumber;
     private final double runtime;
     private final List<Long> sampleTimes = new ArrayList<>();
     private final double score;
+    private final int tests;
 
     /**
      * Construct a new scorecard to store the JMeter and JMX data, and JVM args
@@ -78,13 +80,38 @@ public class ScoreCard implements Comparable<ScoreCard> {
     public ScoreCard(final List<MetricSlice> slices,
         final JMeterResult results, final String jvmArgs, final int runNumber) {
 
+        this(slices, results, jvmArgs, runNumber, null);
+    }
+
+    /**
+     * Construct a new scorecard for a run that may have been stopped early
+     *
+     * @param slices
+     *            a list of MetricSlices from which JMX metrics can be extracted
+     * @param results
+     *            JMeter results of the test run, which for a pruned run are
+     *            its progress with the runtime it was estimated to need
+     * @param jvmArgs
+     *            the JVM args used to invoke the test run
+     * @param runNumber
+     *            an incrementing sequence number to identify the run
+     * @param pruned
+     *            the reason the run was stopped early, or null if it ran to
+     *            completion
+     */
+    public ScoreCard(final List<MetricSlice> slices,
+        final JMeterResult results, final String jvmArgs, final int runNumber,
+        final String pruned) {
+
         this.jvmArgs = jvmArgs;
         this.runNumber = runNumber;
+        this.pruned = pruned;
 
         /* data from the JMeter Result */
 
         this.runtime = results.getTotalTime();
         this.errTotal = results.getErr();
+        this.tests = results.getTests();
 
         /*
          * datapoints that are known to be cumulative are taken from the last
@@ -206,12 +233,16 @@ public class ScoreCard implements Comparable<ScoreCard> {
     }
 
     /**
-     * {@inheritDoc} Compares ScoreCard instances by the contained score value.
+     * {@inheritDoc} Compares ScoreCard instances by the contained score value,
+     * then by run number so that runs of equal score are all kept.
      */
     @Override
     public int compareTo(final ScoreCard other) {
 
-        return Double.compare(this.getScore(), other.getScore());
+        final int result = Double.compare(this.getScore(), other.getScore());
+
+        return result != 0 ? result : Integer.compare(this.runNumber,
+            other.runNumber);
     }
 
     /**
@@ -362,6 +393,15 @@ public class ScoreCard implements Comparable<ScoreCard> {
         return result.toString();
     }
 
+    /**
+     * @return the reason the run was stopped early, or null if it ran to
+     *         completion
+     */
+    public String getPruned() {
+
+        return this.pruned;
+    }
+
     /**
      * @return the arbitrary identifying run number
      */
@@ -395,6 +435,14 @@ public class ScoreCard implements Comparable<ScoreCard> {
         return this.score;
     }
 
+    /**
+     * @return the number of tests JMeter ran
+     */
+    public int getTests() {
+
+        return this.tests;
+    }
+
     @Override
     public String toString() {
 
@@ -408,7 +456,8 @@ public class ScoreCard implements Comparable<ScoreCard> {
             + this.minorCollectionCount + ", minorCollectionName="
             + this.minorCollectionName + ", minorCollectionTime="
             + this.minorCollectionTime + ", nonHeapUsage=" + this.nonHeapUsage
-            + ", runtime=" + this.runtime + ", sampleTimes=" + this.sampleTimes
-            + ", score=" + this.score + "]";
+            + ", pruned=" + this.pruned + ", runtime=" + this.runtime
+            + ", sampleTimes=" + this.sampleTimes + ", score=" + this.score
+            + ", tests=" + this.tests + "]";
     }
 }
@@ -145,6 +145,33 @@ public class ScoreTable extends TreeSet<ScoreCard> {
         }
     }
 
+    /**
+     * Write the runs that were stopped early, with the reason for each, to
+     * pruned.txt in the output directory
+     *
+     * @throws CommunicationException
+     *             on error writing the output file
+     */
+    public void dumpPruned() throws CommunicationException {
+
+        final String filename = "pruned.txt";
+
+        try (BufferedWriter writer = Files.newBufferedWriter(outdir
+            .resolve(filename), Charset.forName("US-ASCII"))) {
+
+            for (final ScoreCard sc : this) {
+
+                if (sc.getPruned() == null) continue;
+
+                writer.write(String.format("%04d %s%n     %s%n", sc
+                    .getRunNumber(), sc.getPruned(), sc.getJvmArgs()));
+            }
+        } catch (final IOException e) {
+
+            throw new CommunicationException("Error writing " + filename, e);
+        }
+    }
+
     /**
      * Write GFlot scorecards for the topmost n entries, where order is defined
      * in the Set
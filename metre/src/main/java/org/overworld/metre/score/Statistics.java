@@ -0,0 +1,244 @@
+package org.overworld.metre.score;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The statistics by which repeated trials of combinations are summarised and
+ * compared
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-23
+ */
+public final class Statistics {
+
+    /**
+     * The number of resamples from which a bootstrap interval is taken
+     */
+    public static final int BOOTSTRAP_RESAMPLES = 2000;
+
+    private static final double EPSILON = 3e-16;
+
+    private static final int MAX_ITERATIONS = 300;
+
+    /**
+     * A bootstrap percentile interval for the mean of the values
+     *
+     * @param values
+     *            the values
+     * @param alpha
+     *            the probability that the interval misses the mean, such as
+     *            0.05 for a 95% interval
+     * @param random
+     *            the source of the resamples
+     * @return the low and the high end of the interval
+     */
+    public static double[] bootstrapInterval(final double[] values,
+        final double alpha, final Random random) {
+
+        if (values.length < 2) return new double[] { mean(values), mean(values) };
+
+        final double[] means = new double[BOOTSTRAP_RESAMPLES];
+
+        for (int r = 0; r < means.length; r++) {
+
+            double sum = 0;
+
+            for (int i = 0; i < values.length; i++) {
+                sum += values[random.nextInt(values.length)];
+            }
+
+            means[r] = sum / values.length;
+        }
+
+        Arrays.sort(means);
+
+        final int low = (int) Math.floor(alpha / 2 * (means.length - 1));
+        final int high = (int) Math.ceil((1 - alpha / 2) * (means.length - 1));
+
+        return new double[] { means[low], means[high] };
+    }
+
+    /**
+     * The continued fraction of the incomplete beta function, after Numerical
+     * Recipes
+     */
+    private static double betaFraction(final double a, final double b,
+        final double x) {
+
+        final double qab = a + b;
+        final double qap = a + 1;
+        final double qam = a - 1;
+        double c = 1;
+        double d = 1 - qab * x / qap;
+
+        if (Math.abs(d) < Double.MIN_NORMAL) d = Double.MIN_NORMAL;
+        d = 1 / d;
+
+        double h = d;
+
+        for (int m = 1; m <= MAX_ITERATIONS; m++) {
+
+            final int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((qam + m2) * (a + m2));
+
+            d = 1 + aa * d;
+            if (Math.abs(d) < Double.MIN_NORMAL) d = Double.MIN_NORMAL;
+            c = 1 + aa / c;
+            if (Math.abs(c) < Double.MIN_NORMAL) c = Double.MIN_NORMAL;
+            d = 1 / d;
+            h *= d * c;
+
+            aa = -(a + m) * (qab + m) * x / ((a + m2) * (qap + m2));
+
+            d = 1 + aa * d;
+            if (Math.abs(d) < Double.MIN_NORMAL) d = Double.MIN_NORMAL;
+            c = 1 + aa / c;
+            if (Math.abs(c) < Double.MIN_NORMAL) c = Double.MIN_NORMAL;
+            d = 1 / d;
+
+            final double del = d * c;
+            h *= del;
+
+            if (Math.abs(del - 1) < EPSILON) break;
+        }
+
+        return h;
+    }
+
+    /**
+     * @param a
+     *            the first parameter
+     * @param b
+     *            the second parameter
+     * @param x
+     *            the point, between 0 and 1
+     * @return the regularised incomplete beta function of a and b at x
+     */
+    static double incompleteBeta(final double a, final double b,
+        final double x) {
+
+        if (x <= 0) return 0;
+        if (x >= 1) return 1;
+
+        final double front = Math.exp(logGamma(a + b) - logGamma(a)
+            - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+
+        if (x < (a + 1) / (a + b + 2)) return front * betaFraction(a, b, x) / a;
+
+        return 1 - front * betaFraction(b, a, 1 - x) / b;
+    }
+
+    /**
+     * @param x
+     *            a positive number
+     * @return the natural logarithm of the gamma function at x, by the Lanczos
+     *         approximation
+     */
+    static double logGamma(final double x) {
+
+        final double[] coefficients = { 76.18009172947146, -86.50532032941677,
+            24.01409824083091, -1.231739572450155, 0.1208650973866179e-2,
+            -0.5395239384953e-5 };
+
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+
+        double series = 1.000000000190015;
+
+        for (final double c : coefficients) {
+            series += c / ++y;
+        }
+
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+
+    /**
+     * @param values
+     *            the values
+     * @return their mean, or 0 if there are none
+     */
+    public static double mean(final double[] values) {
+
+        if (values.length == 0) return 0;
+
+        double sum = 0;
+
+        for (final double v : values) {
+            sum += v;
+        }
+
+        return sum / values.length;
+    }
+
+    /**
+     * @param values
+     *            the values
+     * @return their median, or 0 if there are none
+     */
+    public static double median(final double[] values) {
+
+        if (values.length == 0) return 0;
+
+        final double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        final int middle = sorted.length / 2;
+
+        return sorted.length % 2 == 1 ? sorted[middle]
+            : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * @param values
+     *            the values
+     * @return their sample variance, or 0 if there are fewer than two
+     */
+    public static double variance(final double[] values) {
+
+        if (values.length < 2) return 0;
+
+        final double mean = mean(values);
+        double sum = 0;
+
+        for (final double v : values) {
+            sum += (v - mean) * (v - mean);
+        }
+
+        return sum / (values.length - 1);
+    }
+
+    /**
+     * Welch's t test of whether two sets of values have different means,
+     * without assuming that they have the same variance
+     *
+     * @param a
+     *            one set of values
+     * @param b
+     *            the other
+     * @return the two sided p value, 1 if either set has fewer than two values
+     */
+    public static double welchTest(final double[] a, final double[] b) {
+
+        if (a.length < 2 || b.length < 2) return 1;
+
+        final double va = variance(a) / a.length;
+        final double vb = variance(b) / b.length;
+        final double difference = mean(a) - mean(b);
+
+        if (va + vb == 0) return difference == 0 ? 1 : 0;
+
+        final double t = difference / Math.sqrt(va + vb);
+        final double df = (va + vb) * (va + vb)
+            / (va * va / (a.length - 1) + vb * vb / (b.length - 1));
+
+        return incompleteBeta(df / 2, 0.5, df / (df + t * t));
+    }
+
+    private Statistics() {
+
+        /* static methods only */
+    }
+}
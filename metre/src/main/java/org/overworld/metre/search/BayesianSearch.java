@@ -0,0 +1,328 @@
+package org.overworld.metre.search;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.overworld.metre.score.ScoreCard;
+
+/**
+ * Bayesian optimisation with a Gaussian process as the surrogate of the score.
+ * <p/>
+ * After a few random runs, the process is fitted to the scores so far and
+ * the next combination is the one, of a random pool of those not yet run,
+ * with the greatest expected improvement on the best score. Runs still in
+ * progress count as having scored the mean, so that concurrent runs are not
+ * all spent on the same corner of the space.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+public class BayesianSearch extends SearchStrategy {
+
+    /**
+     * The number of runs of random combinations before the surrogate is used
+     */
+    private static final int INITIAL_RUNS = 5;
+
+    /**
+     * The distance in the unit cube over which scores are correlated
+     */
+    private static final double LENGTH_SCALE = 0.5;
+
+    /**
+     * The variance of the standardised score from run to run of the same
+     * combination
+     */
+    private static final double NOISE = 0.1;
+
+    /**
+     * The number of combinations from which to choose each time
+     */
+    private static final int POOL = 500;
+
+    /**
+     * A small margin the improvement must exceed, favouring exploration
+     */
+    private static final double XI = 0.01;
+
+    /**
+     * @param z
+     *            a standard normal deviate
+     * @return the cumulative probability of the standard normal at z
+     */
+    private static double cdf(final double z) {
+
+        /* Abramowitz and Stegun 7.1.26, to within 1.5e-7 */
+
+        final double x = Math.abs(z) / Math.sqrt(2);
+        final double t = 1 / (1 + 0.3275911 * x);
+        final double erf = 1 - ((((1.061405429 * t - 1.453152027) * t
+            + 1.421413741) * t - 0.284496736) * t + 0.254829592) * t
+            * Math.exp(-x * x);
+
+        return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+
+    /**
+     * @param l
+     *            a lower triangular matrix
+     * @param b
+     *            a vector
+     * @return x such that l x = b
+     */
+    private static double[] forward(final double[][] l, final double[] b) {
+
+        final double[] x = new double[b.length];
+
+        for (int i = 0; i < b.length; i++) {
+
+            double sum = b[i];
+
+            for (int k = 0; k < i; k++) {
+                sum -= l[i][k] * x[k];
+            }
+
+            x[i] = sum / l[i][i];
+        }
+
+        return x;
+    }
+
+    /**
+     * @param a
+     *            the features of one combination
+     * @param b
+     *            the features of another
+     * @return the covariance of their scores
+     */
+    private static double kernel(final double[] a, final double[] b) {
+
+        double distance = 0;
+
+        for (int i = 0; i < a.length; i++) {
+            distance += (a[i] - b[i]) * (a[i] - b[i]);
+        }
+
+        return Math.exp(-distance / (2 * LENGTH_SCALE * LENGTH_SCALE));
+    }
+
+    /**
+     * @param l
+     *            the Cholesky factor of a matrix
+     * @param b
+     *            a vector
+     * @return x such that l l' x = b
+     */
+    private static double[] solve(final double[][] l, final List<Double> b) {
+
+        final double[] rhs = new double[b.size()];
+
+        for (int i = 0; i < rhs.length; i++) {
+            rhs[i] = b.get(i);
+        }
+
+        final double[] z = forward(l, rhs);
+        final double[] x = new double[z.length];
+
+        for (int i = z.length - 1; i >= 0; i--) {
+
+            double sum = z[i];
+
+            for (int k = i + 1; k < z.length; k++) {
+                sum -= l[k][i] * x[k];
+            }
+
+            x[i] = sum / l[i][i];
+        }
+
+        return x;
+    }
+
+    private final List<double[]> observed = new ArrayList<>();
+    private final Set<Candidate> pending = new HashSet<>();
+    private final Random random;
+    private final List<Double> scores = new ArrayList<>();
+    private final Set<Candidate> seen = new HashSet<>();
+
+    /**
+     * @param space
+     *            the space to search
+     * @param budget
+     *            the most runs to issue, or 0 for the whole space
+     * @param random
+     *            the source of random choices
+     */
+    public BayesianSearch(final SearchSpace space, final int budget,
+        final Random random) {
+
+        super(space, budget);
+
+        this.random = random;
+    }
+
+    @Override
+    protected Candidate choose() {
+
+        if (this.seen.size() >= this.space.size()) return null;
+
+        Candidate best = null;
+
+        if (this.scores.size() < INITIAL_RUNS) {
+
+            do {
+                best = this.space.sample(this.random);
+            } while (this.seen.contains(best));
+        } else {
+
+            best = this.mostPromising(this.pool());
+        }
+
+        this.seen.add(best);
+        this.pending.add(best);
+
+        return best;
+    }
+
+    @Override
+    protected void completed(final Candidate candidate, final ScoreCard score) {
+
+        this.pending.remove(candidate);
+        this.observed.add(this.space.features(candidate));
+        this.scores.add(score.getScore());
+    }
+
+    /**
+     * Fits the surrogate to the scores so far and finds the combination with
+     * the greatest expected improvement
+     *
+     * @param pool
+     *            the combinations from which to choose
+     * @return the most promising of them
+     */
+    private Candidate mostPromising(final List<Candidate> pool) {
+
+        /* standardise the scores, with runs in progress at the mean */
+
+        double mean = 0;
+        for (final double s : this.scores) {
+            mean += s;
+        }
+        mean /= this.scores.size();
+
+        double variance = 0;
+        for (final double s : this.scores) {
+            variance += (s - mean) * (s - mean);
+        }
+
+        final double deviation = variance > 0 ? Math.sqrt(variance
+            / this.scores.size()) : 1;
+
+        final List<double[]> x = new ArrayList<>(this.observed);
+        final List<Double> y = new ArrayList<>();
+        double incumbent = Double.NEGATIVE_INFINITY;
+
+        for (final double s : this.scores) {
+
+            final double standard = (s - mean) / deviation;
+            y.add(standard);
+            incumbent = Math.max(incumbent, standard);
+        }
+
+        for (final Candidate c : this.pending) {
+
+            x.add(this.space.features(c));
+            y.add(0.0);
+        }
+
+        /* the Cholesky factor of the covariance of the observations */
+
+        final int n = x.size();
+        final double[][] l = new double[n][n];
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+
+                double sum = kernel(x.get(i), x.get(j)) + (i == j ? NOISE : 0);
+
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i][k] * l[j][k];
+                }
+
+                l[i][j] = i == j ? Math.sqrt(Math.max(sum, 1e-12)) : sum
+                    / l[j][j];
+            }
+        }
+
+        final double[] alpha = solve(l, y);
+
+        Candidate best = pool.get(0);
+        double bestImprovement = Double.NEGATIVE_INFINITY;
+
+        for (final Candidate c : pool) {
+
+            final double[] features = this.space.features(c);
+            final double[] k = new double[n];
+
+            for (int i = 0; i < n; i++) {
+                k[i] = kernel(x.get(i), features);
+            }
+
+            double mu = 0;
+            for (int i = 0; i < n; i++) {
+                mu += k[i] * alpha[i];
+            }
+
+            final double[] v = forward(l, k);
+
+            double explained = 0;
+            for (final double vi : v) {
+                explained += vi * vi;
+            }
+
+            final double sigma = Math.sqrt(Math.max(1 - explained, 1e-12));
+            final double gain = mu - incumbent - XI;
+            final double z = gain / sigma;
+            final double improvement = gain * cdf(z) + sigma
+                * Math.exp(-z * z / 2) / Math.sqrt(2 * Math.PI);
+
+            if (improvement > bestImprovement) {
+
+                bestImprovement = improvement;
+                best = c;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return combinations not yet run from which to choose the next, all of
+     *         them if there are few enough
+     */
+    private List<Candidate> pool() {
+
+        final Set<Candidate> pool = new HashSet<>();
+        final long unseen = this.space.size() - this.seen.size();
+
+        for (int attempt = 0; attempt < POOL * 4 && pool.size() < POOL
+            && pool.size() < unseen; attempt++) {
+
+            final Candidate c = this.space.sample(this.random);
+
+            if (!this.seen.contains(c)) pool.add(c);
+        }
+
+        while (pool.isEmpty()) {
+
+            final Candidate c = this.space.sample(this.random);
+
+            if (!this.seen.contains(c)) pool.add(c);
+        }
+
+        return new ArrayList<>(pool);
+    }
+}
@@ -0,0 +1,80 @@
+package org.overworld.metre.search;
+
+import java.util.Arrays;
+
+/**
+ * A combination of JVM parameters in a {@link SearchSpace}, identified by its
+ * section and the index of the value chosen in each dimension of the section
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+public class Candidate {
+
+    private final String arguments;
+    private final int[] choices;
+    private final int section;
+
+    /**
+     * @param space
+     *            the space of the combination
+     * @param section
+     *            the index of the section
+     * @param choices
+     *            the index of the value in each dimension of the section
+     */
+    Candidate(final SearchSpace space, final int section, final int[] choices) {
+
+        this.section = section;
+        this.choices = choices.clone();
+        this.arguments = space.arguments(section, this.choices);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+
+        if (!(other instanceof Candidate)) return false;
+
+        final Candidate that = (Candidate) other;
+
+        return this.section == that.section
+            && Arrays.equals(this.choices, that.choices);
+    }
+
+    /**
+     * @return the JVM arguments of the combination
+     */
+    public String getArguments() {
+
+        return this.arguments;
+    }
+
+    /**
+     * @return the index of the value in each dimension of the section
+     */
+    int[] getChoices() {
+
+        return this.choices;
+    }
+
+    /**
+     * @return the index of the section
+     */
+    public int getSection() {
+
+        return this.section;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return 31 * this.section + Arrays.hashCode(this.choices);
+    }
+
+    @Override
+    public String toString() {
+
+        return this.arguments;
+    }
+}
@@ -0,0 +1,40 @@
+package org.overworld.metre.search;
+
+import org.overworld.metre.score.ScoreCard;
+
+/**
+ * Runs every combination in the space once, in the order in which the space
+ * numbers them
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+public class ExhaustiveSearch extends SearchStrategy {
+
+    private long next;
+
+    /**
+     * @param space
+     *            the space to search
+     * @param budget
+     *            the most runs to issue, or 0 for the whole space
+     */
+    public ExhaustiveSearch(final SearchSpace space, final int budget) {
+
+        super(space, budget);
+    }
+
+    @Override
+    protected Candidate choose() {
+
+        return this.next < this.space.size() ? this.space.get(this.next++)
+            : null;
+    }
+
+    @Override
+    protected void completed(final Candidate candidate, final ScoreCard score) {
+
+        /* the order of the search does not depend on the scores */
+    }
+}
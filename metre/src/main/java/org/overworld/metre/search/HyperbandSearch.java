@@ -0,0 +1,233 @@
+package org.overworld.metre.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.overworld.metre.score.ScoreCard;
+
+/**
+ * Hyperband: successive halving over brackets that trade the number of
+ * combinations tried against the effort spent on each.
+ * <p/>
+ * The effort on a combination is the number of times it is run, its score the
+ * mean of those runs. A bracket starts with many combinations run few times,
+ * keeps the best third, runs those three times as often, and so on until one
+ * is left run MAX_REPEATS times. The brackets that follow start with fewer
+ * combinations run more often, hedging against scores that only settle with
+ * repetition. With a budget the brackets go round until it is spent;
+ * without, they go round once.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+public class HyperbandSearch extends SearchStrategy {
+
+    /**
+     * The factor by which each rung of a bracket cuts the combinations and
+     * multiplies the runs of each
+     */
+    private static final int ETA = 3;
+
+    private static Logger LOG = Logger.getLogger(HyperbandSearch.class);
+
+    /**
+     * The most runs of any one combination
+     */
+    private static final int MAX_REPEATS = 9;
+
+    /**
+     * The number of the most aggressive bracket, log to the base ETA of
+     * MAX_REPEATS
+     */
+    private static final int S_MAX = 2;
+
+    private int bracket = -1;
+    private boolean finished;
+    private final Deque<Candidate> queue = new ArrayDeque<>();
+    private final Random random;
+    private int repeats;
+    private List<Candidate> rung = new ArrayList<>();
+    private int rungIndex;
+    private final Map<Candidate, List<Double>> scores = new HashMap<>();
+    private final Set<Candidate> seen = new HashSet<>();
+
+    /**
+     * @param space
+     *            the space to search
+     * @param budget
+     *            the most runs to issue, or 0 to go round the brackets once
+     * @param random
+     *            the source of random choices
+     */
+    public HyperbandSearch(final SearchSpace space, final int budget,
+        final Random random) {
+
+        super(space, budget);
+
+        this.random = random;
+    }
+
+    @Override
+    protected Candidate choose() {
+
+        while (this.queue.isEmpty()) {
+
+            if (this.finished || this.getPending() > 0) return null;
+
+            if (this.rung.size() > 1 && this.rungIndex < this.bracket)
+                this.promote();
+            else
+                this.startBracket();
+        }
+
+        return this.queue.poll();
+    }
+
+    /**
+     * @return the runs the brackets will issue, each taking fresh
+     *         combinations while any remain, going round once without a
+     *         budget and until it is spent with one
+     */
+    @Override
+    public long getPlanned() {
+
+        final int budget = this.getBudget();
+
+        long planned = 0;
+        long unseen = this.space.size();
+        int bracket = S_MAX;
+
+        while (unseen > 0 && (budget > 0 ? planned < budget : bracket >= 0)) {
+
+            int scale = 1;
+            for (int i = 0; i < bracket; i++) {
+                scale *= ETA;
+            }
+
+            int count = (int) Math.min(unseen, (long) Math.ceil(
+                (double) (S_MAX + 1) / (bracket + 1) * scale));
+            int repeats = MAX_REPEATS / scale;
+
+            unseen -= count;
+            planned += (long) count * repeats;
+
+            for (int rung = 1; rung <= bracket && count > 1; rung++) {
+
+                count = Math.max(1, count / ETA);
+                planned += (long) count * repeats * (ETA - 1);
+                repeats *= ETA;
+            }
+
+            bracket = budget > 0 && bracket == 0 ? S_MAX : bracket - 1;
+        }
+
+        return budget > 0 ? Math.min(budget, planned) : planned;
+    }
+
+    @Override
+    protected void completed(final Candidate candidate, final ScoreCard score) {
+
+        this.scores.computeIfAbsent(candidate, c -> new ArrayList<>()).add(
+            score.getScore());
+    }
+
+    /**
+     * @param candidate
+     *            a combination
+     * @return the mean score of its runs so far
+     */
+    private double mean(final Candidate candidate) {
+
+        return this.scores.getOrDefault(candidate, new ArrayList<>()).stream()
+            .mapToDouble(Double::doubleValue).average().orElse(0);
+    }
+
+    /**
+     * Keeps the best of the rung and runs them more
+     */
+    private void promote() {
+
+        final int keep = Math.max(1, this.rung.size() / ETA);
+
+        this.rung.sort(Comparator.comparingDouble(this::mean).reversed());
+
+        LOG.info(String.format("Bracket %d rung %d best %.2f at %d runs: %s",
+            this.bracket, this.rungIndex, this.mean(this.rung.get(0)),
+            this.repeats, this.rung.get(0)));
+
+        this.rung = new ArrayList<>(this.rung.subList(0, keep));
+        this.rungIndex++;
+        this.queueRuns(this.repeats * ETA);
+    }
+
+    /**
+     * Queues each combination of the rung to be run until it has been run
+     * the given number of times
+     *
+     * @param repeats
+     *            the number of runs that each combination of the rung should
+     *            have
+     */
+    private void queueRuns(final int repeats) {
+
+        final int already = this.repeats;
+
+        this.repeats = repeats;
+
+        for (final Candidate candidate : this.rung) {
+            for (int i = this.rungIndex == 0 ? 0 : already; i < repeats; i++) {
+                this.queue.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Starts the next bracket with fresh combinations, or finishes if there
+     * are none or the brackets have gone round without a budget
+     */
+    private void startBracket() {
+
+        if (this.bracket == 0 && this.getBudget() <= 0) {
+
+            this.finished = true;
+            return;
+        }
+
+        this.bracket = this.bracket <= 0 ? S_MAX : this.bracket - 1;
+        this.rungIndex = 0;
+        this.rung = new ArrayList<>();
+
+        int scale = 1;
+        for (int i = 0; i < this.bracket; i++) {
+            scale *= ETA;
+        }
+
+        final int count = (int) Math.ceil((double) (S_MAX + 1)
+            / (this.bracket + 1) * scale);
+
+        while (this.rung.size() < count && this.seen.size() < this.space.size()) {
+
+            final Candidate candidate = this.space.sample(this.random);
+
+            if (this.seen.add(candidate)) this.rung.add(candidate);
+        }
+
+        if (this.rung.isEmpty()) {
+
+            this.finished = true;
+            return;
+        }
+
+        this.queueRuns(MAX_REPEATS / scale);
+    }
+}
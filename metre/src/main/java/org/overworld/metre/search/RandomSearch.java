@@ -0,0 +1,59 @@
+package org.overworld.metre.search;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.overworld.metre.score.ScoreCard;
+
+/**
+ * Runs combinations drawn uniformly from the space, each at most once, until
+ * the budget is spent. With a few parameters that matter among many that do
+ * not, a handful of random runs finds good values of those few far sooner
+ * than a grid does.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+public class RandomSearch extends SearchStrategy {
+
+    private final Random random;
+    private final Set<Candidate> seen = new HashSet<>();
+
+    /**
+     * @param space
+     *            the space to search
+     * @param budget
+     *            the most runs to issue, or 0 for the whole space
+     * @param random
+     *            the source of random choices
+     */
+    public RandomSearch(final SearchSpace space, final int budget,
+        final Random random) {
+
+        super(space, budget);
+
+        this.random = random;
+    }
+
+    @Override
+    protected Candidate choose() {
+
+        if (this.seen.size() >= this.space.size()) return null;
+
+        Candidate candidate;
+
+        do {
+            candidate = this.space.sample(this.random);
+        } while (!this.seen.add(candidate));
+
+        return candidate;
+    }
+
+    @Override
+    protected void completed(final Candidate candidate, final ScoreCard score) {
+
+        /* the draws do not depend on the scores */
+    }
+}
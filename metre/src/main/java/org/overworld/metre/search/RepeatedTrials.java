@@ -0,0 +1,142 @@
+package org.overworld.metre.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.overworld.metre.score.ScoreCard;
+
+/**
+ * Runs each combination that another strategy chooses several times, so that
+ * the noise of a single run can be measured rather than ranked.
+ * <p/>
+ * Combinations are taken from the strategy in blocks, and the trials of a
+ * block run in rounds: every combination of the block once, in a fresh random
+ * order, then every one again, and so on. Drift in the host over the course of
+ * a block so falls across all of its combinations rather than on whichever
+ * happened to run last. Once every trial of a combination is in, the strategy
+ * is told the score of its median trial.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-23
+ */
+public class RepeatedTrials extends SearchStrategy {
+
+    /**
+     * A combination of a block and the scores of its trials so far
+     */
+    private static class Entry {
+
+        private final Candidate candidate;
+        private final List<ScoreCard> scores = new ArrayList<>();
+
+        Entry(final Candidate candidate) {
+
+            this.candidate = candidate;
+        }
+    }
+
+    /**
+     * The most combinations across which the trials of a block are
+     * interleaved
+     */
+    private static final int BLOCK = 32;
+
+    private final SearchStrategy inner;
+
+    /**
+     * The entries of each combination with trials yet to report, oldest first,
+     * as a strategy may choose the same combination again
+     */
+    private final Map<Candidate, Deque<Entry>> open = new HashMap<>();
+    private final Deque<Entry> queue = new ArrayDeque<>();
+    private final Random random;
+    private final int trials;
+
+    /**
+     * @param inner
+     *            the strategy that chooses the combinations
+     * @param trials
+     *            the number of times to run each combination
+     * @param random
+     *            the source of the order of each round
+     */
+    public RepeatedTrials(final SearchStrategy inner, final int trials,
+        final Random random) {
+
+        super(inner.space, 0);
+
+        this.inner = inner;
+        this.trials = trials;
+        this.random = random;
+    }
+
+    @Override
+    protected Candidate choose() {
+
+        if (this.queue.isEmpty()) {
+
+            final List<Entry> block = new ArrayList<>();
+            Candidate candidate;
+
+            while (block.size() < BLOCK
+                && (candidate = this.inner.next()) != null) {
+
+                final Entry entry = new Entry(candidate);
+
+                block.add(entry);
+                this.open.computeIfAbsent(candidate, c -> new ArrayDeque<>())
+                    .add(entry);
+            }
+
+            for (int round = 0; round < this.trials; round++) {
+
+                Collections.shuffle(block, this.random);
+                this.queue.addAll(block);
+            }
+        }
+
+        final Entry entry = this.queue.poll();
+
+        return entry == null ? null : entry.candidate;
+    }
+
+    @Override
+    protected void completed(final Candidate candidate, final ScoreCard score) {
+
+        final Deque<Entry> entries = this.open.get(candidate);
+        final Entry entry = entries.peek();
+
+        entry.scores.add(score);
+
+        if (entry.scores.size() < this.trials) return;
+
+        entries.poll();
+        if (entries.isEmpty()) this.open.remove(candidate);
+
+        entry.scores.sort(Comparator.comparingDouble(ScoreCard::getScore));
+        this.inner.report(candidate, entry.scores.get(
+            (entry.scores.size() - 1) / 2));
+    }
+
+    @Override
+    public long getPlanned() {
+
+        return this.inner.getPlanned() * this.trials;
+    }
+
+    @Override
+    public String toString() {
+
+        return "RepeatedTrials [inner=" + this.inner + ", trials="
+            + this.trials + ", issued=" + this.getIssued() + ", pending="
+            + this.getPending() + "]";
+    }
+}
@@ -0,0 +1,320 @@
+package org.overworld.metre.search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.overworld.metre.config.ConfigRoot;
+import org.overworld.metre.config.Parameter;
+import org.overworld.metre.config.StaticParameters;
+
+/**
+ * The space of JVM parameter combinations described by the configuration. Each
+ * staticParameters section is a region of the space whose dimensions are the
+ * dynamic parameters of the section followed by those that apply to all
+ * sections. A combination is a section and a choice of value in each of its
+ * dimensions.
+ * <p/>
+ * Combinations are numbered in the order of the configuration file: section
+ * by section, with the parameters that apply to all sections varying fastest
+ * and earlier parameters faster than later ones. Any combination can be made
+ * from its number alone, so the space is never held in memory; it is iterated
+ * lazily, counted exactly before the first run, and split into shards of
+ * consecutive numbers that separate Metre instances can run.
+ * <p/>
+ * The space takes the values of each parameter from its current value on, so
+ * it should be built from a freshly read configuration.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+public class SearchSpace implements Iterable<Candidate> {
+
+    /**
+     * A staticParameters section and the values of each of its dimensions
+     */
+    static class Section {
+
+        private final List<List<String>> dimensions = new ArrayList<>();
+        private final int firstLocal;
+        private final String parameters;
+        private final long size;
+
+        Section(final StaticParameters statics,
+            final List<List<String>> shared, final int firstLocal) {
+
+            this.parameters = statics.getParameters();
+            this.firstLocal = firstLocal;
+
+            for (final Parameter p : statics.getDynamics()) {
+                this.dimensions.add(p.values());
+            }
+
+            this.dimensions.addAll(shared);
+
+            long size = 1;
+
+            for (final List<String> dimension : this.dimensions) {
+
+                try {
+
+                    size = Math.multiplyExact(size, dimension.size());
+                } catch (final ArithmeticException e) {
+
+                    throw new IllegalArgumentException("Section "
+                        + this.parameters + " has too many combinations", e);
+                }
+            }
+
+            this.size = size;
+        }
+    }
+
+    private final int features;
+
+    /**
+     * The number in the whole space of the first combination of this shard
+     */
+    private final long first;
+    private final List<Section> sections;
+    private final int shared;
+    private final long size;
+
+    /**
+     * @param configRoot
+     *            the configuration from which to take the parameters
+     */
+    public SearchSpace(final ConfigRoot configRoot) {
+
+        final List<List<String>> shared = new ArrayList<>();
+
+        for (final Parameter p : configRoot.getDynamics()) {
+            shared.add(p.values());
+        }
+
+        this.shared = shared.size();
+        this.sections = new ArrayList<>();
+
+        /*
+         * features are a flag per section, then the shared dimensions, then
+         * the dimensions of each section in turn
+         */
+
+        int firstLocal = configRoot.getStatics().size() + this.shared;
+        long size = 0;
+
+        for (final StaticParameters sp : configRoot.getStatics()) {
+
+            final Section section = new Section(sp, shared, firstLocal);
+
+            this.sections.add(section);
+            firstLocal += section.dimensions.size() - this.shared;
+            size = Math.addExact(size, section.size);
+        }
+
+        this.features = firstLocal;
+        this.first = 0;
+        this.size = size;
+    }
+
+    /**
+     * @param whole
+     *            the space of which this is a shard
+     * @param first
+     *            the number in the whole space of the first combination
+     * @param size
+     *            the number of combinations in the shard
+     */
+    private SearchSpace(final SearchSpace whole, final long first,
+        final long size) {
+
+        this.features = whole.features;
+        this.first = whole.first + first;
+        this.sections = whole.sections;
+        this.shared = whole.shared;
+        this.size = size;
+    }
+
+    /**
+     * @param section
+     *            the index of the section
+     * @param choices
+     *            the index of the value in each dimension of the section
+     * @return the JVM arguments of the combination
+     */
+    String arguments(final int section, final int[] choices) {
+
+        final Section s = this.sections.get(section);
+        final StringBuilder result = new StringBuilder(s.parameters);
+
+        for (int d = 0; d < choices.length; d++) {
+            result.append(' ').append(s.dimensions.get(d).get(choices[d]));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Places a combination in the unit cube, for models of the score over the
+     * space. The section is a flag, and the choice in each dimension its
+     * position between the first value and the last.
+     *
+     * @param candidate
+     *            the combination
+     * @return the features of the combination
+     */
+    double[] features(final Candidate candidate) {
+
+        final double[] result = new double[this.features];
+        final Section s = this.sections.get(candidate.getSection());
+        final int[] choices = candidate.getChoices();
+        final int local = choices.length - this.shared;
+
+        result[candidate.getSection()] = 1;
+
+        for (int d = 0; d < choices.length; d++) {
+
+            final int values = s.dimensions.get(d).size();
+            final int feature = d < local ? s.firstLocal + d : this.sections
+                .size() + d - local;
+
+            result[feature] = values > 1 ? (double) choices[d] / (values - 1)
+                : 0;
+        }
+
+        return result;
+    }
+
+    /**
+     * @param index
+     *            the number of the combination in this space, from 0
+     * @return the combination
+     * @throws IndexOutOfBoundsException
+     *             if there is no such combination
+     */
+    public Candidate get(final long index) {
+
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Combination " + index
+                + " of " + this.size);
+
+        long remainder = this.first + index;
+        int section = 0;
+
+        while (remainder >= this.sections.get(section).size) {
+            remainder -= this.sections.get(section++).size;
+        }
+
+        final List<List<String>> dimensions = this.sections.get(section).dimensions;
+        final int[] choices = new int[dimensions.size()];
+        final int local = choices.length - this.shared;
+
+        /* the shared dimensions are the least significant digits */
+
+        for (int i = 0; i < choices.length; i++) {
+
+            final int d = i < this.shared ? local + i : i - this.shared;
+            final int values = dimensions.get(d).size();
+
+            choices[d] = (int) (remainder % values);
+            remainder /= values;
+        }
+
+        return new Candidate(this, section, choices);
+    }
+
+    /**
+     * @return the number in the whole space of the first combination of this
+     *         space, 0 unless it is a shard
+     */
+    public long getFirst() {
+
+        return this.first;
+    }
+
+    /**
+     * @return every combination in order, made as it is reached
+     */
+    @Override
+    public Iterator<Candidate> iterator() {
+
+        return new Iterator<Candidate>() {
+
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+
+                return this.next < SearchSpace.this.size;
+            }
+
+            @Override
+            public Candidate next() {
+
+                if (!this.hasNext()) throw new NoSuchElementException();
+
+                return SearchSpace.this.get(this.next++);
+            }
+        };
+    }
+
+    /**
+     * @param random
+     *            the source of random choices
+     * @return a combination drawn uniformly from the space
+     */
+    public Candidate sample(final Random random) {
+
+        /* a uniform long below size, without the bias of a modulus */
+
+        long bits, index;
+
+        do {
+            bits = random.nextLong() >>> 1;
+            index = bits % this.size;
+        } while (bits - index + (this.size - 1) < 0);
+
+        return this.get(index);
+    }
+
+    /**
+     * Splits the space into near equal runs of consecutive combinations, so
+     * that each of several Metre instances can search one
+     *
+     * @param index
+     *            the index of the shard, from 0
+     * @param count
+     *            the number of shards
+     * @return the shard, itself a space
+     */
+    public SearchSpace shard(final int index, final int count) {
+
+        if (count < 1 || index < 0 || index >= count)
+            throw new IllegalArgumentException("Shard " + index + " of "
+                + count);
+
+        final long base = this.size / count;
+        final long extra = this.size % count;
+        final long start = base * index + Math.min(index, extra);
+
+        return new SearchSpace(this, start, base + (index < extra ? 1 : 0));
+    }
+
+    /**
+     * @return the number of combinations in the space
+     */
+    public long size() {
+
+        return this.size;
+    }
+
+    @Override
+    public String toString() {
+
+        return "SearchSpace [first=" + this.first + ", sections="
+            + this.sections.size() + ", size=" + this.size + "]";
+    }
+}
@@ -0,0 +1,189 @@
+package org.overworld.metre.search;
+
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.overworld.metre.ApplicationException;
+import org.overworld.metre.config.MetreOptions;
+import org.overworld.metre.score.ScoreCard;
+
+/**
+ * Chooses which combinations of JVM parameters to run, in light of the scores
+ * of those already run, until the budget of runs is spent.
+ * <p/>
+ * Runs may be in progress concurrently, so a strategy is asked for the next
+ * combination whenever there is room to run one, and told the score of each
+ * run as it completes. A strategy that cannot choose until more scores are in
+ * says so by returning null from {@link #next()}.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+public abstract class SearchStrategy {
+
+    private static Logger LOG = Logger.getLogger(SearchStrategy.class);
+
+    /**
+     * Creates the strategy named in the options
+     *
+     * @param options
+     *            the options of Metre
+     * @param space
+     *            the space to search
+     * @return the strategy
+     * @throws ApplicationException
+     *             if the options name no known strategy
+     */
+    public static SearchStrategy fromOptions(final MetreOptions options,
+        final SearchSpace space) throws ApplicationException {
+
+        final long seed = options.getSearchSeed() != 0 ? options
+            .getSearchSeed() : System.nanoTime();
+        final Random random = new Random(seed);
+        final String name = options.getSearch() == null ? "exhaustive"
+            : options.getSearch().trim().toLowerCase();
+        final int trials = Math.max(1, options.getTrials());
+
+        /* the budget is of runs, of which each combination takes trials */
+
+        final int budget = options.getSearchBudget() > 0 ? Math.max(1, options
+            .getSearchBudget() / trials) : 0;
+
+        LOG.info(String.format("Searching %s by %s with budget %d, %d trials"
+            + " each and seed %d", space, name, budget, trials, seed));
+
+        final SearchStrategy strategy;
+
+        switch (name) {
+            case "exhaustive":
+                strategy = new ExhaustiveSearch(space, budget);
+                break;
+            case "random":
+                strategy = new RandomSearch(space, budget, random);
+                break;
+            case "hyperband":
+                strategy = new HyperbandSearch(space, budget, random);
+                break;
+            case "bayesian":
+                strategy = new BayesianSearch(space, budget, random);
+                break;
+            default:
+                throw new ApplicationException("Unknown search strategy: "
+                    + options.getSearch());
+        }
+
+        return trials > 1 ? new RepeatedTrials(strategy, trials, random)
+            : strategy;
+    }
+
+    /**
+     * The most runs to issue, or 0 for no limit beyond that of the strategy
+     */
+    private final int budget;
+    private int issued;
+    private int pending;
+    protected final SearchSpace space;
+
+    /**
+     * @param space
+     *            the space to search
+     * @param budget
+     *            the most runs to issue, or 0 for no limit beyond that of the
+     *            strategy
+     */
+    protected SearchStrategy(final SearchSpace space, final int budget) {
+
+        this.space = space;
+        this.budget = budget;
+    }
+
+    /**
+     * @return the next combination to run, or null if there is none until a
+     *         run in progress completes
+     */
+    protected abstract Candidate choose();
+
+    /**
+     * Records the score of a completed run
+     *
+     * @param candidate
+     *            the combination that was run
+     * @param score
+     *            the score of the run
+     */
+    protected abstract void completed(Candidate candidate, ScoreCard score);
+
+    /**
+     * @return the most runs to issue, or 0 for no limit beyond that of the
+     *         strategy
+     */
+    public int getBudget() {
+
+        return this.budget;
+    }
+
+    /**
+     * @return the number of runs issued so far
+     */
+    public int getIssued() {
+
+        return this.issued;
+    }
+
+    /**
+     * @return the most runs the search will issue, for reporting progress
+     */
+    public long getPlanned() {
+
+        return this.budget > 0 ? Math.min(this.budget, this.space.size())
+            : this.space.size();
+    }
+
+    /**
+     * @return the number of runs issued and not yet reported
+     */
+    public int getPending() {
+
+        return this.pending;
+    }
+
+    /**
+     * @return the next combination to run, which the caller must run and
+     *         {@link #report(Candidate, ScoreCard)}, or null if there is none
+     *         until a run in progress completes, or none at all
+     */
+    public Candidate next() {
+
+        if (this.budget > 0 && this.issued >= this.budget) return null;
+
+        final Candidate candidate = this.choose();
+
+        if (candidate != null) {
+
+            this.issued++;
+            this.pending++;
+        }
+
+        return candidate;
+    }
+
+    /**
+     * @param candidate
+     *            a combination returned by {@link #next()}
+     * @param score
+     *            the score of its run
+     */
+    public void report(final Candidate candidate, final ScoreCard score) {
+
+        this.pending--;
+        this.completed(candidate, score);
+    }
+
+    @Override
+    public String toString() {
+
+        return this.getClass().getSimpleName() + " [budget=" + this.budget
+            + ", issued=" + this.issued + ", pending=" + this.pending + "]";
+    }
+}
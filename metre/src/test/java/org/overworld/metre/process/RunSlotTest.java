@@ -0,0 +1,80 @@
+package org.overworld.metre.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+import org.overworld.metre.ProcessException;
+import org.overworld.metre.config.Target;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-02
+ */
+
+public class RunSlotTest {
+
+    /**
+     * @return the options of a target that configures nothing per slot
+     */
+    private static Target base() {
+
+        return new Target().setArguments("--a=1").setJvmParams(
+            "-Dcom.sun.management.jmxremote.port=9690");
+    }
+
+    @Test
+    public void clearDirectoryTest() throws IOException, ProcessException {
+
+        final Path root = Files.createTempDirectory("runslot");
+        final Path journal = root.resolve("journal-2");
+        Files.createDirectories(journal.resolve("tasks"));
+        Files.write(journal.resolve("tasks").resolve("0.text"), new byte[1]);
+        final Path other = Files.createDirectories(root.resolve("journal-1"));
+
+        final RunSlot slot = new RunSlot(2, null, 9692, 0);
+
+        /* nothing is cleared unless configured */
+        slot.clearDirectory(base());
+        assertTrue(Files.exists(journal));
+
+        slot.clearDirectory(base().setSlotDirectory(root.resolve(
+            "journal-{slot}").toString()));
+        assertFalse(Files.exists(journal));
+        assertTrue(Files.exists(other));
+
+        /* nor is it an error that there is nothing to clear */
+        slot.clearDirectory(base().setSlotDirectory(root.resolve(
+            "journal-{slot}").toString()));
+
+        Files.delete(other);
+        Files.delete(root);
+    }
+
+    @Test
+    public void targetTest() {
+
+        final RunSlot first = new RunSlot(0, null, 9690, 0);
+        final RunSlot third = new RunSlot(2, null, 9692, 8082);
+
+        assertEquals("--a=1", first.target(base()).getArguments());
+        assertEquals("--a=1 --server.port=8082", third.target(base())
+            .getArguments());
+        assertEquals("-Dcom.sun.management.jmxremote.port=9692", third
+            .target(base()).getJvmParams());
+
+        final Target slotted = base().setSlotArguments(
+            "--cache=c-{slot} --dir=d-{slot}");
+
+        assertEquals("--a=1 --cache=c-0 --dir=d-0", first.target(slotted)
+            .getArguments());
+        assertEquals("--a=1 --cache=c-2 --dir=d-2 --server.port=8082", third
+            .target(slotted).getArguments());
+    }
+}
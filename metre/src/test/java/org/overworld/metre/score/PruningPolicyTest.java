@@ -0,0 +1,112 @@
+package org.overworld.metre.score;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.overworld.metre.process.JMeterResult;
+import org.overworld.metre.score.PruningPolicy.Verdict;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-16
+ */
+
+public class PruningPolicyTest {
+
+    /**
+     * @param tests
+     *            the number of tests run so far
+     * @param seconds
+     *            the time in s they took
+     * @param errors
+     *            the number of them that failed
+     * @return the progress of a run as JMeter reports it
+     */
+    private static JMeterResult progress(final int tests, final double seconds,
+        final int errors) {
+
+        return new JMeterResult(Integer.toString(tests), Double
+            .toString(seconds), "0", "0", "0", "0", Integer.toString(errors),
+            "0");
+    }
+
+    /**
+     * @return a policy for the top 2 of runs taking 10s, 20s and 40s for 100
+     *         tests, with a margin of 10%
+     */
+    private static PruningPolicy policy() {
+
+        final TreeSet<ScoreCard> table = new TreeSet<>();
+        table.add(ScoreCards.card("a", 1, 10));
+        table.add(ScoreCards.card("b", 2, 40));
+        table.add(ScoreCards.card("c", 3, 20));
+
+        final PruningPolicy policy = new PruningPolicy(2, 0.1);
+        policy.update(table);
+
+        return policy;
+    }
+
+    @Test
+    public void elapsedTest() {
+
+        final PruningPolicy policy = policy();
+
+        /* the slowest of the top two took 20s, so 22s is the limit */
+        assertNull(policy.verdict(null, 21000));
+
+        final Verdict verdict = policy.verdict(null, 23000);
+
+        assertEquals(23, verdict.getRuntime(), 1e-9);
+        assertEquals(true, verdict.getReason().startsWith("Ran 23.0s"));
+    }
+
+    @Test
+    public void errorTest() {
+
+        final PruningPolicy policy = policy();
+
+        assertNull(policy.verdict(progress(10, 2, 0), 2000));
+
+        final Verdict verdict = policy.verdict(progress(10, 3, 1), 2000);
+
+        /* scored on the longer of the two clocks */
+        assertEquals(3, verdict.getRuntime(), 1e-9);
+        assertEquals(true, verdict.getReason().contains("1 errors"));
+    }
+
+    @Test
+    public void projectedTest() {
+
+        final PruningPolicy policy = policy();
+
+        /* too early to project from a tenth of the tests */
+        assertNull(policy.verdict(progress(10, 6, 0), 6000));
+
+        /* a quarter in 5s projects 20s, within the limit */
+        assertNull(policy.verdict(progress(25, 5, 0), 5000));
+
+        /* a quarter in 6s projects 24s, beyond it */
+        final Verdict verdict = policy.verdict(progress(25, 6, 0), 6000);
+
+        assertEquals(24, verdict.getRuntime(), 1e-9);
+        assertEquals(true, verdict.getReason().startsWith("Projected 24.0s"));
+    }
+
+    @Test
+    public void tooFewTest() {
+
+        final TreeSet<ScoreCard> table = new TreeSet<>();
+        table.add(ScoreCards.card("a", 1, 10));
+
+        final PruningPolicy policy = new PruningPolicy(2, 0.1);
+        policy.update(table);
+
+        /* nothing is pruned until there are as many runs as top results */
+        assertNull(policy.verdict(progress(10, 100, 5), 100000));
+    }
+}
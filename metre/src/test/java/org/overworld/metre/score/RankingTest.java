@@ -0,0 +1,97 @@
+package org.overworld.metre.score;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-23
+ */
+
+public class RankingTest {
+
+    /**
+     * Adds a trial of a combination for each runtime
+     *
+     * @param cards
+     *            the cards to add to
+     * @param jvmArgs
+     *            the combination
+     * @param runtimes
+     *            the runtime in s of each trial
+     */
+    private static void trials(final List<ScoreCard> cards,
+        final String jvmArgs, final double... runtimes) {
+
+        for (final double runtime : runtimes) {
+            cards.add(ScoreCards.card(jvmArgs, cards.size() + 1, runtime));
+        }
+    }
+
+    @Test
+    public void dumpTopTest() throws Exception {
+
+        final List<ScoreCard> cards = new ArrayList<>();
+        trials(cards, "a", 10);
+
+        try {
+
+            new Ranking(cards, 0.05).dumpTop(0);
+            fail("Expected at least one entry to be asked for");
+        } catch (final IllegalArgumentException e) {
+
+            assertEquals(true, e.getMessage().contains("at least 1"));
+        }
+    }
+
+    @Test
+    public void prunedTest() {
+
+        final List<ScoreCard> cards = new ArrayList<>();
+        trials(cards, "slow", 20, 20.5, 19.5);
+        trials(cards, "fast", 10, 10.2, 9.8);
+
+        /* stopped early on an estimate that would score best of all */
+        trials(cards, "pruned", 5, 5.1);
+        cards.add(ScoreCards.card("pruned", cards.size() + 1, 4, 0,
+            "Projected 4.0s"));
+
+        final List<Ranking.Entry> entries = new Ranking(cards, 0.05)
+            .getEntries();
+
+        assertEquals("fast", entries.get(0).getJvmArgs());
+        assertEquals("slow", entries.get(1).getJvmArgs());
+        assertEquals("pruned", entries.get(2).getJvmArgs());
+
+        assertEquals(1, entries.get(2).getPruned());
+        assertEquals(3, entries.get(2).getTier());
+    }
+
+    @Test
+    public void tierTest() {
+
+        final List<ScoreCard> cards = new ArrayList<>();
+        trials(cards, "a", 10, 10.2, 9.8, 10.1);
+        trials(cards, "b", 10.1, 9.9, 10.3, 10.0);
+        trials(cards, "c", 20, 20.4, 19.6, 20.2);
+
+        final List<Ranking.Entry> entries = new Ranking(cards, 0.05)
+            .getEntries();
+
+        /* a and b cannot be told apart, and both are better than c */
+        assertEquals(1, entries.get(0).getTier());
+        assertEquals(1, entries.get(1).getTier());
+        assertEquals(2, entries.get(2).getTier());
+
+        assertEquals("c", entries.get(2).getJvmArgs());
+        assertEquals(true, entries.get(2).getPBest() < 0.05);
+        assertEquals(true, entries.get(1).getPPrevious() > 0.05);
+        assertEquals(4, entries.get(2).getCards().size());
+    }
+}
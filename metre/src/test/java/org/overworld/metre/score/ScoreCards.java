@@ -0,0 +1,96 @@
+package org.overworld.metre.score;
+
+import java.util.Collections;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+import org.overworld.metre.metric.MetricDescriptor;
+import org.overworld.metre.metric.MetricSample;
+import org.overworld.metre.metric.MetricSlice;
+import org.overworld.metre.process.JMeterResult;
+
+/**
+ * Makes score cards for tests from the results of JMeter alone, with a single
+ * slice of the metrics that a card reads from the target
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+public final class ScoreCards {
+
+    /**
+     * @param jvmArgs
+     *            the combination of JVM parameters run
+     * @param runNumber
+     *            the number of the run
+     * @param runtime
+     *            the runtime in s, which the score is the inverse of
+     * @param errors
+     *            the number of failed tests, which score the run 0
+     * @param pruned
+     *            the reason the run was stopped early, or null if it was not
+     * @return the score card
+     */
+    public static ScoreCard card(final String jvmArgs, final int runNumber,
+        final double runtime, final int errors, final String pruned) {
+
+        final MetricSlice slice = new MetricSlice();
+        slice.setTime(0);
+        slice.add(new MetricSample(new MetricDescriptor("java.lang",
+            "OperatingSystem", null, "ProcessCpuTime", Long.class), 0L));
+        slice.add(new MetricSample(new MetricDescriptor("java.lang",
+            "OperatingSystem", null, "ProcessCpuLoad", Double.class), 0d));
+        slice.add(new MetricSample(new MetricDescriptor("java.lang", "Memory",
+            null, "HeapMemoryUsage", CompositeDataSupport.class), usage()));
+        slice.add(new MetricSample(new MetricDescriptor("java.lang", "Memory",
+            null, "NonHeapMemoryUsage", CompositeDataSupport.class), usage()));
+
+        return new ScoreCard(Collections.singletonList(slice),
+            new JMeterResult("100", Double.toString(runtime), "0", "0", "0",
+                "0", Integer.toString(errors), "0"), jvmArgs, runNumber,
+            pruned);
+    }
+
+    /**
+     * @param jvmArgs
+     *            the combination of JVM parameters run
+     * @param runNumber
+     *            the number of the run
+     * @param runtime
+     *            the runtime in s, which the score is the inverse of
+     * @return the score card of a run that completed without errors
+     */
+    public static ScoreCard card(final String jvmArgs, final int runNumber,
+        final double runtime) {
+
+        return card(jvmArgs, runNumber, runtime, 0, null);
+    }
+
+    /**
+     * @return a memory usage of nothing
+     */
+    private static CompositeDataSupport usage() {
+
+        try {
+
+            final CompositeType type = new CompositeType("MemoryUsage",
+                "MemoryUsage", new String[] { "used" },
+                new String[] { "used" }, new OpenType<?>[] { SimpleType.LONG });
+
+            return new CompositeDataSupport(type, new String[] { "used" },
+                new Object[] { 0L });
+        } catch (final OpenDataException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ScoreCards() {
+
+    }
+}
@@ -0,0 +1,91 @@
+package org.overworld.metre.score;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-23
+ */
+
+public class StatisticsTest {
+
+    @Test
+    public void bootstrapTest() {
+
+        final double[] interval = Statistics.bootstrapInterval(new double[] {
+            1, 2, 3, 4, 5 }, 0.05, new Random(1));
+
+        assertEquals(true, interval[0] < 3 && 3 < interval[1]);
+        assertEquals(true, interval[0] >= 1 && interval[1] <= 5);
+
+        /* values that never vary give a point */
+        final double[] point = Statistics.bootstrapInterval(new double[] { 2,
+            2, 2 }, 0.05, new Random(1));
+
+        assertEquals(2, point[0], 0);
+        assertEquals(2, point[1], 0);
+    }
+
+    @Test
+    public void incompleteBetaTest() {
+
+        /* a sum of binomial terms: 11 of 16 */
+        assertEquals(0.6875, Statistics.incompleteBeta(2, 3, 0.5), 1e-10);
+
+        /* the arcsine distribution: 2 asin(sqrt x) / pi */
+        assertEquals(1.0 / 3, Statistics.incompleteBeta(0.5, 0.5, 0.25),
+            1e-10);
+
+        /* x to the power a when b is 1 */
+        assertEquals(0.216, Statistics.incompleteBeta(3, 1, 0.6), 1e-10);
+        assertEquals(0.3, Statistics.incompleteBeta(1, 1, 0.3), 1e-10);
+
+        assertEquals(0, Statistics.incompleteBeta(2, 3, 0), 0);
+        assertEquals(1, Statistics.incompleteBeta(2, 3, 1), 0);
+    }
+
+    @Test
+    public void logGammaTest() {
+
+        assertEquals(Math.log(24), Statistics.logGamma(5), 1e-10);
+        assertEquals(Math.log(Math.sqrt(Math.PI)), Statistics.logGamma(0.5),
+            1e-10);
+    }
+
+    @Test
+    public void summaryTest() {
+
+        final double[] values = { 4, 1, 3, 2 };
+
+        assertEquals(2.5, Statistics.mean(values), 0);
+        assertEquals(2.5, Statistics.median(values), 0);
+        assertEquals(5.0 / 3, Statistics.variance(values), 1e-12);
+        assertEquals(3, Statistics.median(new double[] { 5, 1, 3 }), 0);
+        assertEquals(0, Statistics.mean(new double[0]), 0);
+        assertEquals(0, Statistics.variance(new double[] { 7 }), 0);
+    }
+
+    @Test
+    public void welchTest() {
+
+        /* t of 2 on 8 degrees of freedom */
+        assertEquals(0.0805, Statistics.welchTest(new double[] { 1, 2, 3, 4,
+            5 }, new double[] { 3, 4, 5, 6, 7 }), 1e-4);
+
+        /* on 2 degrees of freedom p is 1 - sqrt(t^2 / (2 + t^2)) */
+        assertEquals(1 - Math.sqrt(9.0 / 13), Statistics.welchTest(
+            new double[] { 1, 3 }, new double[] { 4, 6 }), 1e-10);
+
+        assertEquals(1, Statistics.welchTest(new double[] { 1, 2, 3 },
+            new double[] { 1, 2, 3 }), 1e-10);
+        assertEquals(1, Statistics.welchTest(new double[] { 1 }, new double[] {
+            5, 6 }), 0);
+        assertEquals(0, Statistics.welchTest(new double[] { 1, 1 },
+            new double[] { 2, 2 }), 0);
+    }
+}
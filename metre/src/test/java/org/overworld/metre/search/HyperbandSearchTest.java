@@ -0,0 +1,132 @@
+package org.overworld.metre.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.overworld.metre.config.ConfigRoot;
+import org.overworld.metre.config.StaticParameters;
+import org.overworld.metre.config.StringListParameter;
+import org.overworld.metre.score.ScoreCards;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+
+public class HyperbandSearchTest {
+
+    /**
+     * @param values
+     *            the number of values of the one parameter
+     * @return a space of one section of one parameter
+     */
+    private static SearchSpace space(final int values) {
+
+        final String[] threads = new String[values];
+
+        for (int i = 0; i < values; i++) {
+            threads[i] = "-XX:ParallelGCThreads=" + (i + 1);
+        }
+
+        final StaticParameters parallel = new StaticParameters(
+            "-XX:+UseParallelGC", "Parallel");
+        parallel.setDynamics(Collections.singletonList(new StringListParameter(
+            "ParallelGCThreads", threads, "Threads")));
+
+        final ConfigRoot config = new ConfigRoot();
+        config.setStatics(Collections.singletonList(parallel));
+
+        return new SearchSpace(config);
+    }
+
+    /**
+     * Runs a search to the end, reporting each run as soon as it is issued
+     * with a runtime that depends on the combination
+     *
+     * @param search
+     *            the search
+     * @return the combinations run, in order
+     */
+    private static List<Candidate> run(final SearchStrategy search) {
+
+        final List<Candidate> result = new ArrayList<>();
+        Candidate candidate;
+
+        while ((candidate = search.next()) != null) {
+
+            result.add(candidate);
+            search.report(candidate, ScoreCards.card(candidate.getArguments(),
+                result.size(), 10 + candidate.getChoices()[0]));
+        }
+
+        assertEquals(0, search.getPending());
+
+        return result;
+    }
+
+    @Test
+    public void budgetTest() {
+
+        final HyperbandSearch search = new HyperbandSearch(space(100), 50,
+            new Random(1));
+
+        assertEquals(50, search.getPlanned());
+        assertEquals(50, run(search).size());
+        assertNull(search.next());
+    }
+
+    @Test
+    public void plannedTest() {
+
+        final HyperbandSearch search = new HyperbandSearch(space(100), 0,
+            new Random(1));
+
+        /* brackets of 9 run once, 5 run 3 times and 3 run 9 times */
+        assertEquals(69, search.getPlanned());
+        assertEquals(69, run(search).size());
+        assertEquals(69, search.getIssued());
+    }
+
+    @Test
+    public void plannedSmallTest() {
+
+        /* spaces too small for a round of the brackets, with budgets or not */
+        for (int values = 1; values <= 30; values++) {
+            for (final int budget : new int[] { 0, 10, 50, 200 }) {
+
+                final HyperbandSearch search = new HyperbandSearch(
+                    space(values), budget, new Random(values));
+                final long planned = search.getPlanned();
+
+                assertEquals("Space of " + values + " with budget " + budget,
+                    planned, run(search).size());
+            }
+        }
+    }
+
+    @Test
+    public void promotionTest() {
+
+        final List<Candidate> runs = run(new HyperbandSearch(space(100), 0,
+            new Random(1)));
+
+        /* the first bracket promotes the fastest third of its nine */
+        final List<Candidate> first = new ArrayList<>(runs.subList(0, 9));
+        first.sort((a, b) -> a.getChoices()[0] - b.getChoices()[0]);
+
+        for (final Candidate candidate : runs.subList(9, 15)) {
+            assertEquals(true, first.subList(0, 3).contains(candidate));
+        }
+
+        for (final Candidate candidate : runs.subList(15, 21)) {
+            assertEquals(first.get(0), candidate);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.overworld.metre.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.overworld.metre.config.BoolParameter;
+import org.overworld.metre.config.ConfigRoot;
+import org.overworld.metre.config.IntegralStepParameter;
+import org.overworld.metre.config.Parameter;
+import org.overworld.metre.config.StaticParameters;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016-05-09
+ */
+
+public class SearchSpaceTest {
+
+    /**
+     * The combinations of the space, in the order they are numbered
+     */
+    private static final List<String> EXPANSIONS = Arrays.asList(
+        "-XX:+UseSerialGC -XX:-UseStringDeduplication",
+        "-XX:+UseSerialGC -XX:+UseStringDeduplication",
+        "-XX:+UseG1GC -XX:InitiatingHeapOccupancyPercent=30 -XX:-UseStringDeduplication",
+        "-XX:+UseG1GC -XX:InitiatingHeapOccupancyPercent=30 -XX:+UseStringDeduplication",
+        "-XX:+UseG1GC -XX:InitiatingHeapOccupancyPercent=60 -XX:-UseStringDeduplication",
+        "-XX:+UseG1GC -XX:InitiatingHeapOccupancyPercent=60 -XX:+UseStringDeduplication",
+        "-XX:+UseG1GC -XX:InitiatingHeapOccupancyPercent=90 -XX:-UseStringDeduplication",
+        "-XX:+UseG1GC -XX:InitiatingHeapOccupancyPercent=90 -XX:+UseStringDeduplication");
+
+    private static List<String> arguments(final SearchSpace space) {
+
+        final List<String> result = new ArrayList<>();
+
+        for (final Candidate candidate : space) {
+            result.add(candidate.getArguments());
+        }
+
+        return result;
+    }
+
+    /**
+     * @return a space of a section without dynamics and one with a single
+     *         dynamic, sharing one boolean between them
+     */
+    private static SearchSpace space() {
+
+        final StaticParameters serial = new StaticParameters(
+            "-XX:+UseSerialGC", "Serial");
+
+        final StaticParameters g1 = new StaticParameters("-XX:+UseG1GC", "G1");
+        g1.setDynamics(Collections.<Parameter> singletonList(
+            new IntegralStepParameter("InitiatingHeapOccupancyPercent", 30,
+                90, 30, "Occupancy")));
+
+        final ConfigRoot config = new ConfigRoot();
+        config.setDynamics(Collections.<Parameter> singletonList(
+            new BoolParameter("UseStringDeduplication", false, "Dedup")));
+        config.setStatics(Arrays.asList(serial, g1));
+
+        return new SearchSpace(config);
+    }
+
+    @Test
+    public void getTest() {
+
+        final SearchSpace space = space();
+
+        assertEquals(EXPANSIONS.size(), space.size());
+
+        for (int i = 0; i < EXPANSIONS.size(); i++) {
+            assertEquals(EXPANSIONS.get(i), space.get(i).getArguments());
+        }
+
+        try {
+
+            space.get(EXPANSIONS.size());
+            fail("Expected no combination past the last");
+        } catch (final IndexOutOfBoundsException e) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void iteratorTest() {
+
+        assertEquals(EXPANSIONS, arguments(space()));
+    }
+
+    @Test
+    public void sampleTest() {
+
+        final ConfigRoot config = new ConfigRoot();
+        config.setStatics(Collections.singletonList(new StaticParameters(
+            "-XX:+UseSerialGC", "Serial")));
+
+        final SearchSpace single = new SearchSpace(config);
+        final Random random = new Random(1);
+
+        assertEquals(1, single.size());
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("-XX:+UseSerialGC", single.sample(random)
+                .getArguments());
+        }
+
+        /* a shard of one combination samples only that */
+        final SearchSpace shard = space().shard(5, 8);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(EXPANSIONS.get(5), shard.sample(random)
+                .getArguments());
+        }
+    }
+
+    @Test
+    public void shardTest() {
+
+        final SearchSpace space = space();
+
+        for (int count = 1; count <= 10; count++) {
+
+            final List<String> union = new ArrayList<>();
+            long first = 0;
+
+            for (int index = 0; index < count; index++) {
+
+                final SearchSpace shard = space.shard(index, count);
+
+                /* the shards are consecutive and near equal */
+                assertEquals(first, shard.getFirst());
+                assertEquals(true, Math.abs(shard.size() - space.size()
+                    / count) <= 1);
+
+                union.addAll(arguments(shard));
+                first += shard.size();
+            }
+
+            assertEquals(EXPANSIONS, union);
+        }
+    }
+}
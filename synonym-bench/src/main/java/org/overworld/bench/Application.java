@@ -0,0 +1,71 @@
+package org.overworld.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The main class of the benchmarks, which runs them once for each of a list
+ * of thread counts with the GC profiler, so that allocation is reported
+ * beside throughput, and writes the results of each run as JSON for Compare.
+ * <p/>
+ * The arguments are those of JMH itself, for instance a regular expression
+ * selecting benchmarks or -p words=64 to fix a parameter. Two system
+ * properties are also read:
+ * <ul>
+ * <li>bench.threads - the thread counts to run, comma separated, 1 and the
+ * number of cores by default</li>
+ * <li>bench.results - the directory the results are written to, as
+ * threads-N.json, ./jmh-results by default</li>
+ * </ul>
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class Application {
+
+    /**
+     * @param args
+     *            the JMH command line
+     * @throws CommandLineOptionException
+     *             if the command line is not understood by JMH
+     * @throws IOException
+     *             if the results directory cannot be created
+     * @throws RunnerException
+     *             if a benchmark fails
+     */
+    public static void main(final String[] args)
+        throws CommandLineOptionException, IOException, RunnerException {
+
+        final CommandLineOptions options = new CommandLineOptions(args);
+
+        final Path results = Paths.get(System.getProperty("bench.results",
+            "jmh-results"));
+        Files.createDirectories(results);
+
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final String threads = System.getProperty("bench.threads",
+            cores > 1 ? "1," + cores : "1");
+
+        for (final String count : threads.split(",")) {
+
+            final int n = Integer.parseInt(count.trim());
+
+            new Runner(new OptionsBuilder().parent(options).threads(n)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.resolve("threads-" + n + ".json").toString())
+                .build()).run();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.overworld.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two JSON result files written by the benchmarks, typically of two
+ * releases, printing the change in throughput and in allocation per
+ * operation of every benchmark they share. Exits with status 1 if any has
+ * regressed by more than a threshold, so that it can fail a build.
+ * <p/>
+ * Usage: Compare old.json new.json [threshold percent, 5 by default]
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class Compare {
+
+    /**
+     * The suffix of the name of the GC profiler's allocation per operation
+     */
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    /**
+     * @param run
+     *            a result
+     * @return the bytes allocated per operation, or NaN if not profiled
+     */
+    static double allocation(final JsonNode run) {
+
+        final Iterator<Map.Entry<String, JsonNode>> metrics = run.path(
+            "secondaryMetrics").fields();
+
+        while (metrics.hasNext()) {
+
+            final Map.Entry<String, JsonNode> metric = metrics.next();
+
+            if (metric.getKey().endsWith(ALLOCATION))
+                return metric.getValue().path("score").asDouble();
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * @param args
+     *            the old results, the new results and optionally the
+     *            threshold in percent
+     * @throws IOException
+     *             if either file cannot be read or parsed
+     */
+    public static void main(final String[] args) throws IOException {
+
+        if (args.length < 2) {
+
+            System.err.println("Usage: Compare old.json new.json [threshold%]");
+            System.exit(2);
+        }
+
+        final Map<String, JsonNode> before = read(new File(args[0]));
+        final Map<String, JsonNode> after = read(new File(args[1]));
+        final double threshold = args.length > 2 ? Double.parseDouble(args[2])
+            / 100 : 0.05;
+
+        boolean regressed = false;
+
+        System.out.println(String.format("%-80s %14s %14s %8s %10s %10s",
+            "benchmark", "before", "after", "change", "B/op was", "B/op now"));
+
+        for (final Map.Entry<String, JsonNode> entry : after.entrySet()) {
+
+            final JsonNode old = before.get(entry.getKey());
+
+            if (old == null)
+                continue;
+
+            final double was = old.path("primaryMetric").path("score")
+                .asDouble();
+            final double now = entry.getValue().path("primaryMetric")
+                .path("score").asDouble();
+            final double change = (now - was) / was;
+
+            final double allocatedWas = allocation(old);
+            final double allocatedNow = allocation(entry.getValue());
+
+            /* throughput falling or allocation rising is a regression */
+            final boolean worse = change < -threshold
+                || allocatedNow > allocatedWas * (1 + threshold) + 1;
+
+            regressed |= worse;
+
+            System.out.println(String.format(
+                "%-80s %14.1f %14.1f %+7.1f%% %10.1f %10.1f%s", entry.getKey(),
+                was, now, change * 100, allocatedWas, allocatedNow,
+                worse ? "  REGRESSED" : ""));
+        }
+
+        System.exit(regressed ? 1 : 0);
+    }
+
+    /**
+     * @param file
+     *            a JMH result file in JSON
+     * @return the results in the file, by benchmark and parameters
+     * @throws IOException
+     *             if the file cannot be read or parsed
+     */
+    static Map<String, JsonNode> read(final File file) throws IOException {
+
+        final Map<String, JsonNode> result = new LinkedHashMap<>();
+
+        for (final JsonNode run : new ObjectMapper().readTree(file)) {
+
+            final StringBuilder key = new StringBuilder(run.path("benchmark")
+                .asText());
+
+            final Iterator<Map.Entry<String, JsonNode>> params = run.path(
+                "params").fields();
+
+            while (params.hasNext()) {
+
+                final Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=')
+                    .append(param.getValue().asText());
+            }
+
+            key.append(" threads=").append(run.path("threads").asInt());
+
+            result.put(key.toString(), run);
+        }
+
+        return result;
+    }
+}
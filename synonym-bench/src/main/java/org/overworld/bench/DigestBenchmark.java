@@ -0,0 +1,135 @@
+package org.overworld.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.overworld.example.webservice.engine.BSDSum;
+import org.overworld.example.webservice.engine.BatchDigester;
+import org.overworld.example.webservice.engine.MD5Sum;
+
+/**
+ * The digest functions, alone, on texts of several sizes. Each operation is
+ * one attempt, so the score is attempts per second at the digest stage.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestBenchmark {
+
+    /**
+     * The number of texts in a batch, as MD5Sum batches them
+     */
+    private static final int LANES = 8;
+
+    /**
+     * A batch seeking a digest no text has
+     */
+    private BatchDigester.Batch batch;
+
+    /**
+     * The BSD digest
+     */
+    private final BSDSum bsd = new BSDSum();
+
+    /**
+     * The length in UTF-16 chars of the text
+     */
+    private int chars;
+
+    /**
+     * The length in bytes of the text, in every lane
+     */
+    private int[] lengths;
+
+    /**
+     * The MD5 digest
+     */
+    private final MD5Sum md5 = new MD5Sum();
+
+    /**
+     * The text
+     */
+    private String text;
+
+    /**
+     * The UTF-8 encoding of the text
+     */
+    private byte[] utf8;
+
+    /**
+     * The encoded text in every lane
+     */
+    private byte[][] utf8s;
+
+    /**
+     * The number of words in the text
+     */
+    @Param({ "8", "64", "512" })
+    public int words;
+
+    @Benchmark
+    public String bsd() {
+
+        return this.bsd.digest(this.utf8, this.utf8.length, this.chars);
+    }
+
+    @Benchmark
+    public String bsdString() {
+
+        return this.bsd.apply(this.text);
+    }
+
+    @Benchmark
+    public String md5() {
+
+        return this.md5.digest(this.utf8, this.utf8.length, this.chars);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LANES)
+    public int md5Batch() {
+
+        return this.batch.find(this.utf8s, this.lengths, LANES);
+    }
+
+    @Benchmark
+    public String md5String() {
+
+        return this.md5.apply(this.text);
+    }
+
+    @Setup
+    public void setup() {
+
+        this.text = Texts.text(this.words);
+        this.chars = this.text.length();
+        this.utf8 = this.text.getBytes(StandardCharsets.UTF_8);
+
+        this.utf8s = new byte[LANES][];
+        Arrays.fill(this.utf8s, this.utf8);
+        this.lengths = new int[LANES];
+        Arrays.fill(this.lengths, this.utf8.length);
+
+        this.batch = this.md5.newBatch("00000000000000000000000000000000");
+    }
+}
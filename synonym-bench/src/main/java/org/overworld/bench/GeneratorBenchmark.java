@@ -0,0 +1,182 @@
+package org.overworld.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.overworld.example.webservice.engine.BatchDigester;
+import org.overworld.example.webservice.engine.CompactGenerator;
+import org.overworld.example.webservice.engine.MD5Sum;
+import org.overworld.example.webservice.engine.RandomisedCombinationIterator;
+import org.overworld.example.webservice.engine.TokenizedText;
+
+/**
+ * The stages of a search other than digesting: preparing the generator from
+ * the synonyms, stepping the iterator and rendering the text of each state.
+ * Except for prepare, each operation is one attempt.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    /**
+     * The number of texts in a batch, as MD5Sum batches them
+     */
+    private static final int LANES = 8;
+
+    /**
+     * A batch seeking a digest no text has
+     */
+    private BatchDigester.Batch batch;
+
+    /**
+     * The buffer texts are rendered into
+     */
+    private byte[] buffer;
+
+    /**
+     * The buffer of each lane of the batch
+     */
+    private byte[][] buffers;
+
+    /**
+     * The number of candidates of each word
+     */
+    @Param({ "2", "8", "32" })
+    public int fanout;
+
+    /**
+     * The generator of the texts
+     */
+    private CompactGenerator generator;
+
+    /**
+     * The iterator over the generator, replaced when exhausted
+     */
+    private RandomisedCombinationIterator iter;
+
+    /**
+     * The length in bytes of the text in each lane of the batch
+     */
+    private int[] lengths;
+
+    /**
+     * The MD5 digest
+     */
+    private final MD5Sum md5 = new MD5Sum();
+
+    /**
+     * The text the generator varies
+     */
+    private TokenizedText text;
+
+    /**
+     * The number of words in the text
+     */
+    @Param({ "16", "64", "256" })
+    public int words;
+
+    /**
+     * Whole attempts of a local search for an MD5 digest, rendering a state
+     * into each lane and digesting the lanes together as SeekTask does
+     *
+     * @return the lane that matched, which none ever does
+     */
+    @Benchmark
+    @OperationsPerInvocation(LANES)
+    public int attempt() {
+
+        for (int lane = 0; lane < LANES; lane++) {
+            this.lengths[lane] = this.generator.render(this.next(),
+                this.buffers[lane]);
+        }
+
+        return this.batch.find(this.buffers, this.lengths, LANES);
+    }
+
+    /**
+     * @return the next state of the iterator, starting over once exhausted
+     */
+    private int[] next() {
+
+        try {
+
+            return this.iter.next();
+        } catch (final IndexOutOfBoundsException e) {
+
+            this.iter = new RandomisedCombinationIterator(
+                this.generator.lengths());
+            return this.iter.next();
+        }
+    }
+
+    @Benchmark
+    public int[] nextState() {
+
+        return this.next();
+    }
+
+    /**
+     * Builds the generator as SeekTask.prepare does once synonyms are fetched
+     *
+     * @return the generator
+     */
+    @Benchmark
+    public CompactGenerator prepare() {
+
+        return Texts.generator(this.text, this.fanout);
+    }
+
+    /**
+     * Renders a state into the buffer, as the search loop does
+     *
+     * @return the number of bytes rendered
+     */
+    @Benchmark
+    public int render() {
+
+        return this.generator.render(this.next(), this.buffer);
+    }
+
+    @Setup
+    public void setup() {
+
+        this.text = Texts.tokenized(this.words);
+        this.generator = Texts.generator(this.text, this.fanout);
+        this.iter = new RandomisedCombinationIterator(this.generator.lengths());
+        this.buffer = new byte[this.generator.maxBytes()];
+        this.buffers = new byte[LANES][this.generator.maxBytes()];
+        this.lengths = new int[LANES];
+        this.batch = this.md5.newBatch("00000000000000000000000000000000");
+    }
+
+    /**
+     * Builds the text of a state as a String, as the search did before it
+     * rendered into a buffer and as the journal and results still do
+     *
+     * @return the text
+     */
+    @Benchmark
+    public String text() {
+
+        return this.generator.text(this.next());
+    }
+}
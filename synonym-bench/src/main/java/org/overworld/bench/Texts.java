@@ -0,0 +1,101 @@
+package org.overworld.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.overworld.example.webservice.engine.CompactGenerator;
+import org.overworld.example.webservice.engine.TokenPool;
+import org.overworld.example.webservice.engine.TokenizedText;
+
+/**
+ * Synthetic texts and synonyms, the same on every run so that results of
+ * different releases compare like with like
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+final class Texts {
+
+    /**
+     * The words texts are made of, of varied length and including non-ASCII
+     * characters so that UTF-8 encoding is exercised
+     */
+    private static final String[] VOCABULARY = { "The", "quick", "brown",
+        "fox", "jumps", "over", "the", "lazy", "dog", "while", "a",
+        "na\u00efve", "caf\u00e9", "owner", "watches", "patiently",
+        "from", "behind", "counter" };
+
+    /**
+     * @param word
+     *            a word
+     * @param fanout
+     *            the number of candidates wanted
+     * @return the word followed by fanout - 1 synthetic synonyms of it of
+     *         varying length
+     */
+    static List<String> candidates(final String word, final int fanout) {
+
+        final List<String> result = new ArrayList<>(fanout);
+        result.add(word);
+
+        for (int i = 1; i < fanout; i++) {
+            result.add(word.substring(0, 1 + i % word.length()) + "syn" + i);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param text
+     *            a text
+     * @param fanout
+     *            the number of candidates of each word
+     * @return a generator for the text with fanout candidates at every word,
+     *         as SeekTask prepares one from fetched synonyms
+     */
+    static CompactGenerator generator(final TokenizedText text,
+        final int fanout) {
+
+        final CompactGenerator result = new CompactGenerator(text);
+
+        for (int i = 0; i < text.words(); i++) {
+            result.add(candidates(text.word(i), fanout));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param words
+     *            the number of words wanted
+     * @return a sentence of that many words
+     */
+    static String text(final int words) {
+
+        final StringBuilder result = new StringBuilder();
+
+        for (int i = 0; i < words; i++) {
+
+            if (i > 0)
+                result.append(i % 7 == 0 ? ", " : " ");
+
+            result.append(VOCABULARY[i % VOCABULARY.length]);
+        }
+
+        return result.append('.').toString();
+    }
+
+    /**
+     * @param words
+     *            the number of words wanted
+     * @return a sentence of that many words, tokenized into the shared pool
+     */
+    static TokenizedText tokenized(final int words) {
+
+        return TokenizedText.of(text(words), TokenPool.shared());
+    }
+
+    private Texts() {
+    }
+}
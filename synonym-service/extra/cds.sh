@@ -0,0 +1,66 @@
+#!/bin/sh
+#
+# Builds a class data sharing archive of the classes the fast-start jar loads
+# on its way to ready, so that later starts map them from the archive rather
+# than loading, parsing and verifying each one again.
+#
+# Usage: [JAVA=/path/to/bin/java] cds.sh target/fast/synonym-service-1.0.0-fast.jar
+#
+# An archive is only usable by the JVM that dumped it and only with the same
+# class path, so run this with the java that metre's targetOptions name and
+# launch the jar from its own directory as ./<jar>, as metre-workplace does.
+# Alongside the jar this leaves <jar>.jsa, the archive, and <jar>.jvmopts,
+# the options that use it, which metre adds to the launch command itself.
+#
+# Java 8 needs Oracle's JDK, whose AppCDS is a commercial feature; later
+# JDKs have it built in.
+
+set -e
+
+JAVA=${JAVA:-java}
+DIR=$(dirname "$1")
+JAR=$(basename "$1")
+BASE=${JAR%.jar}
+
+case $("$JAVA" -version 2>&1 | head -1) in
+    *\"1.8*) UNLOCK="-XX:+UnlockCommercialFeatures -XX:+UseAppCDS" ;;
+    *\"9*|*\"10*) UNLOCK="-XX:+UseAppCDS" ;;
+    *) UNLOCK="" ;;
+esac
+
+cd "$DIR"
+rm -rf training-journal "$BASE.classlist" "$BASE.jsa" "$BASE.jvmopts"
+
+# a training run records the classes loaded up to the ready line
+
+"$JAVA" $UNLOCK -Xshare:off -XX:DumpLoadedClassList="$BASE.classlist" \
+    -Dspring.profiles.active=fast -Dserver.port=0 \
+    -Dengine.journal.dir=training-journal -jar "./$JAR" > training.log 2>&1 &
+PID=$!
+
+WAITED=0
+until grep -q "Started Application" training.log; do
+
+    if ! kill -0 $PID 2>/dev/null || [ $WAITED -ge 120 ]; then
+        kill $PID 2>/dev/null || true
+        echo "Training run did not start, see $DIR/training.log" >&2
+        exit 1
+    fi
+
+    sleep 1
+    WAITED=$((WAITED + 1))
+done
+
+kill $PID
+wait $PID || true
+rm -rf training-journal
+
+# the archive is dumped from the list with the same class path
+
+"$JAVA" $UNLOCK -Xshare:dump -XX:SharedClassListFile="$BASE.classlist" \
+    -XX:SharedArchiveFile="$BASE.jsa" -cp "./$JAR"
+
+echo "$UNLOCK -Xshare:auto -XX:SharedArchiveFile=$BASE.jsa -Dspring.profiles.active=fast" \
+    > "$BASE.jvmopts"
+
+echo "Wrote $DIR/$BASE.jsa and $DIR/$BASE.jvmopts"
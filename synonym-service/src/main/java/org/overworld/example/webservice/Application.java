@@ -1,7 +1,14 @@
 package org.overworld.example.webservice;
 
+import java.lang.management.ManagementFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
 
 /**
  * @author Stephen Lennon stephen@overworld.org
@@ -12,8 +19,28 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 @SpringBootApplication
 public class Application {
 
+    private static final Log LOG = LogFactory.getLog(Application.class);
+
+    /**
+     * @return the post processor that makes beans lazy, if service.lazyInit
+     *         is set, as it is by the fast profile
+     */
+    @Bean
+    @ConditionalOnProperty("service.lazyInit")
+    public static LazyInitPostProcessor lazyInitPostProcessor() {
+
+        return new LazyInitPostProcessor();
+    }
+
     public static void main(final String[] args) {
 
-        SpringApplication.run(Application.class, args);
+        final ConfigurableApplicationContext context = SpringApplication.run(
+            Application.class, args);
+
+        /* the time to ready includes the JVM's own start and the warm-up */
+        LOG.info("Ready in " + ManagementFactory.getRuntimeMXBean().getUptime()
+            + "ms since the JVM started, having created "
+            + context.getBeanFactory().getSingletonCount() + " of "
+            + context.getBeanDefinitionCount() + " beans");
     }
 }
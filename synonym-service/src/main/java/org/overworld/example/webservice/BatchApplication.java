@@ -0,0 +1,119 @@
+package org.overworld.example.webservice;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.overworld.example.webservice.engine.SeekPipeline;
+import org.overworld.example.webservice.engine.SeekTask;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+
+/**
+ * Runs a batch of jobs through the engine without the web tier, reading them
+ * from NDJSON and writing each result as NDJSON as soon as it is found, then
+ * reporting the throughput of the whole batch.
+ * <p/>
+ * Usage: BatchApplication jobs.ndjson|- results.ndjson|- [--property=value]
+ * <p/>
+ * From the packaged jar, run it with Boot's PropertiesLauncher, as in java
+ * -cp synonym-service-1.0.0.jar -Dloader.main=&lt;this class&gt;
+ * org.springframework.boot.loader.PropertiesLauncher, or from the plain jar
+ * of the fast build directly.
+ * <p/>
+ * Each job is a line such as {"id": 7, "text": "...", "digest": "...",
+ * "algorithm": "md5"}, where the id is echoed back as given and the algorithm
+ * is md5, the default, or bsd. A job may also give a "timeout" in ms and a
+ * budget of "attempts". Each result is a line such as {"id": 7, "status":
+ * "found", "result": "...", "ms": 12}, the status being one of found,
+ * exhausted, budget-exhausted, failed or invalid; a job out of budget also
+ * gives the attempts it made and the coverage of its space.
+ * <p/>
+ * Only the engine is started, under the batch profile, which turns off the
+ * journal and quietens logging. The tasks are the same SeekTasks on the same
+ * pipeline as the service runs, with the search stage sized to the cores.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+@Configuration
+@ComponentScan(basePackageClasses = SeekTask.class)
+public class BatchApplication {
+
+    /**
+     * @param args
+     *            the jobs file, the results file, each - for the standard
+     *            streams, and any properties to override
+     * @throws IOException
+     *             if the jobs cannot be read or the results written
+     * @throws InterruptedException
+     *             if interrupted while waiting for jobs to finish
+     */
+    public static void main(final String[] args) throws IOException,
+        InterruptedException {
+
+        final List<String> files = Arrays.stream(args)
+            .filter(arg -> !arg.startsWith("--")).collect(Collectors.toList());
+
+        if (files.size() != 2) {
+
+            System.err.println("Usage: BatchApplication jobs.ndjson|- "
+                + "results.ndjson|- [--property=value]");
+            System.exit(2);
+        }
+
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(
+            BatchApplication.class).web(false).bannerMode(Banner.Mode.OFF)
+            .profiles("batch").run(args);
+
+        try (InputStream in = files.get(0).equals("-") ? System.in
+            : new FileInputStream(files.get(0));
+            OutputStream out = files.get(1).equals("-") ? System.out
+                : new FileOutputStream(files.get(1))) {
+
+            final BatchRun batch = new BatchRun(
+                context.getBean(SeekPipeline.class),
+                context.getAutowireCapableBeanFactory(),
+                context.getEnvironment().getProperty("batch.inFlight",
+                    Integer.class, 256));
+
+            batch.run(new BufferedReader(new InputStreamReader(in,
+                StandardCharsets.UTF_8)), new OutputStreamWriter(out,
+                StandardCharsets.UTF_8));
+
+            System.err.println(batch.summary());
+        } finally {
+
+            context.getBean(SeekPipeline.class).shutdown(1000);
+            context.close();
+        }
+    }
+
+    /**
+     * A bean for the resolution of @Value placeholders, as the engine is
+     * started without auto-configuration
+     *
+     * @return the configurer
+     */
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer placeholders() {
+
+        return new PropertySourcesPlaceholderConfigurer();
+    }
+}
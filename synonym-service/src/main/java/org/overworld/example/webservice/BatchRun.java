@@ -0,0 +1,327 @@
+package org.overworld.example.webservice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.overworld.example.webservice.engine.BudgetExhaustedException;
+import org.overworld.example.webservice.engine.DigestFormat;
+import org.overworld.example.webservice.engine.Digesters;
+import org.overworld.example.webservice.engine.SeekPipeline;
+import org.overworld.example.webservice.engine.SeekTask;
+import org.overworld.example.webservice.engine.TokenPool;
+import org.overworld.example.webservice.engine.TokenizedText;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A batch of jobs read from NDJSON and run on the pipeline, each result being
+ * written as NDJSON as soon as its job finishes. Jobs are read only as fast
+ * as they are run, so a batch of any size is held in memory only a slot's
+ * worth at a time.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+class BatchRun {
+
+    /**
+     * The reader of jobs and writer of results
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * @param algorithm
+     *            the name of a digest, or null for md5
+     * @return the digest function
+     * @throws IllegalArgumentException
+     *             if there is no digest by that name
+     */
+    private static Function<String, String> digester(final String algorithm)
+        throws IllegalArgumentException {
+
+        return Digesters.forName(algorithm == null ? Digesters.MD5
+            : algorithm);
+    }
+
+    /**
+     * The factory that wires tasks into the engine
+     */
+    private final AutowireCapableBeanFactory beanFactory;
+
+    /**
+     * The system time in ms when the batch started, or 0
+     */
+    private long began;
+
+    /**
+     * The number of jobs that ran out of time or attempts
+     */
+    private final LongAdder budgeted = new LongAdder();
+
+    /**
+     * The system time in ms when the batch finished, or 0
+     */
+    private long ended;
+
+    /**
+     * The number of jobs that exhausted their space without a match
+     */
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * The number of jobs that raised an error
+     */
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * The number of jobs whose text was found
+     */
+    private final LongAdder found = new LongAdder();
+
+    /**
+     * The number of jobs in the engine at once
+     */
+    private final int inFlight;
+
+    /**
+     * The number of jobs that could not be read or had a malformed digest
+     */
+    private final LongAdder invalid = new LongAdder();
+
+    /**
+     * The pipeline that runs the tasks
+     */
+    private final SeekPipeline pipeline;
+
+    /**
+     * Permits for the jobs that may be in the engine at once, so that a large
+     * batch is read only as fast as it is run
+     */
+    private final Semaphore slots;
+
+    /**
+     * The generator of results, guarded by itself
+     */
+    private JsonGenerator writer;
+
+    /**
+     * @param pipeline
+     *            the pipeline that runs the tasks
+     * @param beanFactory
+     *            the factory that wires tasks into the engine
+     * @param inFlight
+     *            the number of jobs in the engine at once
+     */
+    BatchRun(final SeekPipeline pipeline,
+        final AutowireCapableBeanFactory beanFactory, final int inFlight) {
+
+        this.pipeline = pipeline;
+        this.beanFactory = beanFactory;
+        this.inFlight = inFlight;
+        this.slots = new Semaphore(inFlight);
+    }
+
+    /**
+     * Writes the outcome of a job and releases its slot
+     *
+     * @param id
+     *            the id of the job as given
+     * @param status
+     *            the outcome
+     * @param result
+     *            the matching text, if found
+     * @param error
+     *            the error, if any
+     * @param budget
+     *            the budget exhausted, if any
+     * @param started
+     *            the system time in ms when the job was submitted
+     */
+    private void done(final JsonNode id, final String status,
+        final String result, final String error,
+        final BudgetExhaustedException budget, final long started) {
+
+        try {
+
+            synchronized (this.writer) {
+
+                this.writer.writeStartObject();
+                this.writer.writeFieldName("id");
+                this.writer.writeTree(id);
+                this.writer.writeStringField("status", status);
+
+                if (result != null)
+                    this.writer.writeStringField("result", result);
+
+                if (error != null)
+                    this.writer.writeStringField("error", error);
+
+                if (budget != null) {
+
+                    this.writer.writeNumberField("attempts", budget.getAttempts());
+                    this.writer.writeNumberField("coverage", budget.getCoverage());
+                }
+
+                this.writer.writeNumberField("ms", System.currentTimeMillis()
+                    - started);
+                this.writer.writeEndObject();
+                this.writer.writeRaw('\n');
+                this.writer.flush();
+            }
+        } catch (final IOException e) {
+
+            throw new RuntimeException("Unable to write result", e);
+        } finally {
+
+            this.slots.release();
+        }
+    }
+
+    /**
+     * Reads every job, runs it and writes its result, returning once all
+     * have finished
+     *
+     * @param jobs
+     *            the jobs, one to a line
+     * @param results
+     *            the stream to write results to, one to a line
+     * @throws IOException
+     *             if the jobs cannot be read or the results written
+     * @throws InterruptedException
+     *             if interrupted while waiting for jobs to finish
+     */
+    void run(final BufferedReader jobs, final Writer results)
+        throws IOException, InterruptedException {
+
+        this.writer = MAPPER.getFactory().createGenerator(results);
+        this.writer.setRootValueSeparator(null);
+
+        final AtomicInteger ids = new AtomicInteger();
+        this.began = System.currentTimeMillis();
+
+        String line;
+
+        while ((line = jobs.readLine()) != null) {
+
+            if (line.trim().isEmpty())
+                continue;
+
+            this.slots.acquire();
+            this.submit(line, ids.incrementAndGet());
+        }
+
+        this.slots.acquire(this.inFlight);
+        this.ended = System.currentTimeMillis();
+    }
+
+    /**
+     * Reads a job and submits it to the pipeline. The slot it holds is
+     * released once its result is written.
+     *
+     * @param line
+     *            the job
+     * @param taskId
+     *            the id of the task that runs it
+     */
+    private void submit(final String line, final int taskId) {
+
+        final long started = System.currentTimeMillis();
+
+        JsonNode id = null;
+        final SeekTask task;
+
+        try {
+
+            final JsonNode job = MAPPER.readTree(line);
+            id = job.path("id");
+
+            final JsonNode text = job.get("text");
+            final JsonNode digest = job.get("digest");
+
+            if (text == null || digest == null)
+                throw new IllegalArgumentException("A job needs text and digest");
+
+            final Function<String, String> digester = digester(job.path(
+                "algorithm").textValue());
+
+            if (digester instanceof DigestFormat
+                && !((DigestFormat) digester).isWellFormed(digest.asText()))
+                throw new IllegalArgumentException(
+                    "Not a digest of this kind: " + digest.asText());
+
+            task = new SeekTask(taskId, TokenizedText.of(text.asText(),
+                TokenPool.shared()), digest.asText(), digester,
+                new AtomicInteger());
+
+            final long timeout = job.path("timeout").asLong();
+            final long attempts = job.path("attempts").asLong();
+
+            if (timeout < 0 || attempts < 0)
+                throw new IllegalArgumentException(
+                    "A job's timeout and attempts cannot be negative");
+
+            task.setBudget(timeout > 0 ? started + timeout : 0, attempts);
+        } catch (final IOException | IllegalArgumentException e) {
+
+            this.invalid.increment();
+            this.done(id == null ? MAPPER.getNodeFactory().nullNode() : id,
+                "invalid", null, e.getMessage(), null, started);
+            return;
+        }
+
+        this.beanFactory.autowireBean(task);
+
+        final JsonNode jobId = id;
+
+        this.pipeline.submit(task, (result, error) -> {
+
+            final Throwable cause = error instanceof CompletionException
+                && error.getCause() != null ? error.getCause() : error;
+
+            if (cause instanceof BudgetExhaustedException) {
+
+                this.budgeted.increment();
+                this.done(jobId, "budget-exhausted", null, null,
+                    (BudgetExhaustedException) cause, started);
+            } else if (cause != null) {
+
+                this.failed.increment();
+                this.done(jobId, "failed", null, cause.toString(), null,
+                    started);
+            } else if (result != null) {
+
+                this.found.increment();
+                this.done(jobId, "found", result, null, null, started);
+            } else {
+
+                this.exhausted.increment();
+                this.done(jobId, "exhausted", null, null, null, started);
+            }
+        });
+    }
+
+    /**
+     * @return the counts of outcomes and the throughput of the batch
+     */
+    String summary() {
+
+        final long jobs = this.found.sum() + this.exhausted.sum()
+            + this.budgeted.sum() + this.failed.sum() + this.invalid.sum();
+        final double seconds = Math.max(this.ended - this.began, 1) / 1000.0;
+
+        return String.format("Ran %d jobs in %.1f s, %.1f jobs/s: %d found, "
+            + "%d exhausted, %d out of budget, %d failed, %d invalid", jobs,
+            seconds, jobs / seconds, this.found.sum(), this.exhausted.sum(),
+            this.budgeted.sum(), this.failed.sum(), this.invalid.sum());
+    }
+}
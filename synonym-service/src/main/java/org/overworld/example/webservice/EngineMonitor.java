@@ -0,0 +1,156 @@
+package org.overworld.example.webservice;
+
+import org.overworld.example.webservice.engine.EngineMetrics;
+import org.overworld.example.webservice.engine.PoolTuner;
+import org.overworld.example.webservice.engine.SeekPipeline;
+import org.overworld.example.webservice.engine.SynonymClient;
+import org.overworld.example.webservice.engine.WarmUp;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the state of the engine as an MBean, so that a load test sampling
+ * over JMX sees the pipeline, the tasks and the upstream service alongside
+ * the JVM. Every attribute is read from counters the engine keeps anyway, so
+ * sampling costs the engine nothing. Never lazy, as nothing else asks for it
+ * and it must be registered before the first sample.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+@Component
+@Lazy(false)
+@ManagedResource(objectName = "org.overworld.example.webservice:type=SynonymEngine", description = "Synonym search engine")
+public class EngineMonitor {
+
+    /**
+     * The controller holding the tasks
+     */
+    private @Autowired WebserviceRestController controller;
+
+    /**
+     * The counters of the work done by all tasks
+     */
+    private @Autowired EngineMetrics metrics;
+
+    /**
+     * The pipeline running the tasks
+     */
+    private @Autowired SeekPipeline pipeline;
+
+    /**
+     * The tuner sizing the stages of the pipeline
+     */
+    private @Autowired PoolTuner poolTuner;
+
+    /**
+     * The client of the upstream Synonym Service
+     */
+    private @Autowired SynonymClient synonymClient;
+
+    /**
+     * The warm-up of the JIT
+     */
+    private @Autowired WarmUp warmUp;
+
+    @ManagedAttribute(description = "Candidate texts digested")
+    public long getAttempts() {
+
+        return this.metrics.getAttempts();
+    }
+
+    @ManagedAttribute(description = "Candidate texts digested per second over the last window")
+    public double getAttemptsPerSecond() {
+
+        return this.metrics.getAttemptsPerSecond();
+    }
+
+    @ManagedAttribute(description = "Fraction of synonym lookups answered from the cache")
+    public double getCacheHitRate() {
+
+        return this.synonymClient.getCacheHitRate();
+    }
+
+    @ManagedAttribute(description = "Fetches running")
+    public int getFetchActive() {
+
+        return this.pipeline.getActiveFetches();
+    }
+
+    @ManagedAttribute(description = "Tasks waiting to be fetched")
+    public int getFetchQueued() {
+
+        return this.pipeline.getQueuedFetches();
+    }
+
+    @ManagedAttribute(description = "Threads running the fetch stage")
+    public int getFetchThreads() {
+
+        return this.pipeline.getFetchThreads();
+    }
+
+    @ManagedAttribute(description = "Tasks refused by the pipeline")
+    public long getPipelineRejected() {
+
+        return this.pipeline.getRejected();
+    }
+
+    @ManagedAttribute(description = "Searches running")
+    public int getSearchActive() {
+
+        return this.pipeline.getActiveSearches();
+    }
+
+    @ManagedAttribute(description = "Fetched tasks waiting to be searched")
+    public int getSearchQueued() {
+
+        return this.pipeline.getQueuedSearches();
+    }
+
+    @ManagedAttribute(description = "Resizings of the pipeline stages by the tuner")
+    public long getPoolResizes() {
+
+        return this.poolTuner.getResizes();
+    }
+
+    @ManagedAttribute(description = "True once the JIT has warmed up and the service is ready")
+    public boolean getReady() {
+
+        return this.warmUp.isReady();
+    }
+
+    @ManagedAttribute(description = "Threads running the search stage")
+    public int getSearchThreads() {
+
+        return this.pipeline.getSearchThreads();
+    }
+
+    @ManagedAttribute(description = "Tasks at each phase of progress, from 0 to 6")
+    public int[] getTasksByPhase() {
+
+        return this.controller.tasksByPhase();
+    }
+
+    @ManagedAttribute(description = "Upstream requests by latency, bucket n from 2^(n-1) up to 2^n ms")
+    public long[] getUpstreamLatencyHistogram() {
+
+        return this.synonymClient.getLatencyHistogram();
+    }
+
+    @ManagedAttribute(description = "Upstream requests refused by the open circuit breaker")
+    public long getUpstreamRejected() {
+
+        return this.synonymClient.getRejected();
+    }
+
+    @ManagedAttribute(description = "Time in ms taken to warm up the JIT, or -1 until done")
+    public long getWarmUpMillis() {
+
+        return this.warmUp.getDuration();
+    }
+}
@@ -0,0 +1,108 @@
+package org.overworld.example.webservice;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.jmx.export.MBeanExporter;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Makes every bean lazy unless it is annotated @Lazy(false), so that startup
+ * creates only the beans needed to serve and leaves the rest to the requests
+ * that use them. Spring Boot of this version has no setting of its own for
+ * this.
+ * <p/>
+ * Infrastructure beans are left eager, as are those that act once every
+ * singleton is created, such as the MBean exporter: made lazy they would
+ * never be created, since nothing asks for them.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class LazyInitPostProcessor implements BeanFactoryPostProcessor {
+
+    /**
+     * The types of bean that do their work when the context has created its
+     * singletons, rather than when another bean uses them
+     */
+    private static final Class<?>[] EAGER_TYPES = {
+        SmartInitializingSingleton.class, MBeanExporter.class };
+
+    /**
+     * @param definition
+     *            a bean definition
+     * @return true if the bean's class or factory method says whether it is
+     *         lazy, in which case it is left as it says
+     */
+    private static boolean declaresLazy(final BeanDefinition definition) {
+
+        if (!(definition instanceof AnnotatedBeanDefinition))
+            return false;
+
+        final AnnotatedBeanDefinition annotated = (AnnotatedBeanDefinition) definition;
+        final MethodMetadata factory = annotated.getFactoryMethodMetadata();
+
+        return factory != null ? factory.isAnnotated(Lazy.class.getName())
+            : annotated.getMetadata().isAnnotated(Lazy.class.getName());
+    }
+
+    /**
+     * @param definition
+     *            a bean definition
+     * @param classLoader
+     *            the class loader of the bean factory
+     * @return true if the bean is of a type that must be eager, false if not
+     *         or its type cannot be told without creating it
+     */
+    private static boolean eagerType(final BeanDefinition definition,
+        final ClassLoader classLoader) {
+
+        String typeName = definition.getBeanClassName();
+
+        if (definition instanceof AnnotatedBeanDefinition) {
+
+            final MethodMetadata factory = ((AnnotatedBeanDefinition) definition)
+                .getFactoryMethodMetadata();
+
+            if (factory != null)
+                typeName = factory.getReturnTypeName();
+        }
+
+        if (typeName == null || !ClassUtils.isPresent(typeName, classLoader))
+            return false;
+
+        final Class<?> type = ClassUtils.resolveClassName(typeName, classLoader);
+
+        for (final Class<?> eager : EAGER_TYPES) {
+
+            if (eager.isAssignableFrom(type))
+                return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void postProcessBeanFactory(
+        final ConfigurableListableBeanFactory beanFactory)
+        throws BeansException {
+
+        for (final String name : beanFactory.getBeanDefinitionNames()) {
+
+            final BeanDefinition definition = beanFactory.getBeanDefinition(name);
+
+            if (definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE
+                || declaresLazy(definition)
+                || eagerType(definition, beanFactory.getBeanClassLoader()))
+                continue;
+
+            definition.setLazyInit(true);
+        }
+    }
+}
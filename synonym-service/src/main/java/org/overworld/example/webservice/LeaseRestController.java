@@ -0,0 +1,267 @@
+package org.overworld.example.webservice;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.overworld.example.webservice.engine.JournalEntry;
+import org.overworld.example.webservice.engine.LeaseStatus;
+import org.overworld.example.webservice.engine.SeekPipeline;
+import org.overworld.example.webservice.engine.SeekTask;
+import org.overworld.example.webservice.engine.TokenPool;
+import org.overworld.example.webservice.engine.TokenizedText;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * The worker side of a distributed search, through which a SeekCoordinator in
+ * another instance registers a prepared task and hands out leases of its
+ * combination space to be searched here.
+ * <p/>
+ * A job that the coordinator has not asked after for longer than the idle
+ * expiry is cancelled, so that the leases of a coordinator that died do not
+ * run forever.
+ * <p/>
+ * The endpoints are only mapped on an instance configured as a worker with
+ * lease.enabled, and a job names its digest function by algorithm, so that a
+ * caller can only ever have one of the known digests run.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+@RestController
+@ConditionalOnProperty("lease.enabled")
+public class LeaseRestController {
+
+    /**
+     * A job registered by a coordinator, with the leases given for it
+     */
+    private static class LeaseJob {
+
+        /**
+         * The prepared task
+         */
+        private final JournalEntry entry;
+
+        /**
+         * The future result of each lease given
+         */
+        private final Map<Long, Future<String>> leases = new ConcurrentHashMap<>();
+
+        /**
+         * The task searching each lease given
+         */
+        private final Map<Long, SeekTask> tasks = new ConcurrentHashMap<>();
+
+        /**
+         * The starting text of the task, tokenized once for every lease
+         */
+        private final TokenizedText text;
+
+        /**
+         * The system time in ms when the coordinator last asked after the job
+         */
+        private volatile long lastSeen = System.currentTimeMillis();
+
+        private LeaseJob(final JournalEntry entry) {
+
+            this.entry = entry;
+            this.text = TokenizedText.of(entry.getStartText(), TokenPool
+                .shared());
+        }
+    }
+
+    private static final Log LOG = LogFactory.getLog(LeaseRestController.class);
+
+    /**
+     * A bean factory to assist in application configuration
+     */
+    private @Autowired AutowireCapableBeanFactory beanFactory;
+
+    /**
+     * The interval in ms after which a job not asked after is cancelled, or 0
+     * never to cancel one
+     */
+    @Value("${lease.idleExpiry}")
+    private long idleExpiry;
+
+    /**
+     * The jobs registered by coordinators, against the job id
+     */
+    private final Map<String, LeaseJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * The pipeline that will run the SeekTasks
+     */
+    private @Autowired SeekPipeline pipeline;
+
+    /**
+     * The timer expiring idle jobs, or null if disabled
+     */
+    private ScheduledExecutorService timer;
+
+    @RequestMapping(value = "/lease/{job}", method = RequestMethod.DELETE)
+    public ResponseEntity<String> cancel(@PathVariable final String job) {
+
+        final LeaseJob leaseJob = this.jobs.remove(job);
+
+        if (leaseJob == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        leaseJob.leases.values().forEach(f -> f.cancel(true));
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    /**
+     * Cancels every job not asked after within the idle expiry
+     */
+    private void expire() {
+
+        final long now = System.currentTimeMillis();
+
+        for (final Map.Entry<String, LeaseJob> job : this.jobs.entrySet()) {
+
+            if (now - job.getValue().lastSeen <= this.idleExpiry)
+                continue;
+
+            LOG.warn("Job " + job.getKey() + " idle for "
+                + (now - job.getValue().lastSeen) + "ms, cancelling");
+
+            if (this.jobs.remove(job.getKey(), job.getValue()))
+                job.getValue().leases.values().forEach(f -> f.cancel(true));
+        }
+    }
+
+    @PostConstruct
+    private void init() {
+
+        if (this.idleExpiry <= 0)
+            return;
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+
+            final Thread t = new Thread(r, "lease-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.timer.scheduleWithFixedDelay(this::expire, this.idleExpiry,
+            this.idleExpiry / 2, TimeUnit.MILLISECONDS);
+    }
+
+    @RequestMapping(value = "/lease/{job}", method = RequestMethod.PUT)
+    public ResponseEntity<String> register(@PathVariable final String job,
+        @RequestBody final JournalEntry entry) {
+
+        try {
+
+            entry.newDigester();
+        } catch (final IllegalStateException e) {
+
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        this.jobs.computeIfAbsent(job, j -> new LeaseJob(entry)).lastSeen = System
+            .currentTimeMillis();
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+
+        if (this.timer != null)
+            this.timer.shutdownNow();
+    }
+
+    @RequestMapping(value = "/lease/{job}", method = RequestMethod.GET)
+    public ResponseEntity<LeaseStatus> status(@PathVariable final String job) {
+
+        final LeaseJob leaseJob = this.jobs.get(job);
+
+        if (leaseJob == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        leaseJob.lastSeen = System.currentTimeMillis();
+
+        final LeaseStatus status = new LeaseStatus();
+
+        status.setAttempts(leaseJob.tasks.values().stream().mapToLong(
+            SeekTask::getTried).sum());
+
+        for (final Map.Entry<Long, Future<String>> lease : leaseJob.leases
+            .entrySet()) {
+
+            if (!lease.getValue().isDone()) {
+
+                status.getRunning().add(lease.getKey());
+                continue;
+            }
+
+            try {
+
+                final String result = lease.getValue().get();
+
+                if (result != null)
+                    status.setResult(result);
+            } catch (ExecutionException | InterruptedException e) {
+
+                /* reported finished so that a failing lease is not retried */
+                LOG.error("Lease " + lease.getKey() + " of job " + job
+                    + " failed", e);
+            }
+
+            status.getFinished().add(lease.getKey());
+        }
+
+        return new ResponseEntity<>(status, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/lease/{job}/{lease}", method = RequestMethod.POST)
+    public ResponseEntity<String> take(@PathVariable final String job,
+        @PathVariable final long lease, @RequestParam final int limit) {
+
+        final LeaseJob leaseJob = this.jobs.get(job);
+
+        if (leaseJob == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        leaseJob.lastSeen = System.currentTimeMillis();
+
+        final SeekTask st = new SeekTask(leaseJob.entry, leaseJob.text, limit,
+            lease, new AtomicInteger(0));
+
+        this.beanFactory.autowireBean(st);
+
+        leaseJob.leases.computeIfAbsent(lease, l -> {
+
+            leaseJob.tasks.put(l, st);
+            return this.pipeline.submit(st);
+        });
+
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    }
+}
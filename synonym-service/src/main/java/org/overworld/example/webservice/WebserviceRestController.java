@@ -1,52 +1,117 @@
 package org.overworld.example.webservice;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.overworld.example.webservice.engine.BSDSum;
+import org.overworld.example.webservice.engine.BudgetExhaustedException;
+import org.overworld.example.webservice.engine.DigestFormat;
+import org.overworld.example.webservice.engine.JournalEntry;
 import org.overworld.example.webservice.engine.MD5Sum;
+import org.overworld.example.webservice.engine.PhaseCounts;
+import org.overworld.example.webservice.engine.PoolTuner;
+import org.overworld.example.webservice.engine.SeekPipeline;
 import org.overworld.example.webservice.engine.SeekTask;
+import org.overworld.example.webservice.engine.StopwordMatcher;
+import org.overworld.example.webservice.engine.SynonymClient;
+import org.overworld.example.webservice.engine.TaskJournal;
 import org.overworld.example.webservice.engine.TaskTag;
+import org.overworld.example.webservice.engine.TokenPool;
+import org.overworld.example.webservice.engine.TokenizedText;
+import org.overworld.example.webservice.engine.WarmUp;
+import org.overworld.example.webservice.wire.WireService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
+ * Never lazy, as it resumes the tasks in the journal on startup.
+ *
  * @author Stephen Lennon stephen@overworld.org
  *
  *         Date: 2016
  */
 
 @RestController
+@Lazy(false)
 public class WebserviceRestController {
 
+    /**
+     * The factory of the generators that stream status out as JSON
+     */
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final Log LOG = LogFactory.getLog(WebserviceRestController.class);
+
+    /**
+     * The most tasks that a page of status may hold
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
     /**
      * A bean factory to assist in application configuration
      */
     private @Autowired AutowireCapableBeanFactory beanFactory;
 
     /**
-     * The executor service that will run the SeekTasks
+     * The journal from which unfinished tasks are resumed on startup
+     */
+    private @Autowired TaskJournal journal;
+
+    /**
+     * The number of tasks in the map at each phase of progress
      */
-    private ExecutorService service;
+    private final PhaseCounts phaseCounts = new PhaseCounts();
+
+    /**
+     * The pipeline that will run the SeekTasks
+     */
+    private @Autowired SeekPipeline pipeline;
+
+    /**
+     * The tuner sizing the stages of the pipeline
+     */
+    private @Autowired PoolTuner poolTuner;
+
+    /**
+     * The stopwords excluded from synonym expansion
+     */
+    private @Autowired StopwordMatcher stopwords;
+
+    /**
+     * The client of the upstream Synonym Service
+     */
+    private @Autowired SynonymClient synonymClient;
 
     /**
      * A counter to allocate ids to tasks as they are created
@@ -55,51 +120,91 @@ public class WebserviceRestController {
 
     /**
      * A map to hold the TaskTags against the task id that was communicated to
-     * the client on creation
+     * the client on creation. Reads never block and iteration sees a weakly
+     * consistent snapshot, so status neither stalls nor fails under load.
      */
-    private final Map<Integer, TaskTag> tasksMap = Collections
-        .synchronizedMap(new HashMap<Integer, TaskTag>());
+    private final Map<Integer, TaskTag> tasksMap = new ConcurrentHashMap<>();
 
     /**
-     * The number of threads in the executor service
+     * The warm-up of the JIT, which must finish before the service is ready
      */
-    @Value("${service.threadCount}")
-    private String threadCount;
+    private @Autowired WarmUp warmUp;
 
-    @RequestMapping(value = "/bsd/{digest}", method = RequestMethod.POST)
-    public ResponseEntity<String> createBsd(@RequestBody final String body,
-        @PathVariable final String digest) {
+    /**
+     * The server of the binary protocol, if enabled
+     */
+    private @Autowired(required = false) WireService wire;
 
-        final AtomicInteger progress = new AtomicInteger(0);
+    @RequestMapping(value = "/bsd/{digest}", method = RequestMethod.POST)
+    public ResponseEntity<String> createBsd(final Reader body,
+        @PathVariable final String digest,
+        @RequestParam(value = "timeout", defaultValue = "0") final long timeout,
+        @RequestParam(value = "attempts", defaultValue = "0") final long attempts)
+        throws IOException {
 
-        final Integer taskId = this.taskCounter.getAndIncrement();
+        return this.create(body, digest, new BSDSum(), timeout, attempts);
+    }
 
-        final SeekTask st = new SeekTask(body, digest, new BSDSum(), progress);
+    @RequestMapping(value = "/md5/{digest}", method = RequestMethod.POST)
+    public ResponseEntity<String> createMd5(final Reader body,
+        @PathVariable final String digest,
+        @RequestParam(value = "timeout", defaultValue = "0") final long timeout,
+        @RequestParam(value = "attempts", defaultValue = "0") final long attempts)
+        throws IOException {
 
-        this.beanFactory.autowireBean(st);
+        return this.create(body, digest, new MD5Sum(), timeout, attempts);
+    }
 
-        final Future<String> future = this.service.submit(st);
+    /**
+     * Creates, journals and submits a new SeekTask. The body is tokenized as
+     * it is read, so a large text is never held whole as a String.
+     *
+     * @param body
+     *            the stream of the starting text
+     * @param digest
+     *            the digest to seek
+     * @param digester
+     *            the function that digests the text
+     * @param timeout
+     *            the time in ms from now after which the task gives up, or 0
+     *            for never
+     * @param attempts
+     *            the most candidates the task may try, or 0 for no limit
+     * @return the response carrying the id of the new task, or bad request
+     *         if the digest is not in the format of the digester or the
+     *         timeout or attempts are negative
+     */
+    private ResponseEntity<String> create(final Reader body,
+        final String digest, final Function<String, String> digester,
+        final long timeout, final long attempts) throws IOException {
 
-        this.tasksMap.put(taskId, new TaskTag(taskId, future, progress));
+        if (timeout < 0 || attempts < 0)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
 
-        return new ResponseEntity<>(taskId.toString(), HttpStatus.ACCEPTED);
-    }
+        if (digester instanceof DigestFormat
+            && !((DigestFormat) digester).isWellFormed(digest))
+            return new ResponseEntity<>("Not a digest of this kind: " + digest,
+                HttpStatus.BAD_REQUEST);
 
-    @RequestMapping(value = "/md5/{digest}", method = RequestMethod.POST)
-    public ResponseEntity<String> createMd5(@RequestBody final String body,
-        @PathVariable final String digest) {
+        final TokenizedText text = TokenizedText.read(body, TokenPool.shared());
 
         final AtomicInteger progress = new AtomicInteger(0);
 
         final Integer taskId = this.taskCounter.getAndIncrement();
 
-        final SeekTask st = new SeekTask(body, digest, new MD5Sum(), progress);
+        final SeekTask st = new SeekTask(taskId, text, digest, digester,
+            progress);
 
         this.beanFactory.autowireBean(st);
 
-        final Future<String> future = this.service.submit(st);
+        st.setBudget(timeout > 0 ? System.currentTimeMillis() + timeout : 0,
+            attempts);
+        st.begin();
 
-        this.tasksMap.put(taskId, new TaskTag(taskId, future, progress));
+        final Future<String> future = this.pipeline.submit(st);
+
+        st.setPhaseCounts(this.phaseCounts);
+        this.tasksMap.put(taskId, new TaskTag(taskId, future, progress, st));
 
         return new ResponseEntity<>(taskId.toString(), HttpStatus.ACCEPTED);
     }
@@ -107,12 +212,14 @@ public class WebserviceRestController {
     @RequestMapping(value = "/{id}", method = RequestMethod.DELETE)
     public ResponseEntity<String> delete(@PathVariable(value = "id") final int id) {
 
-        final TaskTag tag = this.tasksMap.remove(id);
+        final TaskTag tag = this.remove(id);
 
         if (tag == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
+        this.journal.remove(id);
+
         tag.getFuture().cancel(true);
 
         return new ResponseEntity<String>(HttpStatus.OK);
@@ -121,8 +228,97 @@ public class WebserviceRestController {
     @PostConstruct
     private void init() {
 
-        this.service = Executors
-            .newFixedThreadPool(Integer.parseInt(this.threadCount));
+        this.resume();
+    }
+
+    /**
+     * Forgets a task, no longer counting it by phase
+     *
+     * @param id
+     *            the id of the task
+     * @return the tag of the task, or null if there is none
+     */
+    private TaskTag remove(final int id) {
+
+        final TaskTag tag = this.tasksMap.remove(id);
+
+        if (tag != null)
+            tag.release(this.phaseCounts);
+
+        return tag;
+    }
+
+    /**
+     * Reloads the tasks in the journal under their original ids, resubmitting
+     * those that had not finished. A task that exhausted its budget is
+     * reloaded as such rather than run again.
+     */
+    private void resume() {
+
+        for (final JournalEntry entry : this.journal.recover()) {
+
+            final int taskId = entry.getId();
+            final AtomicInteger progress = new AtomicInteger(0);
+            final Future<String> future;
+            SeekTask st = null;
+
+            if (entry.isFinished()) {
+
+                progress.set(6);
+                this.phaseCounts.add(6);
+
+                final CompletableFuture<String> finished = new CompletableFuture<>();
+
+                if (entry.isExhausted())
+                    finished.completeExceptionally(new BudgetExhaustedException(
+                        taskId, entry.getAttempts(), entry.getCoverage()));
+                else
+                    finished.complete(entry.getResult());
+
+                future = finished;
+            } else {
+
+                try {
+
+                    st = new SeekTask(entry, this.journal.text(entry,
+                        TokenPool.shared()), progress);
+                } catch (final IOException e) {
+
+                    LOG.warn("Unable to resume task " + taskId
+                        + " without its text, discarding it", e);
+                    this.journal.remove(taskId);
+                    continue;
+                }
+
+                this.beanFactory.autowireBean(st);
+                future = this.pipeline.submit(st);
+                st.setPhaseCounts(this.phaseCounts);
+            }
+
+            this.tasksMap.put(taskId, new TaskTag(taskId, future, progress, st));
+
+            /* new tasks must not reuse the id of a resumed one */
+            this.taskCounter.accumulateAndGet(taskId + 1, Math::max);
+        }
+    }
+
+    /**
+     * Stops the running tasks, giving them time to write a final checkpoint
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the tasks to stop
+     */
+    @PreDestroy
+    private void shutdown() throws InterruptedException {
+
+        this.journal.close();
+        this.pipeline.shutdown(this.journal.getInterval());
+    }
+
+    @RequestMapping(value = "/pipeline", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Number>> pipeline() {
+
+        return new ResponseEntity<>(this.pipeline.getStats(), HttpStatus.OK);
     }
 
     @RequestMapping(value = "/{id}/progress", method = RequestMethod.GET)
@@ -140,6 +336,18 @@ public class WebserviceRestController {
         }
     }
 
+    @RequestMapping(value = "/ready", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Number>> ready() {
+
+        final Map<String, Number> result = new LinkedHashMap<>();
+        result.put("ready", this.warmUp.isReady() ? 1 : 0);
+        result.put("warmUpMs", this.warmUp.getDuration());
+        result.put("warmUpRounds", this.warmUp.getRounds());
+
+        return new ResponseEntity<>(result, this.warmUp.isReady()
+            ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     public ResponseEntity<String> retrieve(@PathVariable(value = "id") final int id) {
 
@@ -151,13 +359,35 @@ public class WebserviceRestController {
 
         if (tag.getFuture().isDone()) {
 
+            final HttpHeaders headers = new HttpHeaders();
+
             try {
 
+                final String text = tag.getFuture().get();
+                headers.add("Task-Status", text != null ? "found" : "exhausted");
+
                 final ResponseEntity<String> result = new ResponseEntity<String>(
-                    tag.getFuture().get(), HttpStatus.OK);
-                this.tasksMap.remove(id);
+                    text, headers, HttpStatus.OK);
+                this.remove(id);
+                this.journal.remove(id);
                 return result;
-            } catch (ExecutionException | InterruptedException e) {
+            } catch (final ExecutionException e) {
+
+                if (!(e.getCause() instanceof BudgetExhaustedException))
+                    return new ResponseEntity<String>(
+                        HttpStatus.INTERNAL_SERVER_ERROR);
+
+                final BudgetExhaustedException budget = (BudgetExhaustedException) e
+                    .getCause();
+
+                headers.add("Task-Status", "budget-exhausted");
+                headers.add("Task-Attempts", Long.toString(budget.getAttempts()));
+                headers.add("Task-Coverage", Double.toString(budget.getCoverage()));
+
+                this.remove(id);
+                this.journal.remove(id);
+                return new ResponseEntity<String>(headers, HttpStatus.OK);
+            } catch (final InterruptedException e) {
 
                 return new ResponseEntity<String>(
                     HttpStatus.INTERNAL_SERVER_ERROR);
@@ -170,15 +400,114 @@ public class WebserviceRestController {
         }
     }
 
-    @RequestMapping(value = "/status", method = RequestMethod.GET)
-    public ResponseEntity<String> status() {
-
-        final List<String> results = this.tasksMap.entrySet().stream()
-            .map(es -> Integer.toString(es.getKey()) + " => "
-                + es.getValue().toString())
+    /**
+     * Streams a page of the status of the tasks as JSON, in order of id
+     *
+     * @param page
+     *            the number of the page, from 0
+     * @param size
+     *            the number of tasks on a page
+     * @param phase
+     *            if given, only tasks whose progress is at this phase
+     * @param minAge
+     *            if given, only tasks created at least this many ms ago
+     * @param maxAge
+     *            if given, only tasks created at most this many ms ago
+     * @return the page, or bad request if the page or size is out of range
+     */
+    @RequestMapping(value = "/status", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> status(
+        @RequestParam(value = "page", defaultValue = "0") final int page,
+        @RequestParam(value = "size", defaultValue = "100") final int size,
+        @RequestParam(value = "phase", required = false) final Integer phase,
+        @RequestParam(value = "minAge", required = false) final Long minAge,
+        @RequestParam(value = "maxAge", required = false) final Long maxAge) {
+
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        final long now = System.currentTimeMillis();
+
+        final List<TaskTag> matching = this.tasksMap.values().stream()
+            .filter(tag -> phase == null || tag.getProgress() == phase)
+            .filter(tag -> minAge == null || now - tag.getCreated() >= minAge)
+            .filter(tag -> maxAge == null || now - tag.getCreated() <= maxAge)
+            .sorted(Comparator.comparingInt(TaskTag::getId))
             .collect(Collectors.toList());
 
-        return new ResponseEntity<String>(String.join("\n", results),
+        final int from = (int) Math.min((long) page * size, matching.size());
+        final int to = (int) Math.min((long) from + size, matching.size());
+
+        final StreamingResponseBody body = out -> {
+
+            final JsonGenerator json = JSON.createGenerator(out);
+
+            json.writeStartObject();
+            json.writeNumberField("page", page);
+            json.writeNumberField("size", size);
+            json.writeNumberField("total", matching.size());
+            json.writeArrayFieldStart("tasks");
+
+            for (final TaskTag tag : matching.subList(from, to)) {
+
+                json.writeStartObject();
+                json.writeNumberField("id", tag.getId());
+                json.writeNumberField("phase", tag.getProgress());
+                json.writeNumberField("ageMs", now - tag.getCreated());
+                json.writeBooleanField("done", tag.getFuture().isDone());
+                json.writeEndObject();
+            }
+
+            json.writeEndArray();
+            json.writeEndObject();
+            json.flush();
+        };
+
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    /**
+     * Replaces the stopwords in use, without a restart. Tasks expanding
+     * their text at the time may test some words against each list.
+     *
+     * @param csv
+     *            the stopwords, separated by commas
+     * @return the number of distinct stopwords now in use
+     */
+    @RequestMapping(value = "/stopwords", method = RequestMethod.PUT)
+    public ResponseEntity<Integer> stopwords(@RequestBody final String csv) {
+
+        return new ResponseEntity<>(this.stopwords.reload(csv), HttpStatus.OK);
+    }
+
+    /**
+     * @return the number of tasks at each phase of progress, from 0 to 6
+     */
+    int[] tasksByPhase() {
+
+        return this.phaseCounts.get();
+    }
+
+    @RequestMapping(value = "/tuner", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Number>> tuner() {
+
+        return new ResponseEntity<>(this.poolTuner.getStats(), HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/upstream", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Number>> upstream() {
+
+        return new ResponseEntity<>(this.synonymClient.getStats(),
+            HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/wire", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Number>> wire() {
+
+        if (this.wire == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        return new ResponseEntity<>(this.wire.getServer().getStats(),
             HttpStatus.OK);
     }
 }
@@ -9,7 +9,8 @@ import java.util.function.Function;
  *         Date: 2016
  */
 
-public class BSDSum implements Function<String, String> {
+public class BSDSum implements Function<String, String>, ByteDigester,
+    DigestFormat, LengthBounded {
 
     /**
      * Converts a block of text to its BSD 16-bit checksum, formatted in
@@ -21,6 +22,31 @@ public class BSDSum implements Function<String, String> {
      */
     private static String bsdSum(final String input) {
 
+        try {
+
+            final byte[] utf8 = input.getBytes("UTF-8");
+            return bsdSum(utf8, utf8.length, input.length());
+        } catch (final UnsupportedEncodingException e) {
+
+            /* UTF-8 really cannot be unsupported */
+            throw new RuntimeException("Encoding UTF-8 not supported");
+        }
+    }
+
+    /**
+     * Converts a block of UTF-8 encoded text to its BSD 16-bit checksum
+     *
+     * @param utf8
+     *            a buffer holding the encoded text from offset 0
+     * @param length
+     *            the number of bytes of the text in the buffer
+     * @param chars
+     *            the length of the text in chars, from which the size is taken
+     * @return the resulting BSD 16-bit checksum
+     */
+    private static String bsdSum(final byte[] utf8, final int length,
+        final int chars) {
+
         int sum = 0;
 
         /*
@@ -28,28 +54,21 @@ public class BSDSum implements Function<String, String> {
          * https://docs.oracle.com/javase/8/docs/technotes/guides/io/example/Sum
          * .java
          */
-        try {
+        for (int i = 0; i < length; i++) {
 
-            for (final byte b : input.getBytes("UTF-8")) {
+            if ((sum & 1) != 0) {
 
-                if ((sum & 1) != 0) {
+                sum = (sum >> 1) + 0x8000;
+            } else {
 
-                    sum = (sum >> 1) + 0x8000;
-                } else {
-
-                    sum >>= 1;
-                }
-
-                sum += b & 0xff;
-                sum &= 0xffff;
+                sum >>= 1;
             }
-        } catch (final UnsupportedEncodingException e) {
 
-            /* UTF-8 really cannot be unsupported */
-            throw new RuntimeException("Encoding UTF-8 not supported");
+            sum += utf8[i] & 0xff;
+            sum &= 0xffff;
         }
 
-        final int kb = (input.length() + 1023) / 1024;
+        final int kb = (chars + 1023) / 1024;
         return Integer.toString(sum) + " " + kb;
     }
 
@@ -58,4 +77,54 @@ public class BSDSum implements Function<String, String> {
 
         return bsdSum(input);
     }
+
+    @Override
+    public String digest(final byte[] utf8, final int length, final int chars) {
+
+        return bsdSum(utf8, length, chars);
+    }
+
+    /**
+     * A BSD checksum is a 16-bit sum in decimal, a space and the size in
+     * blocks
+     */
+    @Override
+    public boolean isWellFormed(final String digest) {
+
+        final String[] parts = digest.trim().split(" ");
+
+        if (parts.length != 2 || !parts[0].matches("[0-9]{1,5}")
+            || !parts[1].matches("[0-9]{1,18}"))
+            return false;
+
+        return Integer.parseInt(parts[0]) <= 0xffff;
+    }
+
+    /**
+     * The size field of a BSD checksum is the length of the input in 1024
+     * char blocks rounded up, so only inputs in that block can match
+     */
+    @Override
+    public long[] lengthBounds(final String digest) {
+
+        final String[] parts = digest.trim().split(" ");
+
+        if (parts.length != 2)
+            return null;
+
+        final long kb;
+
+        try {
+
+            kb = Long.parseLong(parts[1]);
+        } catch (final NumberFormatException e) {
+
+            return null;
+        }
+
+        if (kb <= 0)
+            return new long[] { 0, 0 };
+
+        return new long[] { ((kb - 1) * 1024) + 1, kb * 1024 };
+    }
 }
\ No newline at end of file
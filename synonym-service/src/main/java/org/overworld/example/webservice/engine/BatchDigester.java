@@ -0,0 +1,45 @@
+package org.overworld.example.webservice.engine;
+
+/**
+ * Implemented by digest functions that can digest several texts at once
+ * faster than one after another, so that a search can render candidates into
+ * a batch of buffers and test them together against the target.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public interface BatchDigester {
+
+    /**
+     * A reusable test of batches of UTF-8 encoded texts against one target
+     * digest, holding scratch space for use by a single thread
+     */
+    interface Batch {
+
+        /**
+         * Digests a batch of texts and compares each with the target
+         *
+         * @param utf8
+         *            a buffer for each text holding its encoding from offset 0
+         * @param lengths
+         *            the number of bytes of each text in its buffer
+         * @param count
+         *            the number of texts in the batch, no more than lanes
+         * @return the index of the first text with the target digest, or -1
+         */
+        int find(byte[][] utf8, int[] lengths, int count);
+
+        /**
+         * @return the largest number of texts digested at once
+         */
+        int lanes();
+    }
+
+    /**
+     * @param targetDigest
+     *            the digest to seek, as the digest function gives it
+     * @return a new batch testing texts against the target
+     */
+    Batch newBatch(String targetDigest);
+}
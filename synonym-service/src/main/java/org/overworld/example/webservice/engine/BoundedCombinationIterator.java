@@ -0,0 +1,167 @@
+package org.overworld.example.webservice.engine;
+
+/**
+ * A RandomisedCombinationIterator that only yields states whose total weight
+ * falls within a given inclusive range.
+ * <p/>
+ * Each value of each field carries a weight, and the weight of a state is the
+ * sum of the weights of its field values. Because fields are incremented in a
+ * fixed order, every state shares its slower moving fields with a contiguous
+ * run of states that differ only in the faster moving fields. Where the
+ * smallest and largest weight reachable by the faster fields cannot bring the
+ * total into range, that whole run is skipped with a single increment rather
+ * than being visited state by state.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class BoundedCombinationIterator extends RandomisedCombinationIterator {
+
+    /**
+     * The largest total weight of a state that may be returned
+     */
+    private final long maxWeight;
+
+    /**
+     * For each position in increment order, the largest weight that the
+     * fields before it could add to the total
+     */
+    private long[] maxBelow;
+
+    /**
+     * The smallest total weight of a state that may be returned
+     */
+    private final long minWeight;
+
+    /**
+     * For each position in increment order, the smallest weight that the
+     * fields before it could add to the total
+     */
+    private long[] minBelow;
+
+    /**
+     * The total weight of the current state
+     */
+    private long weight;
+
+    /**
+     * The weight of each value of each field relative to its value 0, indexed
+     * by field then value, so that fields at 0 contribute nothing
+     */
+    private final int[][] weights;
+
+    /**
+     * Create a new instance with the specified lengths and a randomised order
+     * for incrementing fields, constrained to states whose total weight lies
+     * between minWeight and maxWeight inclusive. The starting position of the
+     * iterator is 0 for every field.
+     *
+     * @param lengths
+     *            the lengths of the ranges fields to be incremented
+     * @param weights
+     *            the weight of each value of each field, where
+     *            weights[i].length == lengths[i]
+     * @param minWeight
+     *            the smallest total weight to accept
+     * @param maxWeight
+     *            the largest total weight to accept
+     */
+    public BoundedCombinationIterator(final int[] lengths,
+        final int[][] weights, final long minWeight, final long maxWeight) {
+
+        super(lengths);
+
+        this.weights = new int[weights.length][];
+        this.minWeight = minWeight;
+        this.maxWeight = maxWeight;
+
+        for (int i = 0; i < weights.length; i++) {
+
+            this.weight += weights[i][0];
+            this.weights[i] = new int[weights[i].length];
+
+            for (int j = 0; j < weights[i].length; j++) {
+                this.weights[i][j] = weights[i][j] - weights[i][0];
+            }
+        }
+
+        this.computeBounds();
+    }
+
+    @Override
+    protected void changed(final int field, final int from, final int to) {
+
+        this.weight += this.weights[field][to] - this.weights[field][from];
+    }
+
+    /**
+     * Precompute, for each position in increment order, the range of weight
+     * that the faster moving fields before it can contribute
+     */
+    private void computeBounds() {
+
+        this.minBelow = new long[this.indirects.length + 1];
+        this.maxBelow = new long[this.indirects.length + 1];
+
+        for (int i = 0; i < this.indirects.length; i++) {
+
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+
+            for (final int w : this.weights[this.indirects[i]]) {
+                min = Math.min(min, w);
+                max = Math.max(max, w);
+            }
+
+            this.minBelow[i + 1] = this.minBelow[i] + min;
+            this.maxBelow[i + 1] = this.maxBelow[i] + max;
+        }
+    }
+
+    /**
+     * Determines whether any state reachable by varying only the fields
+     * before the given position could fall within range. The fields before
+     * position must all be 0 so that they contribute nothing to the weight.
+     *
+     * @param position
+     *            the position in increment order
+     * @return true if the run of states may contain a match
+     */
+    private boolean feasible(final int position) {
+
+        return this.weight + this.minBelow[position] <= this.maxWeight
+            && this.weight + this.maxBelow[position] >= this.minWeight;
+    }
+
+    /**
+     * Increment the state until it lies within range, skipping runs of states
+     * that cannot, and then return it
+     *
+     * @return the next state within range
+     * @throws IndexOutOfBoundsException
+     *             if all states have been visited such that there is no next
+     *             state
+     */
+    @Override
+    public int[] next() throws IndexOutOfBoundsException {
+
+        for (int i = this.advance(); i >= 0; i--) {
+
+            if (!this.feasible(i)) {
+
+                /* skip every state that shares the fields from i onward */
+                i = this.inc(i) + 1;
+            }
+        }
+
+        return this.state;
+    }
+
+    @Override
+    void setIndirects(final int[] indirects) {
+
+        super.setIndirects(indirects);
+        this.computeBounds();
+    }
+}
@@ -0,0 +1,59 @@
+package org.overworld.example.webservice.engine;
+
+/**
+ * Thrown by a task that reached its deadline or tried its budget of
+ * candidates without finding a match, carrying how much of the combination
+ * space it covered.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class BudgetExhaustedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of candidates tried
+     */
+    private final long attempts;
+
+    /**
+     * The fraction of the combination space tried, from 0 to 1
+     */
+    private final double coverage;
+
+    /**
+     * @param id
+     *            the id of the task
+     * @param attempts
+     *            the number of candidates tried
+     * @param coverage
+     *            the fraction of the combination space tried, from 0 to 1
+     */
+    public BudgetExhaustedException(final int id, final long attempts,
+        final double coverage) {
+
+        super(String.format("Task %d exhausted its budget after %d attempts, "
+            + "%.4f%% of its space", id, attempts, coverage * 100));
+
+        this.attempts = attempts;
+        this.coverage = coverage;
+    }
+
+    /**
+     * @return the number of candidates tried
+     */
+    public long getAttempts() {
+
+        return this.attempts;
+    }
+
+    /**
+     * @return the fraction of the combination space tried, from 0 to 1
+     */
+    public double getCoverage() {
+
+        return this.coverage;
+    }
+}
@@ -0,0 +1,27 @@
+package org.overworld.example.webservice.engine;
+
+/**
+ * Implemented by digest functions that can digest text already encoded as
+ * UTF-8, so that a search can render candidates into a reused buffer rather
+ * than building a String for every attempt.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public interface ByteDigester {
+
+    /**
+     * Digests the UTF-8 encoding of a text, giving the same result as
+     * applying the digest function to the text itself
+     *
+     * @param utf8
+     *            a buffer holding the encoded text from offset 0
+     * @param length
+     *            the number of bytes of the text in the buffer
+     * @param chars
+     *            the length of the text in UTF-16 chars
+     * @return the digest of the text
+     */
+    String digest(byte[] utf8, int length, int chars);
+}
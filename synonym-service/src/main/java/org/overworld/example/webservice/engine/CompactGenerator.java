@@ -0,0 +1,270 @@
+package org.overworld.example.webservice.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The generator of a SeekTask held in primitive arrays. The text is a fixed
+ * sequence of gaps, the non-word runs between words, with a position for a
+ * word between each pair of gaps. Each position has a list of candidate words,
+ * stored as ids in a shared TokenPool, of which the first is the original.
+ * <p/>
+ * A text of n positions has n + 1 gaps, any of which may be empty. Positions
+ * are added one at a time as their synonyms are found, and a text is only
+ * rendered once every position has been added.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class CompactGenerator {
+
+    /**
+     * The ids of the candidates of every position, end to end
+     */
+    private int[] choices = new int[64];
+
+    /**
+     * The offset into choices of the candidates of each position, with one
+     * extra entry marking the end of the last
+     */
+    private final int[] choiceStarts;
+
+    /**
+     * The total length in UTF-16 chars of all gaps
+     */
+    private final int gapChars;
+
+    /**
+     * The UTF-8 bytes of every gap, end to end
+     */
+    private final byte[] gaps;
+
+    /**
+     * The offset into gaps of each gap, with one extra entry marking the end
+     * of the last
+     */
+    private final int[] gapStarts;
+
+    /**
+     * The pool holding the bytes of the candidates
+     */
+    private final TokenPool pool;
+
+    /**
+     * The number of positions added so far
+     */
+    private int size;
+
+    /**
+     * Creates a generator for a text with, as yet, no candidates for the
+     * positions of its words
+     *
+     * @param text
+     *            the text, whose gaps are shared rather than copied
+     */
+    public CompactGenerator(final TokenizedText text) {
+
+        this.pool = text.pool();
+        this.gaps = text.gaps();
+        this.gapStarts = text.gapStarts();
+        this.gapChars = text.gapChars();
+        this.choiceStarts = new int[this.gapStarts.length - 1];
+    }
+
+    /**
+     * Adds the candidates for the next position
+     *
+     * @param candidates
+     *            the words that may appear at the position, the original first
+     * @throws IndexOutOfBoundsException
+     *             if every position has already been added
+     */
+    public void add(final List<String> candidates)
+        throws IndexOutOfBoundsException {
+
+        if (this.size >= this.positions())
+            throw new IndexOutOfBoundsException("All positions added");
+
+        final int start = this.choiceStarts[this.size];
+
+        if (start + candidates.size() > this.choices.length) {
+            this.choices = Arrays.copyOf(this.choices,
+                Math.max(this.choices.length << 1, start + candidates.size()));
+        }
+
+        for (int i = 0; i < candidates.size(); i++) {
+            this.choices[start + i] = this.pool.intern(candidates.get(i));
+        }
+
+        this.size++;
+        this.choiceStarts[this.size] = start + candidates.size();
+    }
+
+    /**
+     * @param state
+     *            a value for each position selecting one of its candidates
+     * @return the length in UTF-16 chars of the text for the state given
+     */
+    public int chars(final int[] state) {
+
+        int result = this.gapChars;
+
+        for (int i = 0; i < this.size; i++) {
+            result += this.pool.chars(this.choices[this.choiceStarts[i] + state[i]]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the length in UTF-16 chars of each candidate of each position
+     */
+    public int[][] charLengths() {
+
+        final int[][] result = new int[this.size][];
+
+        for (int i = 0; i < this.size; i++) {
+
+            result[i] = new int[this.length(i)];
+
+            for (int j = 0; j < result[i].length; j++) {
+                result[i][j] = this.pool.chars(this.choices[this.choiceStarts[i] + j]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param position
+     *            the position
+     * @return the number of candidates at the position
+     */
+    public int length(final int position) {
+
+        return this.choiceStarts[position + 1] - this.choiceStarts[position];
+    }
+
+    /**
+     * @return the number of candidates at each position, in order
+     */
+    public int[] lengths() {
+
+        final int[] result = new int[this.size];
+
+        for (int i = 0; i < this.size; i++) {
+            result[i] = this.length(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the largest number of UTF-8 bytes a rendered text can take
+     */
+    public int maxBytes() {
+
+        int result = this.gaps.length;
+
+        for (int i = 0; i < this.size; i++) {
+
+            int max = 0;
+            for (int j = this.choiceStarts[i]; j < this.choiceStarts[i + 1]; j++) {
+                max = Math.max(max, this.pool.length(this.choices[j]));
+            }
+
+            result += max;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of word positions in the text, whether or not their
+     *         candidates have been added
+     */
+    public int positions() {
+
+        return this.gapStarts.length - 2;
+    }
+
+    /**
+     * Writes the UTF-8 text for a state into a buffer
+     *
+     * @param state
+     *            a value for each position selecting one of its candidates
+     * @param out
+     *            the buffer, of at least maxBytes in length
+     * @return the number of bytes written
+     */
+    public int render(final int[] state, final byte[] out) {
+
+        final byte[] words = this.pool.bytes();
+        final int[] starts = this.pool.starts();
+
+        int length = 0;
+
+        for (int i = 0; i < this.size; i++) {
+
+            final int gap = this.gapStarts[i + 1] - this.gapStarts[i];
+            System.arraycopy(this.gaps, this.gapStarts[i], out, length, gap);
+            length += gap;
+
+            final int id = this.choices[this.choiceStarts[i] + state[i]];
+            final int word = starts[id + 1] - starts[id];
+            System.arraycopy(words, starts[id], out, length, word);
+            length += word;
+        }
+
+        final int last = this.gapStarts.length - 2;
+        final int gap = this.gapStarts[last + 1] - this.gapStarts[last];
+        System.arraycopy(this.gaps, this.gapStarts[last], out, length, gap);
+
+        return length + gap;
+    }
+
+    /**
+     * @return the number of positions added so far
+     */
+    public int size() {
+
+        return this.size;
+    }
+
+    /**
+     * @param state
+     *            a value for each position selecting one of its candidates
+     * @return the text for the state given
+     */
+    public String text(final int[] state) {
+
+        final byte[] out = new byte[this.maxBytes()];
+        return new String(out, 0, this.render(state, out),
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the candidates of each position as Strings, as held in a
+     *         JournalEntry
+     */
+    public List<List<String>> toLists() {
+
+        final List<List<String>> result = new ArrayList<>(this.size);
+
+        for (int i = 0; i < this.size; i++) {
+
+            final List<String> candidates = new ArrayList<>(this.length(i));
+
+            for (int j = this.choiceStarts[i]; j < this.choiceStarts[i + 1]; j++) {
+                candidates.add(this.pool.string(this.choices[j]));
+            }
+
+            result.add(candidates);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,23 @@
+package org.overworld.example.webservice.engine;
+
+/**
+ * Implemented by digest functions that can tell a digest they could produce
+ * from one they never could, so that a request for the latter is refused when
+ * it is made rather than searched until its budget runs out.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public interface DigestFormat {
+
+    /**
+     * Determines whether a digest is in the format of this digest function,
+     * ignoring case
+     *
+     * @param digest
+     *            the digest being sought
+     * @return true if some input could produce the digest
+     */
+    boolean isWellFormed(String digest);
+}
@@ -0,0 +1,72 @@
+package org.overworld.example.webservice.engine;
+
+import java.util.function.Function;
+
+/**
+ * The digest functions that a task may use, by the name under which it is
+ * journalled and sent to workers. Only these are ever made from a name, so a
+ * name read from a journal or another instance can do no more than choose
+ * between them.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public final class Digesters {
+
+    /**
+     * The name of BSDSum
+     */
+    public static final String BSD = "bsd";
+
+    /**
+     * The name of MD5Sum
+     */
+    public static final String MD5 = "md5";
+
+    /**
+     * @param name
+     *            the name of a digest function, ignoring case
+     * @return a new instance of the digest function
+     * @throws IllegalArgumentException
+     *             if there is no digest function by that name
+     */
+    public static Function<String, String> forName(final String name)
+        throws IllegalArgumentException {
+
+        if (name != null) {
+
+            switch (name.toLowerCase()) {
+                case MD5:
+                    return new MD5Sum();
+                case BSD:
+                    return new BSDSum();
+                default:
+                    break;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown algorithm " + name);
+    }
+
+    /**
+     * @param digester
+     *            a digest function
+     * @return the name of the digest function, or null if it has none and so
+     *         cannot be journalled or sent to workers
+     */
+    public static String nameOf(final Function<String, String> digester) {
+
+        if (digester instanceof MD5Sum)
+            return MD5;
+
+        if (digester instanceof BSDSum)
+            return BSD;
+
+        return null;
+    }
+
+    private Digesters() {
+
+    }
+}
@@ -0,0 +1,128 @@
+package org.overworld.example.webservice.engine;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counters of the work done by the search loops of every task. Tasks add to
+ * the striped counters in bulk so that counting never contends or costs
+ * more than a little of the search it measures. The rate is sampled on a
+ * timer at a fixed window, so that any number of readers see the same value
+ * and none of them disturbs it.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+public class EngineMetrics {
+
+    /**
+     * The number of candidate texts digested
+     */
+    private final LongAdder attempts = new LongAdder();
+
+    /**
+     * The number of candidate texts digested per second over the last window
+     */
+    private volatile double attemptsPerSecond;
+
+    /**
+     * The number of attempts at the last sample
+     */
+    private long lastAttempts;
+
+    /**
+     * The system time in ns of the last sample
+     */
+    private long lastSample;
+
+    /**
+     * The timer that samples the rate
+     */
+    private ScheduledExecutorService timer;
+
+    /**
+     * The interval in ms over which the rate is measured, or 0 to not measure
+     * it
+     */
+    @Value("${engine.metrics.window}")
+    private long window;
+
+    /**
+     * @param count
+     *            the number of candidate texts digested since last added
+     */
+    public void addAttempts(final long count) {
+
+        this.attempts.add(count);
+    }
+
+    /**
+     * @return the number of candidate texts digested
+     */
+    public long getAttempts() {
+
+        return this.attempts.sum();
+    }
+
+    /**
+     * @return the number of candidate texts digested per second over the last
+     *         full window
+     */
+    public double getAttemptsPerSecond() {
+
+        return this.attemptsPerSecond;
+    }
+
+    @PostConstruct
+    private void init() {
+
+        if (this.window <= 0)
+            return;
+
+        this.lastSample = System.nanoTime();
+        this.lastAttempts = this.attempts.sum();
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+
+            final Thread t = new Thread(r, "engine-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.timer.scheduleAtFixedRate(this::sample, this.window, this.window,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Measures the rate over the window just ended
+     */
+    private void sample() {
+
+        final long now = System.nanoTime();
+        final long attempts = this.attempts.sum();
+
+        if (now > this.lastSample)
+            this.attemptsPerSecond = (attempts - this.lastAttempts) * 1e9
+                / (now - this.lastSample);
+
+        this.lastSample = now;
+        this.lastAttempts = attempts;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+
+        if (this.timer != null)
+            this.timer.shutdownNow();
+    }
+}
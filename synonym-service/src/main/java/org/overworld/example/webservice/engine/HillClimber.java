@@ -0,0 +1,151 @@
+package org.overworld.example.webservice.engine;
+
+/**
+ * Seeks the size of a pool that gives the most throughput by hill climbing.
+ * The size is stepped one way for as long as each step raises throughput by
+ * more than a tolerance, and turned back at a step that does not, so that it
+ * settles to wander about the peak. Throughput is only a measure of the size
+ * while work is waiting for threads, so the size is held while it is not.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+final class HillClimber {
+
+    /**
+     * The direction of the next step, 1 to grow or -1 to shrink
+     */
+    private int direction = 1;
+
+    /**
+     * The number of steps that grew the pool
+     */
+    private long grows;
+
+    /**
+     * The throughput after the last step, or NaN if there is none to compare
+     */
+    private double lastRate = Double.NaN;
+
+    /**
+     * The change in size made by the last step
+     */
+    private int lastStep;
+
+    /**
+     * The largest size
+     */
+    private final int max;
+
+    /**
+     * The smallest size
+     */
+    private final int min;
+
+    /**
+     * The number of steps that shrank the pool
+     */
+    private long shrinks;
+
+    /**
+     * The fraction by which a step must raise throughput to be followed by
+     * another the same way
+     */
+    private final double tolerance;
+
+    /**
+     * @param min
+     *            the smallest size
+     * @param max
+     *            the largest size
+     * @param tolerance
+     *            the fraction by which a step must raise throughput to be
+     *            followed by another the same way
+     */
+    HillClimber(final int min, final int max, final double tolerance) {
+
+        this.min = min;
+        this.max = Math.max(min, max);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return the number of steps that grew the pool
+     */
+    long getGrows() {
+
+        return this.grows;
+    }
+
+    /**
+     * @return the change in size made by the last step
+     */
+    int getLastStep() {
+
+        return this.lastStep;
+    }
+
+    /**
+     * @return the number of steps that shrank the pool
+     */
+    long getShrinks() {
+
+        return this.shrinks;
+    }
+
+    /**
+     * Takes a step from the throughput measured since the last
+     *
+     * @param size
+     *            the current size
+     * @param rate
+     *            the throughput since the last step
+     * @param pressed
+     *            whether work waited for a thread since the last step
+     * @param mayGrow
+     *            false if a resource the pool depends on is saturated
+     * @param step
+     *            the number of threads to move by
+     * @return the new size
+     */
+    int next(final int size, final double rate, final boolean pressed,
+        final boolean mayGrow, final int step) {
+
+        final int current = Math.max(this.min, Math.min(this.max, size));
+
+        if (!pressed) {
+
+            /* start afresh when pressed again, as the load will differ */
+            this.direction = 1;
+            this.lastRate = Double.NaN;
+            this.lastStep = current - size;
+            return current;
+        }
+
+        if (this.lastStep != 0 && !Double.isNaN(this.lastRate)
+            && rate <= this.lastRate * (1 + this.tolerance))
+            this.direction = -this.direction;
+
+        int target = current;
+
+        if (this.direction < 0)
+            target = Math.max(this.min, current - step);
+        else if (mayGrow)
+            target = Math.min(this.max, current + step);
+
+        /* turn back from a bound rather than wait at it */
+        if (target == current && (mayGrow || this.direction < 0))
+            this.direction = -this.direction;
+
+        if (target > size)
+            this.grows++;
+        else if (target < size)
+            this.shrinks++;
+
+        this.lastRate = rate;
+        this.lastStep = target - size;
+
+        return target;
+    }
+}
@@ -0,0 +1,252 @@
+package org.overworld.example.webservice.engine;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A POJO to represent everything needed to resume a SeekTask after a restart,
+ * as written to and read from the TaskJournal
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class JournalEntry {
+
+    /**
+     * The most candidates to try in one run of the search, or 0 for no limit
+     */
+    private long attemptBudget;
+
+    /**
+     * The number of candidates tried by every run of the search up to the
+     * last checkpoint, or in all if the task has finished
+     */
+    private long attempts;
+
+    /**
+     * The fraction of the combination space tried by a task that exhausted its
+     * budget, from 0 to 1
+     */
+    private double coverage;
+
+    /**
+     * The system time in ms after which the task gives up, or 0 for never
+     */
+    private long deadline;
+
+    /**
+     * The name of the digest function, as known to Digesters
+     */
+    private String digester;
+
+    /**
+     * Whether the task finished by exhausting its budget rather than by
+     * searching its whole space
+     */
+    private boolean exhausted;
+
+    /**
+     * Whether the task has finished, in which case result holds its outcome
+     */
+    private boolean finished;
+
+    /**
+     * The prepared generator, or null if the task had not yet prepared it
+     */
+    private List<List<String>> generator;
+
+    /**
+     * The id of the task
+     */
+    private int id;
+
+    /**
+     * The order in which the iterator increments its fields
+     */
+    private int[] indirects;
+
+    /**
+     * The result of a finished task, which may be null if there was no match
+     */
+    private String result;
+
+    /**
+     * The starting text to mutate
+     */
+    private String startText;
+
+    /**
+     * The last state of the iterator that was tried without a match
+     */
+    private int[] state;
+
+    /**
+     * The target checksum or digest to achieve
+     */
+    private String targetDigest;
+
+    public long getAttemptBudget() {
+
+        return this.attemptBudget;
+    }
+
+    public long getAttempts() {
+
+        return this.attempts;
+    }
+
+    public double getCoverage() {
+
+        return this.coverage;
+    }
+
+    public long getDeadline() {
+
+        return this.deadline;
+    }
+
+    public String getDigester() {
+
+        return this.digester;
+    }
+
+    public List<List<String>> getGenerator() {
+
+        return this.generator;
+    }
+
+    public int getId() {
+
+        return this.id;
+    }
+
+    public int[] getIndirects() {
+
+        return this.indirects;
+    }
+
+    public String getResult() {
+
+        return this.result;
+    }
+
+    public String getStartText() {
+
+        return this.startText;
+    }
+
+    public int[] getState() {
+
+        return this.state;
+    }
+
+    public String getTargetDigest() {
+
+        return this.targetDigest;
+    }
+
+    public boolean isExhausted() {
+
+        return this.exhausted;
+    }
+
+    public boolean isFinished() {
+
+        return this.finished;
+    }
+
+    /**
+     * @return a new instance of the digest function named by this entry
+     * @throws IllegalStateException
+     *             if the entry names no known digest function
+     */
+    public Function<String, String> newDigester() throws IllegalStateException {
+
+        try {
+
+            return Digesters.forName(this.digester);
+        } catch (final IllegalArgumentException e) {
+
+            throw new IllegalStateException(
+                "Cannot instantiate digester " + this.digester, e);
+        }
+    }
+
+    public void setAttemptBudget(final long attemptBudget) {
+
+        this.attemptBudget = attemptBudget;
+    }
+
+    public void setAttempts(final long attempts) {
+
+        this.attempts = attempts;
+    }
+
+    public void setCoverage(final double coverage) {
+
+        this.coverage = coverage;
+    }
+
+    public void setDeadline(final long deadline) {
+
+        this.deadline = deadline;
+    }
+
+    public void setDigester(final String digester) {
+
+        this.digester = digester;
+    }
+
+    public void setExhausted(final boolean exhausted) {
+
+        this.exhausted = exhausted;
+    }
+
+    public void setFinished(final boolean finished) {
+
+        this.finished = finished;
+    }
+
+    public void setGenerator(final List<List<String>> generator) {
+
+        this.generator = generator;
+    }
+
+    public void setId(final int id) {
+
+        this.id = id;
+    }
+
+    public void setIndirects(final int[] indirects) {
+
+        this.indirects = indirects;
+    }
+
+    public void setResult(final String result) {
+
+        this.result = result;
+    }
+
+    public void setStartText(final String startText) {
+
+        this.startText = startText;
+    }
+
+    public void setState(final int[] state) {
+
+        this.state = state;
+    }
+
+    public void setTargetDigest(final String targetDigest) {
+
+        this.targetDigest = targetDigest;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JournalEntry [id=" + this.id + ", digester=" + this.digester
+            + ", finished=" + this.finished + "]";
+    }
+}
@@ -0,0 +1,83 @@
+package org.overworld.example.webservice.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A POJO to represent the state of one job's leases on a worker, as returned
+ * to the coordinator on each heartbeat
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class LeaseStatus {
+
+    /**
+     * The candidates tried in all the leases of the job so far
+     */
+    private long attempts;
+
+    /**
+     * The leases searched to completion without a match
+     */
+    private List<Long> finished = new ArrayList<>();
+
+    /**
+     * The matching text, if any lease found one
+     */
+    private String result;
+
+    /**
+     * The leases still being searched or waiting to be searched
+     */
+    private List<Long> running = new ArrayList<>();
+
+    public long getAttempts() {
+
+        return this.attempts;
+    }
+
+    public List<Long> getFinished() {
+
+        return this.finished;
+    }
+
+    public String getResult() {
+
+        return this.result;
+    }
+
+    public List<Long> getRunning() {
+
+        return this.running;
+    }
+
+    public void setAttempts(final long attempts) {
+
+        this.attempts = attempts;
+    }
+
+    public void setFinished(final List<Long> finished) {
+
+        this.finished = finished;
+    }
+
+    public void setResult(final String result) {
+
+        this.result = result;
+    }
+
+    public void setRunning(final List<Long> running) {
+
+        this.running = running;
+    }
+
+    @Override
+    public String toString() {
+
+        return "LeaseStatus [running=" + this.running + ", finished="
+            + this.finished + ", attempts=" + this.attempts + ", result="
+            + (this.result != null) + "]";
+    }
+}
@@ -0,0 +1,24 @@
+package org.overworld.example.webservice.engine;
+
+/**
+ * Implemented by digest functions whose output depends in part on the length
+ * of the input, so that a search can discard candidates of the wrong length
+ * without digesting them.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public interface LengthBounded {
+
+    /**
+     * Determines the range of input lengths, in chars, that could possibly
+     * produce the digest given
+     *
+     * @param digest
+     *            the digest being sought
+     * @return a two element array of the minimum and maximum length inclusive,
+     *         or null if the digest places no constraint on length
+     */
+    long[] lengthBounds(String digest);
+}
@@ -12,7 +12,13 @@ import java.util.function.Function;
  *         Date: 2016
  */
 
-public class MD5Sum implements Function<String, String> {
+public class MD5Sum implements Function<String, String>, ByteDigester,
+    BatchDigester, DigestFormat {
+
+    /**
+     * The number of candidates hashed at once by a batch
+     */
+    private static final int LANES = 8;
 
     /**
      * Converts a block of text to its MD5 digest, outputting the result with
@@ -38,9 +44,56 @@ public class MD5Sum implements Function<String, String> {
         }
     }
 
+    /**
+     * Converts a block of UTF-8 encoded text to its MD5 digest, outputting the
+     * result with hex encoding.
+     *
+     * @param utf8
+     *            a buffer holding the encoded text from offset 0
+     * @param length
+     *            the number of bytes of the text in the buffer
+     * @return the MD5 digest encoded as hex
+     */
+    private static String md5sum(final byte[] utf8, final int length) {
+
+        try {
+
+            final MessageDigest md = MessageDigest.getInstance("MD5");
+            md.update(utf8, 0, length);
+            final byte[] digest = md.digest();
+            final BigInteger bint = new BigInteger(1, digest);
+            return String.format("%0" + (digest.length << 1) + "x", bint);
+        } catch (final NoSuchAlgorithmException e) {
+
+            /* MD5 really cannot be unsupported */
+            throw new RuntimeException("Algorythm MD5 not supported");
+        }
+    }
+
     @Override
     public String apply(final String input) {
 
         return md5sum(input);
     }
+
+    @Override
+    public String digest(final byte[] utf8, final int length, final int chars) {
+
+        return md5sum(utf8, length);
+    }
+
+    /**
+     * An MD5 digest is 32 hex digits
+     */
+    @Override
+    public boolean isWellFormed(final String digest) {
+
+        return digest.matches("[0-9a-fA-F]{32}");
+    }
+
+    @Override
+    public Batch newBatch(final String targetDigest) {
+
+        return new MultiMD5(LANES, targetDigest);
+    }
 }
\ No newline at end of file
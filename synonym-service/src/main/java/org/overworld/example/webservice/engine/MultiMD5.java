@@ -0,0 +1,321 @@
+package org.overworld.example.webservice.engine;
+
+import java.util.Arrays;
+
+/**
+ * MD5 of several messages at once, one per lane. The rounds of MD5 within a
+ * message depend on each other, but the messages do not, so each step is
+ * applied to every lane in a tight loop over arrays. The lanes give the CPU
+ * independent work to overlap and give the JIT a loop it can unroll or
+ * vectorise, for a multiple of the throughput of hashing one message at a
+ * time.
+ * <p/>
+ * Messages of different lengths may share a batch; a lane simply stops
+ * taking up its results once its last block has been processed.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public final class MultiMD5 implements BatchDigester.Batch {
+
+    /**
+     * The additive constant of each step
+     */
+    private static final int[] K = new int[64];
+
+    /**
+     * The left rotation of each step
+     */
+    private static final int[] S = { 7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17,
+        22, 7, 12, 17, 22, 5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14,
+        20, 4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23, 6, 10,
+        15, 21, 6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21 };
+
+    static {
+
+        for (int i = 0; i < 64; i++) {
+            K[i] = (int) (long) Math.floor(Math.abs(Math.sin(i + 1)) * (1L << 32));
+        }
+    }
+
+    /**
+     * Parses a hex digest into the four words of MD5 state it encodes
+     *
+     * @param hex
+     *            the digest as 32 hex digits
+     * @return the state words, each read little endian
+     * @throws IllegalArgumentException
+     *             if the digest is not 32 hex digits
+     */
+    static int[] words(final String hex) throws IllegalArgumentException {
+
+        if (hex.length() != 32)
+            throw new IllegalArgumentException("Not an MD5 digest: " + hex);
+
+        final int[] result = new int[4];
+
+        for (int i = 0; i < 16; i++) {
+
+            final int b = Integer.parseInt(hex.substring(i << 1, (i << 1) + 2),
+                16);
+            result[i >> 2] |= b << ((i & 3) << 3);
+        }
+
+        return result;
+    }
+
+    /**
+     * The working state of each lane within a block
+     */
+    private int[] a, b, c, d;
+
+    /**
+     * The number of blocks of each lane's padded message
+     */
+    private final int[] blocks;
+
+    /**
+     * The state of each lane between blocks
+     */
+    private final int[] h0, h1, h2, h3;
+
+    /**
+     * The number of lanes
+     */
+    private final int lanes;
+
+    /**
+     * The target digest as state words
+     */
+    private final int[] target;
+
+    /**
+     * The words of the current block of each lane, word by word, so that the
+     * lanes of one word are adjacent
+     */
+    private final int[] x;
+
+    /**
+     * @param lanes
+     *            the number of messages to hash at once
+     * @param targetDigest
+     *            the digest to seek, as 32 hex digits
+     */
+    public MultiMD5(final int lanes, final String targetDigest) {
+
+        this.lanes = lanes;
+        this.target = words(targetDigest);
+
+        this.a = new int[lanes];
+        this.b = new int[lanes];
+        this.c = new int[lanes];
+        this.d = new int[lanes];
+        this.h0 = new int[lanes];
+        this.h1 = new int[lanes];
+        this.h2 = new int[lanes];
+        this.h3 = new int[lanes];
+        this.blocks = new int[lanes];
+        this.x = new int[16 * lanes];
+    }
+
+    /**
+     * Hashes a batch, leaving the digest of each message in h0 to h3
+     *
+     * @param utf8
+     *            the messages
+     * @param lengths
+     *            the length of each message
+     * @param count
+     *            the number of messages
+     */
+    void digest(final byte[][] utf8, final int[] lengths, final int count) {
+
+        int maxBlocks = 0;
+
+        for (int l = 0; l < count; l++) {
+
+            /* a message, a 0x80 byte and a 64 bit length, in 64 byte blocks */
+            this.blocks[l] = ((lengths[l] + 8) >>> 6) + 1;
+            maxBlocks = Math.max(maxBlocks, this.blocks[l]);
+        }
+
+        Arrays.fill(this.h0, 0x67452301);
+        Arrays.fill(this.h1, 0xefcdab89);
+        Arrays.fill(this.h2, 0x98badcfe);
+        Arrays.fill(this.h3, 0x10325476);
+
+        for (int block = 0; block < maxBlocks; block++) {
+
+            for (int l = 0; l < count; l++) {
+
+                if (block < this.blocks[l])
+                    this.load(utf8[l], lengths[l], block, l);
+            }
+
+            this.rounds();
+
+            for (int l = 0; l < count; l++) {
+
+                if (block < this.blocks[l]) {
+
+                    this.h0[l] += this.a[l];
+                    this.h1[l] += this.b[l];
+                    this.h2[l] += this.c[l];
+                    this.h3[l] += this.d[l];
+                }
+            }
+        }
+    }
+
+    @Override
+    public int find(final byte[][] utf8, final int[] lengths, final int count) {
+
+        this.digest(utf8, lengths, count);
+
+        for (int l = 0; l < count; l++) {
+
+            if (this.h0[l] == this.target[0] && this.h1[l] == this.target[1]
+                && this.h2[l] == this.target[2] && this.h3[l] == this.target[3])
+                return l;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int lanes() {
+
+        return this.lanes;
+    }
+
+    /**
+     * Loads a block of a lane's message into x, padding it if the block is
+     * at or beyond the end of the message
+     *
+     * @param message
+     *            the message
+     * @param length
+     *            the length of the message
+     * @param block
+     *            the index of the block
+     * @param lane
+     *            the lane
+     */
+    private void load(final byte[] message, final int length, final int block,
+        final int lane) {
+
+        final int offset = block << 6;
+        final int lanes = this.lanes;
+
+        if (offset + 64 <= length) {
+
+            for (int w = 0, p = offset; w < 16; w++, p += 4) {
+                this.x[w * lanes + lane] = message[p] & 0xff
+                    | (message[p + 1] & 0xff) << 8
+                    | (message[p + 2] & 0xff) << 16
+                    | (message[p + 3] & 0xff) << 24;
+            }
+
+            return;
+        }
+
+        for (int w = 0; w < 16; w++) {
+
+            int word = 0;
+
+            for (int k = 0; k < 4; k++) {
+
+                final int p = offset + (w << 2) + k;
+                final int value = p < length ? message[p] & 0xff
+                    : p == length ? 0x80 : 0;
+                word |= value << (k << 3);
+            }
+
+            this.x[w * lanes + lane] = word;
+        }
+
+        if (block == this.blocks[lane] - 1) {
+
+            final long bits = (long) length << 3;
+            this.x[14 * lanes + lane] = (int) bits;
+            this.x[15 * lanes + lane] = (int) (bits >>> 32);
+        }
+    }
+
+    /**
+     * Applies the 64 steps of MD5 to the current block of every lane,
+     * starting from the state in h0 to h3 and leaving the result in a to d
+     */
+    private void rounds() {
+
+        final int lanes = this.lanes;
+        final int[] x = this.x;
+
+        int[] a = this.a, b = this.b, c = this.c, d = this.d, t;
+
+        System.arraycopy(this.h0, 0, a, 0, lanes);
+        System.arraycopy(this.h1, 0, b, 0, lanes);
+        System.arraycopy(this.h2, 0, c, 0, lanes);
+        System.arraycopy(this.h3, 0, d, 0, lanes);
+
+        /*
+         * Each step writes the new b into a, then the arrays are renamed
+         * rather than the lanes being moved between them
+         */
+
+        for (int i = 0; i < 16; i++) {
+
+            final int k = K[i], s = S[i], g = i * lanes;
+
+            for (int l = 0; l < lanes; l++) {
+                a[l] = b[l] + Integer.rotateLeft(a[l]
+                    + (b[l] & c[l] | ~b[l] & d[l]) + k + x[g + l], s);
+            }
+
+            t = d; d = c; c = b; b = a; a = t;
+        }
+
+        for (int i = 16; i < 32; i++) {
+
+            final int k = K[i], s = S[i], g = ((5 * i + 1) & 15) * lanes;
+
+            for (int l = 0; l < lanes; l++) {
+                a[l] = b[l] + Integer.rotateLeft(a[l]
+                    + (d[l] & b[l] | ~d[l] & c[l]) + k + x[g + l], s);
+            }
+
+            t = d; d = c; c = b; b = a; a = t;
+        }
+
+        for (int i = 32; i < 48; i++) {
+
+            final int k = K[i], s = S[i], g = ((3 * i + 5) & 15) * lanes;
+
+            for (int l = 0; l < lanes; l++) {
+                a[l] = b[l] + Integer.rotateLeft(a[l]
+                    + (b[l] ^ c[l] ^ d[l]) + k + x[g + l], s);
+            }
+
+            t = d; d = c; c = b; b = a; a = t;
+        }
+
+        for (int i = 48; i < 64; i++) {
+
+            final int k = K[i], s = S[i], g = ((7 * i) & 15) * lanes;
+
+            for (int l = 0; l < lanes; l++) {
+                a[l] = b[l] + Integer.rotateLeft(a[l]
+                    + (c[l] ^ (b[l] | ~d[l])) + k + x[g + l], s);
+            }
+
+            t = d; d = c; c = b; b = a; a = t;
+        }
+
+        /* 64 renames bring the arrays back to their own names */
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+    }
+}
@@ -0,0 +1,74 @@
+package org.overworld.example.webservice.engine;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The number of tasks at each phase of progress, kept as the tasks move from
+ * phase to phase so that reading them never visits the tasks.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class PhaseCounts {
+
+    /**
+     * The number of phases of progress, from 0 to 6
+     */
+    public static final int PHASES = 7;
+
+    /**
+     * The number of tasks at each phase
+     */
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(PHASES);
+
+    /**
+     * Counts a task at a phase
+     *
+     * @param phase
+     *            the phase of the task
+     */
+    public void add(final int phase) {
+
+        this.counts.incrementAndGet(phase);
+    }
+
+    /**
+     * @return a snapshot of the number of tasks at each phase, in order
+     */
+    public int[] get() {
+
+        final int[] result = new int[PHASES];
+
+        for (int i = 0; i < PHASES; i++) {
+            result[i] = this.counts.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Moves a task from one phase to another
+     *
+     * @param from
+     *            the phase the task has left
+     * @param to
+     *            the phase the task has entered
+     */
+    public void move(final int from, final int to) {
+
+        this.counts.decrementAndGet(from);
+        this.counts.incrementAndGet(to);
+    }
+
+    /**
+     * Stops counting a task
+     *
+     * @param phase
+     *            the phase of the task
+     */
+    public void remove(final int phase) {
+
+        this.counts.decrementAndGet(phase);
+    }
+}
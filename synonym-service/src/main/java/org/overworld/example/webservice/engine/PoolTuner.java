@@ -0,0 +1,400 @@
+package org.overworld.example.webservice.engine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resizes the stages of the pipeline to the load, so that neither the fetch
+ * nor the search stage has to be sized by hand for each machine and upstream.
+ * At every interval each stage is sampled for its throughput, the time tasks
+ * waited for it, its queue and the states of its threads, and a HillClimber
+ * steps its size within the configured bounds.
+ * <p/>
+ * The search stage is measured in candidates digested rather than tasks
+ * completed, as a search can outlast many intervals, and is never grown while
+ * the process already has the CPU to itself. Neither stage is grown while
+ * most of its threads are blocked on a monitor, as more threads would only
+ * queue for the same lock.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+public class PoolTuner {
+
+    /**
+     * The fraction of a stage's threads blocked on monitors above which it is
+     * not grown
+     */
+    private static final double BLOCKED_LIMIT = 0.5;
+
+    private static final Log LOG = LogFactory.getLog(PoolTuner.class);
+
+    /**
+     * The mean wait in ms for a stage above which tasks are taken to be
+     * waiting for threads
+     */
+    private static final double WAIT_LIMIT_MS = 5;
+
+    /**
+     * @param os
+     *            the operating system bean
+     * @return the recent CPU load of the process from 0 to 1, or -1 if the
+     *         JVM does not report it
+     */
+    private static double processCpuLoad(final OperatingSystemMXBean os) {
+
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) os)
+                .getProcessCpuLoad();
+
+        return -1;
+    }
+
+    /**
+     * The largest CPU load of the process at which the search stage may grow
+     */
+    @Value("${service.tuner.cpuCeiling}")
+    private double cpuCeiling;
+
+    /**
+     * The CPU load of the process at the last sample
+     */
+    private volatile double cpuLoad = -1;
+
+    /**
+     * The sizer of the fetch stage
+     */
+    private HillClimber fetchClimber;
+
+    /**
+     * The fraction of fetch threads blocked on monitors at the last sample
+     */
+    private volatile double fetchBlocked;
+
+    /**
+     * The number of fetches started at the last sample
+     */
+    private long fetches;
+
+    /**
+     * Tasks fetched per second over the last interval
+     */
+    private volatile double fetchRate;
+
+    /**
+     * The largest number of fetch threads
+     */
+    @Value("${service.fetchThreads.max}")
+    private int fetchThreadsMax;
+
+    /**
+     * The smallest number of fetch threads
+     */
+    @Value("${service.fetchThreads.min}")
+    private int fetchThreadsMin;
+
+    /**
+     * The mean time in ms tasks waited to be fetched over the last interval
+     */
+    private volatile double fetchWaitMs;
+
+    /**
+     * The total fetch wait in ns at the last sample
+     */
+    private long fetchWaitNanos;
+
+    /**
+     * The interval in ms between samples, or 0 to leave the stages as sized
+     */
+    @Value("${service.tuner.interval}")
+    private long interval;
+
+    /**
+     * The system time in ns of the last sample
+     */
+    private long lastSample;
+
+    /**
+     * The counters of the work done by all tasks
+     */
+    private @Autowired EngineMetrics metrics;
+
+    /**
+     * The operating system bean
+     */
+    private final OperatingSystemMXBean os = ManagementFactory
+        .getOperatingSystemMXBean();
+
+    /**
+     * The pipeline whose stages are sized
+     */
+    private @Autowired SeekPipeline pipeline;
+
+    /**
+     * The number of candidates digested at the last sample
+     */
+    private long searchAttempts;
+
+    /**
+     * The sizer of the search stage
+     */
+    private HillClimber searchClimber;
+
+    /**
+     * The fraction of search threads blocked on monitors at the last sample
+     */
+    private volatile double searchBlocked;
+
+    /**
+     * The number of tasks completed at the last sample
+     */
+    private long searchCompleted;
+
+    /**
+     * Candidates digested per second over the last interval
+     */
+    private volatile double searchRate;
+
+    /**
+     * The largest number of search threads, or 0 for two per core
+     */
+    @Value("${service.searchThreads.max}")
+    private int searchThreadsMax;
+
+    /**
+     * The smallest number of search threads
+     */
+    @Value("${service.searchThreads.min}")
+    private int searchThreadsMin;
+
+    /**
+     * The mean time in ms tasks waited between the stages over the last
+     * interval
+     */
+    private volatile double searchWaitMs;
+
+    /**
+     * The total search wait in ns at the last sample
+     */
+    private long searchWaitNanos;
+
+    /**
+     * The thread bean
+     */
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The timer sampling the stages, or null if disabled
+     */
+    private ScheduledExecutorService timer;
+
+    /**
+     * The fraction by which a step must raise throughput to be followed by
+     * another the same way
+     */
+    @Value("${service.tuner.tolerance}")
+    private double tolerance;
+
+    /**
+     * @return the number of times either stage has been resized
+     */
+    public synchronized long getResizes() {
+
+        return this.timer == null ? 0 : this.fetchClimber.getGrows()
+            + this.fetchClimber.getShrinks() + this.searchClimber.getGrows()
+            + this.searchClimber.getShrinks();
+    }
+
+    /**
+     * @return a snapshot of the samples and decisions of the tuner, by name
+     */
+    public Map<String, Number> getStats() {
+
+        final Map<String, Number> result = new LinkedHashMap<>();
+
+        result.put("enabled", this.timer == null ? 0 : 1);
+        result.put("cpuLoad", this.cpuLoad);
+        result.put("fetchThreads", this.pipeline.getFetchThreads());
+        result.put("fetchRate", this.fetchRate);
+        result.put("fetchWaitMs", this.fetchWaitMs);
+        result.put("fetchBlocked", this.fetchBlocked);
+        result.put("searchThreads", this.pipeline.getSearchThreads());
+        result.put("searchRate", this.searchRate);
+        result.put("searchWaitMs", this.searchWaitMs);
+        result.put("searchBlocked", this.searchBlocked);
+
+        if (this.timer != null) {
+
+            synchronized (this) {
+
+                result.put("fetchLastStep", this.fetchClimber.getLastStep());
+                result.put("fetchGrows", this.fetchClimber.getGrows());
+                result.put("fetchShrinks", this.fetchClimber.getShrinks());
+                result.put("searchLastStep", this.searchClimber.getLastStep());
+                result.put("searchGrows", this.searchClimber.getGrows());
+                result.put("searchShrinks", this.searchClimber.getShrinks());
+            }
+        }
+
+        return result;
+    }
+
+    @PostConstruct
+    private void init() {
+
+        if (this.interval <= 0)
+            return;
+
+        final int cores = Runtime.getRuntime().availableProcessors();
+
+        this.fetchClimber = new HillClimber(Math.max(1, this.fetchThreadsMin),
+            this.fetchThreadsMax, this.tolerance);
+        this.searchClimber = new HillClimber(Math.max(1, this.searchThreadsMin),
+            this.searchThreadsMax > 0 ? this.searchThreadsMax : 2 * cores,
+            this.tolerance);
+
+        this.lastSample = System.nanoTime();
+        this.searchAttempts = this.metrics.getAttempts();
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+
+            final Thread t = new Thread(r, "pool-tuner");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.timer.scheduleWithFixedDelay(this::tune, this.interval,
+            this.interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counts the threads of each stage blocked on a monitor
+     *
+     * @return the fraction of fetch threads and of search threads blocked
+     */
+    private double[] sampleBlocked() {
+
+        final int[] counts = new int[4];
+
+        for (final ThreadInfo info : this.threads.getThreadInfo(
+            this.threads.getAllThreadIds(), 0)) {
+
+            if (info == null)
+                continue;
+
+            final int stage = info.getThreadName().startsWith("seek-fetch-") ? 0
+                : info.getThreadName().startsWith("seek-search-") ? 2 : -1;
+
+            if (stage < 0)
+                continue;
+
+            counts[stage]++;
+
+            if (info.getThreadState() == Thread.State.BLOCKED)
+                counts[stage + 1]++;
+        }
+
+        return new double[] {
+            counts[0] == 0 ? 0 : (double) counts[1] / counts[0],
+            counts[2] == 0 ? 0 : (double) counts[3] / counts[2] };
+    }
+
+    @PreDestroy
+    private void shutdown() {
+
+        if (this.timer != null)
+            this.timer.shutdownNow();
+    }
+
+    /**
+     * Samples both stages and steps the size of each
+     */
+    private synchronized void tune() {
+
+        try {
+
+            final long now = System.nanoTime();
+            final double seconds = (now - this.lastSample) / 1e9;
+            this.lastSample = now;
+
+            final long attempts = this.metrics.getAttempts();
+            final long fetches = this.pipeline.getFetches();
+            final long fetchWaitNanos = this.pipeline.getFetchWaitNanos();
+            final long completed = this.pipeline.getCompleted();
+            final long searchWaitNanos = this.pipeline.getSearchWaitNanos();
+
+            this.fetchRate = (fetches - this.fetches) / seconds;
+            this.searchRate = (attempts - this.searchAttempts) / seconds;
+            this.fetchWaitMs = fetches == this.fetches ? 0
+                : (fetchWaitNanos - this.fetchWaitNanos) / 1e6
+                    / (fetches - this.fetches);
+            this.searchWaitMs = completed == this.searchCompleted ? 0
+                : (searchWaitNanos - this.searchWaitNanos) / 1e6
+                    / (completed - this.searchCompleted);
+
+            this.searchAttempts = attempts;
+            this.fetches = fetches;
+            this.fetchWaitNanos = fetchWaitNanos;
+            this.searchCompleted = completed;
+            this.searchWaitNanos = searchWaitNanos;
+
+            final double[] blocked = this.sampleBlocked();
+            this.fetchBlocked = blocked[0];
+            this.searchBlocked = blocked[1];
+            this.cpuLoad = processCpuLoad(this.os);
+
+            final int fetchThreads = this.pipeline.getFetchThreads();
+            final int nextFetch = this.fetchClimber.next(fetchThreads,
+                this.fetchRate, this.pipeline.getQueuedFetches() > 0
+                    || this.fetchWaitMs > WAIT_LIMIT_MS,
+                this.fetchBlocked <= BLOCKED_LIMIT,
+                Math.max(1, fetchThreads / 8));
+
+            final int searchThreads = this.pipeline.getSearchThreads();
+            final int nextSearch = this.searchClimber.next(searchThreads,
+                this.searchRate, this.pipeline.getQueuedSearches() > 0
+                    || this.searchWaitMs > WAIT_LIMIT_MS,
+                this.searchBlocked <= BLOCKED_LIMIT
+                    && this.cpuLoad < this.cpuCeiling, 1);
+
+            if (nextFetch != fetchThreads) {
+
+                LOG.info("Fetch threads " + fetchThreads + " -> " + nextFetch
+                    + " at " + String.format("%.1f", this.fetchRate)
+                    + " fetches/s, wait " + String.format("%.1f", this.fetchWaitMs)
+                    + " ms");
+                this.pipeline.resizeFetch(nextFetch);
+            }
+
+            if (nextSearch != searchThreads) {
+
+                LOG.info("Search threads " + searchThreads + " -> " + nextSearch
+                    + " at " + String.format("%.0f", this.searchRate)
+                    + " attempts/s, CPU " + String.format("%.2f", this.cpuLoad));
+                this.pipeline.resizeSearch(nextSearch);
+            }
+        } catch (final RuntimeException e) {
+
+            /* an exception would cancel the schedule */
+            LOG.warn("Unable to tune the pipeline", e);
+        }
+    }
+}
@@ -22,21 +22,33 @@ import java.util.stream.IntStream;
  */
 public class RandomisedCombinationIterator {
 
+    /**
+     * Set when the current state has not yet been returned by next, as is the
+     * case at the start of a lease
+     */
+    private boolean fresh;
+
     /**
      * The indirection array that confuses the order in which fields are
      * incremented
      */
-    private int[] indirects;
+    protected int[] indirects;
 
     /**
      * The length of each list in the generator in order
      */
-    private final int[] lenghts;
+    protected final int[] lenghts;
+
+    /**
+     * The number of fields, in increment order, that the iterator may change.
+     * Fields from this position on are fixed by the lease being iterated.
+     */
+    protected int limit;
 
     /**
      * The current state
      */
-    private final int[] state;
+    protected final int[] state;
 
     /**
      * Create a new instance with the specified lengths and a randomised order
@@ -55,6 +67,101 @@ public class RandomisedCombinationIterator {
         Collections.shuffle(indirectsList);
         this.indirects = indirectsList.stream().mapToInt(i -> i.intValue())
             .toArray();
+        this.limit = this.lenghts.length;
+    }
+
+    /**
+     * Determines how many of the slowest moving fields to fix in order to
+     * divide the sequence into at least the target number of leases, or as
+     * many as there are states if fewer
+     *
+     * @param lengths
+     *            the lengths of the ranges of the fields
+     * @param indirects
+     *            the order in which fields are incremented
+     * @param target
+     *            the desired number of leases
+     * @return the position, in increment order, of the first fixed field
+     */
+    static int leaseLimit(final int[] lengths, final int[] indirects,
+        final long target) {
+
+        int limit = indirects.length;
+        long count = 1;
+
+        while (limit > 0 && count < target) {
+            count *= lengths[indirects[--limit]];
+        }
+
+        return limit;
+    }
+
+    /**
+     * @param lengths
+     *            the lengths of the ranges of the fields
+     * @param indirects
+     *            the order in which fields are incremented
+     * @param limit
+     *            the position, in increment order, of the first fixed field
+     * @return the number of leases when fields from limit on are fixed
+     */
+    static long leaseCount(final int[] lengths, final int[] indirects,
+        final int limit) {
+
+        long count = 1;
+
+        for (int i = limit; i < indirects.length; i++) {
+            count *= lengths[indirects[i]];
+        }
+
+        return count;
+    }
+
+    /**
+     * @param lengths
+     *            the lengths of the ranges of the fields
+     * @param indirects
+     *            the order in which fields are incremented
+     * @param state
+     *            a state of the fields
+     * @return the fraction of every state that comes before the state given,
+     *         which is the fraction searched once it has been tried, as the
+     *         starting state is never returned
+     */
+    static double position(final int[] lengths, final int[] indirects,
+        final int[] state) {
+
+        double result = 0;
+        double span = 1;
+
+        for (int i = indirects.length - 1; i >= 0; i--) {
+
+            span *= lengths[indirects[i]];
+            result += state[indirects[i]] / span;
+        }
+
+        return result;
+    }
+
+    /**
+     * Determines the position from which a subclass must examine the state
+     * after moving to the next one
+     *
+     * @return the position, in increment order, of the field that was
+     *         incremented, or limit if the current state had not yet been
+     *         returned and so was not incremented
+     * @throws IndexOutOfBoundsException
+     *             if there are no more sequences
+     */
+    protected int advance() throws IndexOutOfBoundsException {
+
+        if (this.fresh) {
+
+            this.fresh = false;
+            return this.limit;
+        }
+
+        return this.inc(0);
     }
 
     /**
@@ -62,28 +169,76 @@ public class RandomisedCombinationIterator {
      *
      * @param index
      *            the field to increment
+     * @return the position, in increment order, of the field that was
+     *         incremented without rolling around; every field before it is now 0
      * @throws IndexOutOfBoundsException
      *             if there are no more sequences
      */
-    private void inc(final int index) throws IndexOutOfBoundsException {
+    protected int inc(final int index) throws IndexOutOfBoundsException {
+
+        if (index >= this.limit)
+            throw new IndexOutOfBoundsException("No more sequences");
 
         final int indirectIndex = this.indirects[index];
 
         if (this.state[indirectIndex] < this.lenghts[indirectIndex] - 1) {
 
             /* There is room to increment the value at this index */
-            this.state[indirectIndex]++;
+            this.changed(indirectIndex, this.state[indirectIndex],
+                ++this.state[indirectIndex]);
+            return index;
         } else {
 
             /*
              * There is no room to increment the value at this index, so it
              * rolls around to 0 and the next one is incremented
              */
+            this.changed(indirectIndex, this.state[indirectIndex], 0);
             this.state[indirectIndex] = 0;
-            this.inc(index + 1);
+            return this.inc(index + 1);
         }
     }
 
+    /**
+     * Called whenever a field changes value, so that subclasses can keep
+     * running totals over the state without rescanning it
+     *
+     * @param field
+     *            the field that changed
+     * @param from
+     *            the previous value of the field
+     * @param to
+     *            the new value of the field
+     */
+    protected void changed(final int field, final int from, final int to) {
+
+        /* nothing to track in the unconstrained case */
+    }
+
+    /**
+     * @return the fraction of every state that the iterator has returned
+     */
+    double getCoverage() {
+
+        return position(this.lenghts, this.indirects, this.state);
+    }
+
+    /**
+     * @return a copy of the order in which fields are incremented
+     */
+    int[] getIndirects() {
+
+        return this.indirects.clone();
+    }
+
+    /**
+     * @return a copy of the current state
+     */
+    int[] getState() {
+
+        return this.state.clone();
+    }
+
     /**
      * Perform a recursive increment on the state and then return it
      *
@@ -94,12 +249,68 @@ public class RandomisedCombinationIterator {
      */
     public int[] next() throws IndexOutOfBoundsException {
 
-        this.inc(0);
+        this.advance();
         return this.state;
     }
 
     /**
-     * Sets the indirects for unit testing only
+     * Confines the iterator to a single lease, in which the fields from limit
+     * on are fixed and only the faster moving fields before it are iterated.
+     * The leases numbered 0 to leaseCount - 1 together cover every state, and
+     * the first state of each lease is returned by the next call to next,
+     * except in lease 0 where it is the starting state.
+     *
+     * @param limit
+     *            the position, in increment order, of the first fixed field
+     * @param lease
+     *            the number of the lease, whose digits are the values of the
+     *            fixed fields with the field at limit moving fastest
+     */
+    void lease(final int limit, final long lease) {
+
+        long remaining = lease;
+
+        for (int i = 0; i < this.indirects.length; i++) {
+
+            final int field = this.indirects[i];
+            int value = 0;
+
+            if (i >= limit) {
+
+                value = (int) (remaining % this.lenghts[field]);
+                remaining /= this.lenghts[field];
+            }
+
+            this.changed(field, this.state[field], value);
+            this.state[field] = value;
+        }
+
+        this.limit = limit;
+        this.fresh = lease != 0;
+    }
+
+    /**
+     * Restores the iterator to a position previously obtained from
+     * getIndirects and getState, so that iteration carries on from there
+     *
+     * @param indirects
+     *            the order in which fields are incremented
+     * @param state
+     *            the state to resume from
+     */
+    void restore(final int[] indirects, final int[] state) {
+
+        this.setIndirects(indirects.clone());
+
+        for (int i = 0; i < state.length; i++) {
+
+            this.changed(i, this.state[i], state[i]);
+            this.state[i] = state[i];
+        }
+    }
+
+    /**
+     * Sets the indirects, for unit testing and restoring a position
      *
      * @param indirects
      *            the new indirects to use
@@ -0,0 +1,398 @@
+package org.overworld.example.webservice.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Spreads the search of a single SeekTask across other instances of this
+ * service acting as workers.
+ * <p/>
+ * The combination space is divided into leases by fixing the slowest moving
+ * fields of the iterator, and each worker is given the prepared generator once
+ * and then a few leases at a time. Workers are polled for the state of their
+ * leases on every heartbeat; a worker that cannot be reached for longer than
+ * the dead interval is dropped and its leases are handed to the others. The
+ * first match found stops the job on every worker that ever joined it,
+ * including those dropped, which may still be searching, as does the task
+ * reaching its deadline or the workers between them trying its budget of
+ * candidates, either of which is checked on every heartbeat.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+public class SeekCoordinator {
+
+    /**
+     * A worker as seen by the coordinator during one job
+     */
+    private static class Worker {
+
+        /**
+         * The candidates the worker last reported tried in the job
+         */
+        private long attempts;
+
+        /**
+         * The leases given to this worker and not yet reported finished
+         */
+        private final Set<Long> leases = new HashSet<>();
+
+        /**
+         * The system time in ms when the worker last answered
+         */
+        private long lastSeen = System.currentTimeMillis();
+
+        /**
+         * The base URL of the worker
+         */
+        private final String url;
+
+        private Worker(final String url) {
+
+            this.url = url;
+        }
+    }
+
+    private static final Log LOG = LogFactory.getLog(SeekCoordinator.class);
+
+    /**
+     * The interval in ms after which an unreachable worker is dropped
+     */
+    @Value("${coordinator.deadAfter}")
+    private long deadAfter;
+
+    /**
+     * The interval in ms between heartbeats
+     */
+    @Value("${coordinator.heartbeat}")
+    private long heartbeat;
+
+    /**
+     * The number of leases to divide the space into for each worker, so that
+     * faster workers take on more of the search
+     */
+    @Value("${coordinator.leasesPerWorker}")
+    private int leasesPerWorker;
+
+    /**
+     * Makes requests of the workers
+     */
+    private RestTemplate rest;
+
+    /**
+     * The number of leases each worker is given at once
+     */
+    @Value("${coordinator.slotsPerWorker}")
+    private int slotsPerWorker;
+
+    /**
+     * A comma separated list of the base URLs of the workers, or empty to
+     * search locally
+     */
+    @Value("${coordinator.workers}")
+    private String workersCSV;
+
+    /**
+     * Gives a worker leases until it has no free slots or none remain
+     *
+     * @param worker
+     *            the worker to give leases to
+     * @param job
+     *            the id of the job
+     * @param limit
+     *            the position of the first fixed field
+     * @param requeued
+     *            leases taken back from dead workers, handed out first
+     * @param next
+     *            the next lease never yet handed out
+     * @param count
+     *            the number of leases
+     * @return the next lease never yet handed out, after those given
+     * @throws RestClientException
+     *             if the worker cannot be reached
+     */
+    private long assign(final Worker worker, final String job, final int limit,
+        final Deque<Long> requeued, final long next, final long count)
+            throws RestClientException {
+
+        long result = next;
+
+        while (worker.leases.size() < this.slotsPerWorker
+            && (!requeued.isEmpty() || result < count)) {
+
+            final long lease = requeued.isEmpty() ? result : requeued.peek();
+
+            this.rest.postForObject(worker.url + "/lease/{job}/{lease}?limit={limit}",
+                null, String.class, job, lease, limit);
+
+            worker.leases.add(lease);
+
+            if (requeued.isEmpty())
+                result++;
+            else
+                requeued.pop();
+        }
+
+        return result;
+    }
+
+    /**
+     * Asks a worker to abandon a job, ignoring any failure to do so
+     *
+     * @param worker
+     *            the worker
+     * @param job
+     *            the id of the job
+     */
+    private void cancel(final Worker worker, final String job) {
+
+        try {
+
+            this.rest.delete(worker.url + "/lease/{job}", job);
+        } catch (final RestClientException e) {
+
+            LOG.warn("Unable to cancel job " + job + " on " + worker.url);
+        }
+    }
+
+    @PostConstruct
+    private void init() {
+
+        final SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout((int) this.deadAfter);
+        factory.setReadTimeout((int) this.deadAfter);
+
+        this.rest = new RestTemplate(factory);
+    }
+
+    /**
+     * @return true if workers are configured to search on behalf of this
+     *         instance
+     */
+    public boolean isEnabled() {
+
+        return this.workersCSV != null && !this.workersCSV.trim().isEmpty();
+    }
+
+    /**
+     * Searches the combination space of a prepared task across the workers
+     *
+     * @param entry
+     *            the task with its generator and indirects prepared
+     * @param lengths
+     *            the lengths of each List inside the generator, in order
+     * @param deadline
+     *            the system time in ms after which the task gives up, or 0
+     *            for never
+     * @param attemptBudget
+     *            the most candidates to try across the workers, or 0 for no
+     *            limit
+     * @return the matching text, or null if the space was exhausted without
+     *         a match
+     * @throws InterruptedException
+     *             if interrupted, in which case the workers are stopped
+     * @throws IllegalStateException
+     *             if every worker has been lost
+     * @throws BudgetExhaustedException
+     *             if the deadline passes or the budget is spent before a match
+     *             is found, in which case the workers are stopped
+     */
+    public String search(final JournalEntry entry, final int[] lengths,
+        final long deadline, final long attemptBudget)
+            throws InterruptedException, IllegalStateException,
+            BudgetExhaustedException {
+
+        final List<Worker> workers = Arrays.stream(this.workersCSV.split(","))
+            .map(String::trim).filter(url -> !url.isEmpty()).map(Worker::new)
+            .collect(Collectors.toList());
+
+        final String job = UUID.randomUUID().toString();
+
+        final int limit = RandomisedCombinationIterator.leaseLimit(lengths,
+            entry.getIndirects(), (long) workers.size() * this.leasesPerWorker);
+        final long count = RandomisedCombinationIterator.leaseCount(lengths,
+            entry.getIndirects(), limit);
+
+        LOG.info("Job " + job + " for task " + entry.getId() + " split into "
+            + count + " leases across " + workers.size() + " workers");
+
+        final List<Worker> joined = new ArrayList<>();
+
+        for (final Worker worker : workers) {
+
+            try {
+
+                this.rest.put(worker.url + "/lease/{job}", entry, job);
+                joined.add(worker);
+            } catch (final RestClientException e) {
+
+                LOG.warn("Worker " + worker.url + " unavailable for job " + job);
+            }
+        }
+
+        final List<Worker> live = new ArrayList<>(joined);
+        final Deque<Long> requeued = new ArrayDeque<>();
+        long next = 0;
+
+        try {
+
+            while (true) {
+
+                for (final Worker worker : new ArrayList<>(live)) {
+
+                    try {
+
+                        next = this.assign(worker, job, limit, requeued, next,
+                            count);
+                    } catch (final RestClientException e) {
+
+                        this.drop(worker, live, requeued);
+                    }
+                }
+
+                if (live.isEmpty())
+                    throw new IllegalStateException(
+                        "No workers remain for job " + job);
+
+                if (next == count && requeued.isEmpty()
+                    && live.stream().allMatch(w -> w.leases.isEmpty()))
+                    return null;
+
+                Thread.sleep(this.heartbeat);
+
+                for (final Worker worker : new ArrayList<>(live)) {
+
+                    final String result = this.poll(worker, job, live, requeued);
+
+                    if (result != null)
+                        return result;
+                }
+
+                final long attempts = joined.stream().mapToLong(
+                    w -> w.attempts).sum();
+
+                if (deadline > 0 && System.currentTimeMillis() >= deadline
+                    || attemptBudget > 0 && attempts >= attemptBudget) {
+
+                    /* the leases given out and since finished */
+                    final long finished = next - requeued.size() - live
+                        .stream().mapToLong(w -> w.leases.size()).sum();
+
+                    LOG.info("Job " + job + " out of budget after " + attempts
+                        + " attempts");
+
+                    throw new BudgetExhaustedException(entry.getId(), attempts,
+                        (double) finished / count);
+                }
+            }
+        } finally {
+
+            for (final Worker worker : joined) {
+                this.cancel(worker, job);
+            }
+        }
+    }
+
+    /**
+     * Drops a worker from the job, taking back its leases
+     *
+     * @param worker
+     *            the worker to drop
+     * @param live
+     *            the workers still taking part in the job
+     * @param requeued
+     *            the leases to hand out again
+     */
+    private void drop(final Worker worker, final List<Worker> live,
+        final Deque<Long> requeued) {
+
+        LOG.warn("Dropping worker " + worker.url + ", re-leasing "
+            + worker.leases.size() + " leases");
+
+        live.remove(worker);
+        requeued.addAll(worker.leases);
+        worker.leases.clear();
+    }
+
+    /**
+     * Polls a worker for the state of its leases in a job
+     *
+     * @param worker
+     *            the worker to poll
+     * @param job
+     *            the id of the job
+     * @param live
+     *            the workers still taking part in the job
+     * @param requeued
+     *            the leases to hand out again
+     * @return the matching text if the worker found one, otherwise null
+     */
+    private String poll(final Worker worker, final String job,
+        final List<Worker> live, final Deque<Long> requeued) {
+
+        final LeaseStatus status;
+
+        try {
+
+            status = this.rest.getForObject(worker.url + "/lease/{job}",
+                LeaseStatus.class, job);
+        } catch (final RestClientException e) {
+
+            if (e instanceof HttpClientErrorException
+                && ((HttpClientErrorException) e).getStatusCode() == HttpStatus.NOT_FOUND) {
+
+                /* the worker no longer knows the job, so has been restarted */
+                this.drop(worker, live, requeued);
+                return null;
+            }
+
+            if (System.currentTimeMillis() - worker.lastSeen > this.deadAfter)
+                this.drop(worker, live, requeued);
+
+            return null;
+        }
+
+        worker.lastSeen = System.currentTimeMillis();
+        worker.attempts = status.getAttempts();
+
+        if (status.getResult() != null)
+            return status.getResult();
+
+        worker.leases.removeAll(status.getFinished());
+
+        /* leases the worker has lost track of are handed out again */
+        final Set<Long> running = new HashSet<>(status.getRunning());
+
+        for (final Long lease : new ArrayList<>(worker.leases)) {
+
+            if (!running.contains(lease)) {
+
+                worker.leases.remove(lease);
+                requeued.add(lease);
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,592 @@
+package org.overworld.example.webservice.engine;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs SeekTasks in two stages on separate executors. The fetch stage, which
+ * spends its time blocked on the upstream Synonym Service, runs on a large
+ * pool of I/O threads; the search stage, which spends its time digesting,
+ * runs on a pool sized to the cores. A task passes from one to the other
+ * through the queue of the search pool, so that neither kind of work holds up
+ * the other.
+ * <p/>
+ * A search spread across workers by the coordinator is waiting rather than
+ * computing, so it stays on the I/O pool.
+ * <p/>
+ * Each stage takes the queued task with the earliest deadline first, and
+ * tasks without one in the order they were queued after those with one, so
+ * that a task is not left queued past a deadline it could have met.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+public class SeekPipeline {
+
+    /**
+     * The future result of a task as it passes through the pipeline, which
+     * cancels whichever stage the task is in
+     */
+    private static class PipelinedFuture implements Future<String> {
+
+        /**
+         * The result of the last stage
+         */
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        /**
+         * The future of the stage the task is currently in
+         */
+        private volatile Future<?> stage;
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+
+            final boolean cancelled = this.result.cancel(mayInterruptIfRunning);
+            final Future<?> current = this.stage;
+
+            if (cancelled && current != null)
+                current.cancel(mayInterruptIfRunning);
+
+            return cancelled;
+        }
+
+        /**
+         * Records the stage the task has entered, cancelling it at once if the
+         * task was cancelled while between stages
+         *
+         * @param stage
+         *            the future of the stage
+         */
+        private void enter(final Future<?> stage) {
+
+            this.stage = stage;
+
+            if (this.result.isCancelled())
+                stage.cancel(true);
+        }
+
+        @Override
+        public String get() throws InterruptedException, ExecutionException {
+
+            return this.result.get();
+        }
+
+        @Override
+        public String get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+
+            return this.result.get(timeout, unit);
+        }
+
+        @Override
+        public boolean isCancelled() {
+
+            return this.result.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+
+            return this.result.isDone();
+        }
+    }
+
+    /**
+     * A stage of a task as queued on an executor, ordered by the deadline of
+     * the task and then by the order in which stages were queued
+     */
+    private static class Stage extends FutureTask<Void> {
+
+        /**
+         * The system time in ms after which the task gives up, or
+         * Long.MAX_VALUE for never
+         */
+        private final long deadline;
+
+        /**
+         * The order in which the stage was queued
+         */
+        private final long sequence = SEQUENCE.getAndIncrement();
+
+        /**
+         * @param task
+         *            the task whose deadline orders the stage
+         * @param stage
+         *            the work of the stage
+         */
+        private Stage(final SeekTask task, final Runnable stage) {
+
+            super(stage, null);
+
+            this.deadline = task.getDeadline() > 0 ? task.getDeadline()
+                : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Orders queued stages by deadline, then in the order they were queued.
+     * Only Stages are ever queued.
+     */
+    private static final Comparator<Runnable> EARLIEST_DEADLINE = Comparator
+        .comparingLong((final Runnable r) -> ((Stage) r).deadline)
+        .thenComparingLong(r -> ((Stage) r).sequence);
+
+    /**
+     * The source of the order in which stages are queued
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * @param nanos
+     *            a total time in ns
+     * @param count
+     *            the number of things timed
+     * @return the mean time in ms
+     */
+    private static double mean(final long nanos, final long count) {
+
+        return count == 0 ? 0 : nanos / 1e6 / count;
+    }
+
+    /**
+     * @param name
+     *            the prefix of the names of the threads
+     * @return a factory of named daemon threads
+     */
+    private static ThreadFactory named(final String name) {
+
+        final AtomicInteger count = new AtomicInteger(0);
+
+        return r -> {
+
+            final Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Sets the core and maximum sizes of a fixed pool together, in the order
+     * that keeps the core size no larger than the maximum
+     *
+     * @param executor
+     *            the pool
+     * @param threads
+     *            the number of threads
+     */
+    private static void resize(final ThreadPoolExecutor executor,
+        final int threads) {
+
+        if (threads > executor.getMaximumPoolSize()) {
+
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * The number of tasks completed by the pipeline
+     */
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * The executor service that runs the fetch stage
+     */
+    private ThreadPoolExecutor fetchExecutor;
+
+    /**
+     * The total time in ns spent in the fetch stage
+     */
+    private final LongAdder fetchNanos = new LongAdder();
+
+    /**
+     * The number of fetches started
+     */
+    private final LongAdder fetches = new LongAdder();
+
+    /**
+     * The number of threads that run the fetch stage
+     */
+    @Value("${service.fetchThreads}")
+    private int fetchThreads;
+
+    /**
+     * The number of tasks that have been fetched
+     */
+    private final LongAdder fetched = new LongAdder();
+
+    /**
+     * The total time in ns tasks have waited to be fetched
+     */
+    private final LongAdder fetchWaitNanos = new LongAdder();
+
+    /**
+     * The number of tasks refused by either stage
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * The executor service that runs the search stage
+     */
+    private ThreadPoolExecutor searchExecutor;
+
+    /**
+     * The total time in ns spent in the search stage
+     */
+    private final LongAdder searchNanos = new LongAdder();
+
+    /**
+     * The number of threads that run the search stage, or 0 for one per core
+     */
+    @Value("${service.searchThreads}")
+    private int searchThreads;
+
+    /**
+     * The total time in ns tasks have waited between the stages
+     */
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Runs the fetch stage of a task, then hands it to the search stage
+     *
+     * @param task
+     *            the task
+     * @param future
+     *            the future result of the task
+     * @param queued
+     *            the system time in ns when the task was queued for fetch
+     */
+    private void fetch(final SeekTask task, final PipelinedFuture future,
+        final long queued) {
+
+        final long start = System.nanoTime();
+        final boolean ready;
+
+        this.fetchWaitNanos.add(start - queued);
+        this.fetches.increment();
+
+        try {
+
+            ready = task.fetch();
+        } catch (final RuntimeException e) {
+
+            future.result.completeExceptionally(e);
+            return;
+        } finally {
+
+            this.fetchNanos.add(System.nanoTime() - start);
+        }
+
+        if (!ready || Thread.currentThread().isInterrupted()) {
+
+            future.result.complete(null);
+            return;
+        }
+
+        this.fetched.increment();
+
+        if (task.isRemote()) {
+
+            this.search(task, future, System.nanoTime());
+            return;
+        }
+
+        final long handed = System.nanoTime();
+
+        final Stage search = new Stage(task,
+            () -> this.search(task, future, handed));
+
+        future.enter(search);
+
+        try {
+
+            this.searchExecutor.execute(search);
+        } catch (final RuntimeException e) {
+
+            /* the search pool is shut down */
+            this.rejected.increment();
+            future.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return the number of fetches running
+     */
+    public int getActiveFetches() {
+
+        return this.fetchExecutor.getActiveCount();
+    }
+
+    /**
+     * @return the number of searches running
+     */
+    public int getActiveSearches() {
+
+        return this.searchExecutor.getActiveCount();
+    }
+
+    /**
+     * @return the number of tasks completed by the pipeline
+     */
+    public long getCompleted() {
+
+        return this.completed.sum();
+    }
+
+    /**
+     * @return the number of fetches started
+     */
+    public long getFetches() {
+
+        return this.fetches.sum();
+    }
+
+    /**
+     * @return the number of threads that run the fetch stage
+     */
+    public int getFetchThreads() {
+
+        return this.fetchExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the total time in ns tasks have waited to be fetched
+     */
+    public long getFetchWaitNanos() {
+
+        return this.fetchWaitNanos.sum();
+    }
+
+    /**
+     * @return the number of tasks waiting to be fetched
+     */
+    public int getQueuedFetches() {
+
+        return this.fetchExecutor.getQueue().size();
+    }
+
+    /**
+     * @return the number of fetched tasks waiting to be searched
+     */
+    public int getQueuedSearches() {
+
+        return this.searchExecutor.getQueue().size();
+    }
+
+    /**
+     * @return the number of tasks refused by either stage
+     */
+    public long getRejected() {
+
+        return this.rejected.sum();
+    }
+
+    /**
+     * @return the number of threads that run the search stage
+     */
+    public int getSearchThreads() {
+
+        return this.searchExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the total time in ns tasks have waited between the stages
+     */
+    public long getSearchWaitNanos() {
+
+        return this.waitNanos.sum();
+    }
+
+    /**
+     * @return a snapshot of the counts and times of the stages, by name
+     */
+    public Map<String, Number> getStats() {
+
+        final Map<String, Number> result = new LinkedHashMap<>();
+
+        final long fetched = this.fetched.sum();
+        final long completed = this.completed.sum();
+
+        result.put("fetchThreads", this.fetchExecutor.getMaximumPoolSize());
+        result.put("fetchActive", this.getActiveFetches());
+        result.put("fetchQueued", this.getQueuedFetches());
+        result.put("fetchWaitMeanMs",
+            mean(this.fetchWaitNanos.sum(), this.fetches.sum()));
+        result.put("fetched", fetched);
+        result.put("fetchMeanMs", mean(this.fetchNanos.sum(), fetched));
+        result.put("searchThreads", this.searchExecutor.getMaximumPoolSize());
+        result.put("searchActive", this.getActiveSearches());
+        result.put("searchQueued", this.getQueuedSearches());
+        result.put("searchWaitMeanMs", mean(this.waitNanos.sum(), completed));
+        result.put("completed", completed);
+        result.put("searchMeanMs", mean(this.searchNanos.sum(), completed));
+        result.put("rejected", this.getRejected());
+
+        return result;
+    }
+
+    @PostConstruct
+    private void init() {
+
+        final int searchThreads = this.searchThreads > 0 ? this.searchThreads
+            : Runtime.getRuntime().availableProcessors();
+
+        this.fetchExecutor = new ThreadPoolExecutor(this.fetchThreads,
+            this.fetchThreads, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(16, EARLIEST_DEADLINE),
+            named("seek-fetch"));
+
+        this.searchExecutor = new ThreadPoolExecutor(searchThreads,
+            searchThreads, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(16, EARLIEST_DEADLINE),
+            named("seek-search"));
+    }
+
+    /**
+     * Resizes the fetch stage; threads above the new size finish what they
+     * are running and then exit
+     *
+     * @param threads
+     *            the number of threads
+     */
+    public void resizeFetch(final int threads) {
+
+        resize(this.fetchExecutor, threads);
+    }
+
+    /**
+     * Resizes the search stage; threads above the new size finish what they
+     * are running and then exit
+     *
+     * @param threads
+     *            the number of threads
+     */
+    public void resizeSearch(final int threads) {
+
+        resize(this.searchExecutor, threads);
+    }
+
+    /**
+     * Runs the search stage of a task and completes its future
+     *
+     * @param task
+     *            the task
+     * @param future
+     *            the future result of the task
+     * @param queued
+     *            the system time in ns when the task was queued for search
+     */
+    private void search(final SeekTask task, final PipelinedFuture future,
+        final long queued) {
+
+        final long start = System.nanoTime();
+        this.waitNanos.add(start - queued);
+
+        try {
+
+            future.result.complete(task.search());
+        } catch (final RuntimeException e) {
+
+            future.result.completeExceptionally(e);
+        } finally {
+
+            this.searchNanos.add(System.nanoTime() - start);
+            this.completed.increment();
+        }
+    }
+
+    /**
+     * Stops both stages, interrupting running tasks, and waits for them to
+     * finish
+     *
+     * @param timeout
+     *            the time in ms to wait for each stage
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void shutdown(final long timeout) throws InterruptedException {
+
+        this.fetchExecutor.shutdownNow();
+        this.searchExecutor.shutdownNow();
+        this.fetchExecutor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        this.searchExecutor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submits a task to the fetch stage
+     *
+     * @param task
+     *            the task
+     * @return the future result of the task, which is cancelled in whichever
+     *         stage it has reached
+     */
+    public Future<String> submit(final SeekTask task) {
+
+        return this.submit(task, null);
+    }
+
+    /**
+     * Submits a task to the fetch stage, to call back once it is done
+     *
+     * @param task
+     *            the task
+     * @param whenDone
+     *            called with the result or the failure of the task on the
+     *            thread that finishes it, or null
+     * @return the future result of the task, which is cancelled in whichever
+     *         stage it has reached
+     */
+    public Future<String> submit(final SeekTask task,
+        final BiConsumer<? super String, ? super Throwable> whenDone) {
+
+        final PipelinedFuture future = new PipelinedFuture();
+
+        if (whenDone != null)
+            future.result.whenComplete(whenDone);
+
+        /* the stage is entered before it can run, so it is never overwritten */
+        final long queued = System.nanoTime();
+
+        final Stage fetch = new Stage(task,
+            () -> this.fetch(task, future, queued));
+
+        future.enter(fetch);
+
+        try {
+
+            this.fetchExecutor.execute(fetch);
+        } catch (final RuntimeException e) {
+
+            this.rejected.increment();
+            throw e;
+        }
+
+        return future;
+    }
+}
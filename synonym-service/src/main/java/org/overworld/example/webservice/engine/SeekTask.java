@@ -1,23 +1,14 @@
 package org.overworld.example.webservice.engine;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
-import org.springframework.beans.factory.annotation.Value;
-
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * Attempts to manipulate a block of text by replacing non-stopwords with
@@ -34,27 +25,46 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class SeekTask implements Callable<String> {
 
     /**
-     * Stopwords as a set
+     * The number of rounds of attempts between checks on whether a checkpoint
+     * is due, less one, so that the clock is not read on every attempt
      */
-    private static SortedSet<String> stopwords;
+    private static final int CHECKPOINT_MASK = 0xfff;
 
     /**
-     * The startText broken down into alternating words and whitespace
+     * A buffer reused to render the text of each attempt
      */
-    private String[] digestedText;
+    private byte[] buffer;
+
+    /**
+     * The client of the upstream Synonym Service
+     */
+    @Autowired
+    private SynonymClient client;
+
+    /**
+     * The coordinator that spreads the search across workers, if any
+     */
+    @Autowired(required = false)
+    private SeekCoordinator coordinator;
 
     /**
      * The digest function that turns the message into its digest
      */
     private final Function<String, String> digester;
 
+    /**
+     * The record of this task in the journal
+     */
+    private final JournalEntry entry;
+
     /**
      * The generator is a 2-dimensional structure containing all words
-     * (Identified by their index in digestedText), against a list of all
+     * (Identified by their index in the text), against a list of all
      * possible synonyms for that word. Stopwords are not eligible for expansion
-     * and so only the original word appears in the generator
+     * and so only the original word appears in the generator. The words are
+     * held as ids in the shared TokenPool along with the text between them.
      */
-    private final List<List<String>> generator = new ArrayList<>();
+    private CompactGenerator generator;
 
     /**
      * For convenience, the lengths of each List inside the generator, in order
@@ -62,15 +72,49 @@ public class SeekTask implements Callable<String> {
     private int[] generatorLengths;
 
     /**
-     * The system time in ms of the last exception
+     * The iterator over the generator, positioned by fetch for search
      */
-    private long lastException = 0;
+    private RandomisedCombinationIterator iter;
 
     /**
-     * The duration in ms within which two upstream 500 errors aborts the task
+     * The journal to which progress is checkpointed, if any
      */
-    @Value("${upstream.maxExceptionWindow}")
-    private int maxExceptionWindow;
+    @Autowired(required = false)
+    private TaskJournal journal;
+
+    /**
+     * Whether the task may be written to the journal
+     */
+    private boolean journalled = true;
+
+    /**
+     * The lease of the combination space to search, when searching on behalf
+     * of a coordinator
+     */
+    private final long lease;
+
+    /**
+     * The position of the first field fixed by the lease, or -1 if this task
+     * searches the whole combination space
+     */
+    private final int leaseLimit;
+
+    /**
+     * The counters of the work done by all tasks, if any
+     */
+    @Autowired(required = false)
+    private EngineMetrics metrics;
+
+    /**
+     * The system time in ms after which the next checkpoint is due
+     */
+    private long nextCheckpoint;
+
+    /**
+     * The counts by phase in which this task is counted, if any, guarded by
+     * this task
+     */
+    private PhaseCounts phaseCounts;
 
     /**
      * An integer representing the current phase of processing in the task
@@ -78,15 +122,15 @@ public class SeekTask implements Callable<String> {
     private final AtomicInteger progress;
 
     /**
-     * The starting text to mutate
+     * The starting text to mutate, broken into words and the gaps between
      */
-    private final String startText;
+    private final TokenizedText text;
 
     /**
-     * A list of stopwords to exclude from synonym expansion
+     * The stopwords to exclude from synonym expansion
      */
-    @Value("${engine.stopwords}")
-    private String stopwordsCSV;
+    @Autowired
+    private StopwordMatcher stopwords;
 
     /**
      * The target checksum or digest to achieve
@@ -94,22 +138,18 @@ public class SeekTask implements Callable<String> {
     private final String targetDigest;
 
     /**
-     * The URL of the upstream Synonym Service
-     */
-    @Value("${upstream.synonym.url}")
-    private String url;
-
-    /**
-     * A function that maps counted words to their index in digestedText
+     * The number of candidates tried by this run, as last counted
      */
-    private Function<Integer, Integer> wordAt;
+    private volatile long tried;
 
     /**
-     * Find a variation of the startText by substituting synonyms for words
+     * Find a variation of the text by substituting synonyms for words
      * therein such that the digest of the new text matches the targetDigest as
      * provided by the function digester
      *
-     * @param startText
+     * @param id
+     *            the id of the task, under which it is journalled
+     * @param text
      *            the starting message to alter with synonyms
      * @param targetDigest
      *            the resulting message digest to seek
@@ -119,93 +159,348 @@ public class SeekTask implements Callable<String> {
      *            an integer that indicates where the algorythm is currently in
      *            its computation
      */
-    public SeekTask(final String startText, final String targetDigest,
-        final Function<String, String> digester, final AtomicInteger progress) {
+    public SeekTask(final int id, final TokenizedText text,
+        final String targetDigest, final Function<String, String> digester,
+        final AtomicInteger progress) {
 
         this.digester = digester;
-        this.startText = startText;
+        this.text = text;
         this.progress = progress;
         this.progress.set(0);
         this.targetDigest = targetDigest.toLowerCase();
+
+        this.lease = 0;
+        this.leaseLimit = -1;
+
+        this.entry = new JournalEntry();
+        this.entry.setId(id);
+        this.entry.setTargetDigest(this.targetDigest);
+        this.entry.setDigester(Digesters.nameOf(digester));
     }
 
     /**
+     * Resume a task from its journal entry. If the entry holds a prepared
+     * generator then it is used rather than fetching synonyms again, and
+     * iteration carries on from the last checkpointed state.
+     *
+     * @param entry
+     *            the journal entry of the task to resume
+     * @param progress
+     *            an integer that indicates where the algorythm is currently in
+     *            its computation
+     */
+    public SeekTask(final JournalEntry entry, final AtomicInteger progress) {
+
+        this(entry, -1, 0, progress);
+    }
+
+    /**
+     * Resume a task from its journal entry and its starting text, as read back
+     * from the journal
+     *
+     * @param entry
+     *            the journal entry of the task to resume
+     * @param text
+     *            the starting text of the task
+     * @param progress
+     *            an integer that indicates where the algorythm is currently in
+     *            its computation
+     */
+    public SeekTask(final JournalEntry entry, final TokenizedText text,
+        final AtomicInteger progress) {
+
+        this(entry, text, -1, 0, progress);
+    }
+
+    /**
+     * Search one lease of the combination space of a task prepared by a
+     * coordinator, as a worker on its behalf. Leases are never journalled.
+     *
+     * @param entry
+     *            the entry of the task, with its generator and indirects
+     * @param leaseLimit
+     *            the position of the first field fixed by the lease, or -1 to
+     *            resume the whole task
+     * @param lease
+     *            the number of the lease
+     * @param progress
+     *            an integer that indicates where the algorythm is currently in
+     *            its computation
+     */
+    public SeekTask(final JournalEntry entry, final int leaseLimit,
+        final long lease, final AtomicInteger progress) {
+
+        this(entry, TokenizedText.of(entry.getStartText(), TokenPool.shared()),
+            leaseLimit, lease, progress);
+    }
+
+    /**
+     * Search one lease of the combination space of a task prepared by a
+     * coordinator, with the starting text already tokenized, so that the
+     * leases of one job share it
+     *
+     * @param entry
+     *            the entry of the task, with its generator and indirects
+     * @param text
+     *            the starting text of the task
+     * @param leaseLimit
+     *            the position of the first field fixed by the lease, or -1 to
+     *            resume the whole task
+     * @param lease
+     *            the number of the lease
+     * @param progress
+     *            an integer that indicates where the algorythm is currently in
+     *            its computation
+     */
+    public SeekTask(final JournalEntry entry, final TokenizedText text,
+        final int leaseLimit, final long lease, final AtomicInteger progress) {
+
+        this.digester = entry.newDigester();
+        this.text = text;
+        this.progress = progress;
+        this.progress.set(0);
+        this.targetDigest = entry.getTargetDigest().toLowerCase();
+        this.entry = entry;
+        this.leaseLimit = leaseLimit;
+        this.lease = lease;
+    }
+
+    /**
+     * Records the task in the journal as submitted, so that it is resumed if
+     * the application stops before it finishes
+     */
+    public void begin() {
+
+        if (this.journalling())
+            this.journal.begin(this.entry, this.text);
+    }
+
+    /**
+     * Gives up on the task once its budget is spent, recording it in the
+     * journal as finished so that it is not run again after a restart. The
+     * attempts and coverage are of every run of the task, so a task resumed
+     * past its deadline reports what was done before the restart.
+     *
+     * @param iter
+     *            the iterator being searched, or null if not yet searching
+     * @param attempts
+     *            the number of candidates tried by this run
+     * @return the exception to throw
+     */
+    private BudgetExhaustedException budgetExhausted(
+        final RandomisedCombinationIterator iter, final long attempts) {
+
+        final double coverage;
+
+        if (iter != null) {
+
+            coverage = iter.getCoverage();
+        } else if (this.entry.getState() != null
+            && this.entry.getGenerator() != null) {
+
+            /* resumed, but out of time before the iterator was restored */
+            coverage = RandomisedCombinationIterator.position(this.entry
+                .getGenerator().stream().mapToInt(List::size).toArray(),
+                this.entry.getIndirects(), this.entry.getState());
+        } else {
+
+            coverage = 0;
+        }
+
+        return this.budgetExhausted(attempts, coverage);
+    }
+
+    /**
+     * Gives up on the task once its budget is spent, as above, with the
+     * coverage already known
+     *
+     * @param attempts
+     *            the number of candidates tried by this run
+     * @param coverage
+     *            the fraction of the combination space tried, from 0 to 1
+     * @return the exception to throw
+     */
+    private BudgetExhaustedException budgetExhausted(final long attempts,
+        final double coverage) {
+
+        this.entry.setExhausted(true);
+        this.entry.setAttempts(this.entry.getAttempts() + attempts);
+        this.entry.setCoverage(coverage);
+
+        this.finish(null);
+
+        return new BudgetExhaustedException(this.entry.getId(),
+            this.entry.getAttempts(), coverage);
+    }
+
+    /**
+     * Runs both stages of the task on the calling thread
+     *
      * @return a new text that matches the checksum given, or null
      */
     @Override
     public String call() {
 
-        stopwords = new TreeSet<String>(Arrays.asList(this.stopwordsCSV.split(",")));
+        return this.fetch() ? this.search() : null;
+    }
+
+    /**
+     * Writes the state of the iterator to the journal if a checkpoint is due.
+     * The state is that of the last attempt, which did not match.
+     *
+     * @param iter
+     *            the iterator being searched
+     * @param attempts
+     *            the number of candidates tried by this run
+     */
+    private void checkpoint(final RandomisedCombinationIterator iter,
+        final long attempts) {
+
+        if (!this.journalling())
+            return;
 
-        this.progress.set(1);
+        final long now = System.currentTimeMillis();
+
+        if (now >= this.nextCheckpoint) {
+
+            this.journal.checkpoint(this.entry.getId(), iter.getState(),
+                this.entry.getAttempts() + attempts);
+            this.nextCheckpoint = now + this.journal.getInterval();
+        }
+    }
+
+    /**
+     * Adds to the count of attempts made by this run and by all tasks
+     *
+     * @param attempts
+     *            the number of attempts made since last counted
+     */
+    private void count(final long attempts) {
+
+        this.tried += attempts;
+
+        if (this.metrics != null)
+            this.metrics.addAttempts(attempts);
+    }
+
+    /**
+     * @return true if the deadline of the task has passed
+     */
+    private boolean expired() {
+
+        return this.leaseLimit < 0 && this.entry.getDeadline() > 0
+            && System.currentTimeMillis() >= this.entry.getDeadline();
+    }
+
+    /**
+     * The I/O bound stage of the task, which expands the text into a generator
+     * of synonyms fetched from upstream and positions the iterator over it
+     *
+     * @return false if interrupted before the generator was complete, in
+     *         which case the task is not to be searched
+     * @throws BudgetExhaustedException
+     *             if the deadline passes before the generator is complete
+     */
+    public boolean fetch() throws BudgetExhaustedException {
+
+        if (this.expired())
+            throw this.budgetExhausted(null, 0);
+
+        this.phase(1);
 
         this.prepare();
 
-        this.progress.set(2);
+        this.phase(2);
 
-        this.makeGenerator();
+        final boolean resumed = this.entry.getGenerator() != null;
 
-        this.progress.set(3);
+        if (resumed) {
 
-        this.generatorLengths = this.generator.stream().mapToInt(los -> los.size())
-            .toArray();
+            this.entry.getGenerator().forEach(this.generator::add);
 
-        this.progress.set(4);
+            /* a lease shares its entry with the other leases of the job */
+            if (this.leaseLimit < 0)
+                this.entry.setGenerator(null);
+        } else {
 
-        final RandomisedCombinationIterator iter = new RandomisedCombinationIterator(
-            this.generatorLengths);
+            this.makeGenerator();
 
-        this.progress.set(5);
+            if (Thread.currentThread().isInterrupted())
+                return false;
 
-        String attempt;
+            if (this.expired())
+                throw this.budgetExhausted(null, 0);
+        }
 
-        try {
+        this.phase(3);
 
-            do {
+        this.generatorLengths = this.generator.lengths();
+        this.buffer = new byte[this.generator.maxBytes()];
 
-                if (Thread.interrupted())
-                    return null;
+        this.phase(4);
 
-                attempt = this.generateText(iter.next());
-            } while (!this.digester.apply(attempt).equals(this.targetDigest));
+        this.iter = this.makeIterator();
 
-            return attempt;
+        if (this.leaseLimit >= 0) {
 
-        } catch (final IndexOutOfBoundsException e) {
+            this.iter.restore(this.entry.getIndirects(),
+                new int[this.generatorLengths.length]);
+            this.iter.lease(this.leaseLimit, this.lease);
+        } else if (resumed) {
 
-            /* all permutations exhausted without match */
-            return null;
-        } finally {
+            this.iter.restore(this.entry.getIndirects(),
+                this.entry.getState() != null ? this.entry.getState()
+                    : new int[this.generatorLengths.length]);
+        } else {
+
+            this.entry.setIndirects(this.iter.getIndirects());
 
-            this.progress.set(6);
+            if (this.journalling()) {
+
+                this.entry.setGenerator(this.generator.toLists());
+                this.journal.prepared(this.entry);
+                this.entry.setGenerator(null);
+            }
         }
+
+        return true;
     }
 
     /**
-     * Uses the instance's generator and digestedText to output a possible
-     * textual permutation corresponding to the state configuration given
+     * Records the outcome of the task in the journal
      *
-     * @param state
-     *            the state of the permutations inside the generator to apply to
-     *            generating the output test
-     * @return a new body of text generated by applying a different state
-     *         against this instance's generator and digestedText
+     * @param result
+     *            the matching text, or null if there was none
      */
-    private String generateText(final int[] state) {
+    private void finish(final String result) {
 
-        final String[] newText = this.digestedText.clone();
+        if (this.journalling())
+            this.journal.finish(this.entry, result);
+    }
 
-        for (int i = 0; i < this.generator.size(); i++) {
-            newText[this.wordAt.apply(i)] = this.generator.get(i).get(state[i]);
-        }
+    /**
+     * @return the system time in ms after which the task gives up, or 0 for
+     *         never
+     */
+    public long getDeadline() {
+
+        return this.entry.getDeadline();
+    }
+
+    /**
+     * @return the number of candidates tried by this run so far, counted
+     *         every few thousand, for a coordinator to keep to its budget
+     */
+    public long getTried() {
 
-        return String.join("", newText);
+        return this.tried;
     }
 
     /**
      * @param the
      *            word to expand into synonyms
-     * @return word a list of synonyms for the word given
+     * @return word a list of synonyms for the word given, or the word alone
+     *         if the service refused it
      */
     private List<String> getSynonyms(final String word) {
 
@@ -215,51 +510,63 @@ public class SeekTask implements Callable<String> {
 
         result.add(word);
 
-        final String expandedURL = this.url.replace("{}", word.toLowerCase());
+        final List<String> synonyms;
 
-        final JsonNode fromAPI = this.wget(expandedURL);
+        try {
+
+            synonyms = this.client.synonyms(word.toLowerCase());
+        } catch (final SynonymClient.RefusedException e) {
 
-        if (fromAPI != null) {
+            /* the service refused the word, so it is left as it is */
+            return result;
+        }
 
-            JsonNode response = null;
-            while (response == null) {
-                response = this.wget(expandedURL);
+        for (String synonym : synonyms) {
+
+            if (uppercaseFirst && !synonym.isEmpty()) {
+                synonym = synonym.substring(0, 1).toUpperCase()
+                    + synonym.substring(1);
             }
 
-            final List<JsonNode> lojn = response.findValues("syn");
+            result.add(synonym);
+        }
 
-            for (final JsonNode jn : lojn) {
-                for (final JsonNode inner : jn) {
+        return result;
+    }
 
-                    String synonym = inner.textValue();
+    /**
+     * @return true if the search is spread across workers by the
+     *         coordinator, so that the search stage waits on them rather than
+     *         using the CPU
+     */
+    public boolean isRemote() {
 
-                    if (uppercaseFirst) {
-                        synonym = synonym.substring(0, 1).toUpperCase()
-                            + synonym.substring(1);
-                    }
+        return this.leaseLimit < 0 && this.coordinator != null
+            && this.coordinator.isEnabled();
+    }
 
-                    result.add(synonym);
-                }
-            }
-        }
+    /**
+     * @return true if progress is to be written to a journal
+     */
+    private boolean journalling() {
 
-        return result;
+        return this.journalled && this.leaseLimit < 0 && this.journal != null
+            && this.journal.isEnabled();
     }
 
     /**
      * A private utility method to construct the 2 dimensional generator by
-     * expanding all non-whtespace words in digestedText
+     * expanding each word of the text
      */
     private void makeGenerator() {
 
-        int i = 0;
-        while (this.digestedText.length > this.wordAt.apply(i)) {
+        for (int i = 0; i < this.text.words(); i++) {
 
-            final String thisWord = this.digestedText[this.wordAt.apply(i)];
+            final String thisWord = this.text.word(i);
 
-            if (stopwords.contains(thisWord.toLowerCase())) {
+            if (this.stopwords.matches(this.text.pool(), this.text.wordId(i))) {
 
-                this.generator.add(Arrays.asList(new String[] { thisWord }));
+                this.generator.add(Collections.singletonList(thisWord));
             } else {
 
                 /*
@@ -270,75 +577,332 @@ public class SeekTask implements Callable<String> {
                 this.generator.add(this.getSynonyms(thisWord));
             }
 
-            i++;
-
-            assert this.generator.size() == i;
+            assert this.generator.size() == i + 1;
 
-            if (Thread.interrupted())
+            /* leave the interrupt flag set for the search loop to act on */
+            if (Thread.currentThread().isInterrupted() || this.expired())
                 return;
         }
     }
 
     /**
-     * A utility function to split the text into words and surrounding non-words
-     * and prepare a function to index it easily.
+     * Creates the iterator over the generator. Where the digester constrains
+     * the length of matching text, combinations of the wrong length are
+     * pruned by the iterator so they are never generated or digested.
      *
-     * @throws IllegalArgumentException
-     *             if splitting the text results in empty result
+     * @return an iterator over the states of the generator
      */
-    private void prepare() throws IllegalArgumentException {
+    private RandomisedCombinationIterator makeIterator() {
 
-        /*
-         * When a string is split on a word boundary every second result is a
-         * word, and every other second result is a non-word sequence
-         */
+        final long[] bounds = this.digester instanceof LengthBounded
+            ? ((LengthBounded) this.digester).lengthBounds(this.targetDigest)
+            : null;
 
-        this.digestedText = this.startText.split("\\b");
+        if (bounds == null)
+            return new RandomisedCombinationIterator(this.generatorLengths);
 
-        if (this.digestedText.length < 1)
-            throw new IllegalArgumentException("Text is empty after prepare");
+        /* the length of each synonym is its weight */
+        final int[][] lengths = this.generator.charLengths();
 
-        /*
-         * However the first may be either word or nonword, so construct a
-         * partially resolved function to map that
-         */
+        /* the text between the words never changes length */
+        final long fixedLength = this.text.gapChars();
 
-        this.wordAt = (index) -> {
-            return (index * 2) + (this.digestedText[0].matches("^\\W") ? 1 : 0);
-        };
+        return new BoundedCombinationIterator(this.generatorLengths, lengths,
+            bounds[0] - fixedLength, bounds[1] - fixedLength);
     }
 
     /**
-     * Reads JSON from a given URL
+     * Renders the next batch of states from the iterator and digests them
+     * together, comparing each with the target
      *
-     * @param getURL
-     *            the URL to retrieve
-     * @return the JsonNode retrieved from the URL given
+     * @param iter
+     *            the iterator being searched
+     * @param batch
+     *            the batch digester
+     * @param buffers
+     *            a buffer to render each state of the batch into
+     * @param lengths
+     *            to hold the length of the text in each buffer
+     * @param lanes
+     *            the number of states to render, at most one per buffer
+     * @return the matching text, or null if none in the batch matched
+     * @throws IndexOutOfBoundsException
+     *             if the iterator is exhausted without a match
      */
-    private JsonNode wget(final String getURL) {
+    private String matchBatch(final RandomisedCombinationIterator iter,
+        final BatchDigester.Batch batch, final byte[][] buffers,
+        final int[] lengths, final int lanes)
+            throws IndexOutOfBoundsException {
 
-        final ObjectMapper om = new ObjectMapper();
+        int count = 0;
+        IndexOutOfBoundsException exhausted = null;
 
         try {
 
-            return om.readTree(new BufferedReader(
-                new InputStreamReader(new URL(getURL).openStream())));
-        } catch (final FileNotFoundException e) {
+            while (count < lanes) {
 
-            return null;
-        } catch (final IOException e) {
+                lengths[count] = this.generator.render(iter.next(),
+                    buffers[count]);
+                count++;
+            }
+        } catch (final IndexOutOfBoundsException e) {
+
+            /* the last states still have to be tried */
+            exhausted = e;
+        }
 
-            if (this.lastException > System.currentTimeMillis()
-                - this.maxExceptionWindow) {
+        final int lane = batch.find(buffers, lengths, count);
 
-                throw new RuntimeException(
-                    "IO Exceptions from upstream service are too frequent");
-            } else {
+        if (lane >= 0)
+            return new String(buffers[lane], 0, lengths[lane],
+                StandardCharsets.UTF_8);
+
+        if (exhausted != null)
+            throw exhausted;
+
+        return null;
+    }
+
+    /**
+     * Digests the text of the state given and compares it with the target.
+     * Where the digester accepts UTF-8 the text is rendered into the reused
+     * buffer, so that no String is made for attempts that do not match.
+     *
+     * @param state
+     *            the state of the permutations inside the generator
+     * @return true if the text of the state has the target digest
+     */
+    private boolean matches(final int[] state) {
+
+        if (this.digester instanceof ByteDigester) {
+
+            final int length = this.generator.render(state, this.buffer);
+
+            return ((ByteDigester) this.digester)
+                .digest(this.buffer, length, this.generator.chars(state))
+                .equals(this.targetDigest);
+        }
+
+        return this.digester.apply(this.generator.text(state))
+            .equals(this.targetDigest);
+    }
+
+    /**
+     * Moves the task to a phase of progress, recounting it if counted
+     *
+     * @param phase
+     *            the phase the task has entered
+     */
+    private synchronized void phase(final int phase) {
+
+        final int previous = this.progress.getAndSet(phase);
+
+        if (this.phaseCounts != null && previous != phase)
+            this.phaseCounts.move(previous, phase);
+    }
+
+    /**
+     * Creates the generator over the words and gaps of the text, with the
+     * candidates for each word to be added as they are expanded
+     */
+    private void prepare() {
+
+        this.generator = new CompactGenerator(this.text);
+    }
+
+    /**
+     * The CPU bound stage of the task, which searches the combinations of the
+     * generator prepared by fetch for one matching the target digest
+     *
+     * @return a new text that matches the checksum given, or null
+     * @throws BudgetExhaustedException
+     *             if the deadline passes or the attempt budget is spent
+     *             before a match is found
+     */
+    public String search() throws BudgetExhaustedException {
+
+        final RandomisedCombinationIterator iter = this.iter;
+        this.iter = null;
+
+        if (this.isRemote() && !Thread.currentThread().isInterrupted()) {
+
+            this.phase(5);
+
+            this.entry.setGenerator(this.generator.toLists());
+            this.entry.setStartText(this.text.text());
+
+            try {
 
-                this.lastException = System.currentTimeMillis();
+                final String result = this.coordinator.search(this.entry,
+                    this.generatorLengths, this.entry.getDeadline(), this.entry
+                        .getAttemptBudget());
+                this.finish(result);
+                return result;
+            } catch (final InterruptedException e) {
 
                 return null;
+            } catch (final BudgetExhaustedException e) {
+
+                throw this.budgetExhausted(e.getAttempts(), e.getCoverage());
+            } finally {
+
+                this.entry.setGenerator(null);
+                this.entry.setStartText(null);
+                this.phase(6);
+            }
+        }
+
+        this.nextCheckpoint = System.currentTimeMillis()
+            + (this.journalling() ? this.journal.getInterval() : 0);
+
+        this.phase(5);
+
+        final BatchDigester.Batch batch = this.digester instanceof BatchDigester
+            ? ((BatchDigester) this.digester).newBatch(this.targetDigest)
+            : null;
+
+        final byte[][] buffers = batch != null
+            ? new byte[batch.lanes()][this.buffer.length] : null;
+        final int[] lengths = batch != null ? new int[batch.lanes()] : null;
+
+        /* a lease is bounded by its coordinator rather than by the task */
+        final long budget = this.leaseLimit < 0
+            && this.entry.getAttemptBudget() > 0 ? this.entry
+                .getAttemptBudget() : Long.MAX_VALUE;
+
+        long attempts = 0;
+        long counted = 0;
+        long rounds = 0;
+
+        if (this.expired()) {
+
+            this.phase(6);
+            throw this.budgetExhausted(iter, 0);
+        }
+
+        try {
+
+            while (true) {
+
+                if (attempts >= budget)
+                    throw this.budgetExhausted(iter, attempts);
+
+                if (Thread.interrupted()) {
+
+                    /* on shutdown keep what has been done, on cancel drop it */
+                    if (this.journalling() && this.journal.isClosing())
+                        this.journal.checkpoint(this.entry.getId(),
+                            iter.getState(), this.entry.getAttempts()
+                                + attempts);
+
+                    return null;
+                }
+
+                if (batch != null) {
+
+                    /* the last batch is cut short to keep to the budget */
+                    final int lanes = (int) Math.min(batch.lanes(), budget
+                        - attempts);
+                    attempts += lanes;
+
+                    final String attempt = this.matchBatch(iter, batch,
+                        buffers, lengths, lanes);
+
+                    if (attempt != null) {
+
+                        this.finish(attempt);
+                        return attempt;
+                    }
+                } else {
+
+                    attempts++;
+
+                    final int[] state = iter.next();
+
+                    if (this.matches(state)) {
+
+                        final String attempt = this.generator.text(state);
+                        this.finish(attempt);
+                        return attempt;
+                    }
+                }
+
+                if ((++rounds & CHECKPOINT_MASK) == 0) {
+
+                    this.count(attempts - counted);
+                    counted = attempts;
+                    this.checkpoint(iter, attempts);
+
+                    if (this.expired())
+                        throw this.budgetExhausted(iter, attempts);
+                }
             }
+        } catch (final IndexOutOfBoundsException e) {
+
+            /* all permutations exhausted without match */
+            this.finish(null);
+            return null;
+        } finally {
+
+            this.count(attempts - counted);
+            this.phase(6);
         }
     }
+
+    /**
+     * Limits the search of the task, to be set before it is begun. The budget
+     * counts the candidates tried since the search last started, so a task
+     * resumed after a restart has its budget anew. A task searched across
+     * workers is held to both on each heartbeat of the coordinator, so may
+     * run up to a heartbeat past them.
+     *
+     * @param deadline
+     *            the system time in ms after which the task gives up, or 0
+     *            for never
+     * @param attemptBudget
+     *            the most candidates to try, or 0 for no limit
+     */
+    public void setBudget(final long deadline, final long attemptBudget) {
+
+        this.entry.setDeadline(deadline);
+        this.entry.setAttemptBudget(attemptBudget);
+    }
+
+    /**
+     * @param journal
+     *            the journal to record the task in, for use outside the
+     *            application
+     */
+    void setJournal(final TaskJournal journal) {
+
+        this.journal = journal;
+    }
+
+    /**
+     * @param journalled
+     *            false to keep the task out of the journal, for a caller that
+     *            keeps track of the task itself
+     */
+    public void setJournalled(final boolean journalled) {
+
+        this.journalled = journalled;
+    }
+
+    /**
+     * Counts the task by its phase of progress as it moves from one to the
+     * next, taking it out of any counts it was in before
+     *
+     * @param phaseCounts
+     *            the counts to keep, or null to stop counting the task
+     */
+    public synchronized void setPhaseCounts(final PhaseCounts phaseCounts) {
+
+        if (this.phaseCounts != null)
+            this.phaseCounts.remove(this.progress.get());
+
+        this.phaseCounts = phaseCounts;
+
+        if (phaseCounts != null)
+            phaseCounts.add(this.progress.get());
+    }
 }
@@ -0,0 +1,251 @@
+package org.overworld.example.webservice.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recognises the stopwords that are never expanded into synonyms. The list is
+ * compiled once into an immutable open-addressed hash table of UTF-8 bytes,
+ * which is tested directly against the bytes of a word in the TokenPool, so
+ * that no String is made or lowercased per word.
+ * <p/>
+ * Matching folds ASCII letters only, which covers the English stopwords;
+ * other bytes must match exactly. A reload compiles a new table and swaps it
+ * in whole, so each word is tested against one list or the other.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+public class StopwordMatcher {
+
+    /**
+     * A compiled list of stopwords
+     */
+    private static final class Table {
+
+        /**
+         * The hash of each word
+         */
+        private final int[] hashes;
+
+        /**
+         * The mask selecting a slot from a hash
+         */
+        private final int mask;
+
+        /**
+         * The index of the word in each slot plus one, or 0 if empty
+         */
+        private final int[] slots;
+
+        /**
+         * The offset in utf8 of each word, with one extra entry marking the
+         * end of the last
+         */
+        private final int[] starts;
+
+        /**
+         * The lowercased UTF-8 bytes of every word, end to end
+         */
+        private final byte[] utf8;
+
+        /**
+         * @param words
+         *            the distinct lowercased words
+         */
+        private Table(final Set<String> words) {
+
+            final byte[][] encoded = words.stream()
+                .map(word -> word.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+
+            this.starts = new int[encoded.length + 1];
+            this.hashes = new int[encoded.length];
+
+            for (int i = 0; i < encoded.length; i++) {
+                this.starts[i + 1] = this.starts[i] + encoded[i].length;
+            }
+
+            this.utf8 = new byte[this.starts[encoded.length]];
+
+            /* at most half full, so that probes stay short */
+            this.slots = new int[Math.max(2,
+                Integer.highestOneBit(Math.max(1, encoded.length)) << 2)];
+            this.mask = this.slots.length - 1;
+
+            for (int i = 0; i < encoded.length; i++) {
+
+                System.arraycopy(encoded[i], 0, this.utf8, this.starts[i],
+                    encoded[i].length);
+
+                this.hashes[i] = hash(encoded[i], 0, encoded[i].length);
+
+                int slot = this.hashes[i] & this.mask;
+
+                while (this.slots[slot] != 0) {
+                    slot = slot + 1 & this.mask;
+                }
+
+                this.slots[slot] = i + 1;
+            }
+        }
+
+        /**
+         * @param bytes
+         *            an array holding a word
+         * @param offset
+         *            the offset of the word
+         * @param length
+         *            the length of the word in bytes
+         * @return true if the word is in the table
+         */
+        private boolean contains(final byte[] bytes, final int offset,
+            final int length) {
+
+            final int hash = hash(bytes, offset, length);
+
+            for (int slot = hash & this.mask; this.slots[slot] != 0; slot = slot
+                + 1 & this.mask) {
+
+                final int word = this.slots[slot] - 1;
+
+                if (this.hashes[word] == hash
+                    && this.equal(word, bytes, offset, length))
+                    return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * @param word
+         *            the index of a word in the table
+         * @param bytes
+         *            an array holding another word
+         * @param offset
+         *            the offset of the other word
+         * @param length
+         *            the length of the other word in bytes
+         * @return true if the words are equal, ignoring the case of ASCII
+         *         letters
+         */
+        private boolean equal(final int word, final byte[] bytes,
+            final int offset, final int length) {
+
+            final int start = this.starts[word];
+
+            if (this.starts[word + 1] - start != length)
+                return false;
+
+            for (int i = 0; i < length; i++) {
+
+                if (this.utf8[start + i] != fold(bytes[offset + i]))
+                    return false;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * @param b
+     *            a byte of UTF-8
+     * @return the byte, lowercased if an ASCII capital
+     */
+    private static byte fold(final byte b) {
+
+        return b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+    }
+
+    /**
+     * @param bytes
+     *            an array holding a word
+     * @param offset
+     *            the offset of the word
+     * @param length
+     *            the length of the word in bytes
+     * @return the FNV-1a hash of the word with ASCII letters lowercased
+     */
+    private static int hash(final byte[] bytes, final int offset,
+        final int length) {
+
+        int result = 0x811c9dc5;
+
+        for (int i = offset; i < offset + length; i++) {
+            result = (result ^ fold(bytes[i])) * 0x01000193;
+        }
+
+        /* spread the high bits into those the mask keeps */
+        return result ^ result >>> 16;
+    }
+
+    /**
+     * The list of stopwords as configured
+     */
+    @Value("${engine.stopwords}")
+    private String stopwordsCSV;
+
+    /**
+     * The compiled list in use
+     */
+    private volatile Table table = new Table(new LinkedHashSet<>());
+
+    @PostConstruct
+    private void init() {
+
+        this.reload(this.stopwordsCSV);
+    }
+
+    /**
+     * @param pool
+     *            the pool holding the word
+     * @param id
+     *            the id of the word
+     * @return true if the word is a stopword, in any case
+     */
+    public boolean matches(final TokenPool pool, final int id) {
+
+        final int[] starts = pool.starts();
+
+        return this.table.contains(pool.bytes(), starts[id],
+            starts[id + 1] - starts[id]);
+    }
+
+    /**
+     * Compiles a new list of stopwords and puts it in use
+     *
+     * @param csv
+     *            the stopwords, separated by commas
+     * @return the number of distinct stopwords
+     */
+    public int reload(final String csv) {
+
+        final Set<String> words = new LinkedHashSet<>();
+
+        Arrays.stream(csv.split(",")).map(String::trim)
+            .filter(word -> !word.isEmpty())
+            .forEach(word -> words.add(word.toLowerCase(Locale.ROOT)));
+
+        this.table = new Table(words);
+
+        return words.size();
+    }
+
+    /**
+     * @return the number of distinct stopwords in use
+     */
+    public int size() {
+
+        return this.table.hashes.length;
+    }
+}
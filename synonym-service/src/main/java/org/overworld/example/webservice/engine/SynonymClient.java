@@ -0,0 +1,728 @@
+package org.overworld.example.webservice.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * The client of the upstream Synonym Service, shared by every task.
+ * <p/>
+ * Connections are kept alive in a pool of upstream.maxConnections owned by
+ * the request factory, and each request has connect and read timeouts.
+ * Responses are parsed as a stream for the values of "syn" fields, without
+ * building a tree. A failed request is retried with exponential backoff, and
+ * a run of failures opens a circuit breaker for the whole process, during
+ * which requests fail at once rather than tying up threads on a service that
+ * is down. Once the breaker has been open for its interval a single request is
+ * let through to probe the service.
+ * <p/>
+ * Only IO errors, timeouts and 5xx responses count against the breaker. A 4xx
+ * response is the service answering, so it closes the breaker like any other
+ * answer; a 429 is retried with backoff, and any other 4xx, or a 429 that
+ * outlasts the retries, throws a RefusedException for the word alone, which a
+ * task leaves without synonyms.
+ * <p/>
+ * If upstream.cacheFile is set the synonyms fetched are kept in a
+ * SynonymStore for upstream.cacheTtl rather than in memory, so that they
+ * outlive the process and a restart does not fetch the vocabulary again.
+ * Otherwise, or if the file is in use by another process, the
+ * upstream.cacheSize most recently used words are kept in memory.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+public class SynonymClient {
+
+    /**
+     * A 4xx response, which fails the request without counting against the
+     * breaker
+     */
+    static class RefusedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The status of the response
+         */
+        private final int status;
+
+        private RefusedException(final int status, final URI address) {
+
+            super("Upstream refused request with " + status + " for "
+                + address);
+
+            this.status = status;
+        }
+
+        /**
+         * @return true if the service asked for the request to be made again
+         *         later
+         */
+        private boolean isRetryable() {
+
+            return this.status == 429;
+        }
+    }
+
+    /**
+     * The number of buckets of the latency histogram, each twice as wide as
+     * the last, from under 1ms to over 8s
+     */
+    public static final int LATENCY_BUCKETS = 15;
+
+    private static final Log LOG = LogFactory.getLog(SynonymClient.class);
+
+    /**
+     * Reads a response body to its end and closes it, so that its connection
+     * is returned to the pool
+     *
+     * @param in
+     *            the body, or null
+     * @throws IOException
+     *             if the body cannot be read
+     */
+    private static void drain(final InputStream in) throws IOException {
+
+        if (in == null)
+            return;
+
+        final byte[] skip = new byte[1024];
+
+        try {
+
+            while (in.read(skip) != -1) {
+                /* discard */
+            }
+        } finally {
+
+            in.close();
+        }
+    }
+
+    /**
+     * The initial delay in ms before retrying a failed request, doubled on
+     * each further retry
+     */
+    @Value("${upstream.backoff}")
+    private long backoff;
+
+    /**
+     * The number of consecutive failures that opens the breaker
+     */
+    @Value("${upstream.breaker.failures}")
+    private int breakerFailures;
+
+    /**
+     * The interval in ms for which the breaker stays open
+     */
+    @Value("${upstream.breaker.openFor}")
+    private long breakerOpenFor;
+
+    /**
+     * The synonyms of the words most recently used, by word, least recent
+     * first
+     */
+    private final Map<String, List<String>> cache = Collections
+        .synchronizedMap(new LinkedHashMap<String, List<String>>(16, 0.75f,
+            true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                final Map.Entry<String, List<String>> eldest) {
+
+                return this.size() > SynonymClient.this.cacheSize;
+            }
+        });
+
+    /**
+     * The number of lookups answered from the cache
+     */
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * The number of lookups that had to be fetched
+     */
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * The file of the persistent cache, or empty to cache in memory only
+     */
+    @Value("${upstream.cacheFile}")
+    private String cacheFile;
+
+    /**
+     * The largest number of words held in the cache in memory
+     */
+    @Value("${upstream.cacheSize}")
+    private int cacheSize;
+
+    /**
+     * The time in ms for which the persistent cache keeps a word's synonyms,
+     * or 0 for ever
+     */
+    @Value("${upstream.cacheTtl}")
+    private long cacheTtl;
+
+    /**
+     * The timeout in ms to connect to the upstream service
+     */
+    @Value("${upstream.connectTimeout}")
+    private int connectTimeout;
+
+    /**
+     * The number of consecutive failed requests
+     */
+    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+
+    /**
+     * Makes the requests, over the pool of connections it owns
+     */
+    private ClientHttpRequestFactory factory;
+
+    /**
+     * The number of requests that failed
+     */
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * The parser factory, which is thread safe and shared
+     */
+    private final JsonFactory json = new JsonFactory();
+
+    /**
+     * The number of answered requests by latency, in buckets doubling in width
+     */
+    private final LongAdder[] latencies = new LongAdder[LATENCY_BUCKETS];
+
+    {
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            this.latencies[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * The total time in ns of requests that were answered
+     */
+    private final LongAdder latencyNanos = new LongAdder();
+
+    /**
+     * The number of connections kept to the upstream service
+     */
+    @Value("${upstream.maxConnections}")
+    private int maxConnections;
+
+    /**
+     * The system time in ms until which the breaker is open, or 0 if closed
+     */
+    private volatile long openUntil;
+
+    /**
+     * Whether a request is probing the service after the breaker opened
+     */
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+
+    /**
+     * The timeout in ms to read from the upstream service
+     */
+    @Value("${upstream.readTimeout}")
+    private int readTimeout;
+
+    /**
+     * The number of requests refused because the breaker was open
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * The number of requests made to the upstream service
+     */
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * The number of requests that were retries of a failed one
+     */
+    private final LongAdder retries = new LongAdder();
+
+    /**
+     * The number of times a request is retried before the word fails
+     */
+    @Value("${upstream.retries}")
+    private int retryLimit;
+
+    /**
+     * The persistent cache, if configured
+     */
+    private SynonymStore store;
+
+    /**
+     * The URL of the upstream Synonym Service
+     */
+    @Value("${upstream.synonym.url}")
+    private String url;
+
+    /**
+     * @return true if a request may be made, which when the breaker has been
+     *         open for its interval is true for a single probing request
+     */
+    private boolean allow() {
+
+        final long until = this.openUntil;
+
+        if (until == 0)
+            return true;
+
+        if (System.currentTimeMillis() < until)
+            return false;
+
+        return this.probing.compareAndSet(false, true);
+    }
+
+    /**
+     * Creates the client configured from the application properties
+     */
+    public SynonymClient() {
+
+    }
+
+    /**
+     * Creates a client without a cache, making requests through the factory
+     * given, for use outside the application
+     *
+     * @param url
+     *            the URL of the synonyms of a word, with {} for the word
+     * @param factory
+     *            the factory of requests
+     * @param retries
+     *            the number of times a request is retried
+     * @param backoff
+     *            the initial delay in ms before retrying a request
+     * @param breakerFailures
+     *            the number of consecutive failures that opens the breaker
+     * @param breakerOpenFor
+     *            the interval in ms for which the breaker stays open
+     */
+    SynonymClient(final String url, final ClientHttpRequestFactory factory,
+        final int retries, final long backoff, final int breakerFailures,
+        final long breakerOpenFor) {
+
+        this.url = url;
+        this.factory = factory;
+        this.retryLimit = retries;
+        this.backoff = backoff;
+        this.breakerFailures = breakerFailures;
+        this.breakerOpenFor = breakerOpenFor;
+    }
+
+    /**
+     * Records a failed request, opening the breaker if the failure was a probe
+     * or there have been too many in a row
+     */
+    private void failed() {
+
+        this.failures.increment();
+
+        if (this.probing.get()
+            || this.consecutiveFailures.incrementAndGet() >= this.breakerFailures) {
+
+            if (this.openUntil == 0)
+                LOG.warn("Upstream Synonym Service is failing, breaker opened");
+
+            this.openUntil = System.currentTimeMillis() + this.breakerOpenFor;
+            this.probing.set(false);
+        }
+    }
+
+    /**
+     * Makes a single request for the synonyms of a word
+     *
+     * @param address
+     *            the URL of the synonyms
+     * @return the synonyms, empty if the service has none for the word
+     * @throws IOException
+     *             if the request fails in a way that counts against the
+     *             breaker
+     * @throws RefusedException
+     *             if the service refuses the request
+     */
+    private List<String> fetch(final URI address) throws IOException,
+        RefusedException {
+
+        try (final ClientHttpResponse response = this.factory.createRequest(
+            address, HttpMethod.GET).execute()) {
+
+            final int status = response.getRawStatusCode();
+            final InputStream in = response.getBody();
+
+            if (status == 404) {
+
+                drain(in);
+                return Collections.emptyList();
+            }
+
+            if (status >= 500) {
+
+                drain(in);
+                throw new IOException("Upstream responded " + status);
+            }
+
+            if (status >= 400) {
+
+                drain(in);
+                throw new RefusedException(status, address);
+            }
+
+            final List<String> result = this.parse(in);
+
+            /* reading to the end lets the connection be reused */
+            drain(in);
+
+            return result;
+        }
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache
+     */
+    public double getCacheHitRate() {
+
+        final long hits = this.cacheHits.sum();
+        final long total = hits + this.cacheMisses.sum();
+
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of answered requests by latency, where bucket 0 is
+     *         under 1ms and bucket i from 2^(i-1)ms up to 2^i ms, the last
+     *         taking all the longer ones
+     */
+    public long[] getLatencyHistogram() {
+
+        final long[] result = new long[LATENCY_BUCKETS];
+
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            result[i] = this.latencies[i].sum();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of requests refused because the breaker was open
+     */
+    public long getRejected() {
+
+        return this.rejected.sum();
+    }
+
+    /**
+     * @return a snapshot of the counts of requests and state of the breaker,
+     *         by name
+     */
+    public Map<String, Number> getStats() {
+
+        final Map<String, Number> result = new LinkedHashMap<>();
+
+        final long requests = this.requests.sum();
+        final long failures = this.failures.sum();
+        final long answered = requests - failures;
+
+        result.put("requests", requests);
+        result.put("retries", this.retries.sum());
+        result.put("failures", failures);
+        result.put("rejected", this.rejected.sum());
+        result.put("meanLatencyMs",
+            answered <= 0 ? 0 : this.latencyNanos.sum() / 1e6 / answered);
+        result.put("breakerOpen", this.openUntil == 0 ? 0 : 1);
+        result.put("cacheHitRate", this.getCacheHitRate());
+        result.put("cacheSize", this.store != null ? this.store.size()
+            : this.cache.size());
+
+        return result;
+    }
+
+    @PostConstruct
+    private void init() {
+
+        /* every request is to the one upstream route */
+        final PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(this.maxConnections);
+        pool.setDefaultMaxPerRoute(this.maxConnections);
+
+        final HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(
+            HttpClients.custom().setConnectionManager(pool).build());
+        factory.setConnectTimeout(this.connectTimeout);
+        factory.setReadTimeout(this.readTimeout);
+
+        this.factory = factory;
+
+        if (this.cacheFile != null && !this.cacheFile.isEmpty()) {
+
+            final long start = System.nanoTime();
+
+            try {
+
+                this.store = new SynonymStore(new File(this.cacheFile),
+                    this.cacheTtl);
+            } catch (final IOException e) {
+
+                /* as when another instance shares the working directory */
+                LOG.warn("Unable to open synonym cache file " + this.cacheFile
+                    + ", caching in memory instead", e);
+                return;
+            }
+
+            LOG.info("Loaded " + this.store.size() + " cached words from "
+                + this.cacheFile + " in " + (System.nanoTime() - start)
+                / 1000000 + "ms");
+        }
+    }
+
+    /**
+     * Reads the values of every "syn" array in a JSON document, at any depth
+     *
+     * @param in
+     *            the document
+     * @return the values in the order they appear
+     * @throws IOException
+     *             if the document cannot be read or parsed
+     */
+    List<String> parse(final InputStream in) throws IOException {
+
+        final List<String> result = new ArrayList<>();
+
+        try (final JsonParser parser = this.json.createParser(in)) {
+
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+
+                if (token != JsonToken.FIELD_NAME
+                    || !"syn".equals(parser.getCurrentName()))
+                    continue;
+
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+
+                    parser.skipChildren();
+                    continue;
+                }
+
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+
+                    if (token == JsonToken.VALUE_STRING)
+                        result.add(parser.getText());
+                    else
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Records the latency of an answered request
+     *
+     * @param nanos
+     *            the latency in ns
+     */
+    private void record(final long nanos) {
+
+        this.latencyNanos.add(nanos);
+
+        final long ms = nanos / 1000000;
+        final int bucket = 64 - Long.numberOfLeadingZeros(ms);
+
+        this.latencies[Math.min(bucket, LATENCY_BUCKETS - 1)].increment();
+    }
+
+    /**
+     * Fetches the synonyms of a word from the upstream service, retrying with
+     * backoff
+     *
+     * @param word
+     *            the word, in lower case
+     * @return the synonyms of the word, empty if there are none, or null if
+     *         interrupted while waiting to retry
+     * @throws RuntimeException
+     *             if the breaker is open or the retries are exhausted
+     */
+    private List<String> request(final String word) throws RuntimeException {
+
+        final URI address;
+
+        try {
+
+            address = new URI(this.url.replace("{}",
+                URLEncoder.encode(word, "UTF-8")));
+        } catch (final IOException | URISyntaxException e) {
+
+            throw new RuntimeException("Invalid upstream URL for " + word, e);
+        }
+
+        long delay = this.backoff;
+
+        for (int attempt = 0;; attempt++) {
+
+            if (!this.allow()) {
+
+                this.rejected.increment();
+                throw new RuntimeException(
+                    "Upstream Synonym Service is unavailable");
+            }
+
+            this.requests.increment();
+
+            if (attempt > 0)
+                this.retries.increment();
+
+            final long start = System.nanoTime();
+
+            try {
+
+                final List<String> result = this.fetch(address);
+                this.record(System.nanoTime() - start);
+                this.succeeded();
+                return result;
+            } catch (final IOException e) {
+
+                this.failed();
+
+                if (attempt >= this.retryLimit)
+                    throw new RuntimeException(
+                        "Upstream Synonym Service failed for " + word, e);
+            } catch (final RefusedException e) {
+
+                /* the service answered, so it is up even if it refused */
+                this.failures.increment();
+                this.succeeded();
+
+                if (!e.isRetryable() || attempt >= this.retryLimit)
+                    throw e;
+            }
+
+            try {
+
+                /* full jitter keeps tasks that failed together apart */
+                Thread.sleep(ThreadLocalRandom.current().nextLong(delay + 1));
+                delay <<= 1;
+            } catch (final InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Writes the persistent cache through to its file
+     */
+    @PreDestroy
+    private void shutdown() {
+
+        if (this.store != null)
+            this.store.close();
+
+        if (this.factory instanceof DisposableBean) {
+
+            try {
+
+                ((DisposableBean) this.factory).destroy();
+            } catch (final Exception e) {
+
+                LOG.warn("Unable to close the upstream connections", e);
+            }
+        }
+    }
+
+    /**
+     * Records a successful request, closing the breaker
+     */
+    private void succeeded() {
+
+        this.consecutiveFailures.set(0);
+
+        if (this.openUntil != 0) {
+
+            LOG.info("Upstream Synonym Service recovered, breaker closed");
+            this.openUntil = 0;
+        }
+
+        this.probing.set(false);
+    }
+
+    /**
+     * Looks up the synonyms of a word, from the cache if they have been
+     * fetched before and otherwise from the upstream service. If interrupted
+     * while waiting to retry, returns an empty list with the interrupt flag
+     * set.
+     *
+     * @param word
+     *            the word, in lower case
+     * @return the synonyms of the word, empty if there are none
+     * @throws RefusedException
+     *             if the service refused the word
+     * @throws RuntimeException
+     *             if the breaker is open or the retries are exhausted
+     */
+    public List<String> synonyms(final String word) throws RuntimeException {
+
+        final List<String> cached = this.store != null ? this.store.get(word)
+            : this.cache.get(word);
+
+        if (cached != null) {
+
+            this.cacheHits.increment();
+            return cached;
+        }
+
+        this.cacheMisses.increment();
+
+        final List<String> result = this.request(word);
+
+        if (result == null)
+            return Collections.emptyList();
+
+        if (this.store != null)
+            this.store.append(word, result);
+        else if (this.cacheSize > 0)
+            this.cache.put(word, Collections.unmodifiableList(result));
+
+        return result;
+    }
+}
@@ -0,0 +1,699 @@
+package org.overworld.example.webservice.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A file of the synonyms fetched from upstream, kept across restarts so that
+ * a new process starts with a warm cache.
+ * <p/>
+ * The file is a run of records, appended and never rewritten in place, mapped
+ * into memory. Each record is an int length, an int CRC32 of the rest, a long
+ * expiry time in ms or 0 for never, then the word as a short length and
+ * UTF-8 bytes, a short count of synonyms and each synonym likewise. The
+ * mapping grows ahead of the records, and the zeroes past the last record end
+ * the run, as does a record whose CRC does not match, as after a crash part
+ * way through an append.
+ * <p/>
+ * Opening the file checks every record against its CRC, so as to find the
+ * end of the run, but decodes only the words, into an index of offsets. The
+ * synonyms are decoded from the mapping when a word is looked up, and only
+ * once the record is checked again against its CRC and word, in case it was
+ * damaged since it was indexed. Once records that are expired or superseded
+ * outweigh the live ones, the live ones are copied to a new file which
+ * atomically replaces the old.
+ * <p/>
+ * Only one process may have the file open at a time. It holds an exclusive
+ * lock on a lock file beside the file while open, as compaction replaces the
+ * file itself.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+class SynonymStore implements Closeable {
+
+    /**
+     * The mapping of the file with the index of its records, replaced whole
+     * when the file is compacted so that an offset is always read from the
+     * mapping it was indexed in
+     */
+    private static final class Region {
+
+        /**
+         * The offset of the latest record of each word
+         */
+        private final Map<String, Integer> index;
+
+        /**
+         * The file mapped from its start
+         */
+        private final MappedByteBuffer map;
+
+        /**
+         * @param map
+         *            the file mapped from its start
+         * @param index
+         *            the offset of the latest record of each word
+         */
+        private Region(final MappedByteBuffer map,
+            final Map<String, Integer> index) {
+
+            this.map = map;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The length of the length, CRC and expiry that start each record
+     */
+    private static final int HEADER = 16;
+
+    private static final Log LOG = LogFactory.getLog(SynonymStore.class);
+
+    /**
+     * The first four bytes of the file, "SYN1"
+     */
+    private static final int MAGIC = 0x53594e31;
+
+    /**
+     * The size of file below which it is never compacted
+     */
+    private static final int MIN_COMPACT = 1 << 20;
+
+    /**
+     * The size of the mapping of a new file, doubled as it fills
+     */
+    private static final int MIN_MAP = 1 << 16;
+
+    /**
+     * @param record
+     *            a buffer positioned at the expiry of a record
+     * @param length
+     *            the length of the record after its CRC
+     * @return the CRC32 of the record after its CRC
+     */
+    private static int crc(final ByteBuffer record, final int length) {
+
+        final ByteBuffer bytes = record.duplicate();
+        bytes.limit(bytes.position() + length);
+
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @param buffer
+     *            a buffer positioned at a short length and UTF-8 bytes
+     * @return the string, with the buffer positioned after it
+     */
+    private static String string(final ByteBuffer buffer) {
+
+        final byte[] utf8 = new byte[buffer.getShort() & 0xffff];
+        buffer.get(utf8);
+
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The number of bytes of records that are expired or superseded
+     */
+    private long dead;
+
+    /**
+     * The offset at which the next record is appended
+     */
+    private int end;
+
+    /**
+     * The file of records
+     */
+    private final File file;
+
+    /**
+     * Set once the file is full and compaction cannot make room, after which
+     * new words are no longer stored
+     */
+    private boolean full;
+
+    /**
+     * The lock on the lock file, held while the store is open
+     */
+    private final FileLock lock;
+
+    /**
+     * The mapping in use
+     */
+    private volatile Region region;
+
+    /**
+     * The time in ms for which a word's synonyms are kept, or 0 for ever
+     */
+    private final long ttl;
+
+    /**
+     * Opens the file, creating it if need be, and indexes its records
+     *
+     * @param file
+     *            the file of records
+     * @param ttl
+     *            the time in ms for which a word's synonyms are kept, or 0
+     *            for ever
+     * @throws IOException
+     *             if the file cannot be opened or mapped, or another process
+     *             has it open
+     */
+    SynonymStore(final File file, final long ttl) throws IOException {
+
+        this.file = file;
+        this.ttl = ttl;
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+
+        if (parent != null)
+            Files.createDirectories(parent.toPath());
+
+        this.lock = this.lock();
+
+        try {
+
+            this.open();
+
+            if (this.shouldCompact())
+                this.compact();
+        } catch (final IOException | RuntimeException e) {
+
+            this.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends the synonyms of a word, which replace any it had
+     *
+     * @param word
+     *            the word
+     * @param synonyms
+     *            the synonyms of the word
+     */
+    synchronized void append(final String word, final List<String> synonyms) {
+
+        if (this.full)
+            return;
+
+        final byte[] record = this.encode(word, synonyms);
+
+        if (record == null)
+            return;
+
+        try {
+
+            if (this.end + record.length > this.region.map.capacity()
+                && !this.grow(record.length)) {
+
+                LOG.warn("Synonym cache file " + this.file
+                    + " is full, no longer storing new words");
+                this.full = true;
+                return;
+            }
+
+            final Region region = this.region;
+            final ByteBuffer out = region.map.duplicate();
+            out.position(this.end);
+            out.put(record);
+
+            final Integer previous = region.index.put(word, this.end);
+
+            if (previous != null)
+                this.dead += region.map.getInt(previous);
+
+            this.end += record.length;
+
+            if (this.shouldCompact())
+                this.compact();
+        } catch (final IOException e) {
+
+            /* a word not stored is only fetched again after a restart */
+            LOG.warn("Unable to write synonym cache file " + this.file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+
+        this.region.map.force();
+        this.release();
+    }
+
+    /**
+     * Copies the live records to a new file and puts it in place of the old
+     *
+     * @throws IOException
+     *             if the new file cannot be written or moved into place
+     */
+    synchronized void compact() throws IOException {
+
+        final Region region = this.region;
+        final File temp = new File(this.file.getPath() + ".tmp");
+        final long now = System.currentTimeMillis();
+
+        int live = 4;
+
+        for (final Integer offset : region.index.values()) {
+
+            if (!this.expired(region.map, offset, now))
+                live += region.map.getInt(offset);
+        }
+
+        temp.delete();
+
+        try (final RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+            final FileChannel channel = raf.getChannel()) {
+
+            final MappedByteBuffer map = channel.map(
+                FileChannel.MapMode.READ_WRITE, 0, this.mapSize(live));
+            final Map<String, Integer> index = new ConcurrentHashMap<>();
+
+            map.putInt(MAGIC);
+
+            for (final Map.Entry<String, Integer> entry : region.index
+                .entrySet()) {
+
+                final int offset = entry.getValue();
+
+                if (this.expired(region.map, offset, now))
+                    continue;
+
+                final ByteBuffer record = region.map.duplicate();
+                record.position(offset).limit(
+                    offset + region.map.getInt(offset));
+
+                index.put(entry.getKey(), map.position());
+                map.put(record);
+            }
+
+            map.force();
+
+            final int end = map.position();
+
+            Files.move(temp.toPath(), this.file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+            this.region = new Region(map, index);
+            this.end = end;
+            this.dead = 0;
+            this.full = false;
+        }
+    }
+
+    /**
+     * @param word
+     *            a word
+     * @param synonyms
+     *            its synonyms
+     * @return the record of the word, or null if too long to store
+     */
+    private byte[] encode(final String word, final List<String> synonyms) {
+
+        final List<byte[]> strings = new ArrayList<>(synonyms.size() + 1);
+        strings.add(word.getBytes(StandardCharsets.UTF_8));
+
+        int length = HEADER + 2;
+
+        for (final String synonym : synonyms) {
+            strings.add(synonym.getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (final byte[] string : strings) {
+
+            if (string.length > 0xffff)
+                return null;
+
+            length += 2 + string.length;
+        }
+
+        if (synonyms.size() > 0xffff)
+            return null;
+
+        final ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putInt(0).putLong(
+            this.ttl > 0 ? System.currentTimeMillis() + this.ttl : 0);
+
+        record.putShort((short) strings.get(0).length).put(strings.get(0));
+        record.putShort((short) synonyms.size());
+
+        for (final byte[] string : strings.subList(1, strings.size())) {
+            record.putShort((short) string.length).put(string);
+        }
+
+        record.position(8);
+        record.putInt(4, crc(record, length - 8));
+
+        return record.array();
+    }
+
+    /**
+     * @param map
+     *            the mapping holding a record
+     * @param offset
+     *            the offset of the record
+     * @param now
+     *            the system time in ms
+     * @return true if the record has expired
+     */
+    private boolean expired(final ByteBuffer map, final int offset,
+        final long now) {
+
+        final long expires = map.getLong(offset + 8);
+
+        return expires != 0 && expires <= now;
+    }
+
+    /**
+     * Drops a record from the index, counting it as dead, unless the word has
+     * since been stored again or the file compacted
+     *
+     * @param region
+     *            the mapping the record was found in
+     * @param word
+     *            the word of the record
+     * @param offset
+     *            the offset of the record
+     */
+    private synchronized void drop(final Region region, final String word,
+        final int offset) {
+
+        if (region == this.region && region.index.remove(word, offset))
+            this.dead += region.map.getInt(offset);
+    }
+
+    /**
+     * Drops the expired records from an index, counting them as dead
+     *
+     * @param map
+     *            the mapping the index is of
+     * @param index
+     *            the index
+     * @param now
+     *            the system time in ms
+     */
+    private void expire(final ByteBuffer map, final Map<String, Integer> index,
+        final long now) {
+
+        for (final Map.Entry<String, Integer> entry : index.entrySet()) {
+
+            final int offset = entry.getValue();
+
+            if (this.expired(map, offset, now)
+                && index.remove(entry.getKey(), offset))
+                this.dead += map.getInt(offset);
+        }
+    }
+
+    /**
+     * @param word
+     *            a word
+     * @return the synonyms of the word, or null if it is not stored, has
+     *         expired or its record is damaged
+     */
+    List<String> get(final String word) {
+
+        final Region region = this.region;
+        final Integer offset = region.index.get(word);
+
+        if (offset == null)
+            return null;
+
+        if (this.expired(region.map, offset, System.currentTimeMillis())) {
+
+            this.drop(region, word, offset);
+            return null;
+        }
+
+        final ByteBuffer record = region.map.duplicate();
+        record.position(offset + 8);
+
+        final int length = region.map.getInt(offset);
+
+        /* a record damaged since it was indexed is fetched again */
+        if (length < HEADER + 4 || length > region.map.capacity() - offset
+            || crc(record, length - 8) != region.map.getInt(offset + 4)) {
+
+            LOG.warn("Damaged record for " + word + " in synonym cache file "
+                + this.file);
+            this.drop(region, word, offset);
+            return null;
+        }
+
+        record.position(offset + HEADER);
+
+        if (!word.equals(string(record))) {
+
+            LOG.warn("Record for " + word + " in synonym cache file "
+                + this.file + " is of another word");
+            this.drop(region, word, offset);
+            return null;
+        }
+
+        final String[] synonyms = new String[record.getShort() & 0xffff];
+
+        for (int i = 0; i < synonyms.length; i++) {
+            synonyms[i] = string(record);
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(synonyms));
+    }
+
+    /**
+     * Maps more of the file so that a record will fit after the last,
+     * compacting instead if most of the file is dead
+     *
+     * @param length
+     *            the length of the record
+     * @return false if the file cannot grow that large
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    private boolean grow(final int length) throws IOException {
+
+        this.expire(this.region.map, this.region.index,
+            System.currentTimeMillis());
+
+        if (this.dead * 2 > this.end) {
+
+            this.compact();
+
+            if (this.end + length <= this.region.map.capacity())
+                return true;
+        }
+
+        final long needed = (long) this.end + length;
+
+        if (needed > Integer.MAX_VALUE)
+            return false;
+
+        try (final RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+            final FileChannel channel = raf.getChannel()) {
+
+            /* the file only grows, so offsets in the old mapping still hold */
+            this.region = new Region(channel.map(
+                FileChannel.MapMode.READ_WRITE, 0, this.mapSize((int) needed)),
+                this.region.index);
+        }
+
+        return true;
+    }
+
+    /**
+     * Takes the exclusive lock on the lock file
+     *
+     * @return the lock
+     * @throws IOException
+     *             if the lock file cannot be opened, or another process holds
+     *             the lock
+     */
+    private FileLock lock() throws IOException {
+
+        final FileChannel channel = FileChannel.open(new File(this.file
+            .getPath() + ".lock").toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+
+        FileLock result;
+
+        try {
+
+            result = channel.tryLock();
+        } catch (final IOException | OverlappingFileLockException e) {
+
+            result = null;
+        }
+
+        if (result == null) {
+
+            channel.close();
+            throw new IOException("Synonym cache file " + this.file
+                + " is in use by another process");
+        }
+
+        return result;
+    }
+
+    /**
+     * @param needed
+     *            a number of bytes
+     * @return the size of mapping to hold them, a power of two
+     */
+    private long mapSize(final int needed) {
+
+        long size = MIN_MAP;
+
+        while (size < needed && size < Integer.MAX_VALUE) {
+            size <<= 1;
+        }
+
+        return Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Maps the file and indexes its records, up to the first that is missing
+     * or damaged
+     *
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     */
+    private void open() throws IOException {
+
+        try (final RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+            final FileChannel channel = raf.getChannel()) {
+
+            final long length = channel.size();
+            final MappedByteBuffer map = channel.map(
+                FileChannel.MapMode.READ_WRITE, 0,
+                this.mapSize((int) Math.min(length, Integer.MAX_VALUE)));
+            final Map<String, Integer> index = new ConcurrentHashMap<>();
+
+            if (length == 0 || map.getInt(0) != MAGIC) {
+
+                if (length != 0)
+                    LOG.warn("Synonym cache file " + this.file
+                        + " is not recognised, starting empty");
+
+                map.putInt(0, MAGIC);
+                this.end = 4;
+            } else {
+
+                this.end = this.scan(map, index);
+            }
+
+            /* clear whatever a crash left past the last whole record */
+            if (this.end + HEADER <= map.capacity()
+                && (map.getLong(this.end) != 0 || map.getLong(this.end + 8) != 0)) {
+
+                for (int i = this.end; i < map.capacity(); i++) {
+                    map.put(i, (byte) 0);
+                }
+            }
+
+            this.region = new Region(map, index);
+        }
+    }
+
+    /**
+     * Indexes the records of a mapped file, counting those superseded as dead
+     * and dropping those expired
+     *
+     * @param map
+     *            the file mapped from its start
+     * @param index
+     *            the index to fill
+     * @return the offset after the last whole record
+     */
+    private int scan(final MappedByteBuffer map, final Map<String, Integer> index) {
+
+        final long now = System.currentTimeMillis();
+
+        int offset = 4;
+
+        while (offset + HEADER + 4 <= map.capacity()) {
+
+            final int length = map.getInt(offset);
+
+            if (length < HEADER + 4 || length > map.capacity() - offset)
+                break;
+
+            final ByteBuffer record = map.duplicate();
+            record.position(offset + 8);
+
+            if (crc(record, length - 8) != map.getInt(offset + 4))
+                break;
+
+            record.position(offset + HEADER);
+
+            final Integer previous = index.put(string(record), offset);
+
+            if (previous != null)
+                this.dead += map.getInt(previous);
+
+            offset += length;
+        }
+
+        this.expire(map, index, now);
+
+        return offset;
+    }
+
+    /**
+     * Releases the lock on the lock file
+     */
+    private void release() {
+
+        try {
+
+            this.lock.channel().close();
+        } catch (final IOException e) {
+
+            LOG.debug("Unable to release synonym cache lock", e);
+        }
+    }
+
+    /**
+     * @return true if dead records outweigh live ones in a file worth
+     *         compacting
+     */
+    private boolean shouldCompact() {
+
+        return this.end >= MIN_COMPACT && this.dead * 2 > this.end;
+    }
+
+    /**
+     * @return the number of words stored, some of which may have expired
+     */
+    int size() {
+
+        return this.region.index.size();
+    }
+}
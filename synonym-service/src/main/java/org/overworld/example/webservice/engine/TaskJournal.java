@@ -0,0 +1,374 @@
+package org.overworld.example.webservice.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Persists the progress of SeekTasks to a local directory so that unfinished
+ * tasks can be resumed under their original ids after a restart.
+ * <p/>
+ * Each task has a task file, written on submission and rewritten once its
+ * generator is prepared or it finishes, and a smaller state file of its
+ * iterator state and attempts that is rewritten at every checkpoint. Its
+ * starting text is kept apart in a text file, streamed out of the tokenized
+ * text once on submission and streamed back in on recovery, so that it is
+ * never held whole as a String. Files are replaced atomically so that a crash
+ * mid-write leaves the previous version intact.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+public class TaskJournal {
+
+    /**
+     * A writer of the content of a file
+     */
+    @FunctionalInterface
+    private interface Content {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final Log LOG = LogFactory.getLog(TaskJournal.class);
+
+    /**
+     * Set once the application is shutting down, after which interrupted
+     * tasks write a final checkpoint rather than being treated as cancelled
+     */
+    private volatile boolean closing;
+
+    /**
+     * The directory holding the journal, or empty to disable journalling
+     */
+    @Value("${engine.journal.dir}")
+    private String dir;
+
+    /**
+     * The minimum interval in ms between checkpoints of a running task
+     */
+    @Value("${engine.journal.interval}")
+    private long interval;
+
+    /**
+     * The ids of tasks currently in the journal, so that a task cannot write
+     * a checkpoint after it has been removed
+     */
+    private final Set<Integer> live = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Reads and writes the journal files
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Creates the journal configured from the application properties
+     */
+    public TaskJournal() {
+
+    }
+
+    /**
+     * Creates a journal in the directory given, for use outside the
+     * application
+     *
+     * @param dir
+     *            the directory holding the journal, or empty to disable
+     *            journalling
+     * @param interval
+     *            the minimum interval in ms between checkpoints
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    TaskJournal(final String dir, final long interval) throws IOException {
+
+        this.dir = dir;
+        this.interval = interval;
+        this.init();
+    }
+
+    /**
+     * Records the submission of a new task
+     *
+     * @param entry
+     *            the entry of the task, as yet without a generator
+     * @param text
+     *            the starting text of the task
+     */
+    public void begin(final JournalEntry entry, final TokenizedText text) {
+
+        if (!this.isEnabled())
+            return;
+
+        this.live.add(entry.getId());
+        this.write(this.textFile(entry.getId()), text::write);
+        this.write(this.taskFile(entry.getId()), entry);
+    }
+
+    /**
+     * Records the current state of a task's iterator, unless the task has
+     * since been removed
+     *
+     * @param id
+     *            the id of the task
+     * @param state
+     *            the last state tried without a match
+     * @param attempts
+     *            the number of candidates tried by every run of the task
+     */
+    public synchronized void checkpoint(final int id, final int[] state,
+        final long attempts) {
+
+        if (!this.live.contains(id))
+            return;
+
+        final Map<String, Object> checkpoint = new LinkedHashMap<>();
+        checkpoint.put("state", state);
+        checkpoint.put("attempts", attempts);
+
+        this.write(this.stateFile(id), checkpoint);
+    }
+
+    /**
+     * Marks the journal as closing, so that tasks interrupted from here on
+     * checkpoint rather than abandon their progress
+     */
+    public void close() {
+
+        this.closing = true;
+    }
+
+    /**
+     * Records the outcome of a finished task so that it can still be retrieved
+     * after a restart, and is not run again. A task that exhausted its budget
+     * is marked so on its entry, with its attempts and coverage, beforehand.
+     *
+     * @param entry
+     *            the entry of the task
+     * @param result
+     *            the result of the task, or null if there was no match
+     */
+    public synchronized void finish(final JournalEntry entry,
+        final String result) {
+
+        if (!this.live.contains(entry.getId()))
+            return;
+
+        entry.setFinished(true);
+        entry.setResult(result);
+        entry.setGenerator(null);
+
+        this.write(this.taskFile(entry.getId()), entry);
+        this.stateFile(entry.getId()).delete();
+        this.textFile(entry.getId()).delete();
+    }
+
+    /**
+     * @return the minimum interval in ms between checkpoints
+     */
+    public long getInterval() {
+
+        return this.interval;
+    }
+
+    @PostConstruct
+    private void init() throws IOException {
+
+        if (this.isEnabled())
+            Files.createDirectories(new File(this.dir).toPath());
+    }
+
+    /**
+     * @return true if the application is shutting down
+     */
+    public boolean isClosing() {
+
+        return this.closing;
+    }
+
+    /**
+     * @return true if a journal directory is configured
+     */
+    public boolean isEnabled() {
+
+        return this.dir != null && !this.dir.isEmpty();
+    }
+
+    /**
+     * Records the prepared generator of a task so that it need not be fetched
+     * from upstream again
+     *
+     * @param entry
+     *            the entry of the task, with its generator and indirects set
+     */
+    public synchronized void prepared(final JournalEntry entry) {
+
+        if (this.live.contains(entry.getId()))
+            this.write(this.taskFile(entry.getId()), entry);
+    }
+
+    /**
+     * Reads back every task in the journal
+     *
+     * @return the entries found, each with its last checkpointed state
+     */
+    public List<JournalEntry> recover() {
+
+        final List<JournalEntry> result = new ArrayList<>();
+
+        if (!this.isEnabled())
+            return result;
+
+        final File[] files = new File(this.dir)
+            .listFiles((d, name) -> name.endsWith(".task.json"));
+
+        for (final File file : files == null ? new File[0] : files) {
+
+            try {
+
+                final JournalEntry entry = this.mapper.readValue(file,
+                    JournalEntry.class);
+
+                final File stateFile = this.stateFile(entry.getId());
+
+                if (stateFile.exists()) {
+
+                    final JsonNode checkpoint = this.mapper.readTree(stateFile);
+
+                    entry.setState(this.mapper.treeToValue(checkpoint.get(
+                        "state"), int[].class));
+                    entry.setAttempts(checkpoint.path("attempts").asLong());
+                }
+
+                this.live.add(entry.getId());
+                result.add(entry);
+            } catch (final IOException e) {
+
+                LOG.warn("Ignoring unreadable journal file " + file, e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes a task from the journal, once it has been retrieved or deleted
+     *
+     * @param id
+     *            the id of the task
+     */
+    public synchronized void remove(final int id) {
+
+        if (this.live.remove(id)) {
+
+            this.taskFile(id).delete();
+            this.stateFile(id).delete();
+            this.textFile(id).delete();
+        }
+    }
+
+    private File stateFile(final int id) {
+
+        return new File(this.dir, id + ".state.json");
+    }
+
+    private File taskFile(final int id) {
+
+        return new File(this.dir, id + ".task.json");
+    }
+
+    /**
+     * Reads back the starting text of a recovered task
+     *
+     * @param entry
+     *            the entry of an unfinished task, as recovered
+     * @param pool
+     *            the pool in which to hold words
+     * @return the starting text, streamed from the text file, or from the
+     *         entry itself if it was journalled with its text inline
+     * @throws IOException
+     *             if the text file cannot be read
+     */
+    public TokenizedText text(final JournalEntry entry, final TokenPool pool)
+        throws IOException {
+
+        if (entry.getStartText() != null)
+            return TokenizedText.of(entry.getStartText(), pool);
+
+        try (Reader reader = Files.newBufferedReader(this.textFile(
+            entry.getId()).toPath(), StandardCharsets.UTF_8)) {
+
+            return TokenizedText.read(reader, pool);
+        }
+    }
+
+    private File textFile(final int id) {
+
+        return new File(this.dir, id + ".text");
+    }
+
+    /**
+     * Atomically replaces a file with the JSON form of a value
+     *
+     * @param file
+     *            the file to replace
+     * @param value
+     *            the value to write
+     */
+    private void write(final File file, final Object value) {
+
+        this.write(file, out -> this.mapper.writeValue(out, value));
+    }
+
+    /**
+     * Atomically replaces a file with the content given
+     *
+     * @param file
+     *            the file to replace
+     * @param content
+     *            the writer of the content
+     */
+    private void write(final File file, final Content content) {
+
+        final File temp = new File(file.getPath() + ".tmp");
+
+        try {
+
+            try (OutputStream out = new BufferedOutputStream(Files
+                .newOutputStream(temp.toPath()))) {
+                content.writeTo(out);
+            }
+
+            Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+
+            /* a lost checkpoint only costs repeated work, so carry on */
+            LOG.warn("Unable to write journal file " + file, e);
+        }
+    }
+}
@@ -11,6 +11,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public class TaskTag {
 
+    /**
+     * The system time in ms when the task was created or resumed
+     */
+    private final long created;
+
     /**
      * The future that was obtained upon submission of the task
      */
@@ -26,6 +31,11 @@ public class TaskTag {
      */
     private final AtomicInteger progress;
 
+    /**
+     * The task, or null if it finished before it was tagged
+     */
+    private final SeekTask task;
+
     /**
      * Creates a tag for a SeekTask running in the application
      *
@@ -35,12 +45,25 @@ public class TaskTag {
      *            the future result of the task
      * @param progress
      *            the progress of the task
+     * @param task
+     *            the task, or null if it has already finished
      */
-    public TaskTag(final Integer id, final Future<String> future, final AtomicInteger progress) {
+    public TaskTag(final Integer id, final Future<String> future,
+        final AtomicInteger progress, final SeekTask task) {
 
         this.id = id;
         this.future = future;
         this.progress = progress;
+        this.task = task;
+        this.created = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the system time in ms when this task was created or resumed
+     */
+    public long getCreated() {
+
+        return this.created;
     }
 
     /**
@@ -67,6 +90,20 @@ public class TaskTag {
         return this.progress.get();
     }
 
+    /**
+     * Stops counting the task by its phase of progress
+     *
+     * @param phaseCounts
+     *            the counts the task is kept in
+     */
+    public void release(final PhaseCounts phaseCounts) {
+
+        if (this.task != null)
+            this.task.setPhaseCounts(null);
+        else
+            phaseCounts.remove(this.progress.get());
+    }
+
     @Override
     public String toString() {
 
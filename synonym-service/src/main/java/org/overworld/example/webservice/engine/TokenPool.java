@@ -0,0 +1,233 @@
+package org.overworld.example.webservice.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An append-only pool of distinct words held as UTF-8 bytes in one large
+ * array, shared by every task so that a synonym appearing in many places and
+ * many tasks is stored once and referred to by an int id.
+ * <p/>
+ * Ids are allocated under a lock but read without one. The arrays are only
+ * ever replaced by larger copies, so a reader holding an id obtained from
+ * intern always finds its bytes in whichever array it sees.
+ * <p/>
+ * A pool never forgets a word, so the shared pool is bounded by generation:
+ * once it is full, new tasks are given a fresh pool. A task keeps the pool it
+ * started with, through its TokenizedText, so a full pool may grow a little
+ * further while its last tasks finish, and is collected once none remain.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public final class TokenPool {
+
+    /**
+     * The bytes of words after which a pool is full, by default
+     */
+    static final int MAX_BYTES = 1 << 26;
+
+    /**
+     * The number of words after which a pool is full, by default
+     */
+    static final int MAX_WORDS = 1 << 22;
+
+    /**
+     * The pool given to new tasks in the application
+     */
+    private static volatile TokenPool shared = new TokenPool();
+
+    /**
+     * @return the pool to give a new task, which is the pool shared by all
+     *         tasks until it is full and then a fresh one
+     */
+    public static TokenPool shared() {
+
+        final TokenPool pool = shared;
+
+        if (!pool.isFull())
+            return pool;
+
+        synchronized (TokenPool.class) {
+
+            if (shared.isFull())
+                shared = new TokenPool();
+
+            return shared;
+        }
+    }
+
+    /**
+     * The UTF-8 bytes of every word, end to end
+     */
+    private volatile byte[] bytes = new byte[1 << 16];
+
+    /**
+     * The length in UTF-16 chars of each word by id
+     */
+    private volatile int[] chars = new int[1 << 12];
+
+    /**
+     * The number of words in the pool
+     */
+    private int count;
+
+    /**
+     * The id of each word in the pool
+     */
+    private final Map<String, Integer> index = new ConcurrentHashMap<>();
+
+    /**
+     * The bytes of words after which the pool is full
+     */
+    private final int maxBytes;
+
+    /**
+     * The number of words after which the pool is full
+     */
+    private final int maxWords;
+
+    /**
+     * The offset in bytes of each word by id, with one extra entry marking the
+     * end of the last word
+     */
+    private volatile int[] starts = new int[(1 << 12) + 1];
+
+    /**
+     * Creates a pool that is full at the default bounds
+     */
+    public TokenPool() {
+
+        this(MAX_BYTES, MAX_WORDS);
+    }
+
+    /**
+     * @param maxBytes
+     *            the bytes of words after which the pool is full
+     * @param maxWords
+     *            the number of words after which the pool is full
+     */
+    public TokenPool(final int maxBytes, final int maxWords) {
+
+        this.maxBytes = maxBytes;
+        this.maxWords = maxWords;
+    }
+
+    /**
+     * @return the array holding the bytes of every word, to be read with the
+     *         offsets from starts
+     */
+    byte[] bytes() {
+
+        return this.bytes;
+    }
+
+    /**
+     * @param id
+     *            the id of a word
+     * @return the length of the word in UTF-16 chars
+     */
+    public int chars(final int id) {
+
+        return this.chars[id];
+    }
+
+    /**
+     * Returns the id of a word, adding it to the pool if it is not already
+     * there
+     *
+     * @param word
+     *            the word
+     * @return the id of the word
+     */
+    public int intern(final String word) {
+
+        final Integer id = this.index.get(word);
+
+        if (id != null)
+            return id;
+
+        synchronized (this) {
+
+            final Integer existing = this.index.get(word);
+
+            if (existing != null)
+                return existing;
+
+            final byte[] utf8 = word.getBytes(StandardCharsets.UTF_8);
+            final int start = this.starts[this.count];
+
+            if (start + utf8.length > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes,
+                    Math.max(this.bytes.length << 1, start + utf8.length));
+            }
+
+            if (this.count + 1 >= this.chars.length) {
+                this.chars = Arrays.copyOf(this.chars, this.chars.length << 1);
+                this.starts = Arrays.copyOf(this.starts, (this.chars.length) + 1);
+            }
+
+            System.arraycopy(utf8, 0, this.bytes, start, utf8.length);
+            this.chars[this.count] = word.length();
+            this.starts[this.count + 1] = start + utf8.length;
+
+            /* publishing through the index makes the writes above visible */
+            this.index.put(word, this.count);
+
+            return this.count++;
+        }
+    }
+
+    /**
+     * @return true if the pool holds as many words or bytes as it should, in
+     *         which case no new task should be given it
+     */
+    public synchronized boolean isFull() {
+
+        return this.count >= this.maxWords
+            || this.starts[this.count] >= this.maxBytes;
+    }
+
+    /**
+     * @param id
+     *            the id of a word
+     * @return the length of the word in UTF-8 bytes
+     */
+    public int length(final int id) {
+
+        final int[] s = this.starts;
+        return s[id + 1] - s[id];
+    }
+
+    /**
+     * @return the number of distinct words in the pool
+     */
+    public synchronized int size() {
+
+        return this.count;
+    }
+
+    /**
+     * @return the array of offsets of each word in bytes, to be read
+     *         together with bytes
+     */
+    int[] starts() {
+
+        return this.starts;
+    }
+
+    /**
+     * @param id
+     *            the id of a word
+     * @return the word as a String
+     */
+    public String string(final int id) {
+
+        final int[] s = this.starts;
+        return new String(this.bytes, s[id], s[id + 1] - s[id],
+            StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,310 @@
+package org.overworld.example.webservice.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A text broken into words and the non-word gaps around them, read in a
+ * single pass from a stream. Words are held as ids in a TokenPool and gaps as
+ * UTF-8 bytes end to end, so the text is never held whole as a String.
+ * <p/>
+ * A word is a run of letters, digits and underscores, which are the
+ * characters either side of which a regular expression word boundary falls.
+ * A text of n words has n + 1 gaps, the first and last of which may be empty.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class TokenizedText {
+
+    /**
+     * The number of chars read from the stream at once
+     */
+    private static final int CHUNK = 8192;
+
+    /**
+     * @param c
+     *            a char
+     * @return true if the char is part of a word
+     */
+    private static boolean isWord(final char c) {
+
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Tokenizes a String, for callers that already hold the text
+     *
+     * @param text
+     *            the text
+     * @param pool
+     *            the pool in which to hold words
+     * @return the tokenized text
+     */
+    public static TokenizedText of(final String text, final TokenPool pool) {
+
+        try {
+
+            return read(new StringReader(text), pool);
+        } catch (final IOException e) {
+
+            /* a StringReader really cannot fail */
+            throw new RuntimeException("Unable to read from String", e);
+        }
+    }
+
+    /**
+     * Tokenizes a stream in a single pass, without holding the whole text
+     *
+     * @param reader
+     *            the stream of text, which is read to its end but not closed
+     * @param pool
+     *            the pool in which to hold words
+     * @return the tokenized text
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    public static TokenizedText read(final Reader reader, final TokenPool pool)
+        throws IOException {
+
+        final TokenizedText result = new TokenizedText(pool);
+        final StringBuilder run = new StringBuilder();
+        final char[] chunk = new char[CHUNK];
+
+        boolean inWord = false;
+        int read;
+
+        while ((read = reader.read(chunk)) != -1) {
+
+            for (int i = 0; i < read; i++) {
+
+                final char c = chunk[i];
+
+                if (isWord(c) != inWord) {
+
+                    result.end(run, inWord);
+                    inWord = !inWord;
+                }
+
+                run.append(c);
+            }
+        }
+
+        result.end(run, inWord);
+
+        /* the text always ends with a gap, even if empty */
+        if (inWord)
+            result.end(run, false);
+
+        result.gaps = Arrays.copyOf(result.gaps, result.gapStarts[result.gapCount]);
+        result.gapStarts = Arrays.copyOf(result.gapStarts, result.gapCount + 1);
+
+        return result;
+    }
+
+    /**
+     * The number of gaps read so far
+     */
+    private int gapCount;
+
+    /**
+     * The total length in UTF-16 chars of all gaps
+     */
+    private int gapChars;
+
+    /**
+     * The UTF-8 bytes of every gap, end to end
+     */
+    private byte[] gaps = new byte[256];
+
+    /**
+     * The offset into gaps of each gap, with one extra entry marking the end
+     * of the last
+     */
+    private int[] gapStarts = new int[65];
+
+    /**
+     * The pool holding the words
+     */
+    private final TokenPool pool;
+
+    /**
+     * The number of words read so far
+     */
+    private int wordCount;
+
+    /**
+     * The id of each word in the pool, in order
+     */
+    private int[] words = new int[64];
+
+    private TokenizedText(final TokenPool pool) {
+
+        this.pool = pool;
+    }
+
+    /**
+     * @return the length of the text in UTF-16 chars
+     */
+    public int chars() {
+
+        int result = this.gapChars;
+
+        for (int i = 0; i < this.wordCount; i++) {
+            result += this.pool.chars(this.words[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Ends the current run of chars, adding it as a word or a gap. A gap is
+     * added before every word, so that gaps and words alternate.
+     *
+     * @param run
+     *            the chars of the run, which is emptied
+     * @param word
+     *            true if the run is a word
+     */
+    private void end(final StringBuilder run, final boolean word) {
+
+        if (word) {
+
+            if (this.wordCount == this.words.length)
+                this.words = Arrays.copyOf(this.words, this.wordCount << 1);
+
+            this.words[this.wordCount++] = this.pool.intern(run.toString());
+        } else {
+
+            final byte[] utf8 = run.toString().getBytes(StandardCharsets.UTF_8);
+            final int start = this.gapStarts[this.gapCount];
+
+            if (start + utf8.length > this.gaps.length)
+                this.gaps = Arrays.copyOf(this.gaps,
+                    Math.max(this.gaps.length << 1, start + utf8.length));
+
+            if (this.gapCount + 1 == this.gapStarts.length)
+                this.gapStarts = Arrays.copyOf(this.gapStarts,
+                    this.gapStarts.length << 1);
+
+            System.arraycopy(utf8, 0, this.gaps, start, utf8.length);
+            this.gapStarts[++this.gapCount] = start + utf8.length;
+            this.gapChars += run.length();
+        }
+
+        run.setLength(0);
+    }
+
+    /**
+     * @return the total length in UTF-16 chars of all gaps
+     */
+    int gapChars() {
+
+        return this.gapChars;
+    }
+
+    /**
+     * @return the UTF-8 bytes of every gap, end to end
+     */
+    byte[] gaps() {
+
+        return this.gaps;
+    }
+
+    /**
+     * @return the offset into gaps of each gap, with one extra entry marking
+     *         the end of the last
+     */
+    int[] gapStarts() {
+
+        return this.gapStarts;
+    }
+
+    /**
+     * @return the pool holding the words
+     */
+    public TokenPool pool() {
+
+        return this.pool;
+    }
+
+    /**
+     * @return the text as a String, as originally read
+     */
+    public String text() {
+
+        final StringBuilder result = new StringBuilder(this.chars());
+
+        for (int i = 0; i <= this.wordCount; i++) {
+
+            result.append(new String(this.gaps, this.gapStarts[i],
+                this.gapStarts[i + 1] - this.gapStarts[i],
+                StandardCharsets.UTF_8));
+
+            if (i < this.wordCount)
+                result.append(this.pool.string(this.words[i]));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * @param index
+     *            the index of a word
+     * @return the word as a String
+     */
+    public String word(final int index) {
+
+        return this.pool.string(this.words[index]);
+    }
+
+    /**
+     * @param index
+     *            the index of a word
+     * @return the id of the word in the pool
+     */
+    int wordId(final int index) {
+
+        return this.words[index];
+    }
+
+    /**
+     * @return the number of words in the text
+     */
+    public int words() {
+
+        return this.wordCount;
+    }
+
+    /**
+     * Writes the text as UTF-8 straight from the gaps and the pool, without
+     * making it a String
+     *
+     * @param out
+     *            the stream to write to, which is not closed
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public void write(final OutputStream out) throws IOException {
+
+        final byte[] words = this.pool.bytes();
+        final int[] starts = this.pool.starts();
+
+        for (int i = 0; i <= this.wordCount; i++) {
+
+            out.write(this.gaps, this.gapStarts[i], this.gapStarts[i + 1]
+                - this.gapStarts[i]);
+
+            if (i < this.wordCount) {
+
+                final int id = this.words[i];
+                out.write(words, starts[id], starts[id + 1] - starts[id]);
+            }
+        }
+    }
+}
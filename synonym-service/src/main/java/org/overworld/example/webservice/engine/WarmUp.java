@@ -0,0 +1,235 @@
+package org.overworld.example.webservice.engine;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the search and digest paths on synthetic tasks until the JIT has
+ * finished compiling them, so that a load test measures compiled code from
+ * its first request rather than whichever JVM flags warm up quickest.
+ * <p/>
+ * Spring Boot logs its ready line only after runners return, so holding the
+ * runner holds the ready line. The standard CompilationMXBean reports the
+ * total time spent compiling rather than a count of compiled methods, so the
+ * JIT is taken to have settled when several rounds in a row add next to
+ * nothing to that time.
+ * <p/>
+ * The tasks are resumed from prepared entries and never wired into the
+ * application, so they fetch nothing, journal nothing and are not counted.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+public class WarmUp implements CommandLineRunner {
+
+    /**
+     * The most compilation time in ms a round may add and still be quiet
+     */
+    private static final long QUIET_MILLIS = 5;
+
+    /**
+     * The number of quiet rounds in a row after which the JIT has settled
+     */
+    private static final int SETTLE_ROUNDS = 3;
+
+    /**
+     * The words of the synthetic texts
+     */
+    private static final String[] WORDS = { "Quick", "brown", "foxes", "leap",
+        "over", "lazy", "dogs", "while", "\u00e9lan", "owners", "watch",
+        "from", "behind", "counter" };
+
+    private static final Log LOG = LogFactory.getLog(WarmUp.class);
+
+    /**
+     * @param word
+     *            a word
+     * @param fanout
+     *            the number of candidates wanted
+     * @return the word followed by fanout - 1 others of the same length, so
+     *         that a length bounded digest still has a space to search
+     */
+    private static List<String> candidates(final String word, final int fanout) {
+
+        final List<String> result = new ArrayList<>(fanout);
+        result.add(word);
+
+        for (int i = 1; i < fanout; i++) {
+            result.add(word.substring(0, word.length() - 1) + (char) ('a' + i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Makes a task whose target is the text of its last state, so that it is
+     * found somewhere within the space in the iterator's random order
+     *
+     * @param words
+     *            the number of words of the text
+     * @param fanout
+     *            the number of candidates of each word
+     * @param digester
+     *            the digest function
+     * @return the task
+     */
+    static SeekTask task(final int words, final int fanout,
+        final Function<String, String> digester) {
+
+        final List<List<String>> generator = new ArrayList<>(words);
+        final StringBuilder text = new StringBuilder();
+        final StringBuilder target = new StringBuilder();
+
+        for (int i = 0; i < words; i++) {
+
+            final List<String> candidates = candidates(WORDS[i % WORDS.length],
+                fanout);
+            generator.add(candidates);
+
+            final String gap = i == 0 ? "" : i % 5 == 0 ? ", " : " ";
+            text.append(gap).append(candidates.get(0));
+            target.append(gap).append(candidates.get(fanout - 1));
+        }
+
+        text.append('.');
+        target.append('.');
+
+        final JournalEntry entry = new JournalEntry();
+        entry.setStartText(text.toString());
+        entry.setTargetDigest(digester.apply(target.toString()));
+        entry.setDigester(Digesters.nameOf(digester));
+        entry.setGenerator(generator);
+        entry.setIndirects(IntStream.range(0, words).toArray());
+
+        return new SeekTask(entry, new AtomicInteger());
+    }
+
+    /**
+     * The time in ms taken to warm up, or -1 until done
+     */
+    private volatile long duration = -1;
+
+    /**
+     * The number of rounds taken to warm up
+     */
+    private volatile int rounds;
+
+    /**
+     * The time in ms each round runs tasks for
+     */
+    @Value("${engine.warmup.round}")
+    private long roundMillis;
+
+    /**
+     * The most time in ms to spend warming up, or 0 to skip it
+     */
+    @Value("${engine.warmup.timeout}")
+    private long timeout;
+
+    /**
+     * @return the time in ms taken to warm up, or -1 until done
+     */
+    public long getDuration() {
+
+        return this.duration;
+    }
+
+    /**
+     * @return the number of rounds taken to warm up
+     */
+    public int getRounds() {
+
+        return this.rounds;
+    }
+
+    /**
+     * @return true once warmed up, and so ready to be measured
+     */
+    public boolean isReady() {
+
+        return this.duration >= 0;
+    }
+
+    /**
+     * Runs synthetic tasks with each digest for a round
+     *
+     * @param until
+     *            the system time in ms at which the round ends
+     */
+    private void round(final long until) {
+
+        final List<Function<String, String>> digesters = new ArrayList<>();
+        digesters.add(new MD5Sum());
+        digesters.add(new BSDSum());
+
+        int words = 6;
+
+        while (System.currentTimeMillis() < until) {
+
+            for (final Function<String, String> digester : digesters) {
+                task(words, 4, digester).call();
+            }
+
+            /* vary the size so that no one shape is all the JIT sees */
+            words = words < 9 ? words + 1 : 6;
+        }
+    }
+
+    @Override
+    public void run(final String... args) {
+
+        final long start = System.currentTimeMillis();
+
+        if (this.timeout <= 0) {
+
+            this.duration = 0;
+            return;
+        }
+
+        final CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        final boolean timed = jit != null
+            && jit.isCompilationTimeMonitoringSupported();
+
+        long compiling = timed ? jit.getTotalCompilationTime() : 0;
+        int quiet = 0;
+        int round = 0;
+
+        while (quiet < SETTLE_ROUNDS
+            && System.currentTimeMillis() - start < this.timeout) {
+
+            this.round(System.currentTimeMillis() + this.roundMillis);
+            round++;
+
+            if (timed) {
+
+                final long total = jit.getTotalCompilationTime();
+                quiet = total - compiling <= QUIET_MILLIS ? quiet + 1 : 0;
+                compiling = total;
+            } else {
+
+                /* with nothing to watch, settle on a fixed number of rounds */
+                quiet++;
+            }
+        }
+
+        this.rounds = round;
+        this.duration = System.currentTimeMillis() - start;
+
+        LOG.info(String.format("Warmed up in %d ms over %d rounds%s",
+            this.duration, round, quiet >= SETTLE_ROUNDS ? ""
+                : ", giving up before compilation settled"));
+    }
+}
@@ -0,0 +1,304 @@
+package org.overworld.example.webservice.wire;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * A client of the WireProtocol, sharing one connection among any number of
+ * requests. Submissions are buffered until flushed, so that a batch goes out
+ * in as few packets as the socket allows, and a daemon thread matches each
+ * frame from the server to its request by id.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class WireClient implements Closeable {
+
+    /**
+     * The outcome of a request
+     */
+    public static final class Result {
+
+        /**
+         * The number of candidates tried, if the budget ran out
+         */
+        private final long attempts;
+
+        /**
+         * The fraction of the space tried, if the budget ran out
+         */
+        private final double coverage;
+
+        /**
+         * The status, one of those of WireProtocol
+         */
+        private final byte status;
+
+        /**
+         * The text found or the message, or null
+         */
+        private final String text;
+
+        /**
+         * @param status
+         *            the status, one of those of WireProtocol
+         * @param text
+         *            the text found or the message, or null
+         * @param attempts
+         *            the number of candidates tried, if the budget ran out
+         * @param coverage
+         *            the fraction of the space tried, if the budget ran out
+         */
+        private Result(final byte status, final String text,
+            final long attempts, final double coverage) {
+
+            this.status = status;
+            this.text = text;
+            this.attempts = attempts;
+            this.coverage = coverage;
+        }
+
+        /**
+         * @return the number of candidates tried, if the budget ran out
+         */
+        public long getAttempts() {
+
+            return this.attempts;
+        }
+
+        /**
+         * @return the fraction of the space tried, if the budget ran out
+         */
+        public double getCoverage() {
+
+            return this.coverage;
+        }
+
+        /**
+         * @return the status, one of those of WireProtocol
+         */
+        public byte getStatus() {
+
+            return this.status;
+        }
+
+        /**
+         * @return the text found or the message, or null
+         */
+        public String getText() {
+
+            return this.text;
+        }
+    }
+
+    /**
+     * The source of request ids
+     */
+    private final AtomicInteger ids = new AtomicInteger();
+
+    /**
+     * The listeners for the progress of requests by id
+     */
+    private final Map<Integer, IntConsumer> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * The buffered stream to the server
+     */
+    private final OutputStream out;
+
+    /**
+     * The outstanding requests by id
+     */
+    private final Map<Integer, CompletableFuture<Result>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The connection to the server
+     */
+    private final Socket socket;
+
+    /**
+     * @param host
+     *            the host of the server
+     * @param port
+     *            the port of the server
+     * @throws IOException
+     *             if the server cannot be reached
+     */
+    public WireClient(final String host, final int port) throws IOException {
+
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.out = new BufferedOutputStream(this.socket.getOutputStream(),
+            1 << 16);
+
+        final Thread reader = new Thread(this::read, "wire-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        this.socket.close();
+    }
+
+    /**
+     * Sends every buffered frame
+     *
+     * @throws IOException
+     *             if the frames cannot be sent
+     */
+    public void flush() throws IOException {
+
+        synchronized (this.out) {
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Fails every outstanding request, once the connection is lost
+     *
+     * @param cause
+     *            why the connection was lost
+     */
+    private void lost(final Throwable cause) {
+
+        for (final Integer id : this.pending.keySet()) {
+
+            final CompletableFuture<Result> future = this.pending.remove(id);
+
+            if (future != null)
+                future.completeExceptionally(cause);
+        }
+
+        this.listeners.clear();
+    }
+
+    /**
+     * Reads frames from the server until the connection is lost, completing
+     * their requests
+     */
+    private void read() {
+
+        try (DataInputStream in = new DataInputStream(
+            this.socket.getInputStream())) {
+
+            while (true) {
+
+                final int length = in.readInt();
+
+                if (length < WireProtocol.HEADER
+                    || length > WireProtocol.MAX_FRAME)
+                    throw new IOException("Bad frame length " + length);
+
+                final byte[] frame = new byte[length];
+                in.readFully(frame);
+
+                final ByteBuffer buffer = ByteBuffer.wrap(frame);
+                final byte type = buffer.get();
+                final int id = buffer.getInt();
+
+                if (type == WireProtocol.PROGRESS) {
+
+                    final IntConsumer listener = this.listeners.get(id);
+
+                    if (listener != null)
+                        listener.accept(buffer.get());
+
+                    continue;
+                }
+
+                final byte status = buffer.get();
+                final Result result;
+
+                if (status == WireProtocol.BUDGET_EXHAUSTED) {
+
+                    result = new Result(status, null, buffer.getLong(),
+                        buffer.getDouble());
+                } else {
+
+                    result = new Result(status, buffer.hasRemaining()
+                        ? new String(frame, buffer.position(),
+                            buffer.remaining(), StandardCharsets.UTF_8) : null,
+                        0, 0);
+                }
+
+                this.listeners.remove(id);
+
+                final CompletableFuture<Result> future = this.pending.remove(id);
+
+                if (future != null)
+                    future.complete(result);
+            }
+        } catch (final EOFException e) {
+
+            this.lost(new IOException("Connection closed by the server"));
+        } catch (final IOException e) {
+
+            this.lost(e);
+        }
+    }
+
+    /**
+     * Buffers a job for the next flush
+     *
+     * @param algorithm
+     *            WireProtocol.MD5 or WireProtocol.BSD
+     * @param timeout
+     *            the time in ms after which the job gives up, or 0 for never
+     * @param attempts
+     *            the most candidates to try, or 0 for no limit
+     * @param digest
+     *            the digest to seek
+     * @param text
+     *            the starting text
+     * @param progress
+     *            called with each new phase of the job, or null for none
+     * @return the future outcome of the job
+     * @throws IOException
+     *             if the buffer fills and cannot be sent
+     */
+    public CompletableFuture<Result> submit(final byte algorithm,
+        final long timeout, final long attempts, final String digest,
+        final String text, final IntConsumer progress) throws IOException {
+
+        final int id = this.ids.incrementAndGet();
+        final CompletableFuture<Result> future = new CompletableFuture<>();
+
+        this.pending.put(id, future);
+
+        if (progress != null)
+            this.listeners.put(id, progress);
+
+        this.write(WireProtocol.submit(id, algorithm, progress != null
+            ? WireProtocol.FLAG_PROGRESS : 0, timeout, attempts, digest, text));
+
+        return future;
+    }
+
+    /**
+     * @param frame
+     *            a frame to buffer
+     * @throws IOException
+     *             if the buffer fills and cannot be sent
+     */
+    private void write(final ByteBuffer frame) throws IOException {
+
+        synchronized (this.out) {
+            this.out.write(frame.array(), frame.arrayOffset(), frame.limit());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.overworld.example.webservice.wire;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The frames of the binary protocol for clients that submit jobs in volume.
+ * Every frame, in either direction, is a big endian int giving the length of
+ * the rest of the frame, a byte giving its type and an int request id chosen
+ * by the client, followed by a body that depends on the type. A client may
+ * have any number of requests outstanding on one connection, and may send and
+ * receive frames back to back, so that a batch of jobs costs one packet.
+ * <p/>
+ * From the client:
+ * <ul>
+ * <li>SUBMIT: a byte algorithm, a byte of flags, a long timeout in ms and a
+ * long budget of attempts, each 0 for none, a short length and the ASCII
+ * digest, then the UTF-8 text to the end of the frame. The id must not be
+ * that of an outstanding request.</li>
+ * <li>SUBSCRIBE: no body; asks for PROGRESS frames for an outstanding
+ * request, as does the progress flag of SUBMIT.</li>
+ * <li>CANCEL: no body; abandons an outstanding request.</li>
+ * </ul>
+ * From the server:
+ * <ul>
+ * <li>RESULT: a byte status, then for FOUND the UTF-8 text to the end of the
+ * frame, for BUDGET_EXHAUSTED a long of attempts and a double coverage, and
+ * for FAILED and INVALID a UTF-8 message to the end of the frame. A request
+ * ends with its RESULT.</li>
+ * <li>PROGRESS: a byte phase from 0 to 6, sent when it changes.</li>
+ * </ul>
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public final class WireProtocol {
+
+    /**
+     * The algorithm code of BSDSum
+     */
+    public static final byte BSD = 1;
+
+    /**
+     * The status of a request whose budget ran out
+     */
+    public static final byte BUDGET_EXHAUSTED = 2;
+
+    /**
+     * The type of frame that abandons a request
+     */
+    public static final byte CANCEL = 3;
+
+    /**
+     * The status of a request abandoned by the client
+     */
+    public static final byte CANCELLED = 5;
+
+    /**
+     * The status of a request whose space held no match
+     */
+    public static final byte EXHAUSTED = 1;
+
+    /**
+     * The status of a request that raised an error
+     */
+    public static final byte FAILED = 3;
+
+    /**
+     * The flag of SUBMIT that subscribes to progress
+     */
+    public static final byte FLAG_PROGRESS = 1;
+
+    /**
+     * The status of a request whose text was found
+     */
+    public static final byte FOUND = 0;
+
+    /**
+     * The length of the type and request id that follow the length of every
+     * frame
+     */
+    public static final int HEADER = 5;
+
+    /**
+     * The status of a request that could not be read or was not allowed
+     */
+    public static final byte INVALID = 4;
+
+    /**
+     * The longest frame accepted, less its length field
+     */
+    public static final int MAX_FRAME = 1 << 24;
+
+    /**
+     * The algorithm code of MD5Sum
+     */
+    public static final byte MD5 = 0;
+
+    /**
+     * The type of frame that reports the phase of a request
+     */
+    public static final byte PROGRESS = 17;
+
+    /**
+     * The type of frame that ends a request
+     */
+    public static final byte RESULT = 16;
+
+    /**
+     * The type of frame that submits a job
+     */
+    public static final byte SUBMIT = 1;
+
+    /**
+     * The type of frame that subscribes to the progress of a request
+     */
+    public static final byte SUBSCRIBE = 2;
+
+    /**
+     * @param type
+     *            CANCEL or SUBSCRIBE
+     * @param id
+     *            the id of the request
+     * @return the frame, ready to be written
+     */
+    public static ByteBuffer control(final byte type, final int id) {
+
+        return ready(header(0, type, id));
+    }
+
+    /**
+     * @param id
+     *            the id of the request
+     * @param attempts
+     *            the number of candidates tried
+     * @param coverage
+     *            the fraction of the space tried
+     * @return the frame, ready to be written
+     */
+    public static ByteBuffer exhausted(final int id, final long attempts,
+        final double coverage) {
+
+        return ready(header(17, RESULT, id).put(BUDGET_EXHAUSTED)
+            .putLong(attempts).putDouble(coverage));
+    }
+
+    /**
+     * @param body
+     *            the length of the body
+     * @param type
+     *            the type of the frame
+     * @param id
+     *            the id of the request
+     * @return a buffer holding the length, type and id, with room for the
+     *         body
+     */
+    private static ByteBuffer header(final int body, final byte type,
+        final int id) {
+
+        return ByteBuffer.allocate(4 + HEADER + body).putInt(HEADER + body)
+            .put(type).putInt(id);
+    }
+
+    /**
+     * @param id
+     *            the id of the request
+     * @param phase
+     *            the phase of the request
+     * @return the frame, ready to be written
+     */
+    public static ByteBuffer progress(final int id, final int phase) {
+
+        return ready(header(1, PROGRESS, id).put((byte) phase));
+    }
+
+    /**
+     * @param frame
+     *            a frame that has been put
+     * @return the frame flipped for writing
+     */
+    private static ByteBuffer ready(final ByteBuffer frame) {
+
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * @param id
+     *            the id of the request
+     * @param status
+     *            the status of the request, other than BUDGET_EXHAUSTED
+     * @param text
+     *            the text found or the message, or null for none
+     * @return the frame, ready to be written
+     */
+    public static ByteBuffer result(final int id, final byte status,
+        final String text) {
+
+        final byte[] utf8 = text == null ? new byte[0] : text
+            .getBytes(StandardCharsets.UTF_8);
+
+        return ready(header(1 + utf8.length, RESULT, id).put(status)
+            .put(utf8));
+    }
+
+    /**
+     * @param id
+     *            the id of the request
+     * @param algorithm
+     *            MD5 or BSD
+     * @param flags
+     *            0 or FLAG_PROGRESS
+     * @param timeout
+     *            the time in ms after which the job gives up, or 0 for never
+     * @param attempts
+     *            the most candidates to try, or 0 for no limit
+     * @param digest
+     *            the digest to seek
+     * @param text
+     *            the starting text
+     * @return the frame, ready to be written
+     */
+    public static ByteBuffer submit(final int id, final byte algorithm,
+        final byte flags, final long timeout, final long attempts,
+        final String digest, final String text) {
+
+        final byte[] ascii = digest.getBytes(StandardCharsets.US_ASCII);
+        final byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+
+        return ready(header(20 + ascii.length + utf8.length, SUBMIT, id)
+            .put(algorithm).put(flags).putLong(timeout).putLong(attempts)
+            .putShort((short) ascii.length).put(ascii).put(utf8));
+    }
+
+    private WireProtocol() {
+
+    }
+}
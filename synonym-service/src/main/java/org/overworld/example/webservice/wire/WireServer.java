@@ -0,0 +1,974 @@
+package org.overworld.example.webservice.wire;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.overworld.example.webservice.engine.BSDSum;
+import org.overworld.example.webservice.engine.BudgetExhaustedException;
+import org.overworld.example.webservice.engine.DigestFormat;
+import org.overworld.example.webservice.engine.MD5Sum;
+import org.overworld.example.webservice.engine.SeekTask;
+import org.overworld.example.webservice.engine.TokenPool;
+import org.overworld.example.webservice.engine.TokenizedText;
+
+/**
+ * Serves the WireProtocol over NIO, with a few selector threads each looking
+ * after many connections. The first also accepts, handing each connection to
+ * the threads in turn.
+ * <p/>
+ * A selector thread decodes every whole frame it has read before writing, and
+ * writes every frame queued for a connection in one gathering write, so that
+ * the frames of a batch share their system calls both ways. Results are
+ * queued by the threads that finish the tasks, which wake the selector only
+ * if it is not already due to run.
+ * <p/>
+ * A connection with as many requests outstanding as allowed is not read from
+ * until some finish, which pushes back on the client through TCP rather than
+ * queueing without bound.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class WireServer {
+
+    /**
+     * A connection from a client, read and written only by its selector
+     * thread, with results queued to it from any thread
+     */
+    private final class Connection {
+
+        /**
+         * The channel of the connection
+         */
+        private final SocketChannel channel;
+
+        /**
+         * The bytes read and not yet decoded
+         */
+        private ByteBuffer in = ByteBuffer.allocate(1 << 16);
+
+        /**
+         * The key of the channel with the selector
+         */
+        private SelectionKey key;
+
+        /**
+         * The selector thread of the connection
+         */
+        private final Loop loop;
+
+        /**
+         * The frames queued to be written
+         */
+        private final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Whether reading is paused as too many requests are outstanding
+         */
+        private boolean paused;
+
+        /**
+         * Whether the connection is queued for its selector thread to flush
+         */
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        /**
+         * The outstanding requests by id
+         */
+        private final Map<Integer, Request> requests = new ConcurrentHashMap<>();
+
+        /**
+         * Frames taken from out but not yet wholly written
+         */
+        private final Deque<ByteBuffer> unwritten = new ArrayDeque<>();
+
+        /**
+         * @param channel
+         *            the channel of the connection
+         * @param loop
+         *            the selector thread of the connection
+         */
+        private Connection(final SocketChannel channel, final Loop loop) {
+
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        /**
+         * Abandons a request
+         *
+         * @param id
+         *            the id of the request
+         */
+        private void cancel(final int id) {
+
+            final Request request = this.requests.remove(id);
+
+            if (request == null) {
+
+                this.send(WireProtocol.result(id, WireProtocol.INVALID,
+                    "Unknown request"));
+                return;
+            }
+
+            request.future.cancel(true);
+            this.send(WireProtocol.result(id, WireProtocol.CANCELLED, null));
+        }
+
+        /**
+         * Closes the connection, abandoning its requests
+         */
+        private void close() {
+
+            if (!this.channel.isOpen())
+                return;
+
+            WireServer.this.connections.decrementAndGet();
+            this.loop.connections.remove(this);
+
+            try {
+
+                this.channel.close();
+            } catch (final IOException e) {
+
+                LOG.debug("Unable to close wire connection", e);
+            }
+
+            for (final Request request : this.requests.values()) {
+
+                if (request.future != null)
+                    request.future.cancel(true);
+            }
+
+            this.requests.clear();
+        }
+
+        /**
+         * Sends the outcome of a request, unless it was abandoned
+         *
+         * @param id
+         *            the id of the request
+         * @param request
+         *            the request
+         * @param result
+         *            the matching text, or null
+         * @param error
+         *            the failure of the task, or null
+         */
+        private void complete(final int id, final Request request,
+            final String result, final Throwable error) {
+
+            if (!this.requests.remove(id, request))
+                return;
+
+            WireServer.this.completed.increment();
+
+            final Throwable cause = error instanceof CompletionException
+                && error.getCause() != null ? error.getCause() : error;
+
+            if (cause instanceof BudgetExhaustedException) {
+
+                final BudgetExhaustedException budget = (BudgetExhaustedException) cause;
+                this.send(WireProtocol.exhausted(id, budget.getAttempts(),
+                    budget.getCoverage()));
+            } else if (cause instanceof CancellationException) {
+
+                this.send(WireProtocol.result(id, WireProtocol.CANCELLED, null));
+            } else if (cause != null) {
+
+                this.send(WireProtocol.result(id, WireProtocol.FAILED,
+                    cause.toString()));
+            } else {
+
+                this.send(WireProtocol.result(id, result != null
+                    ? WireProtocol.FOUND : WireProtocol.EXHAUSTED, result));
+            }
+        }
+
+        /**
+         * Decodes and acts on every whole frame read, unless paused
+         */
+        private void decode() {
+
+            final ByteBuffer in = this.in;
+            in.flip();
+
+            final int filled = in.limit();
+
+            while (!this.paused && in.remaining() >= 4) {
+
+                final int start = in.position();
+                final int length = in.getInt(start);
+
+                if (length < WireProtocol.HEADER || length > WireProtocol.MAX_FRAME) {
+
+                    LOG.warn("Closing wire connection sending a frame of "
+                        + length + " bytes");
+                    this.close();
+                    return;
+                }
+
+                if (in.remaining() < 4 + length)
+                    break;
+
+                final int end = start + 4 + length;
+                in.position(start + 4);
+
+                final byte type = in.get();
+                final int id = in.getInt();
+
+                /* the body is read up to the end of its frame only */
+                in.limit(end);
+
+                try {
+
+                    this.handle(type, id, in);
+                } catch (final RuntimeException e) {
+
+                    LOG.warn("Closing wire connection after failing on request "
+                        + id, e);
+                    this.close();
+                    return;
+                } finally {
+
+                    in.limit(filled).position(end);
+                }
+            }
+
+            in.compact();
+
+            /* make room for a frame longer than the buffer */
+            if (in.position() >= 4) {
+
+                final int needed = 4 + in.getInt(0);
+
+                if (needed > in.capacity() && needed <= 4 + WireProtocol.MAX_FRAME) {
+
+                    in.flip();
+                    this.in = ByteBuffer.allocate(needed).put(in);
+                }
+            }
+        }
+
+        /**
+         * Writes as many queued frames as the socket takes, waiting to write
+         * the rest when it is writable, and resumes reading if enough
+         * requests have finished
+         */
+        private void flush() {
+
+            this.queued.set(false);
+
+            ByteBuffer frame;
+
+            while ((frame = this.out.poll()) != null) {
+                this.unwritten.add(frame);
+            }
+
+            try {
+
+                while (!this.unwritten.isEmpty()) {
+
+                    final ByteBuffer[] frames = this.unwritten
+                        .toArray(new ByteBuffer[this.unwritten.size()]);
+                    final int count = Math.min(frames.length, WRITE_BATCH);
+
+                    this.channel.write(frames, 0, count);
+
+                    while (!this.unwritten.isEmpty()
+                        && !this.unwritten.peek().hasRemaining()) {
+                        this.unwritten.poll();
+                    }
+
+                    /* the socket is full, so wait until it is writable */
+                    if (frames[count - 1].hasRemaining())
+                        break;
+                }
+            } catch (final IOException e) {
+
+                this.close();
+                return;
+            }
+
+            if (!this.key.isValid())
+                return;
+
+            int ops = this.unwritten.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+
+            if (this.paused && this.requests.size() < WireServer.this.maxInFlight) {
+
+                this.paused = false;
+                this.decode();
+            }
+
+            if (!this.paused)
+                ops |= SelectionKey.OP_READ;
+
+            if (this.channel.isOpen())
+                this.key.interestOps(ops);
+        }
+
+        /**
+         * Acts on a frame
+         *
+         * @param type
+         *            the type of the frame
+         * @param id
+         *            the id of the request
+         * @param body
+         *            the body of the frame, up to its limit
+         */
+        private void handle(final byte type, final int id, final ByteBuffer body) {
+
+            switch (type) {
+                case WireProtocol.SUBMIT:
+                    this.submit(id, body);
+                    break;
+                case WireProtocol.SUBSCRIBE:
+                    this.subscribe(id);
+                    break;
+                case WireProtocol.CANCEL:
+                    this.cancel(id);
+                    break;
+                default:
+                    this.send(WireProtocol.result(id, WireProtocol.INVALID,
+                        "Unknown frame type " + type));
+            }
+        }
+
+        /**
+         * Reads what the socket has and acts on every whole frame
+         */
+        private void read() {
+
+            try {
+
+                if (this.channel.read(this.in) < 0) {
+
+                    this.close();
+                    return;
+                }
+            } catch (final IOException e) {
+
+                this.close();
+                return;
+            }
+
+            this.decode();
+            this.flush();
+        }
+
+        /**
+         * Sends a PROGRESS frame for each subscribed request whose phase has
+         * changed since last sent
+         */
+        private void report() {
+
+            for (final Map.Entry<Integer, Request> entry : this.requests
+                .entrySet()) {
+
+                final Request request = entry.getValue();
+
+                if (!request.subscribed)
+                    continue;
+
+                final int phase = request.progress.get();
+
+                if (phase != request.reported) {
+
+                    request.reported = phase;
+                    this.send(WireProtocol.progress(entry.getKey(), phase));
+                }
+            }
+        }
+
+        /**
+         * Queues a frame to be written by the selector thread
+         *
+         * @param frame
+         *            the frame
+         */
+        private void send(final ByteBuffer frame) {
+
+            this.out.add(frame);
+
+            if (this.queued.compareAndSet(false, true))
+                this.loop.ready(this);
+        }
+
+        /**
+         * Decodes a job and submits it
+         *
+         * @param id
+         *            the id of the request
+         * @param body
+         *            the body of the SUBMIT frame
+         */
+        private void submit(final int id, final ByteBuffer body) {
+
+            final Request request = new Request();
+            final SeekTask task;
+
+            try {
+
+                final byte algorithm = body.get();
+                final byte flags = body.get();
+                final long timeout = body.getLong();
+                final long attempts = body.getLong();
+                final int length = body.getShort() & 0xffff;
+
+                if (length > body.remaining())
+                    throw new IllegalArgumentException(
+                        "Digest longer than its frame");
+
+                final byte[] digest = new byte[length];
+                body.get(digest);
+                final byte[] text = new byte[body.remaining()];
+                body.get(text);
+                final String target = new String(digest,
+                    StandardCharsets.US_ASCII);
+
+                final Function<String, String> digester = algorithm == WireProtocol.MD5
+                    ? new MD5Sum() : algorithm == WireProtocol.BSD ? new BSDSum()
+                        : null;
+
+                if (digester == null || timeout < 0 || attempts < 0)
+                    throw new IllegalArgumentException(
+                        "Unknown algorithm or negative budget");
+
+                if (!((DigestFormat) digester).isWellFormed(target))
+                    throw new IllegalArgumentException("Malformed digest");
+
+                task = new SeekTask(WireServer.this.taskIds.incrementAndGet(),
+                    TokenizedText.of(new String(text, StandardCharsets.UTF_8),
+                        TokenPool.shared()), target, digester, request.progress);
+
+                WireServer.this.wiring.accept(task);
+                task.setJournalled(false);
+                task.setBudget(timeout > 0 ? System.currentTimeMillis() + timeout
+                    : 0, attempts);
+
+                request.subscribed = (flags & WireProtocol.FLAG_PROGRESS) != 0;
+            } catch (final BufferUnderflowException | IllegalArgumentException e) {
+
+                WireServer.this.invalid.increment();
+                this.send(WireProtocol.result(id, WireProtocol.INVALID,
+                    e.getMessage() != null ? e.getMessage() : "Truncated frame"));
+                return;
+            }
+
+            if (this.requests.putIfAbsent(id, request) != null) {
+
+                WireServer.this.invalid.increment();
+                this.send(WireProtocol.result(id, WireProtocol.INVALID,
+                    "Request " + id + " is already outstanding"));
+                return;
+            }
+
+            WireServer.this.submitted.increment();
+
+            try {
+
+                request.future = WireServer.this.submitter.submit(task,
+                    (result, error) -> this.complete(id, request, result, error));
+            } catch (final RuntimeException e) {
+
+                this.complete(id, request, null, e);
+            }
+
+            if (this.requests.size() >= WireServer.this.maxInFlight)
+                this.paused = true;
+        }
+
+        /**
+         * Subscribes to the progress of a request, sending its phase now
+         *
+         * @param id
+         *            the id of the request
+         */
+        private void subscribe(final int id) {
+
+            final Request request = this.requests.get(id);
+
+            if (request == null) {
+
+                this.send(WireProtocol.result(id, WireProtocol.INVALID,
+                    "Unknown request"));
+                return;
+            }
+
+            request.subscribed = true;
+            request.reported = request.progress.get();
+            this.send(WireProtocol.progress(id, request.reported));
+        }
+    }
+
+    /**
+     * A selector thread and the connections it looks after
+     */
+    private final class Loop implements Runnable {
+
+        /**
+         * Whether the selector has been woken and not yet run
+         */
+        private final AtomicBoolean awake = new AtomicBoolean();
+
+        /**
+         * The connections of the thread
+         */
+        private final Set<Connection> connections = new HashSet<>();
+
+        /**
+         * Channels accepted and not yet registered
+         */
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Connections with frames queued to write
+         */
+        private final Queue<Connection> ready = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The selector of the thread
+         */
+        private final Selector selector;
+
+        /**
+         * @throws IOException
+         *             if the selector cannot be opened
+         */
+        private Loop() throws IOException {
+
+            this.selector = Selector.open();
+        }
+
+        /**
+         * Hands an accepted channel to this thread
+         *
+         * @param channel
+         *            the channel
+         */
+        private void adopt(final SocketChannel channel) {
+
+            this.pending.add(channel);
+            this.wake();
+        }
+
+        /**
+         * Queues a connection to be flushed by this thread
+         *
+         * @param connection
+         *            the connection
+         */
+        private void ready(final Connection connection) {
+
+            this.ready.add(connection);
+            this.wake();
+        }
+
+        @Override
+        public void run() {
+
+            long nextReport = System.currentTimeMillis()
+                + WireServer.this.progressInterval;
+
+            while (WireServer.this.running) {
+
+                try {
+
+                    this.selector.select(WireServer.this.progressInterval);
+                    this.awake.set(false);
+
+                    SocketChannel channel;
+
+                    while ((channel = this.pending.poll()) != null) {
+
+                        final Connection connection = new Connection(channel,
+                            this);
+                        connection.key = channel.register(this.selector,
+                            SelectionKey.OP_READ, connection);
+                        this.connections.add(connection);
+                    }
+
+                    try {
+
+                        for (final SelectionKey key : this.selector
+                            .selectedKeys()) {
+
+                            if (!key.isValid())
+                                continue;
+
+                            if (key.isAcceptable()) {
+
+                                WireServer.this.accept();
+                                continue;
+                            }
+
+                            final Connection connection = (Connection) key
+                                .attachment();
+
+                            try {
+
+                                if (key.isReadable())
+                                    connection.read();
+
+                                if (key.isValid() && key.isWritable())
+                                    connection.flush();
+                            } catch (final RuntimeException e) {
+
+                                /* one bad connection does not stop the others */
+                                LOG.warn("Closing failed wire connection", e);
+                                connection.close();
+                            }
+                        }
+                    } finally {
+
+                        this.selector.selectedKeys().clear();
+                    }
+
+                    final long now = System.currentTimeMillis();
+
+                    if (now >= nextReport) {
+
+                        for (final Connection connection : new HashSet<>(
+                            this.connections)) {
+                            connection.report();
+                        }
+
+                        nextReport = now + WireServer.this.progressInterval;
+                    }
+
+                    Connection connection;
+
+                    while ((connection = this.ready.poll()) != null) {
+
+                        if (connection.channel.isOpen())
+                            connection.flush();
+                    }
+                } catch (final IOException | RuntimeException e) {
+
+                    LOG.warn("Error in wire selector", e);
+                }
+            }
+
+            for (final Connection connection : new HashSet<>(this.connections)) {
+                connection.close();
+            }
+
+            try {
+
+                this.selector.close();
+            } catch (final IOException e) {
+
+                LOG.debug("Unable to close wire selector", e);
+            }
+        }
+
+        /**
+         * Wakes the selector unless already woken
+         */
+        private void wake() {
+
+            if (this.awake.compareAndSet(false, true))
+                this.selector.wakeup();
+        }
+    }
+
+    /**
+     * A job outstanding on a connection
+     */
+    private static final class Request {
+
+        /**
+         * The future result of the task, once submitted
+         */
+        private volatile Future<String> future;
+
+        /**
+         * The phase of the task
+         */
+        private final AtomicInteger progress = new AtomicInteger();
+
+        /**
+         * The last phase sent to the client, read and written by the selector
+         * thread only
+         */
+        private int reported = -1;
+
+        /**
+         * Whether the client wants the progress of the task
+         */
+        private volatile boolean subscribed;
+    }
+
+    /**
+     * Submits a task to run, to call back once it is done, as
+     * SeekPipeline.submit does
+     */
+    public interface Submitter {
+
+        /**
+         * @param task
+         *            the task
+         * @param whenDone
+         *            called with the result or the failure of the task
+         * @return the future result of the task
+         */
+        Future<String> submit(SeekTask task,
+            BiConsumer<? super String, ? super Throwable> whenDone);
+    }
+
+    private static final Log LOG = LogFactory.getLog(WireServer.class);
+
+    /**
+     * The most frames given to one gathering write
+     */
+    private static final int WRITE_BATCH = 64;
+
+    /**
+     * The number of requests finished
+     */
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * The number of open connections
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * The number of frames refused as invalid
+     */
+    private final LongAdder invalid = new LongAdder();
+
+    /**
+     * The selector threads
+     */
+    private final Loop[] loops;
+
+    /**
+     * The most requests outstanding on a connection before it is no longer
+     * read
+     */
+    private final int maxInFlight;
+
+    /**
+     * The next selector thread to hand a connection to
+     */
+    private int next;
+
+    /**
+     * The interval in ms between checks of the progress of subscribed
+     * requests
+     */
+    private final long progressInterval;
+
+    /**
+     * Whether the selector threads are to keep running
+     */
+    private volatile boolean running;
+
+    /**
+     * The listening channel
+     */
+    private final ServerSocketChannel server;
+
+    /**
+     * The runner of tasks
+     */
+    private final Submitter submitter;
+
+    /**
+     * The number of requests submitted
+     */
+    private final LongAdder submitted = new LongAdder();
+
+    /**
+     * The source of the ids of tasks
+     */
+    private final AtomicInteger taskIds = new AtomicInteger();
+
+    /**
+     * Prepares each task before it is submitted
+     */
+    private final Consumer<SeekTask> wiring;
+
+    /**
+     * @param port
+     *            the port to listen on, or 0 for any free port
+     * @param selectors
+     *            the number of selector threads
+     * @param maxInFlight
+     *            the most requests outstanding on a connection before it is
+     *            no longer read
+     * @param progressInterval
+     *            the interval in ms between checks of the progress of
+     *            subscribed requests
+     * @param submitter
+     *            the runner of tasks
+     * @param wiring
+     *            prepares each task before it is submitted
+     * @throws IOException
+     *             if the port cannot be bound
+     */
+    public WireServer(final int port, final int selectors,
+        final int maxInFlight, final long progressInterval,
+        final Submitter submitter, final Consumer<SeekTask> wiring)
+        throws IOException {
+
+        this.maxInFlight = maxInFlight;
+        this.progressInterval = progressInterval;
+        this.submitter = submitter;
+        this.wiring = wiring;
+
+        this.loops = new Loop[Math.max(1, selectors)];
+
+        for (int i = 0; i < this.loops.length; i++) {
+            this.loops[i] = new Loop();
+        }
+
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(port));
+        this.server.configureBlocking(false);
+        this.server.register(this.loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Accepts every pending connection, handing each to the next selector
+     * thread
+     *
+     * @throws IOException
+     *             if accepting fails
+     */
+    private void accept() throws IOException {
+
+        SocketChannel channel;
+
+        while ((channel = this.server.accept()) != null) {
+
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            this.connections.incrementAndGet();
+            this.loops[this.next++ % this.loops.length].adopt(channel);
+        }
+    }
+
+    /**
+     * @return the number of requests finished
+     */
+    public long getCompleted() {
+
+        return this.completed.sum();
+    }
+
+    /**
+     * @return the number of open connections
+     */
+    public int getConnections() {
+
+        return this.connections.get();
+    }
+
+    /**
+     * @return the number of frames refused as invalid
+     */
+    public long getInvalid() {
+
+        return this.invalid.sum();
+    }
+
+    /**
+     * @return the port listened on
+     */
+    public int getPort() {
+
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * @return the counters of the server by name
+     */
+    public Map<String, Number> getStats() {
+
+        final Map<String, Number> stats = new LinkedHashMap<>();
+
+        stats.put("connections", this.getConnections());
+        stats.put("submitted", this.getSubmitted());
+        stats.put("completed", this.getCompleted());
+        stats.put("invalid", this.getInvalid());
+
+        return stats;
+    }
+
+    /**
+     * @return the number of requests submitted
+     */
+    public long getSubmitted() {
+
+        return this.submitted.sum();
+    }
+
+    /**
+     * Starts the selector threads
+     */
+    public void start() {
+
+        this.running = true;
+
+        for (int i = 0; i < this.loops.length; i++) {
+
+            final Thread t = new Thread(this.loops[i], "wire-selector-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Stops listening and closes every connection, abandoning their requests
+     */
+    public void stop() {
+
+        this.running = false;
+
+        try {
+
+            this.server.close();
+        } catch (final IOException e) {
+
+            LOG.debug("Unable to close wire server", e);
+        }
+
+        for (final Loop loop : this.loops) {
+            loop.selector.wakeup();
+        }
+    }
+}
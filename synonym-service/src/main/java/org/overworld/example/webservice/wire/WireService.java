@@ -0,0 +1,100 @@
+package org.overworld.example.webservice.wire;
+
+import java.io.IOException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.overworld.example.webservice.engine.SeekPipeline;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs a WireServer alongside the REST endpoints, if wire.enabled is set,
+ * submitting its tasks to the same pipeline. Tasks from the wire are not
+ * journalled, as their clients hold the request ids and resubmit after a
+ * restart.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty("wire.enabled")
+public class WireService {
+
+    private static final Log LOG = LogFactory.getLog(WireService.class);
+
+    /**
+     * The factory that wires each task
+     */
+    private @Autowired AutowireCapableBeanFactory beanFactory;
+
+    /**
+     * The most requests outstanding on a connection before it is no longer
+     * read
+     */
+    @Value("${wire.maxInFlight}")
+    private int maxInFlight;
+
+    /**
+     * The pipeline that runs the tasks
+     */
+    private @Autowired SeekPipeline pipeline;
+
+    /**
+     * The port to listen on
+     */
+    @Value("${wire.port}")
+    private int port;
+
+    /**
+     * The interval in ms between checks of the progress of subscribed
+     * requests
+     */
+    @Value("${wire.progressInterval}")
+    private long progressInterval;
+
+    /**
+     * The number of selector threads
+     */
+    @Value("${wire.selectors}")
+    private int selectors;
+
+    /**
+     * The server, once started
+     */
+    private WireServer server;
+
+    /**
+     * @return the server
+     */
+    public WireServer getServer() {
+
+        return this.server;
+    }
+
+    @PostConstruct
+    private void init() throws IOException {
+
+        this.server = new WireServer(this.port, this.selectors,
+            this.maxInFlight, this.progressInterval, this.pipeline::submit,
+            this.beanFactory::autowireBean);
+        this.server.start();
+
+        LOG.info("Wire protocol listening on port " + this.server.getPort());
+    }
+
+    @PreDestroy
+    private void shutdown() {
+
+        this.server.stop();
+    }
+}
@@ -1,7 +1,10 @@
 package org.overworld.example.webservice.engine;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.function.Function;
 
 import org.junit.Test;
@@ -22,4 +25,28 @@ public class BSDSumTest {
         assertEquals("45436 1",
             bsd.apply("The quick brown fox jumps over the lazy dog.\n"));
     }
+
+    @Test
+    public void bsdSumBytesTest() throws Exception {
+
+        final String text = "The quick brown fox jumps over the lazy dog.\n";
+        final byte[] utf8 = Arrays.copyOf(text.getBytes("UTF-8"), 100);
+
+        assertEquals("45436 1",
+            new BSDSum().digest(utf8, text.length(), text.length()));
+    }
+
+    @Test
+    public void wellFormedTest() {
+
+        final BSDSum bsd = new BSDSum();
+
+        for (final String digest : new String[] { "45436 1", "0 0" }) {
+            assertTrue(digest, bsd.isWellFormed(digest));
+        }
+
+        for (final String digest : new String[] { "45436", "65536 1", "45436 -1", "45436 1 2", "x 1", "" }) {
+            assertFalse(digest, bsd.isWellFormed(digest));
+        }
+    }
 }
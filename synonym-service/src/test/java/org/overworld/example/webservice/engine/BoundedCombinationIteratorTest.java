@@ -0,0 +1,167 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class BoundedCombinationIteratorTest {
+
+    @Test
+    public void test() {
+
+        final int[] lengths = new int[]{ 2,3,2 };
+        final int[][] weights = new int[][] { { 1,3 }, { 0,5,2 }, { 4,1 } };
+
+        /* starting weight is 5, only totals of 7 to 9 are accepted */
+        final RandomisedCombinationIterator iter = new BoundedCombinationIterator(
+            lengths, weights, 7, 9);
+
+        iter.setIndirects(new int[] { 2,1,0 });
+
+        assertArrayEquals(new int[] { 0,1,1 }, iter.next());
+        assertArrayEquals(new int[] { 0,2,0 }, iter.next());
+        assertArrayEquals(new int[] { 1,0,0 }, iter.next());
+        assertArrayEquals(new int[] { 1,1,1 }, iter.next());
+        assertArrayEquals(new int[] { 1,2,0 }, iter.next());
+
+        try {
+
+            iter.next();
+        } catch (final IndexOutOfBoundsException e) {
+
+            return;
+        }
+
+        assertEquals("iterator should be exhausted", true, false);
+    }
+
+    @Test
+    public void pruningTest() {
+
+        final int[] lengths = new int[]{ 3,4,3,4,5,7,1,2 };
+        final int[][] weights = new int[lengths.length][];
+
+        for (int i = 0; i < lengths.length; i++) {
+
+            weights[i] = new int[lengths[i]];
+            for (int j = 0; j < lengths[i]; j++) {
+                weights[i][j] = ((i * 7) + (j * 5)) % 9;
+            }
+        }
+
+        final int[] indirects = new int[] { 3,0,6,1,7,2,5,4 };
+
+        final RandomisedCombinationIterator all = new RandomisedCombinationIterator(lengths);
+        final RandomisedCombinationIterator bounded = new BoundedCombinationIterator(
+            lengths, weights, 30, 34);
+
+        all.setIndirects(indirects);
+        bounded.setIndirects(indirects);
+
+        /* the bounded iterator yields exactly the in-range states, in order */
+        final int total = Arrays.stream(lengths).reduce(1, (a, b) -> a * b);
+
+        for (int n = 1; n < total; n++) {
+
+            final int[] state = all.next();
+
+            int weight = 0;
+            for (int i = 0; i < state.length; i++) {
+                weight += weights[i][state[i]];
+            }
+
+            if (weight >= 30 && weight <= 34) {
+                assertArrayEquals(state, bounded.next());
+            }
+        }
+
+        try {
+
+            bounded.next();
+        } catch (final IndexOutOfBoundsException e) {
+
+            return;
+        }
+
+        assertEquals("iterator should be exhausted", true, false);
+    }
+
+    @Test
+    public void leaseTest() {
+
+        final int[] lengths = new int[]{ 3,4,3,4,5,7,1,2 };
+        final int[][] weights = new int[lengths.length][];
+
+        for (int i = 0; i < lengths.length; i++) {
+
+            weights[i] = new int[lengths[i]];
+            for (int j = 0; j < lengths[i]; j++) {
+                weights[i][j] = ((i * 3) + (j * 7)) % 11;
+            }
+        }
+
+        final int[] indirects = new int[] { 5,2,0,7,4,1,3,6 };
+
+        final RandomisedCombinationIterator whole = new BoundedCombinationIterator(
+            lengths, weights, 35, 40);
+        whole.setIndirects(indirects);
+
+        final List<String> expected = new ArrayList<>();
+
+        try {
+
+            while (true) {
+                expected.add(Arrays.toString(whole.next()));
+            }
+        } catch (final IndexOutOfBoundsException e) {
+
+            /* exhausted */
+        }
+
+        /* leases of a bounded iterator are pruned just as the whole is */
+        final List<String> leased = new ArrayList<>();
+
+        final int limit = RandomisedCombinationIterator.leaseLimit(lengths, indirects, 20);
+        final long count = RandomisedCombinationIterator.leaseCount(lengths, indirects, limit);
+
+        for (long lease = 0; lease < count; lease++) {
+
+            final RandomisedCombinationIterator part = new BoundedCombinationIterator(
+                lengths, weights, 35, 40);
+            part.setIndirects(indirects);
+            part.lease(limit, lease);
+
+            try {
+
+                while (true) {
+                    leased.add(Arrays.toString(part.next()));
+                }
+            } catch (final IndexOutOfBoundsException e) {
+
+                /* end of lease */
+            }
+        }
+
+        assertEquals(expected, leased);
+    }
+
+    @Test
+    public void bsdBoundsTest() {
+
+        assertArrayEquals(new long[] { 1,1024 },
+            new BSDSum().lengthBounds("45436 1"));
+        assertArrayEquals(new long[] { 2049,3072 },
+            new BSDSum().lengthBounds("1 3"));
+    }
+}
@@ -0,0 +1,79 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class CompactGeneratorTest {
+
+    private static CompactGenerator generator(final String text,
+        final List<List<String>> candidates) {
+
+        final CompactGenerator result = new CompactGenerator(TokenizedText.of(
+            text, new TokenPool()));
+
+        candidates.forEach(result::add);
+
+        return result;
+    }
+
+    @Test
+    public void test() {
+
+        final List<List<String>> candidates = Arrays.asList(
+            Arrays.asList("The", "A"), Arrays.asList("quick", "fast", "speedy"),
+            Arrays.asList("fox"));
+
+        final CompactGenerator g = generator("The quick fox.", candidates);
+
+        assertEquals(3, g.positions());
+        assertEquals(3, g.size());
+        assertEquals("[2, 3, 1]", Arrays.toString(g.lengths()));
+        assertEquals(candidates, g.toLists());
+
+        assertEquals("The quick fox.", g.text(new int[] { 0, 0, 0 }));
+        assertEquals("A speedy fox.", g.text(new int[] { 1, 2, 0 }));
+        assertEquals(13, g.chars(new int[] { 1, 2, 0 }));
+        assertEquals("[[3, 1], [5, 4, 6], [3]]", Arrays.deepToString(g
+            .charLengths()));
+    }
+
+    @Test
+    public void utf8Test() {
+
+        final CompactGenerator g = generator("\u00bfcaf\u00e9 ol\u00e9?",
+            Arrays.asList(Arrays.asList("caf\u00e9", "\ud83d\ude00"),
+                Arrays.asList("ol\u00e9", "")));
+
+        for (final int[] state : new int[][] { { 0, 0 }, { 1, 0 }, { 1, 1 } }) {
+
+            final String text = g.text(state);
+            final byte[] out = new byte[g.maxBytes()];
+
+            assertEquals(text.length(), g.chars(state));
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length, g
+                .render(state, out));
+            assertTrue(g.render(state, out) <= g.maxBytes());
+        }
+
+        assertEquals("\u00bf\ud83d\ude00 ?", g.text(new int[] { 1, 1 }));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void overfullTest() {
+
+        generator("one", Arrays.asList(Arrays.asList("one"))).add(Arrays
+            .asList("two"));
+    }
+}
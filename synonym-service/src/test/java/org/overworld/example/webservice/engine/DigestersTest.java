@@ -0,0 +1,36 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class DigestersTest {
+
+    @Test
+    public void test() {
+
+        assertEquals(MD5Sum.class, Digesters.forName("MD5").getClass());
+        assertEquals(BSDSum.class, Digesters.forName("bsd").getClass());
+        assertEquals(Digesters.MD5, Digesters.nameOf(new MD5Sum()));
+        assertEquals(null, Digesters.nameOf(s -> s));
+
+        /* a class name is not an algorithm, so is never loaded */
+        final JournalEntry entry = new JournalEntry();
+        entry.setDigester(MD5Sum.class.getName());
+
+        try {
+
+            entry.newDigester();
+            fail("Expected a class name to be refused");
+        } catch (final IllegalStateException e) {
+            /* expected */
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class HillClimberTest {
+
+    /**
+     * @param size
+     *            a pool size
+     * @return the throughput of a pool of that size, peaking at 6 threads
+     */
+    private static double rate(final int size) {
+
+        return 100 - 10 * Math.abs(size - 6);
+    }
+
+    @Test
+    public void test() {
+
+        final HillClimber climber = new HillClimber(1, 16, 0.05);
+
+        int size = 2;
+        int highest = size;
+
+        for (int i = 0; i < 50; i++) {
+
+            size = climber.next(size, rate(size), true, true, 1);
+            highest = Math.max(highest, size);
+            assertEquals(true, size >= 1 && size <= 16);
+        }
+
+        /* it climbs to the peak and then wanders about it */
+        assertEquals(true, highest >= 6 && highest <= 7);
+        assertEquals(true, Math.abs(size - 6) <= 1);
+    }
+
+    @Test
+    public void heldTest() {
+
+        final HillClimber climber = new HillClimber(1, 16, 0.05);
+
+        assertEquals(4, climber.next(4, 100, false, true, 1));
+        assertEquals(0, climber.getLastStep());
+
+        /* saturated, it may not grow */
+        assertEquals(4, climber.next(4, 100, true, false, 1));
+        assertEquals(5, climber.next(4, 100, true, true, 1));
+        assertEquals(1, climber.getGrows());
+
+        /* no better for the step, so it turns back */
+        assertEquals(4, climber.next(5, 100, true, true, 1));
+        assertEquals(1, climber.getShrinks());
+
+        /* out of bounds sizes are brought within them */
+        assertEquals(16, climber.next(40, 100, false, true, 1));
+    }
+}
@@ -1,7 +1,10 @@
 package org.overworld.example.webservice.engine;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.function.Function;
 
 import org.junit.Test;
@@ -22,4 +25,28 @@ public class MD5SumTest {
         assertEquals("0d7006cd055e94cf614587e1d2ae0c8e",
             md5.apply("The quick brown fox jumps over the lazy dog.\n"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void md5SumBytesTest() throws Exception {
+
+        final String text = "The quick brown fox jumps over the lazy dog.\n";
+        final byte[] utf8 = Arrays.copyOf(text.getBytes("UTF-8"), 100);
+
+        assertEquals("0d7006cd055e94cf614587e1d2ae0c8e",
+            new MD5Sum().digest(utf8, text.length(), text.length()));
+    }
+
+    @Test
+    public void wellFormedTest() {
+
+        final MD5Sum md5 = new MD5Sum();
+
+        for (final String digest : new String[] { "0d7006cd055e94cf614587e1d2ae0c8e", "0D7006CD055E94CF614587E1D2AE0C8E" }) {
+            assertTrue(digest, md5.isWellFormed(digest));
+        }
+
+        for (final String digest : new String[] { "0d7006cd055e94cf614587e1d2ae0c8", "0d7006cd055e94cf614587e1d2ae0c8e0", "0d7006cd055e94cf614587e1d2ae0c8g", "" }) {
+            assertFalse(digest, md5.isWellFormed(digest));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class MultiMD5Test {
+
+    @Test
+    public void test() throws Exception {
+
+        final String text = "The quick brown fox jumps over the lazy dog.\n";
+        final byte[][] utf8 = { "nothing".getBytes("UTF-8"),
+            text.getBytes("UTF-8"), new byte[0] };
+
+        final MultiMD5 md5 = new MultiMD5(4,
+            "0d7006cd055e94cf614587e1d2ae0c8e");
+
+        assertEquals(1, md5.find(utf8, new int[] { 7, text.length(), 0 }, 3));
+        assertEquals(-1, md5.find(utf8, new int[] { 7, text.length() - 1, 0 },
+            3));
+        assertEquals(-1, md5.find(utf8, new int[] { 7, text.length(), 0 }, 1));
+    }
+
+    @Test
+    public void lengthsTest() {
+
+        /* every length either side of the block and padding boundaries */
+        final Random random = new Random(1);
+        final Function<String, String> md5 = new MD5Sum();
+        final int lanes = 8;
+
+        for (int length = 0; length < 200; length++) {
+
+            final byte[][] utf8 = new byte[lanes][];
+            final int[] lengths = new int[lanes];
+
+            for (int l = 0; l < lanes; l++) {
+
+                lengths[l] = l == 0 ? length : random.nextInt(200);
+                utf8[l] = new byte[lengths[l] + 10];
+
+                for (int i = 0; i < lengths[l]; i++) {
+                    utf8[l][i] = (byte) ('a' + random.nextInt(26));
+                }
+            }
+
+            final int lane = random.nextInt(lanes);
+            final String target = md5.apply(new String(utf8[lane], 0,
+                lengths[lane]));
+
+            assertEquals(lane, new MultiMD5(lanes, target).find(utf8, lengths,
+                lanes));
+        }
+    }
+}
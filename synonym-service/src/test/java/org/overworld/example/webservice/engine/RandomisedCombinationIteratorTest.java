@@ -1,6 +1,12 @@
 package org.overworld.example.webservice.engine;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -38,4 +44,70 @@ public class RandomisedCombinationIteratorTest {
         assertArrayEquals(new int[] { 0,0,0,0,0,6,0,1 }, iter.next());
         assertArrayEquals(new int[] { 0,0,0,0,1,0,0,0 }, iter.next());
     }
+
+    @Test
+    public void restoreTest() {
+
+        final int[] lengths = new int[]{ 3,4,3,4,5,7,1,2 };
+        final RandomisedCombinationIterator iter = new RandomisedCombinationIterator(lengths);
+
+        for (int i = 0; i < 100; i++) {
+            iter.next();
+        }
+
+        /* a restored iterator carries on exactly where the first left off */
+        final RandomisedCombinationIterator resumed = new RandomisedCombinationIterator(lengths);
+        resumed.restore(iter.getIndirects(), iter.getState());
+
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(iter.next(), resumed.next());
+        }
+    }
+
+    @Test
+    public void leaseTest() {
+
+        final int[] lengths = new int[]{ 3,4,3,4,5,7,1,2 };
+        final RandomisedCombinationIterator iter = new RandomisedCombinationIterator(lengths);
+        final int[] indirects = iter.getIndirects();
+
+        final List<String> all = new ArrayList<>();
+
+        try {
+
+            while (true) {
+                all.add(Arrays.toString(iter.next()));
+            }
+        } catch (final IndexOutOfBoundsException e) {
+
+            /* exhausted */
+        }
+
+        final int limit = RandomisedCombinationIterator.leaseLimit(lengths, indirects, 10);
+        final long count = RandomisedCombinationIterator.leaseCount(lengths, indirects, limit);
+
+        assertTrue(count >= 10);
+
+        /* the leases together visit every state in the same order, once */
+        final List<String> leased = new ArrayList<>();
+
+        for (long lease = 0; lease < count; lease++) {
+
+            final RandomisedCombinationIterator part = new RandomisedCombinationIterator(lengths);
+            part.restore(indirects, new int[lengths.length]);
+            part.lease(limit, lease);
+
+            try {
+
+                while (true) {
+                    leased.add(Arrays.toString(part.next()));
+                }
+            } catch (final IndexOutOfBoundsException e) {
+
+                /* end of lease */
+            }
+        }
+
+        assertEquals(all, leased);
+    }
 }
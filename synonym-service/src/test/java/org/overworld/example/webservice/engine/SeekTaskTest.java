@@ -0,0 +1,160 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class SeekTaskTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void attemptBudgetTest() {
+
+        /* 4^10 candidates, with the match the last of a random order */
+        final SeekTask task = WarmUp.task(10, 4, new MD5Sum());
+        task.setBudget(0, 1003);
+
+        try {
+
+            task.call();
+            fail("Expected the budget to be exhausted");
+        } catch (final BudgetExhaustedException e) {
+
+            /* the last batch of lanes is cut short to keep to the budget */
+            assertEquals(1003, e.getAttempts());
+            assertEquals(e.getAttempts() / Math.pow(4, 10), e.getCoverage(),
+                1e-9);
+        }
+    }
+
+    @Test
+    public void deadlineTest() {
+
+        final SeekTask task = WarmUp.task(10, 4, new MD5Sum());
+        task.setBudget(System.currentTimeMillis() - 1, 0);
+
+        try {
+
+            task.call();
+            fail("Expected the deadline to have passed");
+        } catch (final BudgetExhaustedException e) {
+
+            assertEquals(0, e.getAttempts());
+            assertEquals(0, e.getCoverage(), 0);
+        }
+
+        /* without a budget the whole space is searched */
+        final SeekTask unlimited = WarmUp.task(7, 4, new MD5Sum());
+        unlimited.setBudget(0, 0);
+
+        assertEquals("Quicd browd foxed lead oved, lazd dogd.",
+            unlimited.call());
+    }
+
+    @Test
+    public void phaseCountsTest() {
+
+        final PhaseCounts counts = new PhaseCounts();
+        final SeekTask task = WarmUp.task(6, 4, new MD5Sum());
+
+        task.setPhaseCounts(counts);
+        assertArrayEquals(new int[] { 1, 0, 0, 0, 0, 0, 0 }, counts.get());
+
+        task.call();
+        assertArrayEquals(new int[] { 0, 0, 0, 0, 0, 0, 1 }, counts.get());
+
+        task.setPhaseCounts(null);
+        assertArrayEquals(new int[7], counts.get());
+    }
+
+    @Test
+    public void exhaustedRestartTest() throws Exception {
+
+        final String dir = this.folder.getRoot().getPath();
+        final TaskJournal journal = new TaskJournal(dir, 0);
+
+        final SeekTask task = WarmUp.task(10, 4, new MD5Sum());
+        task.setJournal(journal);
+        task.setBudget(0, 1000);
+        task.begin();
+
+        final BudgetExhaustedException exhausted;
+
+        try {
+
+            task.call();
+            fail("Expected the budget to be exhausted");
+            return;
+        } catch (final BudgetExhaustedException e) {
+
+            exhausted = e;
+        }
+
+        /* after a restart the task is finished, not run again */
+        final List<JournalEntry> recovered = new TaskJournal(dir, 0).recover();
+
+        assertEquals(1, recovered.size());
+        assertEquals(true, recovered.get(0).isFinished());
+        assertEquals(true, recovered.get(0).isExhausted());
+        assertEquals(exhausted.getAttempts(), recovered.get(0).getAttempts());
+        assertEquals(exhausted.getCoverage(), recovered.get(0).getCoverage(),
+            0);
+        assertEquals(false, new File(dir, "0.state.json").exists());
+        assertEquals(false, new File(dir, "0.text").exists());
+    }
+
+    @Test
+    public void resumedDeadlineTest() throws Exception {
+
+        final String dir = this.folder.getRoot().getPath();
+        final TaskJournal journal = new TaskJournal(dir, 0);
+
+        final SeekTask task = WarmUp.task(10, 4, new MD5Sum());
+        task.setJournal(journal);
+        task.begin();
+
+        /* halfway through the slowest field when the service stopped */
+        final int[] state = new int[10];
+        state[9] = 2;
+        journal.checkpoint(0, state, 500);
+
+        final JournalEntry entry = new TaskJournal(dir, 0).recover().get(0);
+        entry.setDeadline(System.currentTimeMillis() - 1);
+
+        final SeekTask resumed = new SeekTask(entry, journal.text(entry,
+            new TokenPool()), new AtomicInteger());
+        resumed.setJournal(journal);
+
+        try {
+
+            resumed.call();
+            fail("Expected the deadline to have passed");
+        } catch (final BudgetExhaustedException e) {
+
+            /* what was done before the restart is still reported */
+            assertEquals(500, e.getAttempts());
+            assertEquals(0.5, e.getCoverage(), 1e-9);
+        }
+
+        final JournalEntry finished = new TaskJournal(dir, 0).recover().get(0);
+
+        assertEquals(true, finished.isExhausted());
+        assertEquals(500, finished.getAttempts());
+    }
+}
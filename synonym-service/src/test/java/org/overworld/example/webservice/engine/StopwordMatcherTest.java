@@ -0,0 +1,60 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class StopwordMatcherTest {
+
+    @Test
+    public void test() {
+
+        final TokenPool pool = new TokenPool();
+        final StopwordMatcher matcher = new StopwordMatcher();
+
+        assertEquals(3, matcher.reload("the, Over,a,the,,"));
+        assertEquals(3, matcher.size());
+
+        assertEquals(true, matcher.matches(pool, pool.intern("the")));
+        assertEquals(true, matcher.matches(pool, pool.intern("The")));
+        assertEquals(true, matcher.matches(pool, pool.intern("OVER")));
+        assertEquals(true, matcher.matches(pool, pool.intern("a")));
+        assertEquals(false, matcher.matches(pool, pool.intern("then")));
+        assertEquals(false, matcher.matches(pool, pool.intern("th")));
+        assertEquals(false, matcher.matches(pool, pool.intern("fox")));
+        assertEquals(false, matcher.matches(pool, pool.intern("\u00e9lan")));
+
+        /* a reload replaces the list whole */
+        assertEquals(2, matcher.reload("fox,\u00e9lan"));
+        assertEquals(false, matcher.matches(pool, pool.intern("the")));
+        assertEquals(true, matcher.matches(pool, pool.intern("Fox")));
+        assertEquals(true, matcher.matches(pool, pool.intern("\u00e9lan")));
+
+        assertEquals(0, matcher.reload(""));
+        assertEquals(false, matcher.matches(pool, pool.intern("fox")));
+    }
+
+    @Test
+    public void manyTest() {
+
+        final TokenPool pool = new TokenPool();
+        final StopwordMatcher matcher = new StopwordMatcher();
+        final StringBuilder csv = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            csv.append("w").append(i).append(',');
+        }
+
+        assertEquals(1000, matcher.reload(csv.toString()));
+
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i < 1000, matcher.matches(pool, pool.intern("W" + i)));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedList;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class SynonymClientTest {
+
+    /**
+     * The statuses the fake upstream answers with in turn, null for a request
+     * that cannot connect
+     */
+    private final Deque<HttpStatus> answers = new LinkedList<>();
+
+    /**
+     * The number of requests that reached the fake upstream
+     */
+    private int calls;
+
+    private final ClientHttpRequestFactory factory = (uri, method) -> {
+
+        this.calls++;
+
+        final HttpStatus status = this.answers.poll();
+
+        if (status == null)
+            throw new ConnectException("refused");
+
+        final MockClientHttpRequest request = new MockClientHttpRequest(method,
+            uri);
+        request.setResponse(new MockClientHttpResponse(
+            "{\"noun\":{\"syn\":[\"a\",\"b\"]}}".getBytes(StandardCharsets.UTF_8),
+            status));
+
+        return request;
+    };
+
+    private SynonymClient client(final int retries, final long openFor) {
+
+        return new SynonymClient("http://upstream/{}", this.factory, retries, 0,
+            3, openFor);
+    }
+
+    private void fails(final SynonymClient client, final String word) {
+
+        try {
+
+            client.synonyms(word);
+            fail("Expected " + word + " to fail");
+        } catch (final RuntimeException e) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void breakerTest() throws Exception {
+
+        final SynonymClient client = this.client(0, 50);
+
+        /* three failed requests in a row open the breaker */
+        for (int i = 0; i < 3; i++) {
+            this.answers.add(HttpStatus.SERVICE_UNAVAILABLE);
+            this.fails(client, "w" + i);
+        }
+
+        assertEquals(3, this.calls);
+        assertEquals(1, client.getStats().get("breakerOpen"));
+
+        /* while open, requests fail without reaching the service */
+        this.fails(client, "w3");
+        assertEquals(3, this.calls);
+        assertEquals(1L, client.getStats().get("rejected"));
+
+        /* once the interval passes a failed probe opens it again */
+        Thread.sleep(60);
+        this.fails(client, "w4");
+        assertEquals(4, this.calls);
+        this.fails(client, "w5");
+        assertEquals(4, this.calls);
+
+        /* and a successful probe closes it */
+        Thread.sleep(60);
+        this.answers.add(HttpStatus.OK);
+        assertEquals(Arrays.asList("a", "b"), client.synonyms("w6"));
+        assertEquals(0, client.getStats().get("breakerOpen"));
+
+        this.answers.add(HttpStatus.OK);
+        assertEquals(Arrays.asList("a", "b"), client.synonyms("w7"));
+        assertEquals(6, this.calls);
+    }
+
+    @Test
+    public void clientErrorTest() throws Exception {
+
+        final SynonymClient client = this.client(0, 60000);
+
+        /* a refusal is an answer, so never opens the breaker */
+        for (int i = 0; i < 5; i++) {
+            this.answers.add(HttpStatus.BAD_REQUEST);
+            this.fails(client, "w" + i);
+        }
+
+        assertEquals(0, client.getStats().get("breakerOpen"));
+        assertEquals(5L, client.getStats().get("failures"));
+
+        /* each thrown as a refusal, which a task takes for no synonyms */
+        this.answers.add(HttpStatus.BAD_REQUEST);
+
+        try {
+
+            client.synonyms("w4");
+            fail("Expected w4 to be refused");
+        } catch (final SynonymClient.RefusedException e) {
+            /* expected */
+        }
+
+        /* and a word the service does not know has no synonyms */
+        this.answers.add(HttpStatus.NOT_FOUND);
+        assertEquals(Collections.emptyList(), client.synonyms("w5"));
+
+        this.answers.add(HttpStatus.OK);
+        assertEquals(Arrays.asList("a", "b"), client.synonyms("w6"));
+    }
+
+    @Test
+    public void parseTest() throws Exception {
+
+        final SynonymClient client = this.client(0, 0);
+
+        final String json = "{\"noun\":{\"syn\":[\"bank\",\"depot\"]},"
+            + "\"verb\":{\"ant\":[\"withdraw\"],\"syn\":[\"deposit\","
+            + "{\"ignored\":[\"x\"]},7,[\"y\"],\"lodge\"]},"
+            + "\"note\":{\"syn\":\"not an array\"},"
+            + "\"deeper\":[{\"adj\":{\"syn\":[\"caf\\u00e9\"]}}]}";
+
+        assertEquals(Arrays.asList("bank", "depot", "deposit", "lodge",
+            "caf\u00e9"), client.parse(new ByteArrayInputStream(json
+                .getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(Collections.emptyList(), client.parse(
+            new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void retryTest() throws Exception {
+
+        final SynonymClient client = this.client(2, 60000);
+
+        /* too many requests is retried without counting against the breaker */
+        this.answers.add(HttpStatus.TOO_MANY_REQUESTS);
+        this.answers.add(null);
+        this.answers.add(HttpStatus.OK);
+
+        assertEquals(Arrays.asList("a", "b"), client.synonyms("word"));
+        assertEquals(3, this.calls);
+        assertEquals(2L, client.getStats().get("retries"));
+        assertEquals(0, client.getStats().get("breakerOpen"));
+    }
+}
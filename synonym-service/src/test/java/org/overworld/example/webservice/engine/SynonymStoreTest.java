@@ -0,0 +1,217 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class SynonymStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void compactTest() throws Exception {
+
+        final File file = new File(this.folder.getRoot(), "synonyms.cache");
+        final String padding = String.join("", Collections.nCopies(200, "x"));
+
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            /* rewriting the same words leaves most of the file dead */
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 500; i++) {
+                    store.append("word" + i,
+                        Arrays.asList(padding, Integer.toString(round)));
+                }
+            }
+
+            assertEquals(500, store.size());
+            assertEquals(true, file.length() < 1 << 21);
+        }
+
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            assertEquals(500, store.size());
+            assertEquals(Arrays.asList(padding, "19"), store.get("word123"));
+        }
+    }
+
+    @Test
+    public void damagedTest() throws Exception {
+
+        final File file = new File(this.folder.getRoot(), "synonyms.cache");
+
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            store.append("quick", Arrays.asList("fast"));
+            assertEquals(Arrays.asList("fast"), store.get("quick"));
+
+            /* damage the record under the open store */
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+
+                raf.seek(4 + 16 + 2);
+                raf.write('Q');
+            }
+
+            assertNull(store.get("quick"));
+
+            store.append("quick", Arrays.asList("swift"));
+            assertEquals(Arrays.asList("swift"), store.get("quick"));
+        }
+    }
+
+    @Test
+    public void expiredCompactTest() throws Exception {
+
+        final File file = new File(this.folder.getRoot(), "synonyms.cache");
+        final String padding = String.join("", Collections.nCopies(400, "x"));
+
+        try (SynonymStore store = new SynonymStore(file, 100)) {
+
+            for (int i = 0; i < 3000; i++) {
+                store.append("old" + i, Arrays.asList(padding));
+            }
+
+            Thread.sleep(200);
+
+            /* the words expired while open make way for new ones */
+            for (int i = 0; i < 2000; i++) {
+                store.append("new" + i, Arrays.asList(padding));
+            }
+
+            assertEquals(true, file.length() < 1 << 21);
+            assertNull(store.get("old0"));
+            assertEquals(Arrays.asList(padding), store.get("new1999"));
+        }
+    }
+
+    @Test
+    public void lockTest() throws Exception {
+
+        final File file = new File(this.folder.getRoot(), "synonyms.cache");
+
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            store.append("quick", Arrays.asList("fast"));
+
+            try {
+
+                new SynonymStore(file, 0);
+                fail("Expected the file to be in use");
+            } catch (final IOException e) {
+                /* expected */
+            }
+        }
+
+        /* once closed the file may be opened again */
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            assertEquals(Arrays.asList("fast"), store.get("quick"));
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+
+        final File file = new File(this.folder.getRoot(), "synonyms.cache");
+
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            store.append("quick", Arrays.asList("fast", "speedy", "r\u00e1pido"));
+            store.append("lazy", Collections.emptyList());
+            store.append("quick", Arrays.asList("fast", "speedy"));
+
+            assertEquals(Arrays.asList("fast", "speedy"), store.get("quick"));
+            assertEquals(Collections.emptyList(), store.get("lazy"));
+            assertNull(store.get("brown"));
+        }
+
+        /* reopened, as by a restart, the words are there without fetching */
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            assertEquals(2, store.size());
+            assertEquals(Arrays.asList("fast", "speedy"), store.get("quick"));
+            assertEquals(Collections.emptyList(), store.get("lazy"));
+        }
+    }
+
+    @Test
+    public void tornTest() throws Exception {
+
+        final File file = new File(this.folder.getRoot(), "synonyms.cache");
+
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            store.append("quick", Arrays.asList("fast"));
+            store.append("fox", Arrays.asList("vixen", "reynard"));
+        }
+
+        /* damage the last record, as a crash part way through an append */
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+
+            final byte[] head = new byte[64];
+            raf.readFully(head);
+
+            for (int i = head.length - 1; i >= 0; i--) {
+
+                if (head[i] != 0) {
+
+                    raf.seek(i);
+                    raf.write(head[i] ^ 1);
+                    break;
+                }
+            }
+        }
+
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            assertEquals(Arrays.asList("fast"), store.get("quick"));
+            assertNull(store.get("fox"));
+
+            /* appends carry on from the last whole record */
+            store.append("dog", Arrays.asList("hound"));
+        }
+
+        try (SynonymStore store = new SynonymStore(file, 0)) {
+
+            assertEquals(2, store.size());
+            assertEquals(Arrays.asList("hound"), store.get("dog"));
+        }
+    }
+
+    @Test
+    public void ttlTest() throws Exception {
+
+        final File file = new File(this.folder.getRoot(), "synonyms.cache");
+
+        try (SynonymStore store = new SynonymStore(file, 50)) {
+
+            store.append("quick", Arrays.asList("fast"));
+            assertEquals(Arrays.asList("fast"), store.get("quick"));
+
+            Thread.sleep(100);
+
+            assertNull(store.get("quick"));
+
+            /* a fresh fetch replaces the expired record */
+            store.append("quick", Arrays.asList("swift"));
+            assertEquals(Arrays.asList("swift"), store.get("quick"));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class TaskJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JournalEntry entry(final int id) {
+
+        final JournalEntry result = new JournalEntry();
+        result.setId(id);
+        result.setTargetDigest("0");
+        result.setDigester(Digesters.MD5);
+
+        return result;
+    }
+
+    @Test
+    public void textTest() throws Exception {
+
+        final String dir = this.folder.getRoot().getPath();
+        final String original = "The qu\u00efck brown fox, \ud83d\ude00.\n";
+
+        final TaskJournal journal = new TaskJournal(dir, 0);
+        journal.begin(entry(7), TokenizedText.of(original, new TokenPool()));
+
+        /* the text is streamed to its own file, not held in the task file */
+        assertEquals(true, new File(dir, "7.text").exists());
+
+        final List<JournalEntry> recovered = new TaskJournal(dir, 0).recover();
+
+        assertEquals(1, recovered.size());
+        assertNull(recovered.get(0).getStartText());
+        assertEquals(original, new TaskJournal(dir, 0).text(recovered.get(0),
+            new TokenPool()).text());
+
+        journal.finish(recovered.get(0), "done");
+
+        assertEquals(false, new File(dir, "7.text").exists());
+        assertEquals("done", new TaskJournal(dir, 0).recover().get(0)
+            .getResult());
+    }
+
+    @Test
+    public void inlineTextTest() throws Exception {
+
+        /* an entry journalled with its text inline is still resumed */
+        final JournalEntry entry = entry(3);
+        entry.setStartText("inline text");
+
+        assertEquals("inline text", new TaskJournal(this.folder.getRoot()
+            .getPath(), 0).text(entry, new TokenPool()).text());
+    }
+}
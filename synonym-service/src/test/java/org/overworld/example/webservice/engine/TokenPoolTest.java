@@ -0,0 +1,103 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class TokenPoolTest {
+
+    @Test
+    public void test() {
+
+        final TokenPool pool = new TokenPool();
+
+        final int quick = pool.intern("quick");
+        final int fox = pool.intern("fox");
+
+        assertNotEquals(quick, fox);
+        assertEquals(quick, pool.intern("quick"));
+        assertEquals(quick, pool.intern(new String("quick")));
+        assertEquals(2, pool.size());
+
+        assertEquals("quick", pool.string(quick));
+        assertEquals("fox", pool.string(fox));
+        assertEquals(5, pool.length(quick));
+        assertEquals(5, pool.chars(quick));
+    }
+
+    @Test
+    public void utf8Test() {
+
+        final TokenPool pool = new TokenPool();
+
+        /* two, three and four byte sequences, the last a surrogate pair */
+        final String[] words = { "\u00fcber", "\u20acuro", "\ud83d\ude00x", "" };
+
+        for (final String word : words) {
+
+            final int id = pool.intern(word);
+
+            assertEquals(word, pool.string(id));
+            assertEquals(word.length(), pool.chars(id));
+            assertEquals(word.getBytes(StandardCharsets.UTF_8).length,
+                pool.length(id));
+        }
+
+        assertEquals(0, pool.length(pool.intern("")));
+        assertEquals(words.length, pool.size());
+    }
+
+    @Test
+    public void growthTest() {
+
+        final TokenPool pool = new TokenPool();
+
+        /* past both the initial id arrays and the initial byte array */
+        final int count = 20000;
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, pool.intern("word_" + i));
+        }
+
+        for (int i = 0; i < count; i += 997) {
+            assertEquals("word_" + i, pool.string(i));
+        }
+
+        assertEquals(count, pool.size());
+    }
+
+    @Test
+    public void fullTest() {
+
+        final TokenPool words = new TokenPool(1 << 20, 3);
+
+        words.intern("a");
+        words.intern("b");
+        assertFalse(words.isFull());
+
+        words.intern("c");
+        assertTrue(words.isFull());
+
+        final TokenPool bytes = new TokenPool(8, 1 << 20);
+
+        bytes.intern("\u00fc\u00fc\u00fc");
+        assertFalse(bytes.isFull());
+
+        bytes.intern("ab");
+        assertTrue(bytes.isFull());
+
+        /* a full pool still interns for the tasks that hold it */
+        assertEquals("late", bytes.string(bytes.intern("late")));
+    }
+}
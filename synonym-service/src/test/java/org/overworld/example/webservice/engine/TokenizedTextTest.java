@@ -0,0 +1,67 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class TokenizedTextTest {
+
+    @Test
+    public void test() {
+
+        final String original = "The quick brown fox jumps over the lazy dog.\n";
+        final TokenizedText text = TokenizedText.of(original, new TokenPool());
+
+        assertEquals(9, text.words());
+        assertEquals("The", text.word(0));
+        assertEquals("dog", text.word(8));
+        assertEquals(original, text.text());
+        assertEquals(original.length(), text.chars());
+        assertEquals(10, text.gapStarts().length - 1);
+        assertEquals(10, text.gapChars());
+    }
+
+    @Test
+    public void edgesTest() {
+
+        final TokenPool pool = new TokenPool();
+
+        final TokenizedText spaced = TokenizedText.of("  two  words", pool);
+        assertEquals(2, spaced.words());
+        assertEquals("two", spaced.word(0));
+        assertEquals("  two  words", spaced.text());
+
+        final TokenizedText empty = TokenizedText.of("", pool);
+        assertEquals(0, empty.words());
+        assertEquals("", empty.text());
+
+        final TokenizedText none = TokenizedText.of(" ... ", pool);
+        assertEquals(0, none.words());
+        assertEquals(" ... ", none.text());
+    }
+
+    @Test
+    public void streamTest() throws Exception {
+
+        /* a text longer than one chunk, with a word across the boundary */
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < 20000) {
+            sb.append("\u00fcn\u00efcode words_1 ");
+        }
+
+        final TokenizedText text = TokenizedText
+            .read(new StringReader(sb.toString()), new TokenPool());
+
+        assertEquals(sb.toString(), text.text());
+        assertEquals(sb.length(), text.chars());
+        assertEquals("words_1", text.word(1));
+    }
+}
@@ -0,0 +1,40 @@
+package org.overworld.example.webservice.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class WarmUpTest {
+
+    @Test
+    public void test() {
+
+        final Function<String, String> md5 = new MD5Sum();
+
+        final String result = WarmUp.task(7, 4, md5).call();
+
+        assertEquals("Quicd browd foxed lead oved, lazd dogd.", result);
+    }
+
+    @Test
+    public void boundedTest() {
+
+        final Function<String, String> bsd = new BSDSum();
+
+        /* a short sum may collide sooner, but the length always matches */
+        final String result = WarmUp.task(7, 4, bsd).call();
+
+        assertNotNull(result);
+        assertEquals("Quicd browd foxed lead oved, lazd dogd.".length(),
+            result.length());
+    }
+}
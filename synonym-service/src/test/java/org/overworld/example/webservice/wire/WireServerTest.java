@@ -0,0 +1,203 @@
+package org.overworld.example.webservice.wire;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.overworld.example.webservice.engine.BudgetExhaustedException;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class WireServerTest {
+
+    /**
+     * Finishes the tasks of the stand-in pipeline
+     */
+    private ScheduledExecutorService runner;
+
+    /**
+     * The server under test
+     */
+    private WireServer server;
+
+    /**
+     * The number of tasks submitted to the stand-in pipeline
+     */
+    private final AtomicInteger submitted = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+
+        this.runner = Executors.newScheduledThreadPool(4);
+
+        /* the outcome of each task follows the order of submission, and the
+         * first is slow enough to report progress */
+        this.server = new WireServer(0, 2, 64, 20, (task, whenDone) -> {
+
+            final int n = this.submitted.getAndIncrement();
+            final CompletableFuture<String> future = new CompletableFuture<>();
+
+            this.runner.schedule(() -> {
+
+                switch (n % 4) {
+                    case 0:
+                        future.complete("found " + n);
+                        break;
+                    case 1:
+                        future.complete(null);
+                        break;
+                    case 2:
+                        future.completeExceptionally(new BudgetExhaustedException(
+                            n, 100, 0.25));
+                        break;
+                    default:
+                        future.completeExceptionally(new IllegalStateException());
+                }
+
+                future.whenComplete(whenDone);
+            }, n == 0 ? 200 : 0, TimeUnit.MILLISECONDS);
+
+            return future;
+        }, task -> {});
+
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() {
+
+        this.server.stop();
+        this.runner.shutdownNow();
+    }
+
+    @Test
+    public void digestLengthTest() throws Exception {
+
+        try (Socket socket = new Socket("localhost", this.server.getPort())) {
+
+            socket.setSoTimeout(10000);
+
+            /* digest lengths that read as negative or overrun the frame */
+            for (final int length : new int[] { 0xffff, 0x8000, 1000 }) {
+
+                final ByteBuffer frame = WireProtocol.submit(length,
+                    WireProtocol.MD5, (byte) 0, 0, 0,
+                    "d41d8cd98f00b204e9800998ecf8427e", "Bad.");
+                frame.putShort(27, (short) length);
+                socket.getOutputStream().write(frame.array());
+            }
+
+            /* the connection is still served afterwards */
+            socket.getOutputStream().write(WireProtocol.submit(1,
+                WireProtocol.MD5, (byte) 0, 0, 0,
+                "d41d8cd98f00b204e9800998ecf8427e", "Good.").array());
+
+            final DataInputStream in = new DataInputStream(socket
+                .getInputStream());
+
+            for (final int expected : new int[] { 0xffff, 0x8000, 1000, 1 }) {
+
+                final byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+
+                final ByteBuffer body = ByteBuffer.wrap(frame);
+
+                assertEquals(WireProtocol.RESULT, body.get());
+                assertEquals(expected, body.getInt());
+                assertEquals(expected == 1 ? WireProtocol.FOUND
+                    : WireProtocol.INVALID, body.get());
+            }
+
+            assertEquals(3, this.server.getInvalid());
+            assertEquals(1, this.server.getSubmitted());
+        }
+    }
+
+    @Test
+    public void progressTest() throws Exception {
+
+        try (WireClient client = new WireClient("localhost",
+            this.server.getPort())) {
+
+            final List<Integer> phases = new CopyOnWriteArrayList<>();
+
+            final CompletableFuture<WireClient.Result> future = client.submit(
+                WireProtocol.MD5, 0, 0, "d41d8cd98f00b204e9800998ecf8427e",
+                "Slow.", phases::add);
+            client.flush();
+
+            final WireClient.Result result = future.get(5, TimeUnit.SECONDS);
+
+            assertEquals(WireProtocol.FOUND, result.getStatus());
+            assertEquals("found 0", result.getText());
+            assertEquals(true, phases.size() >= 1);
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+
+        try (WireClient client = new WireClient("localhost",
+            this.server.getPort())) {
+
+            /* more than may be outstanding at once, in one batch */
+            final List<CompletableFuture<WireClient.Result>> results = new ArrayList<>();
+
+            for (int i = 0; i < 1000; i++) {
+                results.add(i % 2 == 0 ? client.submit(WireProtocol.MD5, 1000,
+                    0, "d41d8cd98f00b204e9800998ecf8427e", "Job \u00e9lan " + i,
+                    null) : client.submit(WireProtocol.BSD, 1000, 0, "0 0",
+                        "Job \u00e9lan " + i, null));
+            }
+
+            final CompletableFuture<WireClient.Result> invalid = client.submit(
+                (byte) 9, 0, 0, "0", "Bad algorithm", null);
+
+            client.flush();
+
+            final int[] statuses = new int[6];
+
+            for (int i = 0; i < results.size(); i++) {
+
+                final WireClient.Result result = results.get(i).get(10,
+                    TimeUnit.SECONDS);
+                statuses[result.getStatus()]++;
+
+                if (result.getStatus() == WireProtocol.BUDGET_EXHAUSTED) {
+
+                    assertEquals(100, result.getAttempts());
+                    assertEquals(0.25, result.getCoverage(), 0);
+                }
+            }
+
+            assertEquals(250, statuses[WireProtocol.FOUND]);
+            assertEquals(250, statuses[WireProtocol.EXHAUSTED]);
+            assertEquals(250, statuses[WireProtocol.BUDGET_EXHAUSTED]);
+            assertEquals(250, statuses[WireProtocol.FAILED]);
+
+            assertEquals(WireProtocol.INVALID, invalid.get(10, TimeUnit.SECONDS)
+                .getStatus());
+
+            assertEquals(1000, this.server.getSubmitted());
+            assertEquals(1000, this.server.getCompleted());
+            assertEquals(1, this.server.getInvalid());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.overworld.standin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * The main class of the stand-in synonym server, which serves until killed.
+ * <p/>
+ * Configuration is read from the properties file named by the first
+ * argument, ./standin.properties by default, which as well as the profile
+ * properties holds:
+ * <ul>
+ * <li>port - the port to listen on, 8090 by default</li>
+ * <li>threads - the number of threads answering requests, 64 by default</li>
+ * <li>words - the word list file, ./words.csv by default</li>
+ * </ul>
+ * Once listening a ready line is printed, which a metre target can wait for.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class Application {
+
+    /**
+     * @param args
+     *            the properties file, optionally
+     * @throws IOException
+     *             if the configuration or word list cannot be read, or the port
+     *             cannot be bound
+     */
+    public static void main(final String[] args) throws IOException {
+
+        final Path config = Paths.get(args.length > 0 ? args[0]
+            : "standin.properties");
+
+        final Properties properties = new Properties();
+
+        if (Files.exists(config)) {
+
+            try (InputStream in = Files.newInputStream(config)) {
+                properties.load(in);
+            }
+        }
+
+        final WordList words = WordList.read(config.toAbsolutePath()
+            .getParent().resolve(properties.getProperty("words", "words.csv")));
+
+        final StandinServer server = new StandinServer(
+            Integer.parseInt(properties.getProperty("port", "8090")),
+            Integer.parseInt(properties.getProperty("threads", "64")), words,
+            Profile.from(properties));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+
+        server.start();
+
+        System.out.println("Stand-in synonym server ready on port "
+            + server.getPort() + " with " + words.size() + " words");
+    }
+}
@@ -0,0 +1,249 @@
+package org.overworld.standin;
+
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * The behaviour of the stand-in server: how long it takes to answer, how
+ * often it fails and how fast it lets clients go before throttling them.
+ * <p/>
+ * Latency follows one of a few distributions, each described by a mean and a
+ * spread in ms:
+ * <ul>
+ * <li>fixed - always the mean, the spread is ignored</li>
+ * <li>uniform - evenly between mean - spread and mean + spread</li>
+ * <li>normal - normally about the mean with the spread as standard deviation</li>
+ * <li>exponential - exponentially with the mean, the spread is ignored</li>
+ * </ul>
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class Profile {
+
+    /**
+     * The shapes of latency distribution supported
+     */
+    public enum Distribution {
+        EXPONENTIAL, FIXED, NORMAL, UNIFORM
+    }
+
+    /**
+     * Reads a profile from properties, with defaults for those missing:
+     * <ul>
+     * <li>latency.distribution - fixed</li>
+     * <li>latency.mean - 0</li>
+     * <li>latency.spread - 0</li>
+     * <li>error.rate - 0, the fraction of requests answered with an error</li>
+     * <li>error.status - 500</li>
+     * <li>throttle.rate - 0 for none, otherwise requests per second</li>
+     * <li>throttle.burst - the rate, the requests allowed at once</li>
+     * </ul>
+     *
+     * @param properties
+     *            the properties
+     * @return the profile
+     * @throws IllegalArgumentException
+     *             if a property cannot be parsed
+     */
+    public static Profile from(final Properties properties)
+        throws IllegalArgumentException {
+
+        final Profile result = new Profile();
+
+        result.setDistribution(Distribution.valueOf(properties.getProperty(
+            "latency.distribution", "fixed").trim().toUpperCase()));
+        result.setMean(Double.parseDouble(properties.getProperty(
+            "latency.mean", "0")));
+        result.setSpread(Double.parseDouble(properties.getProperty(
+            "latency.spread", "0")));
+        result.setErrorRate(Double.parseDouble(properties.getProperty(
+            "error.rate", "0")));
+        result.setErrorStatus(Integer.parseInt(properties.getProperty(
+            "error.status", "500")));
+        result.setThrottleRate(Double.parseDouble(properties.getProperty(
+            "throttle.rate", "0")));
+        result.setThrottleBurst(Double.parseDouble(properties.getProperty(
+            "throttle.burst", Double.toString(result.getThrottleRate()))));
+
+        return result;
+    }
+
+    private Distribution distribution = Distribution.FIXED;
+    private double errorRate;
+    private int errorStatus = 500;
+    private double mean;
+    private double spread;
+    private double throttleBurst;
+    private double throttleRate;
+
+    /**
+     * @param random
+     *            the source of randomness
+     * @return true if the request is to be answered with an error
+     */
+    public boolean fails(final Random random) {
+
+        return this.errorRate > 0 && random.nextDouble() < this.errorRate;
+    }
+
+    /**
+     * @return the shape of the latency distribution
+     */
+    public Distribution getDistribution() {
+
+        return this.distribution;
+    }
+
+    /**
+     * @return the fraction of requests answered with an error
+     */
+    public double getErrorRate() {
+
+        return this.errorRate;
+    }
+
+    /**
+     * @return the HTTP status of an error
+     */
+    public int getErrorStatus() {
+
+        return this.errorStatus;
+    }
+
+    /**
+     * @return the mean latency in ms
+     */
+    public double getMean() {
+
+        return this.mean;
+    }
+
+    /**
+     * @return the spread of the latency in ms
+     */
+    public double getSpread() {
+
+        return this.spread;
+    }
+
+    /**
+     * @return the number of requests allowed at once before throttling
+     */
+    public double getThrottleBurst() {
+
+        return this.throttleBurst;
+    }
+
+    /**
+     * @return the sustained requests per second allowed, or 0 for no limit
+     */
+    public double getThrottleRate() {
+
+        return this.throttleRate;
+    }
+
+    /**
+     * @param random
+     *            the source of randomness
+     * @return a latency in ms drawn from the distribution, never negative
+     */
+    public long latency(final Random random) {
+
+        final double result;
+
+        switch (this.distribution) {
+        case EXPONENTIAL:
+            result = -this.mean * Math.log(1 - random.nextDouble());
+            break;
+        case NORMAL:
+            result = this.mean + random.nextGaussian() * this.spread;
+            break;
+        case UNIFORM:
+            result = this.mean + (random.nextDouble() * 2 - 1) * this.spread;
+            break;
+        default:
+            result = this.mean;
+        }
+
+        return Math.max(0, Math.round(result));
+    }
+
+    /**
+     * @param distribution
+     *            the shape of the latency distribution
+     * @return this reference for chaining
+     */
+    public Profile setDistribution(final Distribution distribution) {
+
+        this.distribution = distribution;
+        return this;
+    }
+
+    /**
+     * @param errorRate
+     *            the fraction of requests answered with an error
+     * @return this reference for chaining
+     */
+    public Profile setErrorRate(final double errorRate) {
+
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param errorStatus
+     *            the HTTP status of an error
+     * @return this reference for chaining
+     */
+    public Profile setErrorStatus(final int errorStatus) {
+
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    /**
+     * @param mean
+     *            the mean latency in ms
+     * @return this reference for chaining
+     */
+    public Profile setMean(final double mean) {
+
+        this.mean = mean;
+        return this;
+    }
+
+    /**
+     * @param spread
+     *            the spread of the latency in ms
+     * @return this reference for chaining
+     */
+    public Profile setSpread(final double spread) {
+
+        this.spread = spread;
+        return this;
+    }
+
+    /**
+     * @param throttleBurst
+     *            the number of requests allowed at once before throttling
+     * @return this reference for chaining
+     */
+    public Profile setThrottleBurst(final double throttleBurst) {
+
+        this.throttleBurst = throttleBurst;
+        return this;
+    }
+
+    /**
+     * @param throttleRate
+     *            the sustained requests per second allowed, or 0 for no limit
+     * @return this reference for chaining
+     */
+    public Profile setThrottleRate(final double throttleRate) {
+
+        this.throttleRate = throttleRate;
+        return this;
+    }
+}
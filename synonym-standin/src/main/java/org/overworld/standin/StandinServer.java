@@ -0,0 +1,314 @@
+package org.overworld.standin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embeddable HTTP server standing in for the upstream synonym service,
+ * answering GET /{word}/... with the synonyms of the word in the same JSON
+ * shape, {"noun":{"syn":[...]}}, so that synonym-service can be pointed at it
+ * with upstream.synonym.url set to http://host:port/{}/json.
+ * <p/>
+ * Each request is throttled, delayed and failed according to the profile
+ * before being answered. A word not in the list is answered with 404, as the
+ * real service does.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class StandinServer {
+
+    /**
+     * @param value
+     *            a String
+     * @return the String as a quoted and escaped JSON string
+     */
+    private static String quote(final String value) {
+
+        final StringBuilder result = new StringBuilder(value.length() + 2);
+
+        result.append('"');
+
+        for (final char c : value.toCharArray()) {
+
+            if (c == '"' || c == '\\')
+                result.append('\\').append(c);
+            else if (c < 0x20)
+                result.append(String.format("\\u%04x", (int) c));
+            else
+                result.append(c);
+        }
+
+        return result.append('"').toString();
+    }
+
+    /**
+     * @param exchange
+     *            a request
+     * @return the word requested, the first segment of the path
+     * @throws UnsupportedEncodingException
+     *             never, as UTF-8 is always supported
+     */
+    private static String word(final HttpExchange exchange)
+        throws UnsupportedEncodingException {
+
+        final String path = exchange.getRequestURI().getRawPath();
+        final int start = path.startsWith("/") ? 1 : 0;
+        final int end = path.indexOf('/', start);
+
+        return URLDecoder.decode(
+            end < 0 ? path.substring(start) : path.substring(start, end),
+            "UTF-8");
+    }
+
+    /**
+     * The executor that answers requests, sized so that delayed requests do
+     * not hold up the others
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The number of requests failed according to the profile
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * The number of requests for words not in the list
+     */
+    private final AtomicLong missing = new AtomicLong();
+
+    /**
+     * The behaviour of the server
+     */
+    private final Profile profile;
+
+    /**
+     * The number of requests received
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * The underlying HTTP server
+     */
+    private final HttpServer server;
+
+    /**
+     * The throttle applied to every request
+     */
+    private final Throttle throttle;
+
+    /**
+     * The number of requests throttled
+     */
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * The synonyms served
+     */
+    private final WordList words;
+
+    /**
+     * Creates a server, which does not listen until started
+     *
+     * @param port
+     *            the port to listen on, or 0 for any free port
+     * @param threads
+     *            the number of threads answering requests
+     * @param words
+     *            the synonyms to serve
+     * @param profile
+     *            the behaviour of the server
+     * @throws IOException
+     *             if the port cannot be bound
+     */
+    public StandinServer(final int port, final int threads,
+        final WordList words, final Profile profile) throws IOException {
+
+        this.words = words;
+        this.profile = profile;
+        this.throttle = new Throttle(profile.getThrottleRate(),
+            profile.getThrottleBurst());
+
+        this.executor = Executors.newFixedThreadPool(threads);
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    /**
+     * @return the number of requests failed according to the profile
+     */
+    public long getFailed() {
+
+        return this.failed.get();
+    }
+
+    /**
+     * @return the number of requests for words not in the list
+     */
+    public long getMissing() {
+
+        return this.missing.get();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of requests received
+     */
+    public long getRequests() {
+
+        return this.requests.get();
+    }
+
+    /**
+     * @return the number of requests throttled
+     */
+    public long getThrottled() {
+
+        return this.throttled.get();
+    }
+
+    /**
+     * Answers a request
+     *
+     * @param exchange
+     *            the request and its response
+     * @throws IOException
+     *             if the response cannot be sent
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+
+        this.requests.incrementAndGet();
+
+        try {
+
+            if (!"GET".equals(exchange.getRequestMethod())) {
+
+                this.respond(exchange, 405, null);
+                return;
+            }
+
+            if (!this.throttle.acquire()) {
+
+                this.throttled.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After",
+                    Long.toString(this.throttle.retryAfter()));
+                this.respond(exchange, 429, null);
+                return;
+            }
+
+            final Random random = ThreadLocalRandom.current();
+
+            try {
+
+                Thread.sleep(this.profile.latency(random));
+            } catch (final InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                this.respond(exchange, 503, null);
+                return;
+            }
+
+            if (this.profile.fails(random)) {
+
+                this.failed.incrementAndGet();
+                this.respond(exchange, this.profile.getErrorStatus(), null);
+                return;
+            }
+
+            final List<String> synonyms = this.words.get(word(exchange));
+
+            if (synonyms == null) {
+
+                this.missing.incrementAndGet();
+                this.respond(exchange, 404, null);
+                return;
+            }
+
+            final StringBuilder json = new StringBuilder("{\"noun\":{\"syn\":[");
+
+            for (int i = 0; i < synonyms.size(); i++) {
+
+                if (i > 0)
+                    json.append(',');
+
+                json.append(quote(synonyms.get(i)));
+            }
+
+            this.respond(exchange, 200, json.append("]}}").toString());
+        } finally {
+
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends a response
+     *
+     * @param exchange
+     *            the request and its response
+     * @param status
+     *            the HTTP status
+     * @param json
+     *            the body, or null for none
+     * @throws IOException
+     *             if the response cannot be sent
+     */
+    private void respond(final HttpExchange exchange, final int status,
+        final String json) throws IOException {
+
+        if (json == null) {
+
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Starts listening
+     */
+    public void start() {
+
+        this.server.start();
+    }
+
+    /**
+     * Stops listening, waiting up to a second for requests being answered
+     */
+    public void stop() {
+
+        this.server.stop(1);
+        this.executor.shutdownNow();
+    }
+}
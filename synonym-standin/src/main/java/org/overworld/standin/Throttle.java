@@ -0,0 +1,79 @@
+package org.overworld.standin;
+
+/**
+ * A token bucket that lets requests through at a sustained rate with bursts
+ * of up to its capacity
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class Throttle {
+
+    /**
+     * The largest number of tokens the bucket holds
+     */
+    private final double capacity;
+
+    /**
+     * The system time in ns when tokens were last added
+     */
+    private long last = System.nanoTime();
+
+    /**
+     * The tokens added per second, or 0 for no limit
+     */
+    private final double rate;
+
+    /**
+     * The tokens currently in the bucket
+     */
+    private double tokens;
+
+    /**
+     * @param rate
+     *            the tokens added per second, or 0 for no limit
+     * @param capacity
+     *            the largest number of tokens the bucket holds, at least one
+     */
+    public Throttle(final double rate, final double capacity) {
+
+        this.rate = rate;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+    }
+
+    /**
+     * Takes a token if one is available
+     *
+     * @return true if the request may go ahead
+     */
+    public synchronized boolean acquire() {
+
+        if (this.rate <= 0)
+            return true;
+
+        final long now = System.nanoTime();
+
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.last)
+            / 1e9 * this.rate);
+        this.last = now;
+
+        if (this.tokens < 1)
+            return false;
+
+        this.tokens--;
+        return true;
+    }
+
+    /**
+     * @return the seconds until a token is next available, at least one
+     */
+    public synchronized long retryAfter() {
+
+        if (this.rate <= 0)
+            return 1;
+
+        return Math.max(1, (long) Math.ceil((1 - this.tokens) / this.rate));
+    }
+}
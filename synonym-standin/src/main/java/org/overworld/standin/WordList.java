@@ -0,0 +1,103 @@
+package org.overworld.standin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The synonyms served by the stand-in, read from a file with a line for each
+ * word: the word and then its synonyms, separated by commas. Blank lines and
+ * lines starting with # are ignored, and words are looked up in lower case.
+ *
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+public class WordList {
+
+    /**
+     * Reads a word list from a file
+     *
+     * @param file
+     *            the file, in UTF-8
+     * @return the word list
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static WordList read(final Path file) throws IOException {
+
+        final WordList result = new WordList();
+
+        try (BufferedReader in = Files.newBufferedReader(file,
+            StandardCharsets.UTF_8)) {
+
+            String line;
+            while ((line = in.readLine()) != null) {
+
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                final String[] fields = line.split(",");
+                final List<String> synonyms = new ArrayList<>();
+
+                for (int i = 1; i < fields.length; i++) {
+
+                    if (!fields[i].trim().isEmpty())
+                        synonyms.add(fields[i].trim());
+                }
+
+                result.put(fields[0].trim(), synonyms);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The synonyms of each word, against the word in lower case
+     */
+    private final Map<String, List<String>> words = new HashMap<>();
+
+    /**
+     * @param word
+     *            a word
+     * @return the synonyms of the word, or null if it is not in the list
+     */
+    public List<String> get(final String word) {
+
+        return this.words.get(word.toLowerCase());
+    }
+
+    /**
+     * Adds a word to the list, replacing any synonyms already given for it
+     *
+     * @param word
+     *            the word
+     * @param synonyms
+     *            its synonyms
+     * @return this reference for chaining
+     */
+    public WordList put(final String word, final List<String> synonyms) {
+
+        this.words.put(word.toLowerCase(),
+            Collections.unmodifiableList(new ArrayList<>(synonyms)));
+        return this;
+    }
+
+    /**
+     * @return the number of words in the list
+     */
+    public int size() {
+
+        return this.words.size();
+    }
+}
@@ -0,0 +1,138 @@
+package org.overworld.standin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Lennon stephen@overworld.org
+ *
+ *         Date: 2016
+ */
+
+public class StandinServerTest {
+
+    /**
+     * @param server
+     *            a running server
+     * @param path
+     *            the path to request
+     * @return the status and body of the response, separated by a space
+     * @throws IOException
+     *             if the request fails
+     */
+    private static String get(final StandinServer server, final String path)
+        throws IOException {
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(
+            "http://localhost:" + server.getPort() + path).openConnection();
+
+        final int status = connection.getResponseCode();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        try (InputStream in = status < 400 ? connection.getInputStream()
+            : connection.getErrorStream()) {
+
+            if (in != null) {
+
+                final byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+        }
+
+        return status + " " + new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void test() throws Exception {
+
+        final WordList words = new WordList().put("Quick",
+            Arrays.asList("fast", "say \"speedy\""));
+
+        final StandinServer server = new StandinServer(0, 2, words,
+            new Profile());
+        server.start();
+
+        try {
+
+            assertEquals("200 {\"noun\":{\"syn\":[\"fast\",\"say \\\"speedy\\\"\"]}}",
+                get(server, "/quick/json"));
+            assertEquals("404 ", get(server, "/slow/json"));
+            assertEquals(2, server.getRequests());
+            assertEquals(1, server.getMissing());
+        } finally {
+
+            server.stop();
+        }
+    }
+
+    @Test
+    public void profileTest() throws Exception {
+
+        final StandinServer failing = new StandinServer(0, 2,
+            new WordList(), new Profile().setErrorRate(1).setErrorStatus(503));
+        failing.start();
+
+        try {
+
+            assertEquals("503 ", get(failing, "/quick/json"));
+            assertEquals(1, failing.getFailed());
+        } finally {
+
+            failing.stop();
+        }
+
+        final StandinServer throttled = new StandinServer(0, 2,
+            new WordList(), new Profile().setThrottleRate(0.001)
+                .setThrottleBurst(1));
+        throttled.start();
+
+        try {
+
+            assertEquals("404 ", get(throttled, "/quick/json"));
+            assertEquals("429 ", get(throttled, "/quick/json"));
+            assertEquals(1, throttled.getThrottled());
+        } finally {
+
+            throttled.stop();
+        }
+    }
+
+    @Test
+    public void latencyTest() {
+
+        final Random random = new Random(1);
+        final Profile profile = new Profile().setMean(50).setSpread(10);
+
+        assertEquals(50, profile.latency(random));
+
+        profile.setDistribution(Profile.Distribution.UNIFORM);
+
+        for (int i = 0; i < 1000; i++) {
+
+            final long latency = profile.latency(random);
+            assertEquals(true, latency >= 40 && latency <= 60);
+        }
+
+        profile.setDistribution(Profile.Distribution.EXPONENTIAL);
+
+        long total = 0;
+        for (int i = 0; i < 10000; i++) {
+            total += profile.latency(random);
+        }
+
+        assertEquals(50, total / 10000.0, 5);
+    }
+}